@@ -1,9 +1,11 @@
 package com.knoldus.function.trigger;
 
-import com.knoldus.function.util.VehicleUtil;
-import com.knoldus.function.model.VehicleDetail;
+import com.knoldus.function.model.Car;
+import com.knoldus.function.util.CarMessageDecoder;
+import com.knoldus.function.util.CarUtil;
 import com.microsoft.azure.functions.annotation.*;
 import com.microsoft.azure.functions.*;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -14,6 +16,8 @@ public class EventHubTriggerJava {
 
     /**
      * This function will be invoked when an event is received from Event Hub.
+     * The events are bound as raw bytes, each one being decoded as JSON or
+     * binary by {@link CarMessageDecoder}.
      */
     @FunctionName("EventHubTriggerJava")
     public void run(
@@ -21,8 +25,9 @@ public class EventHubTriggerJava {
                     eventHubName = "myeventhub",
                     connection = "connectionString",
                     consumerGroup = "$Default",
-                    cardinality = Cardinality.MANY)
-            List<Car> carDetails,
+                    cardinality = Cardinality.MANY,
+                    dataType = "binary")
+            List<byte[]> messages,
             @CosmosDBOutput(
                     name = "updatedCarDetails",
                     databaseName = "CarFactory",
@@ -35,17 +40,24 @@ public class EventHubTriggerJava {
     ) {
         try {
             List<Car> carDetailsList = new ArrayList<>();
-            carDetailsList = carDetails.stream()
-                    .map(details -> {
-                        context.getLogger().info("Car Data: " + details);
-                        Double updatedMileage = CarUtil.updateMileage(details.getMileage());
-                        Double updatedPrice = CarUtil.updatePrice(details.getPrice());
-                        details.setMileage(updatedMileage);
-                        details.setPrice(updatedPrice);
-                        context.getLogger().info("Transformed Car Data: " + details);
-                        details.setCarId(details.getCardId() + 1);
-                        return details;
-                    }).toList();
+            for (byte[] message : messages) {
+                Car details;
+                try {
+                    details = CarMessageDecoder.decode(message);
+                } catch (IOException | IllegalArgumentException exception) {
+                    context.getLogger().warning("Skipping unreadable car: "
+                            + exception.getMessage());
+                    continue;
+                }
+                context.getLogger().info("Car Data: " + details);
+                Double updatedMileage = CarUtil.updateMileage(details.getMileage());
+                Double updatedPrice = CarUtil.updatePrice(details.getPrice());
+                details.setMileage(updatedMileage);
+                details.setPrice(updatedPrice);
+                context.getLogger().info("Transformed Car Data: " + details);
+                details.setCarId(details.getCarId() + 1);
+                carDetailsList.add(details);
+            }
             updatedCarDetails.setValue(carDetailsList);
         } catch (Exception exception) {
             context.getLogger().info(exception.getMessage());
@@ -0,0 +1,164 @@
+package com.knoldus.function.util;
+
+import com.knoldus.function.model.Car;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Decodes cars published in the binary format of the ingestion service
+ * (content type {@value #CONTENT_TYPE}). The layout and dictionaries
+ * mirror {@code com.nashtech.codec.CarBinaryCodec} and must be kept in
+ * sync with it, the function being deployed on its own. The tests of
+ * both pin the same golden payloads, covering every dictionary code.
+ */
+public final class CarBinaryDecoder {
+
+    /**
+     * The content type of binary encoded cars.
+     */
+    public static final String CONTENT_TYPE = "application/x-car-binary";
+
+    /**
+     * The latest version of the format understood by this decoder.
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * The brand dictionary.
+     */
+    private static final List<String> BRANDS = List.of(
+            "Acura", "Alfa Romeo", "Aston Martin", "Audi", "Bentley", "BMW",
+            "Buick", "Cadillac", "Chevrolet", "Chrysler", "Daewoo", "Dodge",
+            "Eagle", "Ferrari", "Fiat", "Ford", "Geo", "GMC", "Honda",
+            "Hummer", "Hyundai", "Infiniti", "Isuzu", "Jaguar", "Jeep", "Kia",
+            "Lamborghini", "Land Rover", "Lexus", "Lincoln", "Lotus",
+            "Maserati", "Maybach", "Mazda", "McLaren", "Mercedes-Benz",
+            "Mercury", "MINI", "Mitsubishi", "Nissan", "Oldsmobile",
+            "Plymouth", "Pontiac", "Porsche", "Ram", "Rolls-Royce", "Saab",
+            "Saturn", "Scion", "smart", "Subaru", "Suzuki", "Tesla",
+            "Toyota", "Volkswagen", "Volvo");
+
+    /**
+     * The color dictionary.
+     */
+    private static final List<String> COLORS = List.of(
+            "Aquamarine", "Blue", "Crimson", "Fuscia", "Goldenrod", "Green",
+            "Indigo", "Khaki", "Maroon", "Mauv", "Orange", "Pink", "Puce",
+            "Purple", "Red", "Teal", "Turquoise", "Violet", "Yellow");
+
+    /**
+     * The number of brands of each version, starting with version 1.
+     */
+    private static final int[] BRAND_COUNTS = {56};
+
+    /**
+     * The number of colors of each version, starting with version 1.
+     */
+    private static final int[] COLOR_COUNTS = {19};
+
+    private CarBinaryDecoder() {
+    }
+
+    /**
+     * Tells whether a payload is a binary encoded car rather than JSON,
+     * from its first byte: JSON starts with a brace or whitespace, the
+     * binary format with its version.
+     *
+     * @param payload the payload
+     * @return true for a binary encoded car
+     */
+    public static boolean isBinary(final byte[] payload) {
+        if (payload.length == 0) {
+            return false;
+        }
+        byte first = payload[0];
+        return first != '{' && first != ' ' && first != '\t'
+                && first != '\n' && first != '\r';
+    }
+
+    /**
+     * Decodes a binary encoded car.
+     *
+     * @param payload the encoded car
+     * @return the decoded car
+     * @throws IllegalArgumentException if the payload is written in a
+     * version newer than this decoder
+     */
+    public static Car decode(final byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        byte version = in.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException(
+                    "Unsupported car format version " + version);
+        }
+        int presence = in.get();
+        Car car = new Car();
+        if ((presence & 1) != 0) {
+            car.setCarId((int) unZigZag(getVarLong(in)));
+        }
+        if ((presence & (1 << 1)) != 0) {
+            car.setBrand(getDictionary(in, BRANDS,
+                    BRAND_COUNTS[version - 1]));
+        }
+        if ((presence & (1 << 2)) != 0) {
+            car.setModel(getString(in));
+        }
+        if ((presence & (1 << 3)) != 0) {
+            car.setYear(unZigZag(getVarLong(in)));
+        }
+        if ((presence & (1 << 4)) != 0) {
+            car.setColor(getDictionary(in, COLORS,
+                    COLOR_COUNTS[version - 1]));
+        }
+        if ((presence & (1 << 5)) != 0) {
+            car.setMileage(in.getDouble());
+        }
+        if ((presence & (1 << 6)) != 0) {
+            car.setPrice(in.getDouble());
+        }
+        return car;
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long getVarLong(final ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            if (shift >= Long.SIZE) {
+                throw new IllegalArgumentException("Malformed varint");
+            }
+            current = in.get();
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    private static String getDictionary(final ByteBuffer in,
+                                        final List<String> dictionary,
+                                        final int count) {
+        long code = getVarLong(in);
+        if (code == 0) {
+            return getString(in);
+        }
+        if (code > count) {
+            throw new IllegalArgumentException(
+                    "Unknown dictionary code " + code);
+        }
+        return dictionary.get((int) code - 1);
+    }
+
+    private static String getString(final ByteBuffer in) {
+        int length = (int) getVarLong(in);
+        String value = new String(in.array(), in.position(), length,
+                StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,42 @@
+package com.knoldus.function.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knoldus.function.model.Car;
+
+import java.io.IOException;
+
+/**
+ * Decodes the car messages of the ingestion service. Producers write
+ * either JSON or the binary format of {@link CarBinaryDecoder}, and
+ * both can be in flight while they are switched over, so the decoder
+ * is picked per message.
+ */
+public final class CarMessageDecoder {
+
+    /**
+     * The mapper used for JSON messages.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                    false);
+
+    private CarMessageDecoder() {
+    }
+
+    /**
+     * Decodes a car message.
+     *
+     * @param payload the message body
+     * @return the decoded car
+     * @throws IOException if a JSON message cannot be read
+     * @throws IllegalArgumentException if a binary message cannot be
+     * read
+     */
+    public static Car decode(final byte[] payload) throws IOException {
+        if (CarBinaryDecoder.isBinary(payload)) {
+            return CarBinaryDecoder.decode(payload);
+        }
+        return OBJECT_MAPPER.readValue(payload, Car.class);
+    }
+}
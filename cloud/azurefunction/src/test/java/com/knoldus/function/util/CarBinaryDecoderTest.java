@@ -0,0 +1,94 @@
+package com.knoldus.function.util;
+
+import com.knoldus.function.model.Car;
+import org.junit.jupiter.api.Test;
+
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Decodes the golden payloads pinned by {@code CarBinaryCodecTest} of
+ * the ingestion service, so a drift between the two copies of the
+ * dictionaries fails one of the two builds.
+ */
+class CarBinaryDecoderTest {
+
+    /**
+     * The brands in the order of their codes, starting with code 1.
+     */
+    static final String[] GOLDEN_BRANDS = {
+            "Acura", "Alfa Romeo", "Aston Martin", "Audi", "Bentley", "BMW",
+            "Buick", "Cadillac", "Chevrolet", "Chrysler", "Daewoo", "Dodge",
+            "Eagle", "Ferrari", "Fiat", "Ford", "Geo", "GMC", "Honda",
+            "Hummer", "Hyundai", "Infiniti", "Isuzu", "Jaguar", "Jeep", "Kia",
+            "Lamborghini", "Land Rover", "Lexus", "Lincoln", "Lotus",
+            "Maserati", "Maybach", "Mazda", "McLaren", "Mercedes-Benz",
+            "Mercury", "MINI", "Mitsubishi", "Nissan", "Oldsmobile",
+            "Plymouth", "Pontiac", "Porsche", "Ram", "Rolls-Royce", "Saab",
+            "Saturn", "Scion", "smart", "Subaru", "Suzuki", "Tesla",
+            "Toyota", "Volkswagen", "Volvo"};
+
+    /**
+     * The colors in the order of their codes, starting with code 1.
+     */
+    static final String[] GOLDEN_COLORS = {
+            "Aquamarine", "Blue", "Crimson", "Fuscia", "Goldenrod", "Green",
+            "Indigo", "Khaki", "Maroon", "Mauv", "Orange", "Pink", "Puce",
+            "Purple", "Red", "Teal", "Turquoise", "Violet", "Yellow"};
+
+    /**
+     * Car(22, "Toyota", "Camry", 2023, "Red", 2223.0, 22253.12).
+     */
+    static final String GOLDEN_CAR =
+            "017f2c360543616d7279ce1f0f40a15e000000000040d5bb47ae147ae1";
+
+    /**
+     * Car(-7, "Škoda", "Octavia", null, "Nardo Grau", null, null), with
+     * a brand and a color outside of the dictionaries.
+     */
+    static final String GOLDEN_LITERALS =
+            "01170d0006c5a06b6f6461074f637461766961000a4e6172646f2047726175";
+
+    @Test
+    void testDecode_GoldenCar() {
+        Car car = CarBinaryDecoder.decode(HexFormat.of().parseHex(GOLDEN_CAR));
+
+        assertEquals(new Car(22, "Toyota", "Camry", 2023L, "Red", 2223.0, 22253.12), car);
+    }
+
+    @Test
+    void testDecode_GoldenLiterals() {
+        Car car = CarBinaryDecoder.decode(HexFormat.of().parseHex(GOLDEN_LITERALS));
+
+        assertEquals(-7, car.getCarId());
+        assertEquals("Škoda", car.getBrand());
+        assertEquals("Octavia", car.getModel());
+        assertNull(car.getYear());
+        assertEquals("Nardo Grau", car.getColor());
+    }
+
+    @Test
+    void testDecode_EveryDictionaryCode() {
+        for (int code = 1; code <= GOLDEN_BRANDS.length; code++) {
+            Car car = CarBinaryDecoder.decode(new byte[] {1, 1 << 1, (byte) code});
+            assertEquals(GOLDEN_BRANDS[code - 1], car.getBrand());
+        }
+        for (int code = 1; code <= GOLDEN_COLORS.length; code++) {
+            Car car = CarBinaryDecoder.decode(new byte[] {1, 1 << 4, (byte) code});
+            assertEquals(GOLDEN_COLORS[code - 1], car.getColor());
+        }
+        assertThrows(IllegalArgumentException.class, () -> CarBinaryDecoder.decode(
+                new byte[] {1, 1 << 1, (byte) (GOLDEN_BRANDS.length + 1)}));
+    }
+
+    @Test
+    void testDecode_RejectsNewerVersion() {
+        byte[] payload = HexFormat.of().parseHex(GOLDEN_CAR);
+        payload[0] = 2;
+
+        assertThrows(IllegalArgumentException.class, () -> CarBinaryDecoder.decode(payload));
+    }
+}
@@ -0,0 +1,37 @@
+package com.knoldus.function.util;
+
+import com.knoldus.function.model.Car;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CarMessageDecoderTest {
+
+    private static final Car CAR = new Car(22, "Toyota", "Camry", 2023L, "Red", 2223.0, 22253.12);
+
+    @Test
+    void testDecode_BinaryMessage() throws Exception {
+        byte[] payload = HexFormat.of().parseHex(CarBinaryDecoderTest.GOLDEN_CAR);
+
+        assertTrue(CarBinaryDecoder.isBinary(payload));
+        assertEquals(CAR, CarMessageDecoder.decode(payload));
+    }
+
+    @Test
+    void testDecode_JsonMessages() throws Exception {
+        String json = "{\"carId\":22,\"brand\":\"Toyota\",\"model\":\"Camry\",\"year\":2023,"
+                + "\"color\":\"Red\",\"mileage\":2223.0,\"price\":22253.12,\"extra\":true}";
+
+        for (String message : new String[] {json, " " + json, "\n\t" + json, "\r\n" + json}) {
+            byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+            assertFalse(CarBinaryDecoder.isBinary(payload));
+            assertEquals(CAR, CarMessageDecoder.decode(payload));
+        }
+        assertFalse(CarBinaryDecoder.isBinary(new byte[0]));
+    }
+}
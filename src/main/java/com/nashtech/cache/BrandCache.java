@@ -0,0 +1,254 @@
+package com.nashtech.cache;
+
+import com.nashtech.model.CarBrand;
+import com.nashtech.service.CloudDataService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-process cache of the brand list in front of
+ * {@link CloudDataService#getAllBrands()}.
+ *
+ * <p>A cached list is served for {@code brand-cache.ttl}. Once it is
+ * older than {@code brand-cache.refresh-after}, the next request still
+ * gets the cached list and triggers a reload in the background, so
+ * requests only wait for the database when the cache is empty or
+ * expired. Concurrent loads are merged into a single database query.
+ * Brands observed by the database listeners are added to the cached
+ * list right away.
+ *
+ * <p>The list is dropped with {@link #invalidate()} once the brand
+ * index has been recounted. A load started before is then neither
+ * joined nor cached, so no request arriving afterwards gets a list
+ * older than the index.
+ */
+@Slf4j
+@Component
+public class BrandCache {
+
+    /**
+     * The name of the cache, used as metric tag.
+     */
+    private static final String CACHE_NAME = "brands";
+
+    /**
+     * The service the brands are loaded from.
+     */
+    @Autowired
+    private CloudDataService cloudDataService;
+
+    /**
+     * The registry the cache metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * How long a loaded list is served.
+     */
+    @Value("${brand-cache.ttl:5m}")
+    private Duration ttl;
+
+    /**
+     * The age after which a served list is reloaded in the background.
+     */
+    @Value("${brand-cache.refresh-after:4m}")
+    private Duration refreshAfter;
+
+    /**
+     * The cached list, null when nothing is cached.
+     */
+    private final AtomicReference<Entry> entry = new AtomicReference<>();
+
+    /**
+     * The load in progress, null when none is.
+     */
+    private final AtomicReference<Mono<List<CarBrand>>> inFlight =
+            new AtomicReference<>();
+
+    /**
+     * Bumped by every invalidation, a load only caches its result if
+     * no invalidation happened since it started.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Counts requests served from the cache.
+     */
+    private Counter hits;
+
+    /**
+     * Counts requests which waited for a load.
+     */
+    private Counter misses;
+
+    /**
+     * Counts failed loads.
+     */
+    private Counter loadFailures;
+
+    /**
+     * Records the duration of the loads.
+     */
+    private Timer loads;
+
+    /**
+     * Registers the cache metrics.
+     */
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME)
+                .tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME)
+                .tag("result", "miss").register(meterRegistry);
+        loadFailures = Counter.builder("cache.load.failures")
+                .tag("cache", CACHE_NAME).register(meterRegistry);
+        loads = Timer.builder("cache.loads").tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the brand list, from memory whenever possible.
+     *
+     * @return A Flux of the distinct brands.
+     */
+    public Flux<CarBrand> getBrands() {
+        return Mono.defer(() -> {
+            Entry current = entry.get();
+            long now = System.nanoTime();
+            if (current != null && now - current.loadedAt < ttl.toNanos()) {
+                hits.increment();
+                if (now - current.loadedAt >= refreshAfter.toNanos()) {
+                    load().subscribe(brands -> { }, error -> { });
+                }
+                return Mono.just(current.brands);
+            }
+            misses.increment();
+            return load();
+        }).flatMapIterable(brands -> brands);
+    }
+
+    /**
+     * Drops the cached list and detaches the load in progress, so the
+     * next request loads the list again.
+     */
+    public synchronized void invalidate() {
+        generation.incrementAndGet();
+        inFlight.set(null);
+        entry.set(null);
+    }
+
+    /**
+     * Adds a brand seen by a database listener to the cached list.
+     *
+     * @param event The event carrying the brand.
+     */
+    @EventListener
+    public void onBrandObserved(final BrandObservedEvent event) {
+        String brand = event.getBrand();
+        if (brand == null) {
+            return;
+        }
+        entry.updateAndGet(current -> {
+            if (current == null || contains(current.brands, brand)) {
+                return current;
+            }
+            List<CarBrand> brands = new ArrayList<>(current.brands);
+            brands.add(new CarBrand(brand));
+            return new Entry(List.copyOf(brands), current.loadedAt);
+        });
+    }
+
+    /**
+     * Loads the brand list, joining the load in progress if there is
+     * one. The load is not cancelled when its callers go away, so its
+     * result still ends up in the cache, unless the cache has been
+     * invalidated since.
+     *
+     * @return A Mono emitting the loaded list.
+     */
+    private Mono<List<CarBrand>> load() {
+        Sinks.One<List<CarBrand>> result = Sinks.one();
+        Mono<List<CarBrand>> shared = result.asMono();
+        while (!inFlight.compareAndSet(null, shared)) {
+            Mono<List<CarBrand>> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+        }
+        long startedIn = generation.get();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        cloudDataService.getAllBrands()
+                .collectList()
+                .subscribe(brands -> {
+                    sample.stop(loads);
+                    store(new Entry(List.copyOf(brands),
+                            System.nanoTime()), startedIn);
+                    inFlight.compareAndSet(shared, null);
+                    result.tryEmitValue(brands);
+                }, error -> {
+                    loadFailures.increment();
+                    log.warn("Loading the brands failed: {}",
+                            error.getMessage());
+                    inFlight.compareAndSet(shared, null);
+                    result.tryEmitError(error);
+                });
+        return shared;
+    }
+
+    /**
+     * Caches a loaded list, unless the cache has been invalidated
+     * since the load started.
+     *
+     * @param loaded The loaded list.
+     * @param startedIn The generation the load started in.
+     */
+    private synchronized void store(final Entry loaded,
+                                    final long startedIn) {
+        if (generation.get() == startedIn) {
+            entry.set(loaded);
+        }
+    }
+
+    /**
+     * Tells whether a list holds a brand.
+     *
+     * @param brands The list.
+     * @param brand The brand.
+     * @return true if the list holds the brand.
+     */
+    private static boolean contains(final List<CarBrand> brands,
+                                    final String brand) {
+        for (CarBrand carBrand : brands) {
+            if (brand.equals(carBrand.getBrand())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A loaded brand list and the time it was loaded at.
+     *
+     * @param brands The immutable brand list.
+     * @param loadedAt The {@link System#nanoTime()} of the load.
+     */
+    private record Entry(List<CarBrand> brands, long loadedAt) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.nashtech.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Application event published whenever a database listener sees a car
+ * of some brand being written, e.g. by a Firestore snapshot listener
+ * or a Cosmos change feed.
+ */
+@Getter
+@AllArgsConstructor
+public class BrandObservedEvent {
+
+    /**
+     * The brand of the written car.
+     */
+    private final String brand;
+}
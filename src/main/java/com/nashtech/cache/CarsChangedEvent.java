@@ -0,0 +1,21 @@
+package com.nashtech.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Application event published whenever a database listener sees cars
+ * being inserted, updated or deleted, e.g. by a Firestore snapshot
+ * listener or a Cosmos change feed.
+ */
+@Getter
+@AllArgsConstructor
+public class CarsChangedEvent {
+
+    /**
+     * The brands of the changed cars.
+     */
+    private final Set<String> brands;
+}
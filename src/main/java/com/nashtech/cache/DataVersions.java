@@ -0,0 +1,203 @@
+package com.nashtech.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the brand list and of the cars of every brand. A
+ * version read before a response is produced differs from the current
+ * one as soon as the data the response is served from may have
+ * changed, so each layer serving the data bumps the versions only
+ * once it reflects a change: the cars of a brand when the change feed
+ * reports them, as they are then read from the database, the brand
+ * list once the brand index has been recounted and the brand cache
+ * dropped, and both once the replica has applied a change.
+ *
+ * <p>The latest version change feed of Cosmos DB does not report
+ * deleted cars, so nothing bumps the versions when a car is deleted
+ * there. Every {@code data-versions.max-staleness}, if set, all
+ * versions are bumped, which bounds how long a deletion may go
+ * unnoticed by the ETags and the response cache. The brand index and
+ * the replica still only see a deletion with the next change of the
+ * brand or when they are rebuilt.
+ *
+ * <p>The versions start over on restart, so they are qualified by an
+ * epoch drawn at startup, which keeps the versions of two instances or
+ * of two runs from being mistaken for each other.
+ */
+@Component
+@ConditionalOnExpression("${etag.enabled:false}"
+        + " or ${response-cache.enabled:false}")
+public class DataVersions {
+
+    /**
+     * The epoch of this instance.
+     */
+    private final String epoch = UUID.randomUUID().toString()
+            .substring(0, 8);
+
+    /**
+     * How often all versions are bumped, zero for never.
+     */
+    @Value("${data-versions.max-staleness:0s}")
+    private Duration maxStaleness;
+
+    /**
+     * Added to every version, bumped to bump them all at once. Each
+     * part only grows, so every bump yields a new sum.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The version of the brand list.
+     */
+    private final AtomicLong brandsVersion = new AtomicLong();
+
+    /**
+     * The versions of the cars, by brand.
+     */
+    private final Map<String, AtomicLong> carsVersions =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Whether the changes are still followed.
+     */
+    private volatile boolean tracking = true;
+
+    /**
+     * The subscription of the periodic bumps, null if disabled.
+     */
+    private Disposable expiry;
+
+    /**
+     * Starts bumping all versions every
+     * {@code data-versions.max-staleness}.
+     */
+    @PostConstruct
+    public void start() {
+        if (maxStaleness != null && !maxStaleness.isZero()
+                && !maxStaleness.isNegative()) {
+            expiry = Flux.interval(maxStaleness)
+                    .subscribe(tick -> bumpAll());
+        }
+    }
+
+    /**
+     * Stops the periodic bumps.
+     */
+    @PreDestroy
+    public void stop() {
+        if (expiry != null) {
+            expiry.dispose();
+        }
+    }
+
+    /**
+     * Tells whether the versions follow the changes, and may be used.
+     *
+     * @return false once the change listener has failed.
+     */
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Marks the versions as no longer following the changes.
+     */
+    public void stopTracking() {
+        tracking = false;
+    }
+
+    /**
+     * Marks the versions as following the changes again, once the
+     * change listener is back. The changes missed in between are
+     * unknown, so every version is bumped first.
+     */
+    public void resumeTracking() {
+        bumpAll();
+        tracking = true;
+    }
+
+    /**
+     * Returns the epoch of this instance.
+     *
+     * @return The epoch.
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the version of the brand list.
+     *
+     * @return The version.
+     */
+    public long getBrandsVersion() {
+        return generation.get() + brandsVersion.get();
+    }
+
+    /**
+     * Returns the version of the cars of a brand.
+     *
+     * @param brand The brand.
+     * @return The version.
+     */
+    public long getCarsVersion(final String brand) {
+        AtomicLong version = carsVersions.get(brand);
+        return generation.get() + (version == null ? 0 : version.get());
+    }
+
+    /**
+     * Bumps the version of the brand list, once the layers serving it
+     * reflect a change.
+     */
+    public void bumpBrands() {
+        brandsVersion.incrementAndGet();
+    }
+
+    /**
+     * Bumps the versions of the cars of some brands, once the layers
+     * serving them reflect a change.
+     *
+     * @param brands The brands.
+     */
+    public void bumpCars(final Collection<String> brands) {
+        for (String brand : brands) {
+            carsVersions.computeIfAbsent(brand, key -> new AtomicLong())
+                    .incrementAndGet();
+        }
+    }
+
+    /**
+     * Bumps every version, e.g. when changes may have been missed.
+     */
+    public void bumpAll() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Bumps the versions of the cars of the changed brands, which are
+     * read from the database as long as the replica is not serving
+     * them. The brand list is bumped by the brand index and the
+     * replica once they have caught up.
+     *
+     * @param event The event carrying the brands.
+     */
+    @EventListener
+    public void onCarsChanged(final CarsChangedEvent event) {
+        bumpCars(event.getBrands());
+    }
+}
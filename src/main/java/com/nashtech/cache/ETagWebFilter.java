@@ -0,0 +1,100 @@
+package com.nashtech.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Answers the conditional GET requests of the brand list and of the
+ * cars of a brand from the {@link DataVersions}, without reading the
+ * database. The ETag of a response is made of the epoch, the version
+ * of the data read before the response is produced, and a hash of the
+ * query and the Accept and Accept-Encoding headers, so every
+ * representation has its own. The versions are bumped only once the
+ * layers serving the data reflect a change, see {@link DataVersions},
+ * so a response never carries a version newer than its data.
+ */
+@Component
+@Order(ETagWebFilter.ORDER)
+@ConditionalOnProperty(prefix = "etag", name = "enabled",
+        havingValue = "true")
+public class ETagWebFilter implements WebFilter {
+
+    /**
+     * The order of the filter, ahead of the response cache.
+     */
+    public static final int ORDER = 0;
+
+    /**
+     * The versions of the data.
+     */
+    @Autowired
+    private DataVersions dataVersions;
+
+    /**
+     * Answers a request whose If-None-Match holds the current ETag with
+     * 304, and adds the ETag to the successful responses otherwise.
+     *
+     * @param exchange The exchange.
+     * @param chain The filter chain.
+     * @return A Mono completing once the request has been handled.
+     */
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange,
+                             final WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET
+                || !dataVersions.isTracking()) {
+            return chain.filter(exchange);
+        }
+        String route = VersionedRoutes.resolve(
+                request.getPath().pathWithinApplication());
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+        long version = VersionedRoutes.version(dataVersions, route);
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().setVary(List.of(HttpHeaders.ACCEPT,
+                HttpHeaders.ACCEPT_ENCODING));
+        if (exchange.checkNotModified(eTag(version, request))) {
+            return response.setComplete();
+        }
+        response.beforeCommit(() -> {
+            HttpStatusCode status = response.getStatusCode();
+            if (status != null && !status.is2xxSuccessful()) {
+                response.getHeaders().remove(HttpHeaders.ETAG);
+            }
+            return Mono.empty();
+        });
+        return chain.filter(exchange);
+    }
+
+    /**
+     * Builds the ETag of a representation.
+     *
+     * @param version The version of the data.
+     * @param request The request.
+     * @return The ETag, without quotes.
+     */
+    private String eTag(final long version, final ServerHttpRequest request) {
+        int variant = Objects.hash(request.getURI().getRawQuery(),
+                request.getHeaders().getFirst(HttpHeaders.ACCEPT),
+                request.getHeaders().getFirst(
+                        HttpHeaders.ACCEPT_ENCODING));
+        return dataVersions.getEpoch() + "-" + version + "-"
+                + Integer.toHexString(variant);
+    }
+}
@@ -0,0 +1,328 @@
+package com.nashtech.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of the encoded responses of the versioned read routes, by
+ * route, Accept header and version of the data.
+ *
+ * <p>The bodies are kept in direct buffers, once as encoded and once
+ * gzipped when that is smaller, outside of the heap the young
+ * generation is collected from. The cache holds at most
+ * {@code response-cache.max-bytes}, the least recently used responses
+ * are evicted first. The car lists of the changed brands are evicted
+ * as soon as the change is seen, and a response of an older version is
+ * never returned but evicted, which also drops the responses outdated
+ * by changes no event reports, like deletes on Cosmos DB, once
+ * {@link DataVersions} bumps every version.
+ */
+@Component
+@ConditionalOnProperty(prefix = "response-cache", name = "enabled",
+        havingValue = "true")
+public class ResponseCache {
+
+    /**
+     * The name of the cache, used as metric tag.
+     */
+    private static final String CACHE_NAME = "responses";
+
+    /**
+     * The initial capacity of the map of the responses.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The load factor of the map of the responses.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The separator of the route and the variant in the keys.
+     */
+    private static final char KEY_SEPARATOR = '\n';
+
+    /**
+     * The registry the metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The largest total size of the cached bodies.
+     */
+    @Value("${response-cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    /**
+     * The largest body which is cached.
+     */
+    @Value("${response-cache.max-entry-bytes:1048576}")
+    private int maxEntryBytes;
+
+    /**
+     * Whether a gzipped copy of the bodies is kept.
+     */
+    @Value("${response-cache.gzip:true}")
+    private boolean gzip;
+
+    /**
+     * The cached responses in access order, guarded by itself.
+     */
+    private final Map<String, CachedResponse> entries =
+            new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    /**
+     * The total size of the cached bodies.
+     */
+    private long totalBytes;
+
+    /**
+     * Counts the responses found in the cache.
+     */
+    private Counter hits;
+
+    /**
+     * Counts the responses not found in the cache.
+     */
+    private Counter misses;
+
+    /**
+     * Registers the metrics.
+     */
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME)
+                .tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME)
+                .tag("result", "miss").register(meterRegistry);
+        Gauge.builder("cache.size.bytes", this, ResponseCache::getTotalBytes)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the total size of the cached bodies.
+     *
+     * @return The size in bytes.
+     */
+    public long getTotalBytes() {
+        synchronized (entries) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Tells whether a body is small enough to be cached.
+     *
+     * @param size The size of the body.
+     * @return true if the body may be cached.
+     */
+    public boolean accepts(final long size) {
+        return size <= maxEntryBytes;
+    }
+
+    /**
+     * Returns the cached response of a route.
+     *
+     * @param route The route key.
+     * @param variant The Accept header of the request.
+     * @param version The current version of the data of the route.
+     * @return The response, null if none of that version is cached.
+     */
+    public CachedResponse get(final String route, final String variant,
+                              final long version) {
+        CachedResponse cached;
+        synchronized (entries) {
+            String key = key(route, variant);
+            cached = entries.get(key);
+            if (cached != null && cached.getVersion() < version) {
+                entries.remove(key);
+                totalBytes -= cached.getSize();
+            }
+        }
+        if (cached == null || cached.getVersion() != version) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached;
+    }
+
+    /**
+     * Caches the response of a route, evicting the least recently used
+     * responses beyond {@code response-cache.max-bytes}. A response of
+     * a newer version already cached is kept.
+     *
+     * @param route The route key.
+     * @param variant The Accept header of the request.
+     * @param version The version of the data read for the response.
+     * @param contentType The content type of the response.
+     * @param body The encoded body.
+     */
+    public void put(final String route, final String variant,
+                    final long version, final MediaType contentType,
+                    final byte[] body) {
+        ByteBuffer compressed = gzip ? compress(body) : null;
+        CachedResponse cached = new CachedResponse(route, version,
+                contentType, direct(body), compressed);
+        synchronized (entries) {
+            String key = key(route, variant);
+            CachedResponse newer = entries.get(key);
+            if (newer != null && newer.getVersion() > version) {
+                return;
+            }
+            CachedResponse previous = entries.put(key, cached);
+            totalBytes += cached.getSize()
+                    - (previous == null ? 0 : previous.getSize());
+            Iterator<CachedResponse> eldest = entries.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().getSize();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts the responses of the changed brands. The brand list only
+     * changes when a brand gains its first car or loses its last one,
+     * so it is left to be evicted once its version is bumped.
+     *
+     * @param event The event carrying the brands.
+     */
+    @EventListener
+    public void onCarsChanged(final CarsChangedEvent event) {
+        Set<String> changed = new HashSet<>();
+        event.getBrands().forEach(brand ->
+                changed.add(VersionedRoutes.cars(brand)));
+        synchronized (entries) {
+            Iterator<CachedResponse> cached = entries.values().iterator();
+            while (cached.hasNext()) {
+                CachedResponse response = cached.next();
+                if (changed.contains(response.getRoute())) {
+                    totalBytes -= response.getSize();
+                    cached.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the key of a response.
+     *
+     * @param route The route key.
+     * @param variant The Accept header of the request.
+     * @return The key.
+     */
+    private static String key(final String route, final String variant) {
+        return route + KEY_SEPARATOR + variant;
+    }
+
+    /**
+     * Copies bytes to a direct buffer.
+     *
+     * @param bytes The bytes.
+     * @return The read-only buffer.
+     */
+    private static ByteBuffer direct(final byte[] bytes) {
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip()
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * Gzips a body.
+     *
+     * @param body The body.
+     * @return The gzipped body, null if it is not smaller.
+     */
+    private static ByteBuffer compress(final byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        return out.size() < body.length ? direct(out.toByteArray()) : null;
+    }
+
+    /**
+     * A cached response.
+     */
+    @Getter
+    public static final class CachedResponse {
+
+        /**
+         * The route key.
+         */
+        private final String route;
+
+        /**
+         * The version of the data the response was produced from.
+         */
+        private final long version;
+
+        /**
+         * The content type of the response.
+         */
+        private final MediaType contentType;
+
+        /**
+         * The encoded body.
+         */
+        private final ByteBuffer body;
+
+        /**
+         * The gzipped body, null if not smaller than the body.
+         */
+        private final ByteBuffer gzippedBody;
+
+        /**
+         * Creates a cached response.
+         *
+         * @param route The route key.
+         * @param version The version of the data.
+         * @param contentType The content type.
+         * @param body The encoded body.
+         * @param gzippedBody The gzipped body, may be null.
+         */
+        CachedResponse(final String route, final long version,
+                       final MediaType contentType, final ByteBuffer body,
+                       final ByteBuffer gzippedBody) {
+            this.route = route;
+            this.version = version;
+            this.contentType = contentType;
+            this.body = body;
+            this.gzippedBody = gzippedBody;
+        }
+
+        /**
+         * Returns the memory held by the bodies.
+         *
+         * @return The size in bytes.
+         */
+        public long getSize() {
+            return body.capacity()
+                    + (gzippedBody == null ? 0 : gzippedBody.capacity());
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.nashtech.cache;
+
+import com.nashtech.cache.ResponseCache.CachedResponse;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Serves the brand list and the cars of a brand from the
+ * {@link ResponseCache}, and fills it with the responses produced by
+ * the handlers.
+ *
+ * <p>A cached body is written by wrapping its direct buffer, so the
+ * server sends it without copying nor encoding it again. Only the
+ * JSON responses of requests without query parameters are cached,
+ * the NDJSON streams are flushed per element and pass through. A body
+ * is only cached if the version of its data has not changed while it
+ * was produced, as it may then hold either version.
+ */
+@Component
+@Order(ResponseCacheWebFilter.ORDER)
+@ConditionalOnProperty(prefix = "response-cache", name = "enabled",
+        havingValue = "true")
+public class ResponseCacheWebFilter implements WebFilter {
+
+    /**
+     * The order of the filter, after the ETag filter, so revalidated
+     * requests are answered before the cache is looked at.
+     */
+    public static final int ORDER = ETagWebFilter.ORDER + 1;
+
+    /**
+     * The content coding of the gzipped bodies.
+     */
+    private static final String GZIP = "gzip";
+
+    /**
+     * The content coding matching every coding not listed.
+     */
+    private static final String ANY_CODING = "*";
+
+    /**
+     * The prefix of the quality parameter of a content coding.
+     */
+    private static final String QUALITY = "q=";
+
+    /**
+     * The quality of a content coding not listed.
+     */
+    private static final double NOT_LISTED = -1;
+
+    /**
+     * The cache of the responses.
+     */
+    @Autowired
+    private ResponseCache responseCache;
+
+    /**
+     * The versions of the data.
+     */
+    @Autowired
+    private DataVersions dataVersions;
+
+    /**
+     * Serves a cached response, or lets the handler produce it and
+     * caches it.
+     *
+     * @param exchange The exchange.
+     * @param chain The filter chain.
+     * @return A Mono completing once the request has been handled.
+     */
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange,
+                             final WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET
+                || !request.getQueryParams().isEmpty()
+                || !dataVersions.isTracking()) {
+            return chain.filter(exchange);
+        }
+        String route = VersionedRoutes.resolve(
+                request.getPath().pathWithinApplication());
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+        long version = VersionedRoutes.version(dataVersions, route);
+        String variant = String.valueOf(
+                request.getHeaders().getFirst(HttpHeaders.ACCEPT));
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().setVary(List.of(HttpHeaders.ACCEPT,
+                HttpHeaders.ACCEPT_ENCODING));
+        CachedResponse cached = responseCache.get(route, variant, version);
+        if (cached != null) {
+            return write(response, cached, acceptsGzip(request));
+        }
+        return chain.filter(exchange.mutate()
+                .response(new CachingResponse(response, route, variant,
+                        version))
+                .build());
+    }
+
+    /**
+     * Writes a cached response.
+     *
+     * @param response The response.
+     * @param cached The cached response.
+     * @param gzip Whether the client accepts gzipped bodies.
+     * @return A Mono completing once the body is written.
+     */
+    private static Mono<Void> write(final ServerHttpResponse response,
+                                    final CachedResponse cached,
+                                    final boolean gzip) {
+        ByteBuffer body = cached.getBody();
+        HttpHeaders headers = response.getHeaders();
+        if (gzip && cached.getGzippedBody() != null) {
+            body = cached.getGzippedBody();
+            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        headers.setContentType(cached.getContentType());
+        headers.setContentLength(body.remaining());
+        return response.writeWith(Mono.just(
+                response.bufferFactory().wrap(body.duplicate())));
+    }
+
+    /**
+     * Tells whether a client accepts gzipped bodies, i.e. gzip, or
+     * {@code *} if gzip is not listed, has a quality above 0.
+     *
+     * @param request The request.
+     * @return true if gzip is among the accepted codings.
+     */
+    private static boolean acceptsGzip(final ServerHttpRequest request) {
+        List<String> values = request.getHeaders()
+                .getOrEmpty(HttpHeaders.ACCEPT_ENCODING);
+        double gzipQuality = NOT_LISTED;
+        double anyQuality = NOT_LISTED;
+        for (String value : values) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim();
+                if (GZIP.equalsIgnoreCase(name)) {
+                    gzipQuality = quality(parts);
+                } else if (ANY_CODING.equals(name)) {
+                    anyQuality = quality(parts);
+                }
+            }
+        }
+        return gzipQuality == NOT_LISTED ? anyQuality > 0 : gzipQuality > 0;
+    }
+
+    /**
+     * Reads the quality of a content coding.
+     *
+     * @param parts The coding followed by its parameters.
+     * @return The quality, 1 if absent, 0 if malformed.
+     */
+    private static double quality(final String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.regionMatches(true, 0, QUALITY, 0,
+                    QUALITY.length())) {
+                try {
+                    return Double.parseDouble(parameter.substring(
+                            QUALITY.length()).trim());
+                } catch (NumberFormatException malformed) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Response copying its JSON body into the cache once written.
+     */
+    private final class CachingResponse extends ServerHttpResponseDecorator {
+
+        /**
+         * The route key.
+         */
+        private final String route;
+
+        /**
+         * The Accept header of the request.
+         */
+        private final String variant;
+
+        /**
+         * The version of the data read before the response.
+         */
+        private final long version;
+
+        /**
+         * Creates a caching response.
+         *
+         * @param delegate The response.
+         * @param route The route key.
+         * @param variant The Accept header of the request.
+         * @param version The version of the data.
+         */
+        CachingResponse(final ServerHttpResponse delegate, final String route,
+                        final String variant, final long version) {
+            super(delegate);
+            this.route = route;
+            this.variant = variant;
+            this.version = version;
+        }
+
+        /**
+         * Writes the body, then caches it if it is a successful JSON
+         * response small enough. The buffers are written as they come,
+         * and copied for the cache only until the body exceeds
+         * {@code response-cache.max-entry-bytes}.
+         *
+         * @param body The body.
+         * @return A Mono completing once the body is written.
+         */
+        @Override
+        public Mono<Void> writeWith(
+                final Publisher<? extends DataBuffer> body) {
+            MediaType contentType = getHeaders().getContentType();
+            if (!isCacheable(contentType)) {
+                return super.writeWith(body);
+            }
+            BodyCopy copy = new BodyCopy();
+            return super.writeWith(Flux.<DataBuffer>from(body)
+                            .doOnNext(copy::append))
+                    .doOnSuccess(done -> {
+                        byte[] bytes = copy.toByteArray();
+                        if (bytes != null && version == VersionedRoutes
+                                .version(dataVersions, route)) {
+                            responseCache.put(route, variant, version,
+                                    contentType, bytes);
+                        }
+                    });
+        }
+
+        /**
+         * Tells whether the response may be cached.
+         *
+         * @param contentType The content type of the response.
+         * @return true for a successful, not encoded JSON response.
+         */
+        private boolean isCacheable(final MediaType contentType) {
+            HttpStatusCode status = getStatusCode();
+            return (status == null || status.value() == HttpStatus.OK.value())
+                    && contentType != null
+                    && MediaType.APPLICATION_JSON.isCompatibleWith(
+                            contentType)
+                    && !getHeaders().containsKey(
+                            HttpHeaders.CONTENT_ENCODING);
+        }
+    }
+
+    /**
+     * Copy of a body written to the client, abandoned once it grows
+     * beyond what the cache accepts.
+     */
+    private final class BodyCopy {
+
+        /**
+         * The bytes copied so far, null once the body is too large.
+         */
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Copies the readable bytes of a buffer, leaving them unread.
+         *
+         * @param buffer The buffer about to be written.
+         */
+        void append(final DataBuffer buffer) {
+            if (bytes == null) {
+                return;
+            }
+            int length = buffer.readableByteCount();
+            if (!responseCache.accepts((long) bytes.size() + length)) {
+                bytes = null;
+                return;
+            }
+            byte[] chunk = new byte[length];
+            int position = buffer.readPosition();
+            buffer.read(chunk);
+            buffer.readPosition(position);
+            bytes.write(chunk, 0, length);
+        }
+
+        /**
+         * Returns the copied body.
+         *
+         * @return The bytes, null if the body was too large.
+         */
+        byte[] toByteArray() {
+            return bytes == null ? null : bytes.toByteArray();
+        }
+    }
+}
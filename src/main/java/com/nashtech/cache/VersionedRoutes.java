@@ -0,0 +1,78 @@
+package com.nashtech.cache;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * The read routes whose responses are versioned by the
+ * {@link DataVersions}: the brand list and the cars of a brand.
+ */
+final class VersionedRoutes {
+
+    /**
+     * The route key of the brand list.
+     */
+    static final String BRANDS = "brands";
+
+    /**
+     * The prefix of the route keys of the cars of a brand.
+     */
+    private static final String CARS_PREFIX = "cars/";
+
+    /**
+     * The path of the brand list.
+     */
+    private static final PathPattern BRANDS_PATH =
+            PathPatternParser.defaultInstance.parse("/v1/data/brands");
+
+    /**
+     * The path of the cars of a brand.
+     */
+    private static final PathPattern CARS_PATH =
+            PathPatternParser.defaultInstance.parse("/v1/data/cars/{brand}");
+
+    /**
+     * Not instantiable.
+     */
+    private VersionedRoutes() {
+    }
+
+    /**
+     * Returns the route key of a request path.
+     *
+     * @param path The path within the application.
+     * @return The route key, null if the path is not versioned.
+     */
+    static String resolve(final PathContainer path) {
+        if (BRANDS_PATH.matches(path)) {
+            return BRANDS;
+        }
+        PathPattern.PathMatchInfo cars = CARS_PATH.matchAndExtract(path);
+        return cars == null ? null
+                : cars(cars.getUriVariables().get("brand"));
+    }
+
+    /**
+     * Returns the route key of the cars of a brand.
+     *
+     * @param brand The brand.
+     * @return The route key.
+     */
+    static String cars(final String brand) {
+        return CARS_PREFIX + brand;
+    }
+
+    /**
+     * Returns the current version of the data of a route.
+     *
+     * @param versions The versions.
+     * @param route The route key.
+     * @return The version.
+     */
+    static long version(final DataVersions versions, final String route) {
+        return BRANDS.equals(route) ? versions.getBrandsVersion()
+                : versions.getCarsVersion(
+                        route.substring(CARS_PREFIX.length()));
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the in-process caches serving the hot
+ * read endpoints from memory.
+ */
+package com.nashtech.cache;
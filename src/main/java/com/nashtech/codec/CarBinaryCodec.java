@@ -0,0 +1,710 @@
+package com.nashtech.codec;
+
+import com.nashtech.model.Car;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary encoding of a {@link Car}.
+ *
+ * <p>The format is laid out as follows:
+ * <pre>
+ * byte    version
+ * byte    presence bits, bit n is set when field n is not null
+ * varint  carId    (field 0, zig-zag encoded)
+ * dict    brand    (field 1)
+ * string  model    (field 2)
+ * varint  year     (field 3, zig-zag encoded)
+ * dict    color    (field 4)
+ * double  mileage  (field 5, 8 bytes, IEEE 754 big-endian)
+ * double  price    (field 6, 8 bytes, IEEE 754 big-endian)
+ * </pre>
+ * Absent fields take no space. A {@code string} is a varint byte
+ * length followed by UTF-8 bytes. A {@code dict} is a varint code:
+ * code n &gt; 0 stands for entry n - 1 of the brand or color
+ * dictionary, code 0 is followed by a {@code string}. Dictionaries are
+ * part of the schema and are only ever appended to.
+ *
+ * <p>The version names the dictionaries a payload was written with:
+ * version n uses the first {@code BRAND_COUNTS[n - 1]} brands and
+ * {@code COLOR_COUNTS[n - 1]} colors, so appending to a dictionary
+ * requires a new version. A decoder reads every version up to its own
+ * and rejects newer ones. During a rollout, producers can keep writing
+ * an older version, in which the newer entries are written inline,
+ * until every consumer understands the new one.
+ *
+ * <p>The encoder writes into a caller supplied buffer without
+ * allocating, and the decoder returns dictionary entries as shared
+ * constants, so only free-form strings allocate on decode.
+ * The decoder of the Azure function in {@code cloud/azurefunction}
+ * implements the same layout.
+ */
+public final class CarBinaryCodec {
+
+    /**
+     * The content type identifying payloads in this format.
+     */
+    public static final String CONTENT_TYPE = "application/x-car-binary";
+
+    /**
+     * The latest version of the format, written by default.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * The brand dictionary. Append only, together with a new entry in
+     * {@link #BRAND_COUNTS}.
+     */
+    static final List<String> BRANDS = List.of(
+            "Acura", "Alfa Romeo", "Aston Martin", "Audi", "Bentley", "BMW",
+            "Buick", "Cadillac", "Chevrolet", "Chrysler", "Daewoo", "Dodge",
+            "Eagle", "Ferrari", "Fiat", "Ford", "Geo", "GMC", "Honda",
+            "Hummer", "Hyundai", "Infiniti", "Isuzu", "Jaguar", "Jeep", "Kia",
+            "Lamborghini", "Land Rover", "Lexus", "Lincoln", "Lotus",
+            "Maserati", "Maybach", "Mazda", "McLaren", "Mercedes-Benz",
+            "Mercury", "MINI", "Mitsubishi", "Nissan", "Oldsmobile",
+            "Plymouth", "Pontiac", "Porsche", "Ram", "Rolls-Royce", "Saab",
+            "Saturn", "Scion", "smart", "Subaru", "Suzuki", "Tesla",
+            "Toyota", "Volkswagen", "Volvo");
+
+    /**
+     * The color dictionary. Append only, together with a new entry in
+     * {@link #COLOR_COUNTS}.
+     */
+    static final List<String> COLORS = List.of(
+            "Aquamarine", "Blue", "Crimson", "Fuscia", "Goldenrod", "Green",
+            "Indigo", "Khaki", "Maroon", "Mauv", "Orange", "Pink", "Puce",
+            "Purple", "Red", "Teal", "Turquoise", "Violet", "Yellow");
+
+    /**
+     * The number of brand dictionary entries of each version, starting
+     * with version 1.
+     */
+    private static final int[] BRAND_COUNTS = {56};
+
+    /**
+     * The number of color dictionary entries of each version, starting
+     * with version 1.
+     */
+    private static final int[] COLOR_COUNTS = {19};
+
+    /**
+     * The size of a fixed width double.
+     */
+    private static final int DOUBLE_BYTES = Double.BYTES;
+
+    /**
+     * The number of payload bits carried by a varint byte.
+     */
+    private static final int VARINT_SHIFT = 7;
+
+    /**
+     * Masks the payload bits of a varint byte.
+     */
+    private static final int VARINT_PAYLOAD = 0x7F;
+
+    /**
+     * Marks a varint byte which is followed by another one.
+     */
+    private static final int VARINT_CONTINUATION = 0x80;
+
+    /**
+     * The number of bits of a long, used for the zig-zag encoding.
+     */
+    private static final int LONG_SIGN_SHIFT = Long.SIZE - 1;
+
+    /**
+     * The first code point needing two UTF-8 bytes.
+     */
+    private static final int UTF8_TWO_BYTES = 0x80;
+
+    /**
+     * The first code point needing three UTF-8 bytes.
+     */
+    private static final int UTF8_THREE_BYTES = 0x800;
+
+    /**
+     * The number of payload bits of a UTF-8 continuation byte.
+     */
+    private static final int UTF8_SHIFT = 6;
+
+    /**
+     * Masks the payload bits of a UTF-8 continuation byte.
+     */
+    private static final int UTF8_PAYLOAD = 0x3F;
+
+    /**
+     * The header of a UTF-8 continuation byte.
+     */
+    private static final int UTF8_CONTINUATION = 0x80;
+
+    /**
+     * The header of a two byte UTF-8 sequence.
+     */
+    private static final int UTF8_TWO_HEADER = 0xC0;
+
+    /**
+     * The header of a three byte UTF-8 sequence.
+     */
+    private static final int UTF8_THREE_HEADER = 0xE0;
+
+    /**
+     * The header of a four byte UTF-8 sequence.
+     */
+    private static final int UTF8_FOUR_HEADER = 0xF0;
+
+    /**
+     * The number of bytes of a UTF-8 encoded supplementary character.
+     */
+    private static final int UTF8_FOUR_BYTES = 4;
+
+    /**
+     * The number of bytes of a three byte UTF-8 sequence.
+     */
+    private static final int UTF8_THREE_BYTE_LENGTH = 3;
+
+    /**
+     * Presence bit of the car id.
+     */
+    private static final int CAR_ID = 1;
+
+    /**
+     * Presence bit of the brand.
+     */
+    private static final int BRAND = 1 << 1;
+
+    /**
+     * Presence bit of the model.
+     */
+    private static final int MODEL = 1 << 2;
+
+    /**
+     * Presence bit of the year.
+     */
+    private static final int YEAR = 1 << 3;
+
+    /**
+     * Presence bit of the color.
+     */
+    private static final int COLOR = 1 << 4;
+
+    /**
+     * Presence bit of the mileage.
+     */
+    private static final int MILEAGE = 1 << 5;
+
+    /**
+     * Presence bit of the price.
+     */
+    private static final int PRICE = 1 << 6;
+
+    /**
+     * Looks up the code of a brand.
+     */
+    private static final Map<String, Integer> BRAND_CODES = codes(BRANDS);
+
+    /**
+     * Looks up the code of a color.
+     */
+    private static final Map<String, Integer> COLOR_CODES = codes(COLORS);
+
+    static {
+        if (BRAND_COUNTS.length != VERSION || COLOR_COUNTS.length != VERSION
+                || BRAND_COUNTS[VERSION - 1] != BRANDS.size()
+                || COLOR_COUNTS[VERSION - 1] != COLORS.size()) {
+            throw new IllegalStateException("The dictionaries changed"
+                    + " without a new version of the car format");
+        }
+    }
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private CarBinaryCodec() {
+    }
+
+    /**
+     * Computes the exact number of bytes {@link #encode(Car, ByteBuffer)}
+     * writes for the given car.
+     *
+     * @param car The car to measure.
+     * @return The encoded size in bytes.
+     */
+    public static int encodedSize(final Car car) {
+        return encodedSize(car, VERSION);
+    }
+
+    /**
+     * Computes the exact number of bytes
+     * {@link #encode(Car, ByteBuffer, byte)} writes for the given car.
+     *
+     * @param car The car to measure.
+     * @param version The version of the format to write.
+     * @return The encoded size in bytes.
+     */
+    public static int encodedSize(final Car car, final byte version) {
+        checkVersion(version);
+        int size = 2;
+        if (car.getCarId() != null) {
+            size += varLongSize(zigZag(car.getCarId()));
+        }
+        if (car.getBrand() != null) {
+            size += dictionarySize(car.getBrand(), BRAND_CODES,
+                    BRAND_COUNTS[version - 1]);
+        }
+        if (car.getModel() != null) {
+            size += stringSize(car.getModel());
+        }
+        if (car.getYear() != null) {
+            size += varLongSize(zigZag(car.getYear()));
+        }
+        if (car.getColor() != null) {
+            size += dictionarySize(car.getColor(), COLOR_CODES,
+                    COLOR_COUNTS[version - 1]);
+        }
+        if (car.getMileage() != null) {
+            size += DOUBLE_BYTES;
+        }
+        if (car.getPrice() != null) {
+            size += DOUBLE_BYTES;
+        }
+        return size;
+    }
+
+    /**
+     * Encodes the car into a new array of the exact size.
+     *
+     * @param car The car to encode.
+     * @return The encoded car.
+     */
+    public static byte[] encode(final Car car) {
+        return encode(car, VERSION);
+    }
+
+    /**
+     * Encodes the car in the given version into a new array of the
+     * exact size.
+     *
+     * @param car The car to encode.
+     * @param version The version of the format to write.
+     * @return The encoded car.
+     */
+    public static byte[] encode(final Car car, final byte version) {
+        byte[] payload = new byte[encodedSize(car, version)];
+        encode(car, ByteBuffer.wrap(payload), version);
+        return payload;
+    }
+
+    /**
+     * Encodes the car into the given buffer, starting at its position.
+     * The buffer needs {@link #encodedSize(Car)} bytes remaining.
+     *
+     * @param car The car to encode.
+     * @param out The buffer to write to.
+     */
+    public static void encode(final Car car, final ByteBuffer out) {
+        encode(car, out, VERSION);
+    }
+
+    /**
+     * Encodes the car in the given version into the given buffer,
+     * starting at its position. The buffer needs
+     * {@link #encodedSize(Car, byte)} bytes remaining.
+     *
+     * @param car The car to encode.
+     * @param out The buffer to write to.
+     * @param version The version of the format to write.
+     */
+    public static void encode(final Car car, final ByteBuffer out,
+                              final byte version) {
+        checkVersion(version);
+        out.put(version);
+        out.put((byte) presence(car));
+        if (car.getCarId() != null) {
+            putVarLong(out, zigZag(car.getCarId()));
+        }
+        if (car.getBrand() != null) {
+            putDictionary(out, car.getBrand(), BRAND_CODES,
+                    BRAND_COUNTS[version - 1]);
+        }
+        if (car.getModel() != null) {
+            putString(out, car.getModel());
+        }
+        if (car.getYear() != null) {
+            putVarLong(out, zigZag(car.getYear()));
+        }
+        if (car.getColor() != null) {
+            putDictionary(out, car.getColor(), COLOR_CODES,
+                    COLOR_COUNTS[version - 1]);
+        }
+        if (car.getMileage() != null) {
+            out.putDouble(car.getMileage());
+        }
+        if (car.getPrice() != null) {
+            out.putDouble(car.getPrice());
+        }
+    }
+
+    /**
+     * Decodes a car from the given array.
+     *
+     * @param payload The encoded car.
+     * @return The decoded car.
+     */
+    public static Car decode(final byte[] payload) {
+        return decode(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Decodes a car starting at the position of the given buffer,
+     * leaving the position right behind the car.
+     *
+     * @param in The buffer to read from.
+     * @return The decoded car.
+     * @throws IllegalArgumentException If the payload is not a car
+     * in a version of the format this codec understands.
+     */
+    public static Car decode(final ByteBuffer in) {
+        try {
+            byte version = in.get();
+            checkVersion(version);
+            int presence = in.get();
+            Car.CarBuilder car = Car.builder();
+            if ((presence & CAR_ID) != 0) {
+                car.carId((int) unZigZag(getVarLong(in)));
+            }
+            if ((presence & BRAND) != 0) {
+                car.brand(getDictionary(in, BRANDS,
+                        BRAND_COUNTS[version - 1]));
+            }
+            if ((presence & MODEL) != 0) {
+                car.model(getString(in));
+            }
+            if ((presence & YEAR) != 0) {
+                car.year(unZigZag(getVarLong(in)));
+            }
+            if ((presence & COLOR) != 0) {
+                car.color(getDictionary(in, COLORS,
+                        COLOR_COUNTS[version - 1]));
+            }
+            if ((presence & MILEAGE) != 0) {
+                car.mileage(in.getDouble());
+            }
+            if ((presence & PRICE) != 0) {
+                car.price(in.getDouble());
+            }
+            return car.build();
+        } catch (BufferUnderflowException exception) {
+            throw new IllegalArgumentException("Truncated car payload",
+                    exception);
+        }
+    }
+
+    /**
+     * Checks that a version of the format is known to this codec.
+     *
+     * @param version The version.
+     * @throws IllegalArgumentException If the version is unknown.
+     */
+    private static void checkVersion(final byte version) {
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException(
+                    "Unsupported car format version " + version);
+        }
+    }
+
+    /**
+     * Computes the presence bits of a car.
+     *
+     * @param car The car.
+     * @return The bits of the fields which are not null.
+     */
+    private static int presence(final Car car) {
+        int presence = 0;
+        if (car.getCarId() != null) {
+            presence |= CAR_ID;
+        }
+        if (car.getBrand() != null) {
+            presence |= BRAND;
+        }
+        if (car.getModel() != null) {
+            presence |= MODEL;
+        }
+        if (car.getYear() != null) {
+            presence |= YEAR;
+        }
+        if (car.getColor() != null) {
+            presence |= COLOR;
+        }
+        if (car.getMileage() != null) {
+            presence |= MILEAGE;
+        }
+        if (car.getPrice() != null) {
+            presence |= PRICE;
+        }
+        return presence;
+    }
+
+    /**
+     * Builds the reverse lookup of a dictionary.
+     *
+     * @param dictionary The dictionary entries.
+     * @return The code of every entry.
+     */
+    private static Map<String, Integer> codes(final List<String> dictionary) {
+        Map<String, Integer> codes = new HashMap<>();
+        for (int index = 0; index < dictionary.size(); index++) {
+            codes.put(dictionary.get(index), index + 1);
+        }
+        return codes;
+    }
+
+    /**
+     * Maps signed values to unsigned ones so small magnitudes stay small.
+     *
+     * @param value The signed value.
+     * @return The zig-zag encoded value.
+     */
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> LONG_SIGN_SHIFT);
+    }
+
+    /**
+     * Reverses {@link #zigZag(long)}.
+     *
+     * @param value The zig-zag encoded value.
+     * @return The signed value.
+     */
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Computes the size of a varint.
+     *
+     * @param value The unsigned value.
+     * @return The number of bytes of its varint.
+     */
+    private static int varLongSize(final long value) {
+        int size = 1;
+        long remaining = value >>> VARINT_SHIFT;
+        while (remaining != 0) {
+            size++;
+            remaining >>>= VARINT_SHIFT;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a varint.
+     *
+     * @param out The buffer to write to.
+     * @param value The unsigned value.
+     */
+    private static void putVarLong(final ByteBuffer out, final long value) {
+        long remaining = value;
+        while ((remaining & ~VARINT_PAYLOAD) != 0) {
+            out.put((byte) ((remaining & VARINT_PAYLOAD)
+                    | VARINT_CONTINUATION));
+            remaining >>>= VARINT_SHIFT;
+        }
+        out.put((byte) remaining);
+    }
+
+    /**
+     * Reads a varint.
+     *
+     * @param in The buffer to read from.
+     * @return The unsigned value.
+     */
+    private static long getVarLong(final ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            if (shift >= Long.SIZE) {
+                throw new IllegalArgumentException("Malformed varint");
+            }
+            current = in.get();
+            value |= (long) (current & VARINT_PAYLOAD) << shift;
+            shift += VARINT_SHIFT;
+        } while ((current & VARINT_CONTINUATION) != 0);
+        return value;
+    }
+
+    /**
+     * Computes the size of a dictionary encoded value.
+     *
+     * @param value The value.
+     * @param codes The codes of the dictionary.
+     * @param count The number of entries of the written version.
+     * @return The number of bytes of the encoded value.
+     */
+    private static int dictionarySize(final String value,
+                                      final Map<String, Integer> codes,
+                                      final int count) {
+        Integer code = codes.get(value);
+        if (code != null && code <= count) {
+            return varLongSize(code);
+        }
+        return 1 + stringSize(value);
+    }
+
+    /**
+     * Writes a dictionary encoded value.
+     *
+     * @param out The buffer to write to.
+     * @param value The value.
+     * @param codes The codes of the dictionary.
+     * @param count The number of entries of the written version.
+     */
+    private static void putDictionary(final ByteBuffer out,
+                                      final String value,
+                                      final Map<String, Integer> codes,
+                                      final int count) {
+        Integer code = codes.get(value);
+        if (code != null && code <= count) {
+            putVarLong(out, code);
+        } else {
+            out.put((byte) 0);
+            putString(out, value);
+        }
+    }
+
+    /**
+     * Reads a dictionary encoded value.
+     *
+     * @param in The buffer to read from.
+     * @param dictionary The dictionary entries.
+     * @param count The number of entries of the read version.
+     * @return The value.
+     */
+    private static String getDictionary(final ByteBuffer in,
+                                        final List<String> dictionary,
+                                        final int count) {
+        long code = getVarLong(in);
+        if (code == 0) {
+            return getString(in);
+        }
+        if (code > count) {
+            throw new IllegalArgumentException(
+                    "Unknown dictionary code " + code);
+        }
+        return dictionary.get((int) code - 1);
+    }
+
+    /**
+     * Computes the size of a length prefixed UTF-8 string.
+     *
+     * @param value The string.
+     * @return The number of bytes of the encoded string.
+     */
+    private static int stringSize(final String value) {
+        int length = utf8Length(value);
+        return varLongSize(length) + length;
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string without an intermediate
+     * byte array.
+     *
+     * @param out The buffer to write to.
+     * @param value The string.
+     */
+    private static void putString(final ByteBuffer out, final String value) {
+        putVarLong(out, utf8Length(value));
+        for (int index = 0; index < value.length(); index++) {
+            char current = value.charAt(index);
+            if (current < UTF8_TWO_BYTES) {
+                out.put((byte) current);
+            } else if (current < UTF8_THREE_BYTES) {
+                out.put((byte) (UTF8_TWO_HEADER | (current >> UTF8_SHIFT)));
+                out.put(continuation(current, 0));
+            } else if (Character.isHighSurrogate(current)
+                    && index + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(index + 1))) {
+                int codePoint = Character.toCodePoint(current,
+                        value.charAt(++index));
+                int leading = codePoint
+                        >> (UTF8_SHIFT * UTF8_THREE_BYTE_LENGTH);
+                out.put((byte) (UTF8_FOUR_HEADER | leading));
+                out.put(continuation(codePoint, 2));
+                out.put(continuation(codePoint, 1));
+                out.put(continuation(codePoint, 0));
+            } else {
+                out.put((byte) (UTF8_THREE_HEADER
+                        | (current >> (UTF8_SHIFT * 2))));
+                out.put(continuation(current, 1));
+                out.put(continuation(current, 0));
+            }
+        }
+    }
+
+    /**
+     * Builds a UTF-8 continuation byte.
+     *
+     * @param codePoint The code point being encoded.
+     * @param group The group of six bits, counted from the right.
+     * @return The continuation byte.
+     */
+    private static byte continuation(final int codePoint, final int group) {
+        return (byte) (UTF8_CONTINUATION
+                | ((codePoint >> (UTF8_SHIFT * group)) & UTF8_PAYLOAD));
+    }
+
+    /**
+     * Computes the UTF-8 length of a string. Unpaired surrogates are
+     * counted as three bytes, like {@link #putString} writes them.
+     *
+     * @param value The string.
+     * @return The number of UTF-8 bytes.
+     */
+    private static int utf8Length(final String value) {
+        int length = 0;
+        for (int index = 0; index < value.length(); index++) {
+            char current = value.charAt(index);
+            if (current < UTF8_TWO_BYTES) {
+                length++;
+            } else if (current < UTF8_THREE_BYTES) {
+                length += 2;
+            } else if (Character.isHighSurrogate(current)
+                    && index + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(index + 1))) {
+                length += UTF8_FOUR_BYTES;
+                index++;
+            } else {
+                length += UTF8_THREE_BYTE_LENGTH;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Reads a length prefixed UTF-8 string.
+     *
+     * @param in The buffer to read from.
+     * @return The string.
+     */
+    private static String getString(final ByteBuffer in) {
+        int length = (int) getVarLong(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Malformed string length");
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(),
+                    length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
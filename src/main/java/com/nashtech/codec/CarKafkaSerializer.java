@@ -0,0 +1,125 @@
+package com.nashtech.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nashtech.model.Car;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Kafka serializer writing cars in the configured
+ * {@link CarWireFormat}. The format is chosen through the
+ * {@value #WIRE_FORMAT_CONFIG} producer property and every record is
+ * tagged with a {@value CarWireFormat#CONTENT_TYPE_HEADER} header.
+ * Binary cars are written in the latest version of
+ * {@link CarBinaryCodec}, unless {@value #BINARY_VERSION_CONFIG} pins
+ * an older one until every consumer reads the latest.
+ */
+public class CarKafkaSerializer implements Serializer<Car> {
+
+    /**
+     * The producer property selecting the wire format.
+     */
+    public static final String WIRE_FORMAT_CONFIG = "car.wire-format";
+
+    /**
+     * The producer property selecting the version of the binary format.
+     */
+    public static final String BINARY_VERSION_CONFIG = "car.binary-version";
+
+    /**
+     * The mapper used for the JSON format.
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * The format the cars are written in.
+     */
+    private CarWireFormat wireFormat = CarWireFormat.JSON;
+
+    /**
+     * The content type header value, encoded once.
+     */
+    private byte[] contentType = contentTypeOf(wireFormat);
+
+    /**
+     * The version binary cars are written in.
+     */
+    private byte binaryVersion = CarBinaryCodec.VERSION;
+
+    /**
+     * Reads the wire format and the binary version from the producer
+     * configuration.
+     *
+     * @param configs The producer configuration.
+     * @param isKey Whether the serializer is used for keys.
+     */
+    @Override
+    public void configure(final Map<String, ?> configs, final boolean isKey) {
+        Object format = configs.get(WIRE_FORMAT_CONFIG);
+        if (format != null) {
+            wireFormat = CarWireFormat.valueOf(
+                    format.toString().trim().toUpperCase(Locale.ROOT));
+            contentType = contentTypeOf(wireFormat);
+        }
+        Object version = configs.get(BINARY_VERSION_CONFIG);
+        if (version != null && !version.toString().isBlank()) {
+            binaryVersion = Byte.parseByte(version.toString().trim());
+            // Fails on start rather than on the first record
+            CarBinaryCodec.encodedSize(new Car(), binaryVersion);
+        }
+    }
+
+    /**
+     * Serializes a car without tagging its content type.
+     *
+     * @param topic The topic the record is sent to.
+     * @param data The car to serialize.
+     * @return The encoded car, or null for a null car.
+     */
+    @Override
+    public byte[] serialize(final String topic, final Car data) {
+        if (data == null) {
+            return null;
+        }
+        if (wireFormat == CarWireFormat.BINARY) {
+            return CarBinaryCodec.encode(data, binaryVersion);
+        }
+        try {
+            return wireFormat.encode(data, objectMapper);
+        } catch (JsonProcessingException exception) {
+            throw new SerializationException(
+                    "Cannot serialize car " + data.getCarId(), exception);
+        }
+    }
+
+    /**
+     * Serializes a car and tags the record with its content type.
+     *
+     * @param topic The topic the record is sent to.
+     * @param headers The headers of the record.
+     * @param data The car to serialize.
+     * @return The encoded car, or null for a null car.
+     */
+    @Override
+    public byte[] serialize(final String topic, final Headers headers,
+                            final Car data) {
+        headers.add(CarWireFormat.CONTENT_TYPE_HEADER, contentType);
+        return serialize(topic, data);
+    }
+
+    /**
+     * Encodes the content type of a format as a header value.
+     *
+     * @param format The wire format.
+     * @return The UTF-8 bytes of its content type.
+     */
+    private static byte[] contentTypeOf(final CarWireFormat format) {
+        return format.getContentType().getBytes(StandardCharsets.UTF_8);
+    }
+}
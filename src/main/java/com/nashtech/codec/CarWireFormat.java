@@ -0,0 +1,110 @@
+package com.nashtech.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nashtech.model.Car;
+
+import java.io.IOException;
+
+/**
+ * The formats a car can be put on the wire in. Every message carries
+ * the content type of its format, so consumers can negotiate the
+ * decoder per message and both formats can be in flight during a
+ * rollout.
+ */
+public enum CarWireFormat {
+
+    /**
+     * Compact JSON, readable by every consumer.
+     */
+    JSON("application/json"),
+
+    /**
+     * The versioned binary format of {@link CarBinaryCodec}.
+     */
+    BINARY(CarBinaryCodec.CONTENT_TYPE);
+
+    /**
+     * The name of the message header or attribute carrying the
+     * content type.
+     */
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+
+    /**
+     * The content type of the format.
+     */
+    private final String contentType;
+
+    /**
+     * Creates a wire format.
+     *
+     * @param type The content type of the format.
+     */
+    CarWireFormat(final String type) {
+        this.contentType = type;
+    }
+
+    /**
+     * Gets the content type of the format.
+     *
+     * @return The content type.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Encodes a car in this format.
+     *
+     * @param car The car to encode.
+     * @param objectMapper The mapper used for JSON.
+     * @return The encoded car.
+     * @throws JsonProcessingException If the car cannot be written
+     * as JSON.
+     */
+    public byte[] encode(final Car car, final ObjectMapper objectMapper)
+            throws JsonProcessingException {
+        if (this == BINARY) {
+            return CarBinaryCodec.encode(car);
+        }
+        return objectMapper.writeValueAsBytes(car);
+    }
+
+    /**
+     * Decodes a car encoded in this format.
+     *
+     * @param payload The encoded car.
+     * @param objectMapper The mapper used for JSON.
+     * @return The decoded car.
+     * @throws IOException If the payload cannot be read as JSON.
+     */
+    public Car decode(final byte[] payload, final ObjectMapper objectMapper)
+            throws IOException {
+        if (this == BINARY) {
+            return CarBinaryCodec.decode(payload);
+        }
+        return objectMapper.readValue(payload, Car.class);
+    }
+
+    /**
+     * Resolves the format of a message from its content type.
+     * Messages without a content type predate the binary format and
+     * are JSON.
+     *
+     * @param contentType The content type, may be null.
+     * @return The matching format.
+     * @throws IllegalArgumentException If the content type is unknown.
+     */
+    public static CarWireFormat fromContentType(final String contentType) {
+        if (contentType == null || contentType.isEmpty()) {
+            return JSON;
+        }
+        for (CarWireFormat format : values()) {
+            if (format.contentType.equalsIgnoreCase(contentType)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException(
+                "Unsupported content type " + contentType);
+    }
+}
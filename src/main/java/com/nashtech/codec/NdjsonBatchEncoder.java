@@ -0,0 +1,186 @@
+package com.nashtech.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes streams of objects as newline delimited JSON, packing up to
+ * {@code maxRecords} records, or whatever arrived within
+ * {@code maxDelay}, into one buffer.
+ *
+ * <p>The default Jackson encoder flushes every single record of an
+ * {@code application/x-ndjson} response on its own. This encoder is
+ * not a streaming encoder, so the server writes the batches as they
+ * come and coalesces the flushes. The buffers are allocated from the
+ * factory of the response, which pools them on Netty, and at most one
+ * batch per connection is held in memory.
+ */
+public class NdjsonBatchEncoder implements Encoder<Object> {
+
+    /**
+     * The media types written by this encoder.
+     */
+    private static final List<MimeType> MIME_TYPES =
+            List.of(MediaType.APPLICATION_NDJSON);
+
+    /**
+     * The delimiter written after every record.
+     */
+    private static final int NEWLINE = '\n';
+
+    /**
+     * The initial capacity of a batch buffer, it grows as needed.
+     */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /**
+     * The mapper deciding which types can be written.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The writer of the records, it leaves the buffers open.
+     */
+    private final ObjectWriter writer;
+
+    /**
+     * The maximum number of records of a batch.
+     */
+    private final int maxRecords;
+
+    /**
+     * The maximum time a record waits for its batch to fill up.
+     */
+    private final Duration maxDelay;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param mapper The mapper used to write the records.
+     * @param batchRecords The maximum number of records of a batch.
+     * @param batchDelay The maximum time a record waits for its batch
+     *                   to fill up.
+     */
+    public NdjsonBatchEncoder(final ObjectMapper mapper,
+                              final int batchRecords,
+                              final Duration batchDelay) {
+        this.objectMapper = mapper;
+        this.writer = mapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.maxRecords = batchRecords;
+        this.maxDelay = batchDelay;
+    }
+
+    /**
+     * Tells whether the elements of a stream can be written as NDJSON.
+     *
+     * @param elementType The type of the elements.
+     * @param mimeType The requested media type.
+     * @return true for NDJSON and types the mapper can serialize.
+     */
+    @Override
+    public boolean canEncode(final ResolvableType elementType,
+                             final MimeType mimeType) {
+        return mimeType != null
+                && MediaType.APPLICATION_NDJSON.isCompatibleWith(mimeType)
+                && objectMapper.canSerialize(elementType.toClass());
+    }
+
+    /**
+     * Writes a stream of objects, one buffer per batch of records.
+     *
+     * @param inputStream The objects.
+     * @param bufferFactory The factory of the response buffers.
+     * @param elementType The type of the objects.
+     * @param mimeType The media type.
+     * @param hints The encoding hints, unused.
+     * @return The buffers.
+     */
+    @Override
+    public Flux<DataBuffer> encode(final Publisher<?> inputStream,
+                                   final DataBufferFactory bufferFactory,
+                                   final ResolvableType elementType,
+                                   final MimeType mimeType,
+                                   final Map<String, Object> hints) {
+        // fair backpressure: a slow client pauses the source instead
+        // of overflowing the batches
+        return Flux.from(inputStream)
+                .bufferTimeout(maxRecords, maxDelay, true)
+                .map(batch -> write(batch, bufferFactory));
+    }
+
+    /**
+     * Writes a single object.
+     *
+     * @param value The object.
+     * @param bufferFactory The factory of the response buffers.
+     * @param valueType The type of the object.
+     * @param mimeType The media type.
+     * @param hints The encoding hints, unused.
+     * @return The buffer.
+     */
+    @Override
+    public DataBuffer encodeValue(final Object value,
+                                  final DataBufferFactory bufferFactory,
+                                  final ResolvableType valueType,
+                                  final MimeType mimeType,
+                                  final Map<String, Object> hints) {
+        return write(List.of(value), bufferFactory);
+    }
+
+    /**
+     * Returns the media types written by this encoder.
+     *
+     * @return NDJSON.
+     */
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    /**
+     * Writes a batch of records into one buffer, each followed by a
+     * newline. The buffer is released if writing fails.
+     *
+     * @param batch The records.
+     * @param bufferFactory The factory of the response buffers.
+     * @return The buffer.
+     */
+    private DataBuffer write(final List<?> batch,
+                             final DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(INITIAL_CAPACITY);
+        boolean written = false;
+        try {
+            OutputStream out = buffer.asOutputStream();
+            for (Object value : batch) {
+                writer.writeValue(out, value);
+                out.write(NEWLINE);
+            }
+            written = true;
+            return buffer;
+        } catch (IOException e) {
+            throw new EncodingException("Could not write NDJSON", e);
+        } finally {
+            if (!written) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains the wire formats of the car messages
+ * published to the brokers, and their serializers, as well as the
+ * encoders of the HTTP responses.
+ */
+package com.nashtech.codec;
@@ -0,0 +1,50 @@
+package com.nashtech.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nashtech.codec.NdjsonBatchEncoder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Configuration class registering the custom HTTP message codecs
+ * of the WebFlux server.
+ */
+@Configuration
+public class CodecConfig implements WebFluxConfigurer {
+
+    /**
+     * The mapper configured by Spring Boot.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The maximum number of NDJSON records written in one go.
+     */
+    @Value("${ndjson.batch.max-records:256}")
+    private int maxRecords;
+
+    /**
+     * The maximum time an NDJSON record waits for its batch.
+     */
+    @Value("${ndjson.batch.max-delay:50ms}")
+    private Duration maxDelay;
+
+    /**
+     * Registers the batching NDJSON encoder ahead of the default
+     * Jackson encoder.
+     *
+     * @param configurer The codec configurer of the server.
+     */
+    @Override
+    public void configureHttpMessageCodecs(
+            final ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(
+                new NdjsonBatchEncoder(objectMapper, maxRecords, maxDelay));
+    }
+}
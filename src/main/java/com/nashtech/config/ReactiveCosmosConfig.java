@@ -4,6 +4,7 @@ import com.azure.cosmos.CosmosClientBuilder;
 import com.azure.spring.data.cosmos.config.AbstractCosmosConfiguration;
 import com.azure.spring.data.cosmos.config.CosmosConfig;
 import com.azure.spring.data.cosmos.repository.config.EnableReactiveCosmosRepositories;
+import com.nashtech.diagnostics.CosmosRequestMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -59,15 +60,19 @@ public class ReactiveCosmosConfig extends AbstractCosmosConfiguration {
      * Creates a {@link CosmosConfig} bean with additional Cosmos DB
      * configurations.
      * In this case, it enables query metrics for monitoring and
-     * performance analysis.
+     * performance analysis, and reports the diagnostics of every
+     * response to the {@link CosmosRequestMetrics}.
      *
+     * @param requestMetrics The metrics the responses are reported to.
      * @return The CosmosConfig instance with specified configurations.
      */
     @Bean
     @Profile("cosmos")
-    public CosmosConfig cosmosConfig() {
+    public CosmosConfig cosmosConfig(
+            final CosmosRequestMetrics requestMetrics) {
         return CosmosConfig.builder()
                 .enableQueryMetrics(true)
+                .responseDiagnosticsProcessor(requestMetrics)
                 .build();
     }
 
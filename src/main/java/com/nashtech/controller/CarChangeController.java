@@ -0,0 +1,39 @@
+package com.nashtech.controller;
+
+import com.nashtech.model.CarChange;
+import com.nashtech.service.ReactiveDataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+
+/**
+ * RSocket controller streaming the changes of the cars, served over
+ * WebSocket on {@code /rsocket}.
+ * Every route is a request-stream: the changes are sent as the client
+ * requests them, and one connection carries any number of streams.
+ */
+@Controller
+public class CarChangeController {
+
+    /**
+     * The service implementation for reactive data access.
+     */
+    @Autowired
+    private ReactiveDataService reactiveDataService;
+
+    /**
+     * Streams the inserts, updates and deletes of the cars of a brand
+     * made after the subscription. The demand of the client is
+     * propagated to the change source.
+     *
+     * @param brand The brand of the cars.
+     * @return An endless Flux of changes.
+     */
+    @MessageMapping("cars.{brand}.changes")
+    public Flux<CarChange> getCarChanges(
+            @DestinationVariable final String brand) {
+        return reactiveDataService.getCarChanges(brand);
+    }
+}
@@ -1,21 +1,32 @@
 package com.nashtech.controller;
 
+import com.nashtech.model.BatchGetRequest;
+import com.nashtech.model.BrandStats;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarField;
+import com.nashtech.model.CarPage;
+import com.nashtech.model.IngestionJobStatus;
+import com.nashtech.service.IngestionJobService;
 import com.nashtech.service.ReactiveDataService;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.util.Map;
 
 /**
@@ -37,18 +48,75 @@ public class ReactiveDataController {
     @Autowired
     private ReactiveDataService reactiveDataService;
 
+    /**
+     * The service running the ingestion jobs.
+     */
+    @Autowired
+    private IngestionJobService ingestionJobService;
+
     /**
      * Endpoint to retrieve data from mockaroo
      * and send vehicle data to the Event Hub.
+     * The ingestion run continues in the background as a job after the
+     * response has been sent.
      *
-     * @return ResponseEntity with a success message
-     * if data is sent successfully.
+     * @return ResponseEntity with the status of the started job and
+     * its location.
      */
+    @Operation(summary = "Starts an ingestion job.",
+            description = "The job runs in the background and can be"
+                    + " watched and cancelled through its location.")
     @PostMapping
-    public ResponseEntity<Object> pushDataToCloud() {
-        reactiveDataService.fetchAndSendData();
-        return new ResponseEntity<>(HttpStatus.CREATED);
+    public ResponseEntity<IngestionJobStatus> pushDataToCloud() {
+        IngestionJobStatus job = ingestionJobService.start();
+        return ResponseEntity.created(URI.create("/v1/data/jobs/"
+                + job.getId())).body(job);
+    }
+
+    /**
+     * Retrieves the status of an ingestion job.
+     *
+     * @param id The ID of the job.
+     * @return A Mono of the job status.
+     */
+    @Operation(summary = "Retrieves the status of an ingestion job.")
+    @GetMapping(value = "/jobs/{id}", produces =
+            MediaType.APPLICATION_JSON_VALUE)
+    public Mono<IngestionJobStatus> getJob(@PathVariable final String id) {
+        return ingestionJobService.getJob(id);
+    }
+
+    /**
+     * Streams the progress of an ingestion job until it has finished.
+     *
+     * @param id The ID of the job.
+     * @return A Flux of progress events.
+     */
+    @Operation(summary = "Streams the progress of an ingestion job.",
+            description = "Reports fetched, published and failed records,"
+                    + " throughput and p99 publish latency.")
+    @GetMapping(value = "/jobs/{id}/progress",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<IngestionJobStatus>> getJobProgress(
+            @PathVariable final String id) {
+        return ingestionJobService.watch(id)
+                .map(status -> ServerSentEvent.builder(status)
+                        .event("progress")
+                        .build());
+    }
 
+    /**
+     * Cancels an ingestion job.
+     *
+     * @param id The ID of the job.
+     * @return A Mono of the job status after the cancellation.
+     */
+    @Operation(summary = "Cancels an ingestion job.")
+    @DeleteMapping(value = "/jobs/{id}", produces =
+            MediaType.APPLICATION_JSON_VALUE)
+    public Mono<IngestionJobStatus> cancelJob(
+            @PathVariable final String id) {
+        return ingestionJobService.cancel(id);
     }
 
     /**
@@ -57,17 +125,51 @@ public class ReactiveDataController {
      * are filtered out.
      *
      * @param brand The brand of cars to filter by.
+     * @param fields The comma separated fields to return, absent for
+     *               all fields.
      * @return A Flux of Car representing cars with the
      * specified brand.
      */
     @Operation(summary = "Retrieves cars filtered by brand.",
             description = "The data is obtained using the reactive service"
-                    + " and duplicates are filtered out.")
-    @GetMapping(value = "/cars/{brand}", produces =
-            MediaType.APPLICATION_JSON_VALUE)
+                    + " and duplicates are filtered out. Pass fields, e.g."
+                    + " fields=model,price, to only get those fields."
+                    + " Accept application/x-ndjson to get one car per"
+                    + " line.")
+    @GetMapping(value = "/cars/{brand}", produces = {
+            MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE})
     public Flux<Car> getCarsByBrand(
-            @PathVariable final String brand) {
-        return reactiveDataService.getCarsByBrand(brand);
+            @PathVariable final String brand,
+            @RequestParam(required = false) final String fields) {
+        return reactiveDataService.getCarsByBrand(brand,
+                CarField.parse(fields));
+    }
+
+    /**
+     * Retrieves one page of the cars with the given brand. Used instead
+     * of the stream of all cars whenever a {@code limit} is given.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param limit The maximum number of cars of the page.
+     * @param cursor The cursor returned with the previous page, absent
+     *               for the first page.
+     * @param fields The comma separated fields to return, absent for
+     *               all fields.
+     * @return A Mono of the page and the cursor of the next one.
+     */
+    @Operation(summary = "Retrieves a page of cars filtered by brand.",
+            description = "Pass the returned nextCursor as cursor to get"
+                    + " the next page; it is null on the last page.")
+    @GetMapping(value = "/cars/{brand}", params = "limit", produces =
+            MediaType.APPLICATION_JSON_VALUE)
+    public Mono<CarPage> getCarsPageByBrand(
+            @PathVariable final String brand,
+            @RequestParam final int limit,
+            @RequestParam(required = false) final String cursor,
+            @RequestParam(required = false) final String fields) {
+        return reactiveDataService.getCarsByBrand(brand, limit, cursor,
+                CarField.parse(fields));
     }
 
     /**
@@ -80,18 +182,87 @@ public class ReactiveDataController {
     @Operation(summary = "Retrieves unique car brands.",
             description = "The data is obtained using the reactive"
                     + " service and duplicates are filtered out.")
-    @GetMapping(value = "/brands", produces =
-            MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping(value = "/brands", produces = {
+            MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE})
     public Flux<CarBrand> getAllBrands() {
         return reactiveDataService.getAllBrands();
     }
 
+    /**
+     * Retrieves the aggregate statistics of the cars of a brand: their
+     * count, the distribution of price and mileage, and the number of
+     * cars per year.
+     *
+     * @param brand The brand.
+     * @return A Mono of the statistics.
+     */
+    @Operation(summary = "Retrieves the statistics of a brand.",
+            description = "The statistics are aggregated by the database"
+                    + " where possible, instead of returning the cars.")
+    @GetMapping(value = "/brands/{brand}/stats", produces =
+            MediaType.APPLICATION_JSON_VALUE)
+    public Mono<BrandStats> getBrandStats(@PathVariable final String brand) {
+        return reactiveDataService.getBrandStats(brand);
+    }
+
+    /**
+     * Retrieves the cars of several brands in one round trip.
+     *
+     * @param request The brands to look up.
+     * @return A Flux of the cars of the brands, each carrying its brand.
+     */
+    @Operation(summary = "Retrieves the cars of several brands.",
+            description = "The brands are looked up with a few queries"
+                    + " run in parallel, and the cars are streamed as"
+                    + " they arrive.")
+    @PostMapping(value = "/cars:batchGet",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Car> getCarsByBrands(
+            @RequestBody final BatchGetRequest request) {
+        return reactiveDataService.getCarsByBrands(request.getBrands());
+    }
+
+    /**
+     * Retrieves the aggregate statistics of the cars of every brand.
+     *
+     * @return A Flux of the statistics of every brand.
+     */
+    @Operation(summary = "Retrieves the statistics of every brand.",
+            description = "The statistics are aggregated by the database"
+                    + " where possible, instead of returning the cars.")
+    @GetMapping(value = "/brands/stats", produces = {
+            MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<BrandStats> getAllBrandStats() {
+        return reactiveDataService.getAllBrandStats();
+    }
+
+    /**
+     * Recomputes the materialized brand index from the stored cars.
+     *
+     * @return A Mono of the number of brands in the rebuilt index.
+     */
+    @Operation(summary = "Rebuilds the brand index.",
+            description = "Recounts the cars of every brand and removes"
+                    + " brands without cars from the index.")
+    @PostMapping(value = "/brands/rebuild", produces =
+            MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Map<String, Long>> rebuildBrandIndex() {
+        return reactiveDataService.rebuildBrandIndex()
+                .map(brands -> Map.of("brands", brands));
+    }
+
 
     /**
      * Retrieves a stream of cars with the given brand.
      * The data is obtained using the reactive service and duplicates
-     * are filtered out.
+     * are filtered out. A client reconnecting with a Last-Event-ID
+     * gets the events it missed.
      *
+     * @param lastEventId The id of the last event the client got.
      * @return A Flux of Car representing cars with the
      * specified brand.
      */
@@ -100,10 +271,9 @@ public class ReactiveDataController {
                     + " service and duplicates are filtered out.")
     @GetMapping(value = "/brands-sse",
             produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSSE() {
-        return reactiveDataService.getAllBrandsSse()
-                .map(eventData -> ServerSentEvent.<Map<String, String>>builder()
-                        .data(eventData.data())
-                        .build());
+    public Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSSE(
+            @RequestHeader(value = "Last-Event-ID", required = false)
+            final String lastEventId) {
+        return reactiveDataService.getAllBrandsSse(lastEventId);
     }
 }
@@ -0,0 +1,120 @@
+package com.nashtech.diagnostics;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosDiagnosticsContext;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.spring.data.cosmos.core.ResponseDiagnostics;
+import com.azure.spring.data.cosmos.core.ResponseDiagnosticsProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.util.context.ContextView;
+
+/**
+ * Records the request charge, the retrieved documents, the backend
+ * latency and the retries of the Cosmos DB responses as metrics
+ * tagged by query name:
+ * {@code cosmos.request.charge}, {@code cosmos.documents.retrieved},
+ * {@code cosmos.request.latency} and {@code cosmos.request.retries}.
+ *
+ * <p>The named queries report every page they receive, and add its
+ * charge to the {@link RequestCharge} of the HTTP request they run
+ * for. The responses of the Spring Data repositories are reported
+ * through the {@link ResponseDiagnosticsProcessor} hook, which knows
+ * neither the query nor the request, so they are tagged
+ * {@value #REPOSITORY_QUERY}.
+ */
+@Component
+@Profile("cosmos")
+public class CosmosRequestMetrics implements ResponseDiagnosticsProcessor {
+
+    /**
+     * The query tag of the responses of the repositories.
+     */
+    static final String REPOSITORY_QUERY = "repository";
+
+    /**
+     * The name of the query tag.
+     */
+    private static final String QUERY_TAG = "query";
+
+    /**
+     * The registry the metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Records a page of a named query.
+     *
+     * @param query The name of the query.
+     * @param page The page.
+     * @param context The Reactor context of the query, holding the
+     *                {@link RequestCharge} of the HTTP request if any.
+     */
+    public void record(final String query, final FeedResponse<?> page,
+                       final ContextView context) {
+        record(query, page.getRequestCharge(), page.getCosmosDiagnostics());
+        DistributionSummary.builder("cosmos.documents.retrieved")
+                .tag(QUERY_TAG, query)
+                .register(meterRegistry)
+                .record(page.getResults().size());
+        context.getOrEmpty(RequestCharge.class)
+                .ifPresent(charge -> ((RequestCharge) charge)
+                        .add(page.getRequestCharge()));
+    }
+
+    /**
+     * Records a response of a Spring Data repository.
+     *
+     * @param responseDiagnostics The diagnostics of the response.
+     */
+    @Override
+    public void processResponseDiagnostics(
+            @Nullable final ResponseDiagnostics responseDiagnostics) {
+        if (responseDiagnostics == null
+                || responseDiagnostics.getCosmosResponseStatistics()
+                == null) {
+            return;
+        }
+        record(REPOSITORY_QUERY, responseDiagnostics
+                        .getCosmosResponseStatistics().getRequestCharge(),
+                responseDiagnostics.getCosmosDiagnostics());
+    }
+
+    /**
+     * Records the charge, latency and retries of a response.
+     *
+     * @param query The name of the query.
+     * @param requestCharge The request units of the response.
+     * @param diagnostics The diagnostics of the response, may be null.
+     */
+    private void record(final String query, final double requestCharge,
+                        final CosmosDiagnostics diagnostics) {
+        DistributionSummary.builder("cosmos.request.charge")
+                .baseUnit("request.units")
+                .tag(QUERY_TAG, query)
+                .register(meterRegistry)
+                .record(requestCharge);
+        if (diagnostics == null) {
+            return;
+        }
+        Timer.builder("cosmos.request.latency")
+                .tag(QUERY_TAG, query)
+                .register(meterRegistry)
+                .record(diagnostics.getDuration());
+        CosmosDiagnosticsContext context =
+                diagnostics.getDiagnosticsContext();
+        if (context != null) {
+            Counter.builder("cosmos.request.retries")
+                    .tag(QUERY_TAG, query)
+                    .register(meterRegistry)
+                    .increment(context.getRetryCount());
+        }
+    }
+}
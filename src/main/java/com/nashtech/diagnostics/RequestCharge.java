@@ -0,0 +1,34 @@
+package com.nashtech.diagnostics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * The request units consumed on behalf of one HTTP request. It travels
+ * in the Reactor context of the request, so every database query run
+ * for the request can add its charge.
+ */
+public class RequestCharge {
+
+    /**
+     * The request units consumed so far.
+     */
+    private final DoubleAdder total = new DoubleAdder();
+
+    /**
+     * Adds the charge of a database response.
+     *
+     * @param requestUnits The request units of the response.
+     */
+    public void add(final double requestUnits) {
+        total.add(requestUnits);
+    }
+
+    /**
+     * Returns the request units consumed so far.
+     *
+     * @return The request units.
+     */
+    public double getTotal() {
+        return total.sum();
+    }
+}
@@ -0,0 +1,103 @@
+package com.nashtech.diagnostics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+
+/**
+ * Totals the request units consumed by every HTTP request, records
+ * them as {@code http.server.request.charge} tagged by route, and
+ * returns them in the {@value #REQUEST_CHARGE_HEADER} header when
+ * {@code diagnostics.request-charge-header} is set.
+ *
+ * <p>The header holds the charge accrued until the response is
+ * committed. For streamed responses that is the charge of the first
+ * page, the metric always holds the total.
+ */
+@Component
+@Profile("cosmos")
+public class RequestChargeWebFilter implements WebFilter {
+
+    /**
+     * The response header carrying the request units.
+     */
+    public static final String REQUEST_CHARGE_HEADER = "x-request-charge";
+
+    /**
+     * The route tag of requests matching no handler.
+     */
+    private static final String UNKNOWN_ROUTE = "UNKNOWN";
+
+    /**
+     * The registry the metric is recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Whether the charge is returned as response header.
+     */
+    @Value("${diagnostics.request-charge-header:false}")
+    private boolean headerEnabled;
+
+    /**
+     * Puts a {@link RequestCharge} in the context of the request and
+     * reports it once the request has been handled.
+     *
+     * @param exchange The exchange.
+     * @param chain The filter chain.
+     * @return A Mono completing once the request has been handled.
+     */
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange,
+                             final WebFilterChain chain) {
+        RequestCharge charge = new RequestCharge();
+        if (headerEnabled) {
+            exchange.getResponse().beforeCommit(() -> {
+                if (charge.getTotal() > 0) {
+                    exchange.getResponse().getHeaders().set(
+                            REQUEST_CHARGE_HEADER, String.format(
+                                    Locale.ROOT, "%.2f", charge.getTotal()));
+                }
+                return Mono.empty();
+            });
+        }
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (charge.getTotal() > 0) {
+                        DistributionSummary
+                                .builder("http.server.request.charge")
+                                .baseUnit("request.units")
+                                .tag("uri", route(exchange))
+                                .register(meterRegistry)
+                                .record(charge.getTotal());
+                    }
+                })
+                .contextWrite(context -> context.put(RequestCharge.class,
+                        charge));
+    }
+
+    /**
+     * Returns the route pattern the request was mapped to, so the
+     * metric is not tagged with every brand.
+     *
+     * @param exchange The exchange.
+     * @return The route pattern.
+     */
+    private static String route(final ServerWebExchange exchange) {
+        PathPattern pattern = exchange.getAttribute(
+                HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? UNKNOWN_ROUTE : pattern.getPatternString();
+    }
+}
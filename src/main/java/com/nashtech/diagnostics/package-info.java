@@ -0,0 +1,5 @@
+/**
+ * This package contains the diagnostics of the database requests,
+ * published as metrics and response headers.
+ */
+package com.nashtech.diagnostics;
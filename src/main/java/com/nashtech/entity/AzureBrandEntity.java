@@ -0,0 +1,37 @@
+package com.nashtech.entity;
+
+import com.azure.spring.data.cosmos.core.mapping.Container;
+import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+/**
+ * Represents an entry of the materialized brand index, holding the
+ * number of cars written for a brand. Every brand is its own logical
+ * partition, so an entry is updated with a point operation.
+ */
+@Data
+@Container(containerName = "az-brand-collection")
+@AllArgsConstructor
+@NoArgsConstructor
+public class AzureBrandEntity {
+
+    /**
+     * The document ID, derived from the brand.
+     */
+    @Id
+    @PartitionKey
+    private String id;
+
+    /**
+     * The brand of the cars.
+     */
+    private String brand;
+
+    /**
+     * The number of cars of the brand.
+     */
+    private Long count;
+}
@@ -1,6 +1,7 @@
 package com.nashtech.entity;
 
 import com.azure.spring.data.cosmos.core.mapping.Container;
+import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
@@ -8,11 +9,12 @@ import org.springframework.data.annotation.Id;
 /**
  * Represents a reactive data model for storing information about
  * cars in a Cosmos DB container.
- * This class is used for mapping car data to a container named
- * "DbContainer" in Cosmos DB.
+ * This class is used for mapping car data to the container named by
+ * {@code cosmosdb.container-name}. The cars are partitioned by brand,
+ * so the queries of a brand are served by a single partition.
  */
 @Data
-@Container(containerName = "az-car-collection")
+@Container(containerName = "${cosmosdb.container-name:az-car-collection-v2}")
 @AllArgsConstructor
 public class AzureCarEntity {
 
@@ -28,8 +30,9 @@ public class AzureCarEntity {
     private Integer carId;
 
     /**
-     * The brand of the car.
+     * The brand of the car, the partition key.
      */
+    @PartitionKey
     private String brand;
 
     /**
@@ -0,0 +1,34 @@
+package com.nashtech.entity;
+
+import com.google.cloud.firestore.annotation.DocumentId;
+import com.google.cloud.spring.data.firestore.Document;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents an entry of the materialized brand index, holding the
+ * number of cars written for a brand.
+ */
+@Data
+@Document(collectionName = "Brand")
+@AllArgsConstructor
+@NoArgsConstructor
+public class GCPBrandEntity {
+
+    /**
+     * The document ID, derived from the brand.
+     */
+    @DocumentId
+    private String id;
+
+    /**
+     * The brand of the cars.
+     */
+    private String brand;
+
+    /**
+     * The number of cars of the brand.
+     */
+    private Long count;
+}
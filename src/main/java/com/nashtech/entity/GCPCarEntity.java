@@ -1,6 +1,7 @@
 package com.nashtech.entity;
 import com.google.cloud.firestore.annotation.DocumentId;
 import com.google.cloud.spring.data.firestore.Document;
+import com.nashtech.model.Car;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -53,4 +54,21 @@ public class GCPCarEntity {
      * The price of the car.
      */
     private Double price;
+
+    /**
+     * Maps the stored car to the car model.
+     *
+     * @return The car.
+     */
+    public Car toCar() {
+        return Car.builder()
+                .carId(carId)
+                .model(model)
+                .brand(brand)
+                .year(year)
+                .color(color)
+                .mileage(mileage)
+                .price(price)
+                .build();
+    }
 }
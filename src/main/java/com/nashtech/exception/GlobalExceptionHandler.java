@@ -38,6 +38,23 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Handles the InvalidRequestException globally.
+     * @param invalidRequestException the InvalidRequestException object
+     * @return a ResponseEntity object with an error message
+     * and HTTP status code 400 (Bad Request)
+     */
+    @ExceptionHandler(value = InvalidRequestException.class)
+    public ResponseEntity<ErrorResponse> handlerInvalidRequestException(
+            final InvalidRequestException invalidRequestException) {
+        ErrorResponse response = ErrorResponse.builder()
+                .message(invalidRequestException.getMessage())
+                .statusCode(HttpStatus.BAD_REQUEST)
+                .localDateTime(LocalDateTime.now())
+                .build();
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Handles the CosmosException and generates a custom error response.
      *
@@ -0,0 +1,17 @@
+package com.nashtech.exception;
+
+/**
+ The InvalidRequestException class is a custom exception
+ that is thrown when a request carries invalid parameters.
+ */
+public class InvalidRequestException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidRequestException with the given message.
+     *
+     * @param message The description of the invalid parameter.
+     */
+    public InvalidRequestException(final String message) {
+        super(message);
+    }
+}
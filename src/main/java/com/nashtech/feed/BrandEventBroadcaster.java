@@ -0,0 +1,331 @@
+package com.nashtech.feed;
+
+import com.nashtech.service.CloudDataService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Broadcasts the brand events of the {@link CloudDataService} to the
+ * server-sent event subscribers, holding memory flat as their number
+ * grows.
+ *
+ * <ul>
+ * <li>One upstream subscription serves all subscribers. It is closed
+ * {@code brands-sse.grace-period} after the last one left.</li>
+ * <li>Events produced within {@code brands-sse.coalesce-window} are
+ * numbered and handed to the subscribers in one pass. They are not
+ * coalesced into one frame: each is still sent as its own event
+ * holding one brand, as the clients read one brand per event and
+ * resume from the id of a single brand.</li>
+ * <li>Every event has an id. The last {@code brands-sse.replay-size}
+ * events are kept in a ring, so a subscriber reconnecting with a
+ * Last-Event-ID gets the events it missed. A new subscriber gets the
+ * first event of every brand known to the upstream, however many
+ * there are. The replay is read at the pace of the subscriber.</li>
+ * <li>Every subscriber has a buffer of {@code brands-sse.buffer-size}
+ * live events, handled by {@code brands-sse.overflow-policy} when
+ * full.</li>
+ * <li>A comment is sent every {@code brands-sse.heartbeat-interval},
+ * so proxies do not close idle connections.</li>
+ * </ul>
+ */
+@Component
+public class BrandEventBroadcaster {
+
+    /**
+     * The comment of the heartbeats.
+     */
+    private static final String HEARTBEAT = "heartbeat";
+
+    /**
+     * The id of no event, older than every event.
+     */
+    private static final long NO_EVENT = -1;
+
+    /**
+     * The service the brand events come from.
+     */
+    @Autowired
+    private CloudDataService cloudDataService;
+
+    /**
+     * The registry the metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The number of recent events kept for resuming subscribers.
+     */
+    @Value("${brands-sse.replay-size:1024}")
+    private int replaySize;
+
+    /**
+     * The number of events buffered per subscriber.
+     */
+    @Value("${brands-sse.buffer-size:64}")
+    private int bufferSize;
+
+    /**
+     * What happens to a subscriber whose buffer is full.
+     */
+    @Value("${brands-sse.overflow-policy:DROP_OLDEST}")
+    private OverflowPolicy overflowPolicy;
+
+    /**
+     * The window whose events are handed to the subscribers in one
+     * pass.
+     */
+    @Value("${brands-sse.coalesce-window:50ms}")
+    private Duration coalesceWindow;
+
+    /**
+     * The largest number of events handed over in one pass.
+     */
+    @Value("${brands-sse.coalesce-max-events:100}")
+    private int coalesceMaxEvents;
+
+    /**
+     * The time between two heartbeats.
+     */
+    @Value("${brands-sse.heartbeat-interval:15s}")
+    private Duration heartbeatInterval;
+
+    /**
+     * How long the upstream subscription outlives the last subscriber.
+     */
+    @Value("${brands-sse.grace-period:30s}")
+    private Duration gracePeriod;
+
+    /**
+     * The recent events, oldest first. Guards the subscribers too.
+     */
+    private final Deque<ServerSentEvent<Map<String, String>>> ring =
+            new ArrayDeque<>();
+
+    /**
+     * The first event of every brand of the current upstream, oldest
+     * first, replayed to new subscribers. Guarded by the ring.
+     */
+    private final Map<String, ServerSentEvent<Map<String, String>>> known =
+            new LinkedHashMap<>();
+
+    /**
+     * The sinks of the connected subscribers.
+     */
+    private final Set<FluxSink<ServerSentEvent<Map<String, String>>>>
+            subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The id of the last event.
+     */
+    private long lastId = NO_EVENT;
+
+    /**
+     * The shared upstream subscription, it emits nothing itself.
+     */
+    private Flux<ServerSentEvent<Map<String, String>>> upstream;
+
+    /**
+     * Counts the events dropped for slow subscribers.
+     */
+    private Counter dropped;
+
+    /**
+     * Builds the shared upstream and registers the metrics.
+     */
+    @PostConstruct
+    public void init() {
+        dropped = Counter.builder("sse.events.dropped")
+                .register(meterRegistry);
+        Gauge.builder("sse.subscribers", subscribers, Set::size)
+                .register(meterRegistry);
+        upstream = Flux.defer(() -> cloudDataService.getAllBrandsSse())
+                .map(ServerSentEvent::data)
+                .bufferTimeout(coalesceMaxEvents, coalesceWindow)
+                .doOnNext(this::publish)
+                .doFinally(signal -> clear())
+                .publish()
+                .refCount(1, gracePeriod)
+                .thenMany(Flux.empty());
+    }
+
+    /**
+     * Subscribes to the brand events. The known brands, or the events
+     * of the ring after the given id, are replayed on demand, then the
+     * subscriber is registered for the live events, which only the
+     * subscriber buffer holds: the merge prefetches a single event.
+     *
+     * @param lastEventId The id of the last event the subscriber got,
+     *                    null or unparsable for a new subscriber.
+     * @return An endless Flux of events and heartbeats.
+     */
+    public Flux<ServerSentEvent<Map<String, String>>> subscribe(
+            final String lastEventId) {
+        long after = parseId(lastEventId);
+        Flux<ServerSentEvent<Map<String, String>>> events = Flux.defer(() -> {
+            Replay replay = replay(after);
+            return Flux.fromIterable(replay.events())
+                    .concatWith(bounded(Flux.create(
+                            sink -> register(sink, replay.lastId()),
+                            FluxSink.OverflowStrategy.IGNORE)));
+        });
+        Flux<ServerSentEvent<Map<String, String>>> heartbeats =
+                Flux.interval(heartbeatInterval)
+                        .onBackpressureDrop()
+                        .map(tick -> ServerSentEvent
+                                .<Map<String, String>>builder()
+                                .comment(HEARTBEAT)
+                                .build());
+        return Flux.merge(1, events, heartbeats, upstream);
+    }
+
+    /**
+     * Returns the events to replay to a subscriber: the first event of
+     * every known brand for a new one, the events of the ring after
+     * the given id otherwise.
+     *
+     * @param after The id of the last event the subscriber got.
+     * @return The events, oldest first, and the id they go up to.
+     */
+    private Replay replay(final long after) {
+        synchronized (ring) {
+            if (after == NO_EVENT) {
+                return new Replay(List.copyOf(known.values()), lastId);
+            }
+            return new Replay(ring.stream()
+                    .filter(event -> Long.parseLong(event.id()) > after)
+                    .toList(), Math.max(after, lastId));
+        }
+    }
+
+    /**
+     * Sends the events published after the given id, during the
+     * replay, to a subscriber and adds it to the subscribers,
+     * atomically, so it misses no event and gets none twice.
+     *
+     * @param sink The sink of the subscriber.
+     * @param after The id of the last event the subscriber got.
+     */
+    private void register(
+            final FluxSink<ServerSentEvent<Map<String, String>>> sink,
+            final long after) {
+        synchronized (ring) {
+            for (ServerSentEvent<Map<String, String>> event : ring) {
+                if (Long.parseLong(event.id()) > after) {
+                    sink.next(event);
+                }
+            }
+            subscribers.add(sink);
+        }
+        sink.onDispose(() -> subscribers.remove(sink));
+    }
+
+    /**
+     * Numbers the payloads of a window, keeps their events in the ring
+     * and sends them to every subscriber.
+     *
+     * @param payloads The payloads of the window.
+     */
+    private void publish(final List<Map<String, String>> payloads) {
+        synchronized (ring) {
+            for (Map<String, String> payload : payloads) {
+                ServerSentEvent<Map<String, String>> event =
+                        ServerSentEvent.<Map<String, String>>builder()
+                                .id(Long.toString(++lastId))
+                                .data(payload)
+                                .build();
+                if (ring.size() == replaySize) {
+                    ring.removeFirst();
+                }
+                ring.addLast(event);
+                String brand = payload.get("brand");
+                if (brand != null) {
+                    known.putIfAbsent(brand, event);
+                }
+                subscribers.forEach(sink -> sink.next(event));
+            }
+        }
+    }
+
+    /**
+     * Empties the ring and forgets the known brands once the upstream
+     * is closed, the next upstream sends every brand again. The ids
+     * keep increasing, so subscribers resuming from an older id get all
+     * of them.
+     */
+    private void clear() {
+        synchronized (ring) {
+            ring.clear();
+            known.clear();
+        }
+    }
+
+    /**
+     * Bounds the buffer of a subscriber according to the overflow
+     * policy.
+     *
+     * @param events The events of the subscriber.
+     * @return The bounded events.
+     */
+    private Flux<ServerSentEvent<Map<String, String>>> bounded(
+            final Flux<ServerSentEvent<Map<String, String>>> events) {
+        switch (overflowPolicy) {
+            case LATEST:
+                return events.onBackpressureLatest();
+            case DISCONNECT:
+                return events.onBackpressureBuffer(bufferSize,
+                        event -> dropped.increment());
+            default:
+                return events.onBackpressureBuffer(bufferSize,
+                        event -> dropped.increment(),
+                        BufferOverflowStrategy.DROP_OLDEST);
+        }
+    }
+
+    /**
+     * Parses a Last-Event-ID.
+     *
+     * @param lastEventId The header value, may be null.
+     * @return The id, {@link #NO_EVENT} if absent or unparsable.
+     */
+    private static long parseId(final String lastEventId) {
+        if (lastEventId == null) {
+            return NO_EVENT;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException error) {
+            return NO_EVENT;
+        }
+    }
+
+    /**
+     * The events replayed to a subscriber.
+     *
+     * @param events The events, oldest first.
+     * @param lastId The id of the last event published when they were
+     *               read; the later ones are sent live.
+     */
+    private record Replay(List<ServerSentEvent<Map<String, String>>> events,
+                          long lastId) {
+    }
+}
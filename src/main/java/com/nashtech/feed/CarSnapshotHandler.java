@@ -0,0 +1,29 @@
+package com.nashtech.feed;
+
+import com.google.cloud.firestore.QuerySnapshot;
+
+/**
+ * Receives the snapshots of the car collection from the
+ * {@link FirestoreCarListener}, the single snapshot listener of an
+ * instance. The snapshots are delivered one at a time, in order.
+ */
+public interface CarSnapshotHandler {
+
+    /**
+     * Handles a snapshot of the car collection.
+     *
+     * @param snapshot The snapshot.
+     * @param initial Whether it is the first snapshot of a registration,
+     *                holding every car as added.
+     */
+    void onSnapshot(QuerySnapshot snapshot, boolean initial);
+
+    /**
+     * Handles the failure of the listener. Changes made until it is
+     * registered again are only seen in the next initial snapshot.
+     *
+     * @param error The failure.
+     */
+    default void onInterrupted(final Throwable error) {
+    }
+}
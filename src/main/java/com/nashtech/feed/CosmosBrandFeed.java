@@ -0,0 +1,257 @@
+package com.nashtech.feed;
+
+import com.azure.cosmos.ChangeFeedProcessor;
+import com.azure.cosmos.ChangeFeedProcessorBuilder;
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosAsyncDatabase;
+import com.azure.cosmos.models.ChangeFeedProcessorOptions;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nashtech.cache.BrandObservedEvent;
+import com.nashtech.cache.CarsChangedEvent;
+import com.nashtech.repository.CosmosBrandRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks the brands of the car container through its change feed and
+ * pushes every new brand to all subscribers through one shared hot
+ * stream, so the subscribers add no load on Cosmos DB.
+ *
+ * <p>When {@code brands-feed.lease-container} is set, the feed is read
+ * by a {@link ChangeFeedProcessor} keeping its leases in that
+ * container under the prefix {@code brands-feed.instance-name}. Every
+ * instance must use its own name, as each needs to see all changes,
+ * and keep it across restarts, e.g. the name of a StatefulSet pod: a
+ * restarted instance then resumes from its leases, while a new name
+ * leaves the leases of the old one behind and reads the whole feed
+ * again. Without a lease container, as in local runs, the feed is
+ * polled with the position kept in memory and read again from the
+ * beginning on restart.
+ */
+@Slf4j
+@Component
+@Profile("cosmos")
+public class CosmosBrandFeed {
+
+    /**
+     * The partition key path of the lease container.
+     */
+    private static final String LEASE_PARTITION_KEY = "/id";
+
+    /**
+     * The client of the Cosmos DB account.
+     */
+    @Autowired
+    private CosmosAsyncClient cosmosAsyncClient;
+
+    /**
+     * The materialized brand index the known brands are seeded from.
+     */
+    @Autowired
+    private CosmosBrandRepository cosmosBrandRepository;
+
+    /**
+     * Publishes the new brands, so the brand cache learns about them.
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * The name of the Cosmos DB database.
+     */
+    @Value("${cosmosdb.name}")
+    private String databaseName;
+
+    /**
+     * The name of the container of the cars.
+     */
+    @Value("${cosmosdb.container-name:az-car-collection-v2}")
+    private String carContainerName;
+
+    /**
+     * The name of the lease container, empty to keep the position in
+     * memory.
+     */
+    @Value("${brands-feed.lease-container:}")
+    private String leaseContainerName;
+
+    /**
+     * The name of this instance, the prefix of its leases, stable
+     * across restarts.
+     */
+    @Value("${brands-feed.instance-name:local}")
+    private String instanceName;
+
+    /**
+     * The time between two polls of the change feed.
+     */
+    @Value("${brands-feed.poll-delay:1s}")
+    private Duration pollDelay;
+
+    /**
+     * The brands seen so far.
+     */
+    private final Set<String> knownBrands = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The hot stream of the new brands.
+     */
+    private final Sinks.Many<String> newBrands =
+            Sinks.many().multicast().directBestEffort();
+
+    /**
+     * The running change feed processor, null when polling.
+     */
+    private ChangeFeedProcessor processor;
+
+    /**
+     * The subscription of the polling loop, null with a processor.
+     */
+    private Disposable polling;
+
+    /**
+     * Seeds the known brands from the brand index and starts reading
+     * the change feed.
+     */
+    @PostConstruct
+    public void start() {
+        CosmosAsyncDatabase database =
+                cosmosAsyncClient.getDatabase(databaseName);
+        CosmosAsyncContainer cars = database.getContainer(carContainerName);
+        Mono<Void> seed = cosmosBrandRepository.findAll()
+                .filter(brand -> brand.getCount() != null
+                        && brand.getCount() > 0)
+                .doOnNext(brand -> knownBrands.add(brand.getBrand()))
+                .onErrorResume(error -> {
+                    log.warn("Seeding the brand feed failed: {}",
+                            error.getMessage());
+                    return Flux.empty();
+                })
+                .then();
+        if (leaseContainerName.isEmpty()) {
+            AtomicReference<String> continuation = new AtomicReference<>();
+            polling = seed.then(Mono.defer(() -> poll(cars, continuation))
+                            .repeatWhen(passes -> passes.delayElements(
+                                    pollDelay))
+                            .retryWhen(Retry.fixedDelay(Long.MAX_VALUE,
+                                    pollDelay))
+                            .then())
+                    .subscribe();
+            return;
+        }
+        polling = seed.then(database.createContainerIfNotExists(
+                        leaseContainerName, LEASE_PARTITION_KEY))
+                .then(Mono.defer(() -> {
+                    processor = new ChangeFeedProcessorBuilder()
+                            .hostName(instanceName)
+                            .feedContainer(cars)
+                            .leaseContainer(database.getContainer(
+                                    leaseContainerName))
+                            .options(new ChangeFeedProcessorOptions()
+                                    .setLeasePrefix(instanceName + "-")
+                                    .setStartFromBeginning(true))
+                            .handleChanges(this::onChanges)
+                            .buildChangeFeedProcessor();
+                    return processor.start();
+                }))
+                .subscribe(started -> { }, error -> log.error(
+                        "Starting the brand change feed failed", error));
+    }
+
+    /**
+     * Stops reading the change feed.
+     */
+    @PreDestroy
+    public void stop() {
+        if (polling != null) {
+            polling.dispose();
+        }
+        if (processor != null) {
+            processor.stop().block(pollDelay);
+        }
+    }
+
+    /**
+     * Returns the known brands followed by every new brand. Each
+     * subscriber gets every brand once.
+     *
+     * @return An endless Flux of brands.
+     */
+    public Flux<String> brands() {
+        return Flux.merge(newBrands.asFlux().onBackpressureBuffer(),
+                        Flux.defer(() -> Flux.fromIterable(knownBrands)))
+                .distinct();
+    }
+
+    /**
+     * Reads the change feed from the current position to its end.
+     *
+     * @param cars The container of the cars.
+     * @param continuation The position in the change feed.
+     * @return A Mono completing once the feed is caught up.
+     */
+    private Mono<Void> poll(final CosmosAsyncContainer cars,
+                           final AtomicReference<String> continuation) {
+        String position = continuation.get();
+        CosmosChangeFeedRequestOptions options = position == null
+                ? CosmosChangeFeedRequestOptions
+                        .createForProcessingFromBeginning(
+                                FeedRange.forFullRange())
+                : CosmosChangeFeedRequestOptions
+                        .createForProcessingFromContinuation(position);
+        return cars.queryChangeFeed(options, JsonNode.class)
+                .byPage()
+                .doOnNext(page -> {
+                    onChanges(page.getResults());
+                    continuation.set(page.getContinuationToken());
+                })
+                .then();
+    }
+
+    /**
+     * Pushes the brands of the changed cars which were not known yet,
+     * and publishes the brands of all changed cars.
+     * The processor handles the feed ranges in parallel, the emissions
+     * into the sink are serialized here.
+     *
+     * @param changes The changed cars.
+     */
+    private synchronized void onChanges(final List<JsonNode> changes) {
+        Set<String> changedBrands = new HashSet<>();
+        for (JsonNode change : changes) {
+            String brand = change.path("brand").asText(null);
+            if (brand == null) {
+                continue;
+            }
+            changedBrands.add(brand);
+            if (knownBrands.add(brand)) {
+                eventPublisher.publishEvent(new BrandObservedEvent(brand));
+                newBrands.tryEmitNext(brand);
+            }
+        }
+        if (!changedBrands.isEmpty()) {
+            eventPublisher.publishEvent(new CarsChangedEvent(changedBrands));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.nashtech.feed;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nashtech.model.Car;
+import com.nashtech.model.CarChange;
+import com.nashtech.model.ChangeType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams the changes of the cars of a brand by reading the change
+ * feed of the car container per subscriber, from the time it
+ * subscribed. The feed is read one page at a time and only when the
+ * subscriber has requested more changes, so a slow subscriber slows
+ * down the reads instead of accumulating changes in memory.
+ *
+ * <p>The brand is the partition key of the car container, so only
+ * the change feed of the logical partition of the brand is read and
+ * the changes of the other brands cost nothing. In latest version
+ * mode the change feed does not report deleted documents, so only
+ * upserts are streamed.
+ */
+@Slf4j
+@Component
+@Profile("cosmos")
+public class CosmosCarChangeFeed {
+
+    /**
+     * The client of the Cosmos DB account.
+     */
+    @Autowired
+    private CosmosAsyncClient cosmosAsyncClient;
+
+    /**
+     * Maps the changed documents to cars.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The name of the Cosmos DB database.
+     */
+    @Value("${cosmosdb.name}")
+    private String databaseName;
+
+    /**
+     * The name of the container of the cars.
+     */
+    @Value("${cosmosdb.container-name:az-car-collection-v2}")
+    private String carContainerName;
+
+    /**
+     * The maximum number of changes read per page.
+     */
+    @Value("${car-changes.page-size:100}")
+    private int pageSize;
+
+    /**
+     * The time between two polls of the caught up change feed.
+     */
+    @Value("${car-changes.poll-delay:1s}")
+    private Duration pollDelay;
+
+    /**
+     * Streams the changes of the cars of a brand made from now on.
+     *
+     * @param brand The brand.
+     * @return An endless Flux of changes.
+     */
+    public Flux<CarChange> changes(final String brand) {
+        return Flux.defer(() -> {
+            CosmosAsyncContainer container = cosmosAsyncClient
+                    .getDatabase(databaseName)
+                    .getContainer(carContainerName);
+            AtomicReference<String> continuation = new AtomicReference<>();
+            return Flux.defer(() -> container.queryChangeFeed(
+                                    options(brand, continuation.get()),
+                                    ObjectNode.class)
+                            .byPage())
+                    .repeatWhen(passes -> passes.delayElements(pollDelay))
+                    .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, pollDelay)
+                            .doBeforeRetry(failure -> log.warn(
+                                    "Reading the car change feed failed: {}",
+                                    failure.failure().getMessage())))
+                    .concatMap(page -> {
+                        continuation.set(page.getContinuationToken());
+                        return Flux.fromIterable(page.getResults());
+                    }, 0)
+                    .<CarChange>handle((document, sink) -> {
+                        Car car = toCar(document);
+                        if (car != null) {
+                            sink.next(new CarChange(
+                                    document.path("id").asText(),
+                                    ChangeType.UPSERTED, car));
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Builds the options of a read of the change feed of a brand.
+     *
+     * @param brand The brand, whose logical partition is read.
+     * @param position The position reached, null to start from now.
+     * @return The options.
+     */
+    private CosmosChangeFeedRequestOptions options(final String brand,
+                                                   final String position) {
+        CosmosChangeFeedRequestOptions options = position == null
+                ? CosmosChangeFeedRequestOptions.createForProcessingFromNow(
+                        FeedRange.forLogicalPartition(new PartitionKey(brand)))
+                : CosmosChangeFeedRequestOptions
+                        .createForProcessingFromContinuation(position);
+        options.setMaxItemCount(pageSize);
+        return options;
+    }
+
+    /**
+     * Maps a changed document to a car.
+     *
+     * @param document The document.
+     * @return The car, null if the document is unreadable.
+     */
+    private Car toCar(final ObjectNode document) {
+        try {
+            return objectMapper.treeToValue(document, Car.class);
+        } catch (JsonProcessingException error) {
+            log.warn("Skipping unreadable car {}: {}",
+                    document.path("id").asText(), error.getMessage());
+            return null;
+        }
+    }
+}
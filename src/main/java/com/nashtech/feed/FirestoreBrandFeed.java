@@ -0,0 +1,96 @@
+package com.nashtech.feed;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.nashtech.cache.BrandObservedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the brands of the car collection from the snapshots of the
+ * {@link FirestoreCarListener} and pushes every new brand to all
+ * subscribers through one shared hot stream, so the subscribers add no
+ * load on Firestore.
+ *
+ * <p>Only the document changes of a snapshot are looked at, reading
+ * their brand field, so a written car costs constant work however
+ * large the collection is.
+ *
+ * <p>Every subscription holds a lease on the listener, so it is only
+ * registered while brands are streamed. The brands seen before are
+ * kept while nothing listens; the initial snapshot of the next
+ * registration adds those created meanwhile.
+ */
+@Component
+@Profile("firestore")
+public class FirestoreBrandFeed implements CarSnapshotHandler {
+
+    /**
+     * Publishes the new brands, so the brand cache learns about them.
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * The listener the snapshots come from.
+     */
+    @Autowired
+    private FirestoreCarListener carListener;
+
+    /**
+     * The brands seen so far.
+     */
+    private final Set<String> knownBrands = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The hot stream of the new brands.
+     */
+    private final Sinks.Many<String> newBrands =
+            Sinks.many().multicast().directBestEffort();
+
+    /**
+     * Returns the known brands followed by every new brand. Each
+     * subscriber gets every brand once, and holds a lease on the
+     * listener until it cancels.
+     *
+     * @return An endless Flux of brands.
+     */
+    public Flux<String> brands() {
+        return Flux.using(carListener::acquire, lease -> Flux.merge(
+                                newBrands.asFlux().onBackpressureBuffer(),
+                                Flux.defer(() -> Flux.fromIterable(
+                                        knownBrands)))
+                        .distinct(),
+                Disposable::dispose);
+    }
+
+    /**
+     * Pushes the brands of the added and modified cars of a snapshot
+     * which were not known yet.
+     *
+     * @param snapshot The snapshot.
+     * @param initial Whether it holds every car.
+     */
+    @Override
+    public void onSnapshot(final QuerySnapshot snapshot,
+                           final boolean initial) {
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                continue;
+            }
+            String brand = change.getDocument().getString("brand");
+            if (brand != null && knownBrands.add(brand)) {
+                eventPublisher.publishEvent(new BrandObservedEvent(brand));
+                newBrands.tryEmitNext(brand);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.nashtech.feed;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.nashtech.entity.GCPCarEntity;
+import com.nashtech.model.CarChange;
+import com.nashtech.model.ChangeType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams the changes of the cars of a brand from the snapshots of the
+ * {@link FirestoreCarListener}, handing each changed car to the
+ * subscribers of its brand. A car moved to another brand shows up as
+ * upserted in its new brand only.
+ *
+ * <p>The listener cannot be paused, so the changes a subscriber has
+ * not requested yet are buffered, up to
+ * {@code car-changes.buffer-size}. A subscriber which falls further
+ * behind, or whose changes are interrupted by a failure of the
+ * listener, gets an error and must subscribe again.
+ *
+ * <p>Every subscriber holds a lease on the listener until it cancels,
+ * so the listener is only registered while changes are streamed.
+ */
+@Component
+@Profile("firestore")
+public class FirestoreCarChangeFeed implements CarSnapshotHandler {
+
+    /**
+     * The number of changes buffered per subscriber.
+     */
+    @Value("${car-changes.buffer-size:256}")
+    private int bufferSize;
+
+    /**
+     * The listener the snapshots come from.
+     */
+    @Autowired
+    private FirestoreCarListener carListener;
+
+    /**
+     * The current subscribers.
+     */
+    private final Set<Subscriber> subscribers =
+            ConcurrentHashMap.newKeySet();
+
+    /**
+     * Streams the changes of the cars of a brand made from now on,
+     * holding a lease on the listener until the subscriber cancels.
+     *
+     * @param brand The brand.
+     * @return An endless Flux of changes.
+     */
+    public Flux<CarChange> changes(final String brand) {
+        return Flux.<CarChange>create(sink -> {
+                    Subscriber subscriber = new Subscriber(brand, sink);
+                    subscribers.add(subscriber);
+                    Disposable lease = carListener.acquire();
+                    sink.onDispose(() -> {
+                        subscribers.remove(subscriber);
+                        lease.dispose();
+                    });
+                }, FluxSink.OverflowStrategy.IGNORE)
+                .onBackpressureBuffer(bufferSize);
+    }
+
+    /**
+     * Hands the document changes of a snapshot to the subscribers of
+     * their brand. The initial snapshot, holding the cars which existed
+     * before, is skipped.
+     *
+     * @param snapshot The snapshot.
+     * @param initial Whether it holds every car.
+     */
+    @Override
+    public void onSnapshot(final QuerySnapshot snapshot,
+                           final boolean initial) {
+        if (initial || subscribers.isEmpty()) {
+            return;
+        }
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            QueryDocumentSnapshot document = change.getDocument();
+            String brand = document.getString("brand");
+            CarChange carChange = null;
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.brand().equals(brand)) {
+                    continue;
+                }
+                if (carChange == null) {
+                    carChange = toCarChange(change);
+                }
+                subscriber.sink().next(carChange);
+            }
+        }
+    }
+
+    /**
+     * Fails every subscriber, as the changes made until the listener is
+     * registered again are missed.
+     *
+     * @param error The failure of the listener.
+     */
+    @Override
+    public void onInterrupted(final Throwable error) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.sink().error(error);
+        }
+    }
+
+    /**
+     * Maps a document change.
+     *
+     * @param change The change.
+     * @return The change of the car.
+     */
+    private static CarChange toCarChange(final DocumentChange change) {
+        ChangeType type = change.getType() == DocumentChange.Type.REMOVED
+                ? ChangeType.REMOVED : ChangeType.UPSERTED;
+        return new CarChange(change.getDocument().getId(), type,
+                change.getDocument().toObject(GCPCarEntity.class).toCar());
+    }
+
+    /**
+     * A subscriber to the changes of a brand.
+     *
+     * @param brand The brand.
+     * @param sink The sink of the subscriber.
+     */
+    private record Subscriber(String brand, FluxSink<CarChange> sink) {
+    }
+}
@@ -0,0 +1,297 @@
+package com.nashtech.feed;
+
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QuerySnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The single snapshot listener on the car collection of an instance,
+ * whose snapshots are handed to every {@link CarSnapshotHandler}.
+ *
+ * <p>The listener is only registered while something needs it: every
+ * user takes a lease with {@link #acquire()}, the first lease
+ * registers the listener, and it is removed
+ * {@code car-listener.grace-period} after the last lease is released,
+ * unless a new lease is taken meanwhile. However many subscribers
+ * share the leases, Firestore sees one listener. The first snapshot
+ * of every registration holds every car again, so the handlers catch
+ * up with the changes made while nothing listened.
+ *
+ * <p>A failed listener is registered again after
+ * {@code car-listener.min-backoff}, doubling up to
+ * {@code car-listener.max-backoff} while it keeps failing. The first
+ * snapshot of the new registration holds every car again.
+ *
+ * <p>The Firestore client keeps a copy of every document of the
+ * listened collection; the number of documents held is reported in
+ * {@code firestore.listener.documents}.
+ */
+@Slf4j
+@Component
+@Profile("firestore")
+public class FirestoreCarListener {
+
+    /**
+     * The collection of the cars.
+     */
+    private static final String CAR_COLLECTION = "Car";
+
+    /**
+     * The Firestore instance.
+     */
+    @Autowired
+    private Firestore firestore;
+
+    /**
+     * The registry the metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The handlers of the snapshots, resolved on the first snapshot as
+     * some of them take leases on the listener.
+     */
+    @Lazy
+    @Autowired(required = false)
+    private List<CarSnapshotHandler> handlers = List.of();
+
+    /**
+     * The time the listener stays registered after its last lease is
+     * released, so a returning client reuses it.
+     */
+    @Value("${car-listener.grace-period:30s}")
+    private Duration gracePeriod;
+
+    /**
+     * The delay before the first new registration after a failure.
+     */
+    @Value("${car-listener.min-backoff:1s}")
+    private Duration minBackoff;
+
+    /**
+     * The longest delay between two registrations.
+     */
+    @Value("${car-listener.max-backoff:1m}")
+    private Duration maxBackoff;
+
+    /**
+     * The registration of the snapshot listener, null while it is not
+     * registered.
+     */
+    private ListenerRegistration registration;
+
+    /**
+     * The number of the current registration; the events of earlier
+     * ones still in flight are ignored.
+     */
+    private volatile long generation;
+
+    /**
+     * The pending new registration, null if none.
+     */
+    private Disposable retry;
+
+    /**
+     * The number of leases taken and not released.
+     */
+    private int leases;
+
+    /**
+     * The pending removal after the last lease was released, null if
+     * none.
+     */
+    private Disposable removal;
+
+    /**
+     * The delay before the last new registration, null once a snapshot
+     * has been received since.
+     */
+    private volatile Duration backoff;
+
+    /**
+     * Whether the listener is stopped for good.
+     */
+    private boolean stopped;
+
+    /**
+     * The number of documents in the last snapshot.
+     */
+    private volatile int documents;
+
+    /**
+     * Registers the metrics.
+     */
+    @PostConstruct
+    public void start() {
+        Gauge.builder("firestore.listener.documents", this,
+                        listener -> listener.documents)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Removes the listener.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        stopped = true;
+        unregister();
+    }
+
+    /**
+     * Takes a lease on the listener, registering it for the first
+     * lease.
+     *
+     * @return The lease, released once it is disposed.
+     */
+    public synchronized Disposable acquire() {
+        if (removal != null) {
+            removal.dispose();
+            removal = null;
+        }
+        leases++;
+        if (registration == null && retry == null) {
+            register();
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        };
+    }
+
+    /**
+     * Releases a lease, scheduling the removal of the listener after
+     * the last one.
+     */
+    private synchronized void release() {
+        leases--;
+        if (leases == 0 && !stopped) {
+            removal = Mono.delay(gracePeriod)
+                    .subscribe(tick -> removeIfUnused());
+        }
+    }
+
+    /**
+     * Removes the listener unless a lease was taken meanwhile.
+     */
+    private synchronized void removeIfUnused() {
+        if (leases > 0 || removal == null) {
+            return;
+        }
+        removal = null;
+        unregister();
+        backoff = null;
+        documents = 0;
+        log.info("Removed the car listener, no lease left");
+    }
+
+    /**
+     * Registers the snapshot listener.
+     */
+    private synchronized void register() {
+        retry = null;
+        if (stopped || leases == 0) {
+            return;
+        }
+        long registered = ++generation;
+        AtomicBoolean initial = new AtomicBoolean(true);
+        registration = firestore.collection(CAR_COLLECTION)
+                .addSnapshotListener((snapshot, error) -> {
+                    if (registered != generation) {
+                        return;
+                    }
+                    if (error != null) {
+                        onError(error);
+                        return;
+                    }
+                    onSnapshot(snapshot, initial.getAndSet(false));
+                });
+    }
+
+    /**
+     * Removes the snapshot listener and cancels a pending new
+     * registration.
+     */
+    private synchronized void unregister() {
+        if (removal != null) {
+            removal.dispose();
+            removal = null;
+        }
+        if (retry != null) {
+            retry.dispose();
+            retry = null;
+        }
+        if (registration != null) {
+            generation++;
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    /**
+     * Hands a snapshot to every handler. A failing handler does not
+     * keep the others from getting the snapshot.
+     *
+     * @param snapshot The snapshot.
+     * @param initial Whether it is the first of its registration.
+     */
+    private void onSnapshot(final QuerySnapshot snapshot,
+                            final boolean initial) {
+        backoff = null;
+        documents = snapshot.size();
+        for (CarSnapshotHandler handler : handlers) {
+            try {
+                handler.onSnapshot(snapshot, initial);
+            } catch (RuntimeException failure) {
+                log.error("Handling a car snapshot failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Tells the handlers about a failure and schedules a new
+     * registration.
+     *
+     * @param error The failure.
+     */
+    private synchronized void onError(final Throwable error) {
+        if (registration == null) {
+            return;
+        }
+        unregister();
+        for (CarSnapshotHandler handler : handlers) {
+            handler.onInterrupted(error);
+        }
+        if (leases == 0) {
+            log.error("The car listener failed, no lease left", error);
+            return;
+        }
+        Duration delay = backoff == null ? minBackoff
+                : backoff.multipliedBy(2);
+        if (delay.compareTo(maxBackoff) > 0) {
+            delay = maxBackoff;
+        }
+        backoff = delay;
+        log.error("The car listener failed, registering it again in {}",
+                delay, error);
+        retry = Mono.delay(delay).subscribe(tick -> register());
+    }
+}
@@ -0,0 +1,105 @@
+package com.nashtech.feed;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.nashtech.cache.CarsChangedEvent;
+import com.nashtech.cache.DataVersions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Publishes the brands of the cars written to Firestore, by this or any
+ * other writer, from the snapshots of the {@link FirestoreCarListener},
+ * so the brand index and the {@link DataVersions} follow the changes.
+ * Cosmos DB changes are published by the {@link CosmosBrandFeed}, which
+ * reads the whole change feed anyway.
+ *
+ * <p>The initial snapshot holds every car, so every brand is recounted
+ * and bumped once the listener is registered. While the listener is
+ * down the versions are not used, as the changes are missed; they are
+ * all bumped when it is back.
+ *
+ * <p>The versions need every change, so when they are used the tracker
+ * holds a lease on the listener for the life of the application.
+ * Otherwise it takes none and only follows the changes while another
+ * user holds the listener; the brand index catches up with the changes
+ * made meanwhile from the recount of the initial snapshot of the next
+ * registration.
+ */
+@Component
+@Profile("firestore")
+public class FirestoreChangeTracker implements CarSnapshotHandler {
+
+    /**
+     * Publishes the brands of the changed cars.
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * The versions, which must not be used while the listener is down,
+     * null when neither ETags nor the response cache are enabled.
+     */
+    @Autowired(required = false)
+    private DataVersions dataVersions;
+
+    /**
+     * The listener the snapshots come from.
+     */
+    @Autowired
+    private FirestoreCarListener carListener;
+
+    /**
+     * Takes a lease on the listener for good once the application is
+     * started, if the versions are used.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (dataVersions != null) {
+            carListener.acquire();
+        }
+    }
+
+    /**
+     * Publishes the brands of the changed cars of a snapshot.
+     *
+     * @param snapshot The snapshot.
+     * @param initial Whether it holds every car.
+     */
+    @Override
+    public void onSnapshot(final QuerySnapshot snapshot,
+                           final boolean initial) {
+        Set<String> brands = new HashSet<>();
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            String brand = change.getDocument().getString("brand");
+            if (brand != null) {
+                brands.add(brand);
+            }
+        }
+        if (!brands.isEmpty()) {
+            eventPublisher.publishEvent(new CarsChangedEvent(brands));
+        }
+        if (initial && dataVersions != null) {
+            dataVersions.resumeTracking();
+        }
+    }
+
+    /**
+     * Stops the versions from being used until the listener is back.
+     *
+     * @param error The failure of the listener.
+     */
+    @Override
+    public void onInterrupted(final Throwable error) {
+        if (dataVersions != null) {
+            dataVersions.stopTracking();
+        }
+    }
+}
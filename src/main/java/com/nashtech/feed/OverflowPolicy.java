@@ -0,0 +1,24 @@
+package com.nashtech.feed;
+
+/**
+ * What happens to the events of a subscriber which reads slower than
+ * they are produced, once its buffer is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The oldest buffered event is dropped.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Only the latest event is kept until the subscriber reads.
+     */
+    LATEST,
+
+    /**
+     * The subscriber is disconnected, it resumes with its
+     * Last-Event-ID.
+     */
+    DISCONNECT
+}
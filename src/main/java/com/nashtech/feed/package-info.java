@@ -0,0 +1,5 @@
+/**
+ * This package contains the feeds pushing database changes to the
+ * server-sent event subscribers.
+ */
+package com.nashtech.feed;
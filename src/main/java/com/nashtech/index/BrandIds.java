@@ -0,0 +1,28 @@
+package com.nashtech.index;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Derives the document IDs of the brand index entries. Brands are
+ * URL encoded, so characters which neither Firestore nor Cosmos allow
+ * in an ID, such as '/', cannot end up in one.
+ */
+public final class BrandIds {
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private BrandIds() {
+    }
+
+    /**
+     * Derives the document ID of a brand.
+     *
+     * @param brand The brand.
+     * @return The document ID of its index entry.
+     */
+    public static String of(final String brand) {
+        return URLEncoder.encode(brand, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,151 @@
+package com.nashtech.index;
+
+import com.nashtech.cache.BrandCache;
+import com.nashtech.cache.CarsChangedEvent;
+import com.nashtech.cache.DataVersions;
+import com.nashtech.service.CloudDataService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the materialized brand index up to date with the stored cars.
+ * The brands of the cars reported by the change feed of the database,
+ * whoever wrote them, are collected in memory, and every
+ * {@code brand-index.flush-interval} their cars are recounted and the
+ * counts written to the index. A burst of cars therefore costs one
+ * count and one index write per brand instead of one per car, and
+ * cars whose write failed are never counted.
+ *
+ * <p>The counts are absolute, so the changes seen by every instance,
+ * or seen again after a restart, leave the same index. Brands which
+ * could not be recounted are kept for the next flush.
+ *
+ * <p>Once the index is written, and only if a brand gained its first
+ * car or lost its last one, the brand cache is dropped and the version
+ * of the brand list bumped, in that order, so a request getting the
+ * new version reads the brands from the new index. A change of the
+ * counts alone leaves the brand list as it is.
+ */
+@Slf4j
+@Component
+public class BrandIndexUpdater {
+
+    /**
+     * The service owning the brand index.
+     */
+    @Autowired
+    private CloudDataService cloudDataService;
+
+    /**
+     * The cache of the brand list read from the index.
+     */
+    @Autowired
+    private BrandCache brandCache;
+
+    /**
+     * The versions, null when neither ETags nor the response cache are
+     * enabled.
+     */
+    @Autowired(required = false)
+    private DataVersions dataVersions;
+
+    /**
+     * The time between two recounts of the changed brands.
+     */
+    @Value("${brand-index.flush-interval:5s}")
+    private Duration flushInterval;
+
+    /**
+     * The longest time the final flush may take on shutdown.
+     */
+    @Value("${brand-index.shutdown-timeout:10s}")
+    private Duration shutdownTimeout;
+
+    /**
+     * The brands changed since the last flush.
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The subscription of the flush loop.
+     */
+    private Disposable flushLoop;
+
+    /**
+     * Starts the flush loop.
+     */
+    @PostConstruct
+    public void start() {
+        flushLoop = Flux.interval(flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush(), 1)
+                .subscribe();
+    }
+
+    /**
+     * Stops the flush loop and recounts the remaining brands.
+     */
+    @PreDestroy
+    public void stop() {
+        if (flushLoop != null) {
+            flushLoop.dispose();
+        }
+        flush().block(shutdownTimeout);
+    }
+
+    /**
+     * Remembers the brands of changed cars for the next flush.
+     *
+     * @param event The event carrying the brands.
+     */
+    @EventListener
+    public void onCarsChanged(final CarsChangedEvent event) {
+        pending.addAll(event.getBrands());
+    }
+
+    /**
+     * Recounts the changed brands into the brand index.
+     *
+     * @return A Mono completing once the brands are recounted or put
+     * back for the next flush.
+     */
+    Mono<Void> flush() {
+        Set<String> brands = new HashSet<>();
+        for (String brand : pending) {
+            if (pending.remove(brand)) {
+                brands.add(brand);
+            }
+        }
+        if (brands.isEmpty()) {
+            return Mono.empty();
+        }
+        return cloudDataService.refreshBrandCounts(brands)
+                .filter(changed -> !changed.isEmpty())
+                .doOnNext(changed -> {
+                    brandCache.invalidate();
+                    if (dataVersions != null) {
+                        dataVersions.bumpBrands();
+                    }
+                })
+                .then()
+                .onErrorResume(error -> {
+                    log.warn("Updating the brand index failed, retrying "
+                            + "next flush: {}", error.getMessage());
+                    pending.addAll(brands);
+                    return Mono.empty();
+                });
+    }
+}
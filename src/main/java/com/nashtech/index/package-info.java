@@ -0,0 +1,5 @@
+/**
+ * This package contains the maintenance of the materialized brand
+ * index, which lets the brands be listed without scanning the cars.
+ */
+package com.nashtech.index;
@@ -0,0 +1,254 @@
+package com.nashtech.messaging;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.batching.BatchingSettings;
+import com.google.api.gax.batching.FlowControlSettings;
+import com.google.api.gax.batching.FlowController;
+import com.google.cloud.pubsub.v1.Publisher;
+import com.google.pubsub.v1.PubsubMessage;
+import com.google.pubsub.v1.TopicName;
+import com.nashtech.util.ApiFutureUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reactive facade over the Google Cloud Pub/Sub {@link Publisher}.
+ * Every publish is exposed as a Mono completing with the message id
+ * once the service has acknowledged it, without blocking a thread on
+ * the underlying {@link ApiFuture}. Batching and flow control of the
+ * publisher are configurable, so the outstanding-bytes buffer of the
+ * client stays bounded under sustained load.
+ */
+@Slf4j
+@Component
+@Profile("firestore")
+public class ReactivePubSubPublisher {
+
+    /**
+     * The Google Cloud Platform project ID.
+     */
+    @Value("${spring.cloud.gcp.project-id}")
+    private String projectId;
+
+    /**
+     * The ID of the Pub/Sub topic messages are published to.
+     */
+    @Value("${google.pubSub.topic}")
+    private String topicId;
+
+    /**
+     * The number of messages which triggers sending a batch.
+     */
+    @Value("${pubsub.batching.element-count-threshold:100}")
+    private long elementCountThreshold;
+
+    /**
+     * The number of payload bytes which triggers sending a batch.
+     */
+    @Value("${pubsub.batching.request-byte-threshold:1000000}")
+    private long requestByteThreshold;
+
+    /**
+     * The time after which a partially filled batch is sent.
+     */
+    @Value("${pubsub.batching.delay-threshold:10ms}")
+    private Duration delayThreshold;
+
+    /**
+     * The maximum number of messages not yet acknowledged.
+     */
+    @Value("${pubsub.flow-control.max-outstanding-element-count:10000}")
+    private long maxOutstandingElementCount;
+
+    /**
+     * The maximum number of payload bytes not yet acknowledged.
+     */
+    @Value("${pubsub.flow-control.max-outstanding-request-bytes:104857600}")
+    private long maxOutstandingRequestBytes;
+
+    /**
+     * What the publisher does once a flow control limit is reached.
+     */
+    @Value("${pubsub.flow-control.limit-exceeded-behavior:Block}")
+    private FlowController.LimitExceededBehavior limitExceededBehavior;
+
+    /**
+     * Whether messages carrying the same ordering key are delivered
+     * in publish order.
+     */
+    @Value("${pubsub.ordering.enabled:false}")
+    private boolean orderingEnabled;
+
+    /**
+     * The registry the publish metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The publisher sending the messages to the topic.
+     */
+    private Publisher publisher;
+
+    /**
+     * Records the time between publishing a message and its
+     * acknowledgement.
+     */
+    private Timer publishLatency;
+
+    /**
+     * Counts the messages which could not be published.
+     */
+    private Counter publishFailures;
+
+    /**
+     * Builds the publisher with the configured batching and flow
+     * control settings.
+     *
+     * @throws IOException If an error occurs during the
+     * initialization of the Publisher.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        FlowControlSettings flowControlSettings = FlowControlSettings
+                .newBuilder()
+                .setMaxOutstandingElementCount(maxOutstandingElementCount)
+                .setMaxOutstandingRequestBytes(maxOutstandingRequestBytes)
+                .setLimitExceededBehavior(limitExceededBehavior)
+                .build();
+        BatchingSettings batchingSettings = BatchingSettings.newBuilder()
+                .setElementCountThreshold(elementCountThreshold)
+                .setRequestByteThreshold(requestByteThreshold)
+                .setDelayThreshold(org.threeten.bp.Duration
+                        .ofMillis(delayThreshold.toMillis()))
+                .setFlowControlSettings(flowControlSettings)
+                .build();
+        publisher = Publisher.newBuilder(TopicName.of(projectId, topicId))
+                .setBatchingSettings(batchingSettings)
+                .setEnableMessageOrdering(orderingEnabled)
+                .build();
+        publishLatency = Timer.builder("pubsub.publish.latency")
+                .description("Time until Pub/Sub acknowledged a message")
+                .tag("topic", topicId)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        publishFailures = Counter.builder("pubsub.publish.failures")
+                .tag("topic", topicId)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Shuts down the publisher, sending the messages still batched.
+     */
+    @PreDestroy
+    public void cleanup() {
+        try {
+            if (publisher != null) {
+                publisher.shutdown();
+                publisher.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException interruptedException) {
+            log.error("Error while shutting down Publisher: {}",
+                    interruptedException.getMessage());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tells whether messages are published with ordering keys.
+     *
+     * @return true if message ordering is enabled.
+     */
+    public boolean isOrderingEnabled() {
+        return orderingEnabled;
+    }
+
+    /**
+     * Publishes a single message.
+     *
+     * @param message The message to publish.
+     * @return A Mono emitting the message id once the message has
+     * been acknowledged.
+     */
+    public Mono<String> publish(final PubsubMessage message) {
+        return offloadIfBlocking(Mono.defer(() ->
+                track(message, publisher.publish(message),
+                        System.nanoTime())));
+    }
+
+    /**
+     * Publishes the given messages together and flushes them right
+     * away instead of waiting for the batching thresholds.
+     *
+     * @param messages The messages to publish.
+     * @return A Mono completing once every message is acknowledged.
+     */
+    public Mono<Void> publishAll(final List<PubsubMessage> messages) {
+        return offloadIfBlocking(Mono.defer(() -> {
+            long start = System.nanoTime();
+            List<Mono<String>> acknowledgements =
+                    new ArrayList<>(messages.size());
+            for (PubsubMessage message : messages) {
+                acknowledgements.add(
+                        track(message, publisher.publish(message), start));
+            }
+            publisher.publishAllOutstanding();
+            return Mono.when(acknowledgements);
+        }));
+    }
+
+    /**
+     * Adapts the future of a published message and records its
+     * latency or failure.
+     *
+     * @param message The published message.
+     * @param messageId The future of the message id.
+     * @param start The {@link System#nanoTime()} of the publish.
+     * @return A Mono emitting the message id.
+     */
+    private Mono<String> track(final PubsubMessage message,
+                               final ApiFuture<String> messageId,
+                               final long start) {
+        return ApiFutureUtil.toMono(messageId)
+                .doOnSuccess(id -> publishLatency.record(
+                        System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                .doOnError(error -> {
+                    publishFailures.increment();
+                    if (!message.getOrderingKey().isEmpty()) {
+                        publisher.resumePublish(message.getOrderingKey());
+                    }
+                });
+    }
+
+    /**
+     * Moves the publish call to a thread which may block when the
+     * publisher is configured to block once flow control kicks in.
+     *
+     * @param publish The publish call.
+     * @param <T> The type emitted by the publish call.
+     * @return The publish call, scheduled appropriately.
+     */
+    private <T> Mono<T> offloadIfBlocking(final Mono<T> publish) {
+        if (limitExceededBehavior
+                == FlowController.LimitExceededBehavior.Block) {
+            return publish.subscribeOn(Schedulers.boundedElastic());
+        }
+        return publish;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the reactive adapters
+ * for the message brokers the application publishes to.
+ */
+package com.nashtech.messaging;
@@ -0,0 +1,461 @@
+package com.nashtech.migration;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosAsyncDatabase;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.CosmosItemRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies the cars of the source container into the container
+ * partitioned by brand while the application keeps running.
+ *
+ * <p>The source is read through its change feed, one reader per feed
+ * range, up to {@code migration.parallelism} ranges at a time. After
+ * every page the continuation of the range is saved as a
+ * {@link MigrationCheckpoint}, so a restarted migration resumes where
+ * it stopped. Once every range is caught up the ranges are polled
+ * again after {@code migration.poll-delay}, so writes made to the
+ * source during the migration are copied as well, until the
+ * application is switched to the new container.
+ *
+ * <p>Writes are upserts, so copying a page twice is harmless, and
+ * they are paced to {@code migration.max-items-per-second} to leave
+ * throughput to the live traffic. Deletes are not copied, as the
+ * change feed does not carry them.
+ *
+ * <p>Upserts and checkpoint writes failing with a transient error are
+ * retried {@code migration.max-retries} times with exponential
+ * backoff. A page still failing is copied again on the next pass,
+ * from the last checkpoint, while the other ranges go on. Documents
+ * without a brand, which the target container cannot partition, and
+ * documents it rejects are skipped and counted.
+ */
+@Slf4j
+@Component
+@Profile("cosmos")
+@ConditionalOnProperty(prefix = "migration", name = "enabled",
+        havingValue = "true")
+public class CosmosCarMigration {
+
+    /**
+     * The partition key path of the target container.
+     */
+    private static final String TARGET_PARTITION_KEY = "/brand";
+
+    /**
+     * The partition key path of the checkpoint container.
+     */
+    private static final String CHECKPOINT_PARTITION_KEY = "/id";
+
+    /**
+     * The system properties of a source document, which the target
+     * container assigns itself.
+     */
+    private static final List<String> SYSTEM_PROPERTIES = List.of(
+            "_rid", "_self", "_etag", "_attachments", "_ts", "_lsn");
+
+    /**
+     * The status Cosmos DB answers a write with when it conflicts
+     * with a concurrent one.
+     */
+    private static final int RETRY_WITH = 449;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * The field the target container is partitioned by.
+     */
+    private static final String BRAND = "brand";
+
+    /**
+     * The statuses of the Cosmos errors worth retrying: timeouts,
+     * gone, throttling, write conflicts, and server errors.
+     */
+    private static final Set<Integer> TRANSIENT_STATUSES = Set.of(
+            HttpStatus.REQUEST_TIMEOUT.value(), HttpStatus.GONE.value(),
+            HttpStatus.TOO_MANY_REQUESTS.value(), RETRY_WITH,
+            HttpStatus.INTERNAL_SERVER_ERROR.value(),
+            HttpStatus.SERVICE_UNAVAILABLE.value());
+
+    /**
+     * The client of the Cosmos DB account.
+     */
+    @Autowired
+    private CosmosAsyncClient cosmosAsyncClient;
+
+    /**
+     * The registry the migration metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The name of the Cosmos DB database.
+     */
+    @Value("${cosmosdb.name}")
+    private String databaseName;
+
+    /**
+     * The container the cars are copied from.
+     */
+    @Value("${migration.source-container:az-car-collection}")
+    private String sourceContainerName;
+
+    /**
+     * The container partitioned by brand the cars are copied to.
+     */
+    @Value("${cosmosdb.container-name:az-car-collection-v2}")
+    private String targetContainerName;
+
+    /**
+     * The container holding the checkpoints of the feed ranges.
+     */
+    @Value("${migration.checkpoint-container:az-car-migration}")
+    private String checkpointContainerName;
+
+    /**
+     * The number of feed ranges copied at the same time.
+     */
+    @Value("${migration.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * The maximum number of changes read per page.
+     */
+    @Value("${migration.page-size:100}")
+    private int pageSize;
+
+    /**
+     * The maximum number of upserts in flight per range.
+     */
+    @Value("${migration.write-concurrency:16}")
+    private int writeConcurrency;
+
+    /**
+     * The maximum number of documents copied per second and range.
+     */
+    @Value("${migration.max-items-per-second:200}")
+    private int maxItemsPerSecond;
+
+    /**
+     * The time a caught up range waits before polling for changes.
+     */
+    @Value("${migration.poll-delay:5s}")
+    private Duration pollDelay;
+
+    /**
+     * The number of retries of a write failing with a transient error.
+     */
+    @Value("${migration.max-retries:5}")
+    private int maxRetries;
+
+    /**
+     * The delay before the first retry of a write, doubled for every
+     * further retry.
+     */
+    @Value("${migration.retry-backoff:500ms}")
+    private Duration retryBackoff;
+
+    /**
+     * Counts the copied documents.
+     */
+    private Counter copied;
+
+    /**
+     * Counts the documents skipped because they have no brand.
+     */
+    private Counter skipped;
+
+    /**
+     * Counts the documents the target container rejected.
+     */
+    private Counter rejected;
+
+    /**
+     * The subscription of the running migration.
+     */
+    private Disposable migration;
+
+    /**
+     * Creates the missing containers and starts copying.
+     *
+     * @throws IllegalStateException If the pace is not positive.
+     */
+    @PostConstruct
+    public void start() {
+        if (maxItemsPerSecond <= 0) {
+            throw new IllegalStateException(
+                    "migration.max-items-per-second must be positive, was "
+                            + maxItemsPerSecond);
+        }
+        copied = Counter.builder("migration.documents.copied")
+                .register(meterRegistry);
+        skipped = Counter.builder("migration.documents.skipped")
+                .description("Documents without a brand")
+                .register(meterRegistry);
+        rejected = Counter.builder("migration.documents.rejected")
+                .description("Documents the target container rejected")
+                .register(meterRegistry);
+        CosmosAsyncDatabase database =
+                cosmosAsyncClient.getDatabase(databaseName);
+        CosmosAsyncContainer source =
+                database.getContainer(sourceContainerName);
+        migration = database.createContainerIfNotExists(
+                        targetContainerName, TARGET_PARTITION_KEY)
+                .then(database.createContainerIfNotExists(
+                        checkpointContainerName, CHECKPOINT_PARTITION_KEY))
+                .then(source.getFeedRanges())
+                .doOnNext(ranges -> log.info("Migrating {} to {} over {}"
+                                + " feed ranges", sourceContainerName,
+                        targetContainerName, ranges.size()))
+                .flatMap(ranges -> Flux.range(0, ranges.size())
+                        .concatMap(index -> loadRange(database,
+                                "range-" + index, ranges.get(index)))
+                        .collectList())
+                .flatMapMany(ranges -> Mono.defer(() -> Flux
+                                .fromIterable(ranges)
+                                .flatMap(range -> drain(source, database,
+                                        range), parallelism)
+                                .then())
+                        .repeatWhen(passes -> passes.delayElements(
+                                pollDelay)))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, retryBackoff)
+                        .maxBackoff(pollDelay)
+                        .doBeforeRetry(signal -> log.warn(
+                                "Starting the migration failed, retrying: {}",
+                                signal.failure().getMessage())))
+                .subscribe(pass -> { }, error -> log.error(
+                        "The migration stopped", error));
+    }
+
+    /**
+     * Stops copying. The checkpoints of the completed pages are kept.
+     */
+    @PreDestroy
+    public void stop() {
+        if (migration != null) {
+            migration.dispose();
+        }
+    }
+
+    /**
+     * Prepares the copy of one feed range, resuming from its
+     * checkpoint if there is one.
+     *
+     * @param database The database of the containers.
+     * @param id The ID of the checkpoint of the range.
+     * @param range The feed range.
+     * @return A Mono of the state of the range.
+     */
+    private Mono<RangeState> loadRange(final CosmosAsyncDatabase database,
+                                       final String id,
+                                       final FeedRange range) {
+        return loadCheckpoint(database.getContainer(checkpointContainerName),
+                id, range)
+                .map(start -> new RangeState(id, range,
+                        new AtomicReference<>(start.orElse(null))));
+    }
+
+    /**
+     * Copies the changes of a range available right now, saving the
+     * checkpoint after every page. A failing page ends the pass of the
+     * range, which resumes from its last checkpoint on the next one.
+     *
+     * @param source The source container.
+     * @param database The database of the containers.
+     * @param state The state of the range, whose continuation is
+     *              updated after every page.
+     * @return A Mono completing once the range is caught up or failed.
+     */
+    private Mono<Void> drain(final CosmosAsyncContainer source,
+                             final CosmosAsyncDatabase database,
+                             final RangeState state) {
+        CosmosAsyncContainer target =
+                database.getContainer(targetContainerName);
+        CosmosAsyncContainer checkpoints =
+                database.getContainer(checkpointContainerName);
+        String continuation = state.continuation().get();
+        CosmosChangeFeedRequestOptions options = continuation == null
+                ? CosmosChangeFeedRequestOptions
+                        .createForProcessingFromBeginning(state.range())
+                : CosmosChangeFeedRequestOptions
+                        .createForProcessingFromContinuation(continuation);
+        options.setMaxItemCount(pageSize);
+        return source.queryChangeFeed(options, ObjectNode.class)
+                .byPage()
+                .concatMap(page -> copy(target, page.getResults())
+                        .then(retried(Mono.defer(() -> checkpoints
+                                .upsertItem(new MigrationCheckpoint(
+                                                state.id(),
+                                                state.range().toString(),
+                                                page.getContinuationToken()),
+                                        new PartitionKey(state.id()),
+                                        new CosmosItemRequestOptions()))))
+                        .doOnSuccess(saved -> state.continuation().set(
+                                page.getContinuationToken())))
+                .then()
+                .onErrorResume(error -> {
+                    log.warn("Copying {} failed, resuming from its last "
+                            + "checkpoint on the next pass: {}", state.id(),
+                            error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Upserts documents into the target container, taking at least as
+     * long as {@code migration.max-items-per-second} allows. Documents
+     * without a brand and documents rejected by the target container
+     * are skipped, a document still failing transiently after the
+     * retries fails the page.
+     *
+     * @param target The target container.
+     * @param documents The documents of a change feed page.
+     * @return A Mono completing once every document is written.
+     */
+    private Mono<Void> copy(final CosmosAsyncContainer target,
+                            final List<ObjectNode> documents) {
+        Duration minimum = Duration.ofNanos(
+                documents.size() * NANOS_PER_SECOND / maxItemsPerSecond);
+        Mono<Void> writes = Flux.fromIterable(documents)
+                .filter(this::hasBrand)
+                .map(document -> document.remove(SYSTEM_PROPERTIES))
+                .flatMap(document -> retried(Mono.defer(() ->
+                                        target.upsertItem(document)))
+                                .doOnNext(written -> copied.increment())
+                                .onErrorResume(error -> !isTransient(error),
+                                        error -> reject(document, error)),
+                        writeConcurrency)
+                .then();
+        return Mono.when(writes, Mono.delay(minimum));
+    }
+
+    /**
+     * Tells whether a document has a brand to be partitioned by,
+     * counting it as skipped otherwise.
+     *
+     * @param document The source document.
+     * @return true if the document has a brand.
+     */
+    private boolean hasBrand(final ObjectNode document) {
+        if (document.hasNonNull(BRAND)) {
+            return true;
+        }
+        log.debug("Skipping document {} without a brand",
+                document.path("id").asText());
+        skipped.increment();
+        return false;
+    }
+
+    /**
+     * Counts a document the target container rejected.
+     *
+     * @param document The document.
+     * @param error The error of the upsert.
+     * @param <T> The type of the upsert response.
+     * @return An empty Mono, skipping the document.
+     */
+    private <T> Mono<T> reject(final ObjectNode document,
+                               final Throwable error) {
+        log.error("Skipping document {} rejected by {}: {}",
+                document.path("id").asText(), targetContainerName,
+                error.getMessage());
+        rejected.increment();
+        return Mono.empty();
+    }
+
+    /**
+     * Retries a write failing with a transient error, with
+     * exponential backoff.
+     *
+     * @param write The write, subscribed again for every retry.
+     * @param <T> The type of the result.
+     * @return The retried write.
+     */
+    private <T> Mono<T> retried(final Mono<T> write) {
+        return write.retryWhen(Retry.backoff(maxRetries, retryBackoff)
+                .filter(CosmosCarMigration::isTransient)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * Tells whether an error is worth retrying.
+     *
+     * @param error The error.
+     * @return true for timeouts and the transient Cosmos errors.
+     */
+    static boolean isTransient(final Throwable error) {
+        if (error instanceof CosmosException cosmosException) {
+            return TRANSIENT_STATUSES.contains(
+                    cosmosException.getStatusCode());
+        }
+        return error instanceof TimeoutException;
+    }
+
+    /**
+     * Reads the checkpoint of a range. A checkpoint written for a
+     * different range, e.g. after the source was split, is ignored and
+     * the range is copied from the beginning.
+     *
+     * @param checkpoints The checkpoint container.
+     * @param id The ID of the checkpoint.
+     * @param range The feed range.
+     * @return A Mono of the continuation, empty if there is none.
+     */
+    private Mono<Optional<String>> loadCheckpoint(
+            final CosmosAsyncContainer checkpoints, final String id,
+            final FeedRange range) {
+        return checkpoints.readItem(id, new PartitionKey(id),
+                        MigrationCheckpoint.class)
+                .map(response -> Optional.ofNullable(response.getItem())
+                        .filter(checkpoint -> range.toString()
+                                .equals(checkpoint.getFeedRange()))
+                        .map(MigrationCheckpoint::getContinuation))
+                .onErrorResume(error -> error instanceof CosmosException
+                                && ((CosmosException) error).getStatusCode()
+                                == HttpStatus.NOT_FOUND.value(),
+                        missing -> Mono.just(Optional.empty()));
+    }
+
+    /**
+     * The progress of the copy of one feed range.
+     *
+     * @param id The ID of the checkpoint of the range.
+     * @param range The feed range.
+     * @param continuation The continuation to resume from, null to
+     *                     start from the beginning.
+     */
+    private record RangeState(String id, FeedRange range,
+                              AtomicReference<String> continuation) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.nashtech.migration;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The position up to which the changes of one feed range of the
+ * source container have been copied.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MigrationCheckpoint {
+
+    /**
+     * The ID of the checkpoint, derived from the index of the range.
+     */
+    private String id;
+
+    /**
+     * The feed range the checkpoint belongs to.
+     */
+    private String feedRange;
+
+    /**
+     * The change feed continuation to resume the range from.
+     */
+    private String continuation;
+}
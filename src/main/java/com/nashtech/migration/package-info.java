@@ -0,0 +1,5 @@
+/**
+ * This package contains the online migration copying the cars of the
+ * Cosmos DB container into the container partitioned by brand.
+ */
+package com.nashtech.migration;
@@ -0,0 +1,21 @@
+package com.nashtech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The body of a batch lookup of the cars of several brands.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchGetRequest {
+
+    /**
+     * The brands whose cars are looked up.
+     */
+    private List<String> brands;
+}
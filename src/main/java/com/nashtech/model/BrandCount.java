@@ -0,0 +1,24 @@
+package com.nashtech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents the number of cars of a brand.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BrandCount {
+
+    /**
+     * The brand of the cars.
+     */
+    private String brand;
+
+    /**
+     * The number of cars of the brand.
+     */
+    private Long count;
+}
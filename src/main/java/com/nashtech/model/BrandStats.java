@@ -0,0 +1,43 @@
+package com.nashtech.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Represents the aggregate statistics of the cars of a brand.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@AllArgsConstructor
+@NoArgsConstructor
+public class BrandStats {
+
+    /**
+     * The brand.
+     */
+    private String brand;
+
+    /**
+     * The number of cars of the brand.
+     */
+    private long count;
+
+    /**
+     * The statistics of the price, null if no car has a price.
+     */
+    private NumericStats price;
+
+    /**
+     * The statistics of the mileage, null if no car has a mileage.
+     */
+    private NumericStats mileage;
+
+    /**
+     * The number of cars per year of manufacture, ordered by year.
+     */
+    private Map<Long, Long> years;
+}
@@ -1,5 +1,6 @@
 package com.nashtech.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -8,8 +9,10 @@ import lombok.NoArgsConstructor;
 /**
  * Represents a reactive data model for sending
  * details of the Car to the CosmosDB.
+ * Fields which were not selected are left null and not serialized.
  */
 @Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
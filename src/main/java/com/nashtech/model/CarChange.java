@@ -0,0 +1,29 @@
+package com.nashtech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change of a stored car, pushed to the subscribers of its brand.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CarChange {
+
+    /**
+     * The id of the changed document.
+     */
+    private String id;
+
+    /**
+     * The kind of change.
+     */
+    private ChangeType type;
+
+    /**
+     * The car after the change, or as it was when removed.
+     */
+    private Car car;
+}
@@ -0,0 +1,106 @@
+package com.nashtech.model;
+
+import com.nashtech.exception.InvalidRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields of a {@link Car} a client can select, named as they are
+ * stored in the databases and serialized to JSON.
+ */
+@Getter
+@AllArgsConstructor
+public enum CarField {
+
+    /**
+     * The car ID.
+     */
+    CAR_ID("carId"),
+
+    /**
+     * The brand.
+     */
+    BRAND("brand"),
+
+    /**
+     * The model.
+     */
+    MODEL("model"),
+
+    /**
+     * The year of manufacture.
+     */
+    YEAR("year"),
+
+    /**
+     * The color.
+     */
+    COLOR("color"),
+
+    /**
+     * The mileage.
+     */
+    MILEAGE("mileage"),
+
+    /**
+     * The price.
+     */
+    PRICE("price");
+
+    /**
+     * The name of the field.
+     */
+    private final String name;
+
+    /**
+     * Parses a comma separated list of field names.
+     *
+     * @param fields The field names, null or blank for all fields.
+     * @return The selected fields.
+     * @throws InvalidRequestException If a name is not a car field, or
+     * no field is named.
+     */
+    public static Set<CarField> parse(final String fields) {
+        if (fields == null || fields.isBlank()) {
+            return Collections.unmodifiableSet(EnumSet.allOf(CarField.class));
+        }
+        Set<CarField> selected = EnumSet.noneOf(CarField.class);
+        for (String name : fields.split(",")) {
+            selected.add(of(name.trim()));
+        }
+        if (selected.isEmpty()) {
+            throw new InvalidRequestException("No field selected");
+        }
+        return Collections.unmodifiableSet(selected);
+    }
+
+    /**
+     * Tells whether a selection holds every field.
+     *
+     * @param fields The selected fields.
+     * @return true if nothing is left out.
+     */
+    public static boolean isAll(final Set<CarField> fields) {
+        return fields.size() == values().length;
+    }
+
+    /**
+     * Looks up a field by name.
+     *
+     * @param name The name of the field.
+     * @return The field.
+     * @throws InvalidRequestException If the name is not a car field.
+     */
+    private static CarField of(final String name) {
+        for (CarField field : values()) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+        throw new InvalidRequestException("Unknown field: " + name);
+    }
+}
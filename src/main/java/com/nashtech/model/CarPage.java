@@ -0,0 +1,25 @@
+package com.nashtech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Represents one page of the cars of a brand, together with the
+ * cursor of the page that follows it.
+ */
+@Getter
+@AllArgsConstructor
+public class CarPage {
+
+    /**
+     * The cars of the page.
+     */
+    private List<Car> items;
+
+    /**
+     * The opaque cursor of the next page, null on the last page.
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,17 @@
+package com.nashtech.model;
+
+/**
+ * The kinds of change of a stored car.
+ */
+public enum ChangeType {
+
+    /**
+     * The car was inserted or updated.
+     */
+    UPSERTED,
+
+    /**
+     * The car was deleted.
+     */
+    REMOVED
+}
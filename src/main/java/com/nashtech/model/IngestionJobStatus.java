@@ -0,0 +1,72 @@
+package com.nashtech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Point-in-time view of an ingestion job, as returned by the jobs API
+ * and streamed as its progress.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class IngestionJobStatus {
+
+    /**
+     * The ID of the job.
+     */
+    private String id;
+
+    /**
+     * The state of the job.
+     */
+    private JobStatus status;
+
+    /**
+     * When the job was started.
+     */
+    private Instant startedAt;
+
+    /**
+     * When the job stopped, null while it is running.
+     */
+    private Instant finishedAt;
+
+    /**
+     * The number of records fetched from the external API.
+     */
+    private long fetched;
+
+    /**
+     * The number of records acknowledged by the broker.
+     */
+    private long published;
+
+    /**
+     * The number of records spooled for a later publish.
+     */
+    private long spooled;
+
+    /**
+     * The number of records given up on.
+     */
+    private long failed;
+
+    /**
+     * The average number of records published per second.
+     */
+    private double recordsPerSecond;
+
+    /**
+     * The 99th percentile of the publish latency in milliseconds.
+     */
+    private double p99LatencyMillis;
+
+    /**
+     * The message of the most recent error, null if none occurred.
+     */
+    private String lastError;
+}
@@ -0,0 +1,153 @@
+package com.nashtech.model;
+
+import com.nashtech.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of an ingestion run, updated by the publishing
+ * pipeline and read concurrently by the progress reporting.
+ * Updates are lock-free and do not allocate.
+ */
+public class IngestionProgress {
+
+    /**
+     * The number of records fetched from the external API.
+     */
+    private final LongAdder fetched = new LongAdder();
+
+    /**
+     * The number of records acknowledged by the broker.
+     */
+    private final LongAdder published = new LongAdder();
+
+    /**
+     * The number of records appended to the spool, to be published
+     * by its drainer.
+     */
+    private final LongAdder spooled = new LongAdder();
+
+    /**
+     * The number of records given up on.
+     */
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * The publish latencies in nanoseconds, retries included.
+     */
+    private final LatencyHistogram publishLatency = new LatencyHistogram();
+
+    /**
+     * The message of the most recent error.
+     */
+    private volatile String lastError;
+
+    /**
+     * Counts a fetched record.
+     */
+    public void recordFetched() {
+        fetched.increment();
+    }
+
+    /**
+     * Counts a published record.
+     *
+     * @param latencyNanos The time it took to publish the record.
+     */
+    public void recordPublished(final long latencyNanos) {
+        published.increment();
+        publishLatency.record(latencyNanos);
+    }
+
+    /**
+     * Counts a record appended to the spool. It is neither published
+     * yet nor part of the publish latency.
+     */
+    public void recordSpooled() {
+        spooled.increment();
+    }
+
+    /**
+     * Counts a record given up on.
+     *
+     * @param error The error the record failed with.
+     */
+    public void recordFailed(final Throwable error) {
+        failed.increment();
+        recordError(error);
+    }
+
+    /**
+     * Remembers an error which is not tied to a single record.
+     *
+     * @param error The error.
+     */
+    public void recordError(final Throwable error) {
+        lastError = error.getMessage();
+    }
+
+    /**
+     * Returns the number of fetched records.
+     *
+     * @return The count.
+     */
+    public long getFetched() {
+        return fetched.sum();
+    }
+
+    /**
+     * Returns the number of published records.
+     *
+     * @return The count.
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /**
+     * Returns the number of spooled records.
+     *
+     * @return The count.
+     */
+    public long getSpooled() {
+        return spooled.sum();
+    }
+
+    /**
+     * Returns the number of records given up on.
+     *
+     * @return The count.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns a percentile of the publish latency.
+     *
+     * @param percentile The percentile, between 0 and 1.
+     * @return The latency in nanoseconds.
+     */
+    public long getPublishLatency(final double percentile) {
+        return publishLatency.percentile(percentile);
+    }
+
+    /**
+     * Returns the message of the most recent error.
+     *
+     * @return The message, null if no error occurred.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Summarizes the counters.
+     *
+     * @return The published, spooled and failed counts.
+     */
+    public IngestionSummary toSummary() {
+        return new IngestionSummary(getPublished(), getSpooled(),
+                getFailed());
+    }
+}
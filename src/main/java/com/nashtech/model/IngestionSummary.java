@@ -0,0 +1,30 @@
+package com.nashtech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Represents the outcome of a single ingestion run, i.e. how many
+ * of the records fetched from the external API reached the broker.
+ */
+@Getter
+@AllArgsConstructor
+public class IngestionSummary {
+
+    /**
+     * The number of records acknowledged by the broker.
+     */
+    private long published;
+
+    /**
+     * The number of records appended to the spool while the broker
+     * was unavailable, published later by its drainer.
+     */
+    private long spooled;
+
+    /**
+     * The number of records that could not be published
+     * after all retries were exhausted.
+     */
+    private long failed;
+}
@@ -0,0 +1,37 @@
+package com.nashtech.model;
+
+/**
+ * The lifecycle states of an ingestion job.
+ */
+public enum JobStatus {
+
+    /**
+     * The job is fetching and publishing records.
+     */
+    RUNNING,
+
+    /**
+     * Every fetched record was either published or given up on.
+     */
+    COMPLETED,
+
+    /**
+     * The job stopped because of an error, e.g. the external API
+     * could not be reached.
+     */
+    FAILED,
+
+    /**
+     * The job was cancelled before it completed.
+     */
+    CANCELLED;
+
+    /**
+     * Tells whether the job has stopped.
+     *
+     * @return true unless the job is running.
+     */
+    public boolean isFinished() {
+        return this != RUNNING;
+    }
+}
@@ -0,0 +1,50 @@
+package com.nashtech.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents the statistics of a numeric field of the cars of a brand.
+ * The percentiles are estimates within one percent of the true value,
+ * and are left null when the statistics were computed by the database.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NumericStats {
+
+    /**
+     * The smallest value.
+     */
+    private Double min;
+
+    /**
+     * The largest value.
+     */
+    private Double max;
+
+    /**
+     * The average value.
+     */
+    private Double avg;
+
+    /**
+     * The median value.
+     */
+    private Double p50;
+
+    /**
+     * The 90th percentile.
+     */
+    private Double p90;
+
+    /**
+     * The 99th percentile.
+     */
+    private Double p99;
+}
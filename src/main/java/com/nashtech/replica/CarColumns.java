@@ -0,0 +1,365 @@
+package com.nashtech.replica;
+
+import com.nashtech.model.Car;
+import com.nashtech.model.CarBrand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cars in primitive columns, one array per field, with brand,
+ * model and color dictionary encoded. Rows are kept dense: a removed
+ * row is replaced by the last one. The rows of every brand are indexed
+ * on every change, so neither the cars of a brand nor the brand list
+ * need a scan. Not thread-safe.
+ */
+class CarColumns {
+
+    /**
+     * The number of rows allocated by the first car.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Marks a null carId.
+     */
+    private static final int NULL_INT = Integer.MIN_VALUE;
+
+    /**
+     * Marks a null year.
+     */
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    /**
+     * The number of rows allocated by the first car of a brand.
+     */
+    private static final int INITIAL_BRAND_CAPACITY = 16;
+
+    /**
+     * The estimated bytes of a row index entry and its document id.
+     */
+    private static final int ROW_INDEX_OVERHEAD = 120;
+
+    /**
+     * The document ids, by row.
+     */
+    private String[] ids = new String[0];
+
+    /**
+     * The carIds, by row.
+     */
+    private int[] carIds = new int[0];
+
+    /**
+     * The brand codes, by row.
+     */
+    private int[] brands = new int[0];
+
+    /**
+     * The model codes, by row.
+     */
+    private int[] models = new int[0];
+
+    /**
+     * The color codes, by row.
+     */
+    private int[] colors = new int[0];
+
+    /**
+     * The years of manufacture, by row.
+     */
+    private long[] years = new long[0];
+
+    /**
+     * The mileages, by row, NaN where null.
+     */
+    private double[] mileages = new double[0];
+
+    /**
+     * The prices, by row, NaN where null.
+     */
+    private double[] prices = new double[0];
+
+    /**
+     * The number of rows.
+     */
+    private int size;
+
+    /**
+     * The rows, by document id.
+     */
+    private final Map<String, Integer> rows = new HashMap<>();
+
+    /**
+     * The number of cars, by brand code.
+     */
+    private int[] brandCounts = new int[0];
+
+    /**
+     * The rows of the cars, by brand code, the first
+     * {@link #brandCounts} entries of each array being used.
+     */
+    private int[][] brandRows = new int[0][];
+
+    /**
+     * The position of each row in the rows of its brand, by row.
+     */
+    private int[] brandSlots = new int[0];
+
+    /**
+     * The dictionary of the brands.
+     */
+    private final StringDictionary brandDictionary = new StringDictionary();
+
+    /**
+     * The dictionary of the models.
+     */
+    private final StringDictionary modelDictionary = new StringDictionary();
+
+    /**
+     * The dictionary of the colors.
+     */
+    private final StringDictionary colorDictionary = new StringDictionary();
+
+    /**
+     * Inserts or replaces the car with the given document id.
+     *
+     * @param id The document id.
+     * @param car The car.
+     */
+    void upsert(final String id, final Car car) {
+        Integer existing = rows.get(id);
+        int row;
+        if (existing == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            rows.put(id, row);
+            ids[row] = id;
+        } else {
+            row = existing;
+            unindexBrand(row);
+        }
+        carIds[row] = car.getCarId() == null ? NULL_INT : car.getCarId();
+        brands[row] = brandDictionary.encode(car.getBrand());
+        models[row] = modelDictionary.encode(car.getModel());
+        colors[row] = colorDictionary.encode(car.getColor());
+        years[row] = car.getYear() == null ? NULL_LONG : car.getYear();
+        mileages[row] = car.getMileage() == null ? Double.NaN
+                : car.getMileage();
+        prices[row] = car.getPrice() == null ? Double.NaN : car.getPrice();
+        indexBrand(row);
+    }
+
+    /**
+     * Removes the car with the given document id, if present.
+     *
+     * @param id The document id.
+     */
+    void remove(final String id) {
+        Integer removed = rows.remove(id);
+        if (removed == null) {
+            return;
+        }
+        int row = removed;
+        unindexBrand(row);
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            carIds[row] = carIds[last];
+            brands[row] = brands[last];
+            models[row] = models[last];
+            colors[row] = colors[last];
+            years[row] = years[last];
+            mileages[row] = mileages[last];
+            prices[row] = prices[last];
+            rows.put(ids[row], row);
+            if (brands[row] != StringDictionary.NULL_CODE) {
+                brandSlots[row] = brandSlots[last];
+                brandRows[brands[row]][brandSlots[row]] = row;
+            }
+        }
+        ids[last] = null;
+    }
+
+    /**
+     * Returns the brand of the car with the given document id.
+     *
+     * @param id The document id.
+     * @return The brand, null if the car is absent or has none.
+     */
+    String brandOf(final String id) {
+        Integer row = rows.get(id);
+        return row == null ? null : brandDictionary.decode(brands[row]);
+    }
+
+    /**
+     * Returns the number of cars of a brand.
+     *
+     * @param brand The brand, may be null.
+     * @return The number of cars, 0 if the brand is unknown.
+     */
+    int countOf(final String brand) {
+        int code = brand == null ? StringDictionary.NULL_CODE
+                : brandDictionary.codeOf(brand);
+        if (code == StringDictionary.NULL_CODE
+                || code >= brandCounts.length) {
+            return 0;
+        }
+        return brandCounts[code];
+    }
+
+    /**
+     * Returns the cars of a brand.
+     *
+     * @param brand The brand.
+     * @return The cars, empty if the brand is unknown.
+     */
+    List<Car> carsOfBrand(final String brand) {
+        int code = brandDictionary.codeOf(brand);
+        if (code == StringDictionary.NULL_CODE) {
+            return List.of();
+        }
+        int count = code < brandCounts.length ? brandCounts[code] : 0;
+        List<Car> cars = new ArrayList<>(count);
+        for (int slot = 0; slot < count; slot++) {
+            cars.add(toCar(brandRows[code][slot]));
+        }
+        return cars;
+    }
+
+    /**
+     * Returns the brands having at least one car.
+     *
+     * @return The brands.
+     */
+    List<CarBrand> brands() {
+        List<CarBrand> result = new ArrayList<>();
+        for (int code = 0; code < brandDictionary.size(); code++) {
+            if (code < brandCounts.length && brandCounts[code] > 0) {
+                result.add(new CarBrand(brandDictionary.decode(code)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of cars.
+     *
+     * @return The number of cars.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the estimated bytes held by the columns, the row and
+     * brand indexes and the dictionaries.
+     *
+     * @return The estimated bytes.
+     */
+    long memoryBytes() {
+        long perRow = Integer.BYTES * 5L + Long.BYTES + Double.BYTES * 2L
+                + ROW_INDEX_OVERHEAD;
+        long brandIndex = (long) brandCounts.length * Integer.BYTES;
+        for (int[] rowsOfBrand : brandRows) {
+            if (rowsOfBrand != null) {
+                brandIndex += (long) rowsOfBrand.length * Integer.BYTES;
+            }
+        }
+        return carIds.length * perRow
+                + brandIndex
+                + brandDictionary.memoryBytes()
+                + modelDictionary.memoryBytes()
+                + colorDictionary.memoryBytes();
+    }
+
+    /**
+     * Materializes a row.
+     *
+     * @param row The row.
+     * @return The car.
+     */
+    private Car toCar(final int row) {
+        return Car.builder()
+                .carId(carIds[row] == NULL_INT ? null : carIds[row])
+                .brand(brandDictionary.decode(brands[row]))
+                .model(modelDictionary.decode(models[row]))
+                .color(colorDictionary.decode(colors[row]))
+                .year(years[row] == NULL_LONG ? null : years[row])
+                .mileage(Double.isNaN(mileages[row]) ? null : mileages[row])
+                .price(Double.isNaN(prices[row]) ? null : prices[row])
+                .build();
+    }
+
+    /**
+     * Adds a row to the rows of its brand.
+     *
+     * @param row The row, its brand code already set.
+     */
+    private void indexBrand(final int row) {
+        int code = brands[row];
+        if (code == StringDictionary.NULL_CODE) {
+            return;
+        }
+        if (code >= brandCounts.length) {
+            int grown = Math.max(code + 1, brandCounts.length * 2);
+            brandCounts = Arrays.copyOf(brandCounts, grown);
+            brandRows = Arrays.copyOf(brandRows, grown);
+        }
+        int count = brandCounts[code];
+        int[] rowsOfBrand = brandRows[code];
+        if (rowsOfBrand == null || count == rowsOfBrand.length) {
+            rowsOfBrand = rowsOfBrand == null
+                    ? new int[INITIAL_BRAND_CAPACITY]
+                    : Arrays.copyOf(rowsOfBrand, count * 2);
+            brandRows[code] = rowsOfBrand;
+        }
+        rowsOfBrand[count] = row;
+        brandSlots[row] = count;
+        brandCounts[code] = count + 1;
+    }
+
+    /**
+     * Removes a row from the rows of its brand, replacing it by the
+     * last row of the brand.
+     *
+     * @param row The row, its brand code still set.
+     */
+    private void unindexBrand(final int row) {
+        int code = brands[row];
+        if (code == StringDictionary.NULL_CODE) {
+            return;
+        }
+        int[] rowsOfBrand = brandRows[code];
+        int last = --brandCounts[code];
+        int moved = rowsOfBrand[last];
+        rowsOfBrand[brandSlots[row]] = moved;
+        brandSlots[moved] = brandSlots[row];
+    }
+
+    /**
+     * Grows the columns to hold the given number of rows, doubling
+     * their size.
+     *
+     * @param capacity The number of rows.
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= carIds.length) {
+            return;
+        }
+        int grown = Math.max(INITIAL_CAPACITY,
+                Math.max(capacity, carIds.length * 2));
+        ids = Arrays.copyOf(ids, grown);
+        carIds = Arrays.copyOf(carIds, grown);
+        brands = Arrays.copyOf(brands, grown);
+        models = Arrays.copyOf(models, grown);
+        colors = Arrays.copyOf(colors, grown);
+        years = Arrays.copyOf(years, grown);
+        mileages = Arrays.copyOf(mileages, grown);
+        prices = Arrays.copyOf(prices, grown);
+        brandSlots = Arrays.copyOf(brandSlots, grown);
+    }
+}
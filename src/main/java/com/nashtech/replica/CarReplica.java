@@ -0,0 +1,279 @@
+package com.nashtech.replica;
+
+import com.nashtech.cache.DataVersions;
+import com.nashtech.model.Car;
+import com.nashtech.model.CarBrand;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * In-memory read replica of the car collection, enabled by
+ * {@code replica.enabled}. The cars are held in {@link CarColumns}
+ * and kept current by the listener of the active database, so once
+ * the initial load is done the cars of a brand and the brand list are
+ * answered without a database read.
+ *
+ * <p>The replica reports the number of cars in {@code replica.cars},
+ * its estimated size in {@code replica.memory} and the time between a
+ * change in the database and its arrival in {@code replica.lag}. On
+ * Firestore the client of the snapshot listener holds a copy of every
+ * document on top of the replica, which {@code replica.memory} does
+ * not include; its number of documents is reported by the
+ * {@link com.nashtech.feed.FirestoreCarListener}.
+ *
+ * <p>Every applied change bumps the {@link DataVersions} of the brands
+ * of the car before and after the change, and the version of the
+ * brand list when a brand gained its first car or lost its last one,
+ * once the replica reflects it. A reset or a full reload bumps every
+ * version.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "replica", name = "enabled",
+        havingValue = "true")
+public class CarReplica {
+
+    /**
+     * The registry the metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The versions, null when neither ETags nor the response cache are
+     * enabled.
+     */
+    @Autowired(required = false)
+    private DataVersions dataVersions;
+
+    /**
+     * The cars.
+     */
+    private CarColumns columns = new CarColumns();
+
+    /**
+     * Guards the columns: the listener writes while requests read.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Whether the initial load is done.
+     */
+    private volatile boolean ready;
+
+    /**
+     * Records the lag of the applied changes.
+     */
+    private Timer lag;
+
+    /**
+     * Registers the metrics.
+     */
+    @PostConstruct
+    public void init() {
+        Gauge.builder("replica.cars", this, replica -> replica.read(
+                        CarColumns::size))
+                .register(meterRegistry);
+        Gauge.builder("replica.memory", this, replica -> replica.read(
+                        CarColumns::memoryBytes))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        lag = Timer.builder("replica.lag").register(meterRegistry);
+    }
+
+    /**
+     * Applies an added or modified car.
+     *
+     * @param id The document id of the car.
+     * @param car The car.
+     * @param changedAt The time of the change in the database.
+     */
+    public void upsert(final String id, final Car car,
+                       final Instant changedAt) {
+        String previousBrand;
+        boolean brandsChanged;
+        lock.writeLock().lock();
+        try {
+            previousBrand = columns.brandOf(id);
+            columns.upsert(id, car);
+            brandsChanged = !Objects.equals(previousBrand, car.getBrand())
+                    && (columns.countOf(car.getBrand()) == 1
+                    || previousBrand != null
+                    && columns.countOf(previousBrand) == 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        bump(previousBrand, car.getBrand(), brandsChanged);
+        recordLag(changedAt);
+    }
+
+    /**
+     * Applies a removed car.
+     *
+     * @param id The document id of the car.
+     * @param changedAt The time of the change in the database.
+     */
+    public void remove(final String id, final Instant changedAt) {
+        String brand;
+        boolean brandsChanged;
+        lock.writeLock().lock();
+        try {
+            brand = columns.brandOf(id);
+            columns.remove(id);
+            brandsChanged = brand != null && columns.countOf(brand) == 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        bump(brand, null, brandsChanged);
+        recordLag(changedAt);
+    }
+
+    /**
+     * Replaces every car with the cars of a full reload, which also
+     * drops the cars deleted since the replica was loaded.
+     *
+     * @param loaded The reloaded cars.
+     */
+    void replace(final CarColumns loaded) {
+        lock.writeLock().lock();
+        try {
+            columns = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (dataVersions != null) {
+            dataVersions.bumpAll();
+        }
+    }
+
+    /**
+     * Marks the initial load as done, from then on the replica
+     * answers reads.
+     */
+    public void markReady() {
+        if (!ready) {
+            ready = true;
+            log.info("Car replica loaded with {} cars",
+                    read(CarColumns::size));
+        }
+    }
+
+    /**
+     * Drops every car and stops answering reads until the replica is
+     * marked ready again, e.g. when the listener feeding it failed.
+     */
+    public void reset() {
+        lock.writeLock().lock();
+        try {
+            if (ready || columns.size() > 0) {
+                log.warn("Car replica reset, reads go to the database"
+                        + " until it is loaded again");
+            }
+            ready = false;
+            columns = new CarColumns();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (dataVersions != null) {
+            dataVersions.bumpAll();
+        }
+    }
+
+    /**
+     * Tells whether the initial load is done.
+     *
+     * @return true if the replica answers reads.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the cars of a brand.
+     *
+     * @param brand The brand.
+     * @return The cars, empty if the brand has none.
+     */
+    public List<Car> getCarsByBrand(final String brand) {
+        return read(replica -> replica.carsOfBrand(brand));
+    }
+
+    /**
+     * Returns the brands having at least one car.
+     *
+     * @return The brands.
+     */
+    public List<CarBrand> getBrands() {
+        return read(CarColumns::brands);
+    }
+
+    /**
+     * Reads the columns under the read lock.
+     *
+     * @param reader The read.
+     * @param <T> The type of the result.
+     * @return The result of the read.
+     */
+    private <T> T read(final Function<CarColumns, T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(columns);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bumps the versions of the brands a change touched, and the
+     * version of the brand list if a brand gained its first car or
+     * lost its last one.
+     *
+     * @param before The brand of the car before the change, may be null.
+     * @param after The brand of the car after the change, may be null.
+     * @param brandsChanged Whether the brand list changed.
+     */
+    private void bump(final String before, final String after,
+                      final boolean brandsChanged) {
+        if (dataVersions == null) {
+            return;
+        }
+        Set<String> brands = new HashSet<>();
+        if (before != null) {
+            brands.add(before);
+        }
+        if (after != null) {
+            brands.add(after);
+        }
+        dataVersions.bumpCars(brands);
+        if (brandsChanged) {
+            dataVersions.bumpBrands();
+        }
+    }
+
+    /**
+     * Records the lag of a change.
+     *
+     * @param changedAt The time of the change, ignored when null.
+     */
+    private void recordLag(final Instant changedAt) {
+        if (changedAt != null) {
+            lag.record(Duration.between(changedAt, Instant.now()));
+        }
+    }
+}
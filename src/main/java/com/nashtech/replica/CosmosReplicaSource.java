@@ -0,0 +1,239 @@
+package com.nashtech.replica;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nashtech.model.Car;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the {@link CarReplica} current by reading the change feed of
+ * the car container from the beginning, then polling it every
+ * {@code replica.poll-delay}. The initial load is complete once the
+ * feed has been read to its end.
+ *
+ * <p>The change feed in latest version mode does not report deleted
+ * documents, so every {@code replica.reload-interval} the feed is read
+ * again from the beginning into new columns, which then replace the
+ * replica at once, dropping the cars deleted since the last load. The
+ * replica keeps answering reads from the previous columns during the
+ * reload, so it briefly takes twice its memory.
+ */
+@Slf4j
+@Component
+@Profile("cosmos")
+@ConditionalOnProperty(prefix = "replica", name = "enabled",
+        havingValue = "true")
+public class CosmosReplicaSource {
+
+    /**
+     * The client of the Cosmos DB account.
+     */
+    @Autowired
+    private CosmosAsyncClient cosmosAsyncClient;
+
+    /**
+     * The replica the changes are applied to.
+     */
+    @Autowired
+    private CarReplica carReplica;
+
+    /**
+     * Maps the changed documents to cars.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The name of the Cosmos DB database.
+     */
+    @Value("${cosmosdb.name}")
+    private String databaseName;
+
+    /**
+     * The name of the container of the cars.
+     */
+    @Value("${cosmosdb.container-name:az-car-collection-v2}")
+    private String carContainerName;
+
+    /**
+     * The maximum number of changes read per page.
+     */
+    @Value("${replica.page-size:500}")
+    private int pageSize;
+
+    /**
+     * The time between two polls of the caught up change feed.
+     */
+    @Value("${replica.poll-delay:1s}")
+    private Duration pollDelay;
+
+    /**
+     * The time between two full reloads, which drop the deleted cars.
+     */
+    @Value("${replica.reload-interval:15m}")
+    private Duration reloadInterval;
+
+    /**
+     * The position in the change feed, null before the first page.
+     */
+    private final AtomicReference<String> continuation =
+            new AtomicReference<>();
+
+    /**
+     * The time of the last load from the beginning of the feed.
+     */
+    private volatile Instant loadedAt = Instant.now();
+
+    /**
+     * The subscription of the polling loop.
+     */
+    private Disposable polling;
+
+    /**
+     * Starts reading the change feed.
+     */
+    @PostConstruct
+    public void start() {
+        CosmosAsyncContainer container = cosmosAsyncClient
+                .getDatabase(databaseName)
+                .getContainer(carContainerName);
+        polling = Mono.defer(() -> reloadDue()
+                        ? reload(container) : drain(container))
+                .doOnSuccess(done -> carReplica.markReady())
+                .repeatWhen(passes -> passes.delayElements(pollDelay))
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, pollDelay)
+                        .doBeforeRetry(failure -> log.warn(
+                                "Reading the car change feed failed: {}",
+                                failure.failure().getMessage())))
+                .subscribe(pass -> { }, error -> log.error(
+                        "The car replica listener stopped", error));
+    }
+
+    /**
+     * Stops reading the change feed.
+     */
+    @PreDestroy
+    public void stop() {
+        if (polling != null) {
+            polling.dispose();
+        }
+    }
+
+    /**
+     * Tells whether the replica is loaded and due for a full reload.
+     *
+     * @return true if the feed should be read from the beginning.
+     */
+    private boolean reloadDue() {
+        return continuation.get() != null && !Instant.now()
+                .isBefore(loadedAt.plus(reloadInterval));
+    }
+
+    /**
+     * Reads the whole change feed into new columns and replaces the
+     * cars of the replica with them, then continues polling from the
+     * end of the reload.
+     *
+     * @param container The container of the cars.
+     * @return A Mono completing once the replica is replaced.
+     */
+    private Mono<Void> reload(final CosmosAsyncContainer container) {
+        CarColumns loaded = new CarColumns();
+        AtomicReference<String> position = new AtomicReference<>();
+        CosmosChangeFeedRequestOptions options = CosmosChangeFeedRequestOptions
+                .createForProcessingFromBeginning(FeedRange.forFullRange());
+        options.setMaxItemCount(pageSize);
+        return container.queryChangeFeed(options, ObjectNode.class)
+                .byPage()
+                .concatMap(page -> Flux.fromIterable(page.getResults())
+                        .doOnNext(document -> {
+                            Car car = toCar(document);
+                            if (car != null) {
+                                loaded.upsert(document.path("id").asText(),
+                                        car);
+                            }
+                        })
+                        .then(Mono.fromRunnable(() -> position.set(
+                                page.getContinuationToken()))))
+                .then(Mono.fromRunnable(() -> {
+                    carReplica.replace(loaded);
+                    continuation.set(position.get());
+                    loadedAt = Instant.now();
+                    log.info("Reloaded the car replica with {} cars",
+                            loaded.size());
+                }));
+    }
+
+    /**
+     * Reads the change feed from the current position to its end.
+     *
+     * @param container The container of the cars.
+     * @return A Mono completing once the feed is caught up.
+     */
+    private Mono<Void> drain(final CosmosAsyncContainer container) {
+        String position = continuation.get();
+        CosmosChangeFeedRequestOptions options = position == null
+                ? CosmosChangeFeedRequestOptions
+                        .createForProcessingFromBeginning(
+                                FeedRange.forFullRange())
+                : CosmosChangeFeedRequestOptions
+                        .createForProcessingFromContinuation(position);
+        options.setMaxItemCount(pageSize);
+        return container.queryChangeFeed(options, ObjectNode.class)
+                .byPage()
+                .concatMap(page -> Flux.fromIterable(page.getResults())
+                        .doOnNext(this::apply)
+                        .then(Mono.fromRunnable(() -> continuation.set(
+                                page.getContinuationToken()))))
+                .then();
+    }
+
+    /**
+     * Applies a changed document to the replica.
+     *
+     * @param document The document.
+     */
+    private void apply(final ObjectNode document) {
+        Car car = toCar(document);
+        if (car != null) {
+            carReplica.upsert(document.path("id").asText(), car,
+                    Instant.ofEpochSecond(document.path("_ts").asLong()));
+        }
+    }
+
+    /**
+     * Maps a changed document to a car.
+     *
+     * @param document The document.
+     * @return The car, null if the document is unreadable.
+     */
+    private Car toCar(final ObjectNode document) {
+        try {
+            return objectMapper.treeToValue(document, Car.class);
+        } catch (JsonProcessingException error) {
+            log.warn("Skipping unreadable car {}: {}",
+                    document.path("id").asText(), error.getMessage());
+            return null;
+        }
+    }
+}
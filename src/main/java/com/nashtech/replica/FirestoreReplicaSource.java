@@ -0,0 +1,117 @@
+package com.nashtech.replica;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.nashtech.entity.GCPCarEntity;
+import com.nashtech.feed.CarSnapshotHandler;
+import com.nashtech.feed.FirestoreCarListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Keeps the {@link CarReplica} current with the snapshots of the
+ * {@link FirestoreCarListener}. The initial snapshot of a registration
+ * holds every car and completes the load, the following ones only the
+ * changes.
+ *
+ * <p>The source holds a lease on the listener from the start of the
+ * application, so the listener stays registered while the replica is
+ * enabled.
+ *
+ * <p>When the listener fails the replica is cleared and stops
+ * answering reads, as the changes made until the listener is
+ * registered again would be missed. It is loaded again from the next
+ * initial snapshot.
+ */
+@Component
+@Profile("firestore")
+@ConditionalOnProperty(prefix = "replica", name = "enabled",
+        havingValue = "true")
+public class FirestoreReplicaSource implements CarSnapshotHandler {
+
+    /**
+     * The replica the changes are applied to.
+     */
+    @Autowired
+    private CarReplica carReplica;
+
+    /**
+     * The listener the snapshots come from.
+     */
+    @Autowired
+    private FirestoreCarListener carListener;
+
+    /**
+     * Takes the lease keeping the listener registered, once the
+     * application is started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        carListener.acquire();
+    }
+
+    /**
+     * Applies the changes of a snapshot to the replica.
+     *
+     * @param snapshot The snapshot.
+     * @param initial Whether it holds every car.
+     */
+    @Override
+    public void onSnapshot(final QuerySnapshot snapshot,
+                           final boolean initial) {
+        if (initial) {
+            carReplica.reset();
+        }
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            apply(change, snapshot.getReadTime());
+        }
+        carReplica.markReady();
+    }
+
+    /**
+     * Clears the replica until the listener is registered again.
+     *
+     * @param error The failure of the listener.
+     */
+    @Override
+    public void onInterrupted(final Throwable error) {
+        carReplica.reset();
+    }
+
+    /**
+     * Applies a document change to the replica.
+     *
+     * @param change The change.
+     * @param readTime The time of the snapshot, used for removals.
+     */
+    private void apply(final DocumentChange change,
+                       final Timestamp readTime) {
+        QueryDocumentSnapshot document = change.getDocument();
+        if (change.getType() == DocumentChange.Type.REMOVED) {
+            carReplica.remove(document.getId(), toInstant(readTime));
+            return;
+        }
+        carReplica.upsert(document.getId(),
+                document.toObject(GCPCarEntity.class).toCar(),
+                toInstant(document.getUpdateTime()));
+    }
+
+    /**
+     * Converts a Firestore timestamp.
+     *
+     * @param timestamp The timestamp, may be null.
+     * @return The instant, null if the timestamp is.
+     */
+    private static Instant toInstant(final Timestamp timestamp) {
+        return timestamp == null ? null : Instant.ofEpochSecond(
+                timestamp.getSeconds(), timestamp.getNanos());
+    }
+}
@@ -0,0 +1,104 @@
+package com.nashtech.replica;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the distinct values of a string column as int codes, so
+ * every value is held once however many rows share it. Codes are
+ * assigned in order of appearance and never reused. Not thread-safe.
+ */
+class StringDictionary {
+
+    /**
+     * The code of a null value.
+     */
+    static final int NULL_CODE = -1;
+
+    /**
+     * The estimated bytes of a String object and its array header.
+     */
+    private static final int STRING_OVERHEAD = 56;
+
+    /**
+     * The estimated bytes of a map entry and its boxed code.
+     */
+    private static final int ENTRY_OVERHEAD = 48;
+
+    /**
+     * The codes of the values.
+     */
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    /**
+     * The values, by code.
+     */
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * The estimated bytes held by the values.
+     */
+    private long valueBytes;
+
+    /**
+     * Returns the code of a value, assigning one if it is new.
+     *
+     * @param value The value, may be null.
+     * @return The code.
+     */
+    int encode(final String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+            valueBytes += STRING_OVERHEAD + ENTRY_OVERHEAD
+                    + (long) value.length() * Character.BYTES;
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code of a value without assigning one.
+     *
+     * @param value The value.
+     * @return The code, {@link #NULL_CODE} if the value is unknown.
+     */
+    int codeOf(final String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NULL_CODE : code;
+    }
+
+    /**
+     * Returns the value of a code.
+     *
+     * @param code The code.
+     * @return The value, null for {@link #NULL_CODE}.
+     */
+    String decode(final int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    /**
+     * Returns the number of distinct values.
+     *
+     * @return The number of values.
+     */
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the estimated bytes held by the dictionary.
+     *
+     * @return The estimated bytes.
+     */
+    long memoryBytes() {
+        return valueBytes;
+    }
+}
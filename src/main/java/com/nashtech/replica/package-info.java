@@ -0,0 +1,5 @@
+/**
+ * This package contains the in-memory read replica of the car
+ * collection and the listeners keeping it current.
+ */
+package com.nashtech.replica;
@@ -0,0 +1,18 @@
+package com.nashtech.repository;
+
+import com.azure.spring.data.cosmos.repository.ReactiveCosmosRepository;
+import com.nashtech.entity.AzureBrandEntity;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reactive data repository interface for performing CRUD operations
+ * on the materialized brand index in Cosmos DB.
+ *
+ * @see AzureBrandEntity
+ */
+@Repository
+@Profile("cosmos")
+public interface CosmosBrandRepository extends ReactiveCosmosRepository
+        <AzureBrandEntity, String> {
+}
@@ -3,8 +3,8 @@ package com.nashtech.repository;
 import com.azure.spring.data.cosmos.repository.Query;
 import com.azure.spring.data.cosmos.repository.ReactiveCosmosRepository;
 import com.nashtech.entity.AzureCarEntity;
+import com.nashtech.model.BrandCount;
 import com.nashtech.model.CarBrand;
-import com.nashtech.model.Car;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -32,11 +32,12 @@ public interface CosmosDbRepository extends ReactiveCosmosRepository
     Flux<CarBrand> findDistinctBrands();
 
     /**
-     * Custom query to get the details from CosmosDB.
-     * document from database which
-     * @return the Car with
-     * @param brand for the specific brand.
+     * Custom query counting the cars of every brand, used to rebuild
+     * the materialized brand index.
+     *
+     * @return the number of cars per brand.
      */
-    @Query(value = "SELECT * FROM c WHERE c.brand = @brand")
-    Flux<Car> getAllCarsByBrand(String brand);
+    @Query(value = "SELECT c.brand, COUNT(1) AS count FROM c"
+            + " GROUP BY c.brand")
+    Flux<BrandCount> countCarsByBrand();
 }
@@ -0,0 +1,92 @@
+package com.nashtech.repository;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.nashtech.diagnostics.CosmosRequestMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Runs named SQL queries against Cosmos DB containers and reports
+ * every page they receive to the {@link CosmosRequestMetrics}, so the
+ * request units they consume are attributed to the query and to the
+ * HTTP request they run for.
+ */
+@Component
+@Profile("cosmos")
+public class CosmosQueryExecutor {
+
+    /**
+     * The client of the Cosmos DB account.
+     */
+    @Autowired
+    private CosmosAsyncClient cosmosAsyncClient;
+
+    /**
+     * The metrics the pages are reported to.
+     */
+    @Autowired
+    private CosmosRequestMetrics requestMetrics;
+
+    /**
+     * The name of the Cosmos DB database.
+     */
+    @Value("${cosmosdb.name}")
+    private String databaseName;
+
+    /**
+     * Runs a query and emits all its results.
+     *
+     * @param name The name of the query, used as metric tag.
+     * @param container The container to query.
+     * @param query The query.
+     * @param options The options of the query.
+     * @param type The type of the results.
+     * @param <T> The type of the results.
+     * @return A Flux of the results.
+     */
+    public <T> Flux<T> query(final String name, final String container,
+                             final SqlQuerySpec query,
+                             final CosmosQueryRequestOptions options,
+                             final Class<T> type) {
+        return queryPages(name, container, query, options, type, null, null)
+                .concatMapIterable(FeedResponse::getResults);
+    }
+
+    /**
+     * Runs a query page by page.
+     *
+     * @param name The name of the query, used as metric tag.
+     * @param container The container to query.
+     * @param query The query.
+     * @param options The options of the query.
+     * @param type The type of the results.
+     * @param continuation The continuation token to resume from, null
+     *                     to start at the beginning.
+     * @param pageSize The maximum number of results of a page, null
+     *                 for the default of the options.
+     * @param <T> The type of the results.
+     * @return A Flux of the pages.
+     */
+    public <T> Flux<FeedResponse<T>> queryPages(
+            final String name, final String container,
+            final SqlQuerySpec query,
+            final CosmosQueryRequestOptions options, final Class<T> type,
+            final String continuation, final Integer pageSize) {
+        return Flux.deferContextual(context -> {
+            var pages = cosmosAsyncClient.getDatabase(databaseName)
+                    .getContainer(container)
+                    .queryItems(query, options, type);
+            Flux<FeedResponse<T>> flux = pageSize == null
+                    ? pages.byPage(continuation)
+                    : pages.byPage(continuation, pageSize);
+            return flux.doOnNext(page ->
+                    requestMetrics.record(name, page, context));
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package com.nashtech.repository;
+
+import com.google.cloud.spring.data.firestore.FirestoreReactiveRepository;
+import com.nashtech.entity.GCPBrandEntity;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * This repository interface provides methods for
+ * performing CRUD operations on the materialized brand index
+ * in Firestore.
+ */
+@Repository
+@Profile("firestore")
+public interface FirestoreBrandRepository extends
+        FirestoreReactiveRepository<GCPBrandEntity> {
+}
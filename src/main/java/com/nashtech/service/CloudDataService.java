@@ -1,12 +1,18 @@
 package com.nashtech.service;
 
+import com.nashtech.model.BrandStats;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarChange;
+import com.nashtech.model.CarField;
+import com.nashtech.model.CarPage;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface CloudDataService {
 
@@ -22,6 +28,18 @@ public interface CloudDataService {
     Mono<Void> pushData(
             Car carData);
 
+    /**
+     * Publishes vehicle data to the pub/sub topic in micro-batches.
+     * Records are grouped into windows bounded by size, bytes and time
+     * and every window is published as a single unit.
+     *
+     * @param cars A Flux of Car objects representing
+     *             the data to be published.
+     * @return A Mono emitting the number of published records once
+     * every window has been acknowledged by the broker.
+     */
+    Mono<Long> pushBatch(Flux<Car> cars);
+
     /**
      * Retrieves a Flux of cars with the specified brand in a reactive manner.
      * The Flux represents a stream of data that can be subscribed to for
@@ -33,6 +51,41 @@ public interface CloudDataService {
      */
     Flux<Car> getCarsByBrand(String brand);
 
+    /**
+     * Retrieves the cars with the specified brand, reading only the
+     * selected fields from the database.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param fields The fields to read, the others are left null.
+     * @return A Flux of Car representing cars with the
+     * specified brand.
+     */
+    Flux<Car> getCarsByBrand(String brand, Set<CarField> fields);
+
+    /**
+     * Retrieves the cars of several brands with a single query. Brands
+     * without cars are skipped.
+     *
+     * @param brands The brands, at most {@code cars.batch.in-size}.
+     * @return A Flux of the cars of the brands.
+     */
+    Flux<Car> getCarsByBrands(List<String> brands);
+
+    /**
+     * Retrieves one page of the cars with the specified brand, in a
+     * stable order, starting after the given position.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param limit The maximum number of cars of the page.
+     * @param position The database position the previous page ended
+     *                 at, null for the first page.
+     * @param fields The fields to read, the others are left null.
+     * @return A Mono of the page, whose next cursor is the database
+     * position to resume from or null on the last page.
+     */
+    Mono<CarPage> getCarsByBrand(String brand, int limit, String position,
+                                 Set<CarField> fields);
+
     /**
      * Retrieves a Flux of distinct car brands in a reactive manner.
      * The Flux represents a stream of data that can be subscribed to
@@ -42,6 +95,22 @@ public interface CloudDataService {
      */
     Flux<CarBrand> getAllBrands();
 
+    /**
+     * Computes the aggregate statistics of the cars of a brand.
+     *
+     * @param brand The brand.
+     * @return A Mono of the statistics, with a count of zero if the
+     * brand has no cars.
+     */
+    Mono<BrandStats> getBrandStats(String brand);
+
+    /**
+     * Computes the aggregate statistics of the cars of every brand.
+     *
+     * @return A Flux of the statistics of every brand.
+     */
+    Flux<BrandStats> getAllBrandStats();
+
     /**
      * Retrieves a Flux of distinct car brands in a reactive manner.
      * The Flux represents a stream of data that can be subscribed to
@@ -51,6 +120,36 @@ public interface CloudDataService {
      */
     Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSse();
 
+    /**
+     * Streams the changes of the cars of a brand made from the time of
+     * the subscription on. The changes are read at the pace of the
+     * subscriber demand.
+     *
+     * @param brand The brand.
+     * @return An endless Flux of changes.
+     */
+    Flux<CarChange> getCarChanges(String brand);
+
+    /**
+     * Recounts the stored cars of the given brands and writes the
+     * counts to the materialized brand index, creating missing
+     * entries. Brands without cars are kept with a count of 0.
+     *
+     * @param brands The brands whose cars changed.
+     * @return A Mono emitting, once every entry is updated, the brands
+     * which gained their first car or lost their last one, so the
+     * brand list only has to be refreshed when it changed.
+     */
+    Mono<Set<String>> refreshBrandCounts(Set<String> brands);
+
+    /**
+     * Recomputes the materialized brand index from the stored cars,
+     * backfilling it for cars written before it existed.
+     *
+     * @return A Mono emitting the number of brands in the index.
+     */
+    Mono<Long> rebuildBrandIndex();
+
 
 
 }
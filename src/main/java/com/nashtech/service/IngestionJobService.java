@@ -0,0 +1,46 @@
+package com.nashtech.service;
+
+import com.nashtech.model.IngestionJobStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Interface representing a service running ingestion runs as jobs
+ * which can be looked up, watched and cancelled while they run.
+ */
+public interface IngestionJobService {
+
+    /**
+     * Starts a new ingestion job in the background.
+     *
+     * @return The status of the job right after it was started.
+     */
+    IngestionJobStatus start();
+
+    /**
+     * Retrieves the current status of a job.
+     *
+     * @param id The ID of the job.
+     * @return A Mono emitting the status, or a DataNotFoundException
+     * if there is no such job.
+     */
+    Mono<IngestionJobStatus> getJob(String id);
+
+    /**
+     * Streams the status of a job periodically until it has finished.
+     *
+     * @param id The ID of the job.
+     * @return A Flux of status snapshots, ending with the final one,
+     * or a DataNotFoundException if there is no such job.
+     */
+    Flux<IngestionJobStatus> watch(String id);
+
+    /**
+     * Cancels a running job. Records already published stay published.
+     *
+     * @param id The ID of the job.
+     * @return A Mono emitting the status of the job after the
+     * cancellation, or a DataNotFoundException if there is no such job.
+     */
+    Mono<IngestionJobStatus> cancel(String id);
+}
@@ -1,11 +1,20 @@
 package com.nashtech.service;
 
+import com.nashtech.model.BrandStats;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarChange;
+import com.nashtech.model.CarField;
+import com.nashtech.model.CarPage;
+import com.nashtech.model.IngestionProgress;
+import com.nashtech.model.IngestionSummary;
 import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Interface representing a service for performing reactive data access
@@ -16,9 +25,24 @@ import java.util.Map;
 public interface ReactiveDataService {
 
     /**
-     * Retrieves car data from an external data source.
+     * Retrieves car data from an external data source and publishes
+     * it to the cloud pub/sub system.
+     *
+     * @return A Mono emitting the summary of the run once every fetched
+     * record has either been published or given up on.
+     */
+    Mono<IngestionSummary> fetchAndSendData();
+
+    /**
+     * Retrieves car data from an external data source and publishes
+     * it to the cloud pub/sub system, reporting the progress of the
+     * run as it goes.
+     *
+     * @param progress The counters updated while the run progresses.
+     * @return A Mono emitting the summary of the run once every fetched
+     * record has either been published or given up on.
      */
-    void fetchAndSendData();
+    Mono<IngestionSummary> fetchAndSendData(IngestionProgress progress);
 
 /**
      * Retrieves a Flux of cars with the specified brand in a reactive manner.
@@ -31,6 +55,40 @@ public interface ReactiveDataService {
      */
     Flux<Car> getCarsByBrand(String brand);
 
+    /**
+     * Retrieves the cars with the specified brand, holding only the
+     * selected fields.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param fields The fields to return, the others are left null.
+     * @return A Flux of Car representing cars with the
+     * specified brand.
+     */
+    Flux<Car> getCarsByBrand(String brand, Set<CarField> fields);
+
+    /**
+     * Retrieves the cars of several brands in one stream, each car
+     * carrying its brand. Brands without cars are skipped.
+     *
+     * @param brands The brands, at most {@code cars.batch.max-brands}.
+     * @return A Flux of the cars of the brands, failing if no or too
+     * many brands are given.
+     */
+    Flux<Car> getCarsByBrands(List<String> brands);
+
+    /**
+     * Retrieves one page of the cars with the specified brand.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param limit The maximum number of cars of the page.
+     * @param cursor The cursor returned with the previous page, null
+     *               for the first page.
+     * @param fields The fields to return, the others are left null.
+     * @return A Mono of the page and the cursor of the next one.
+     */
+    Mono<CarPage> getCarsByBrand(String brand, int limit, String cursor,
+                                 Set<CarField> fields);
+
     /**
      * Retrieves a Flux of distinct car brands in a reactive manner.
      * The Flux represents a stream of data that can be subscribed to
@@ -40,13 +98,48 @@ public interface ReactiveDataService {
      */
     Flux<CarBrand> getAllBrands();
 
+    /**
+     * Computes the aggregate statistics of the cars of a brand.
+     *
+     * @param brand The brand.
+     * @return A Mono of the statistics.
+     */
+    Mono<BrandStats> getBrandStats(String brand);
+
+    /**
+     * Computes the aggregate statistics of the cars of every brand.
+     *
+     * @return A Flux of the statistics of every brand.
+     */
+    Flux<BrandStats> getAllBrandStats();
+
+    /**
+     * Recomputes the materialized brand index from the stored cars.
+     *
+     * @return A Mono emitting the number of brands in the index.
+     */
+    Mono<Long> rebuildBrandIndex();
+
     /**
      * Retrieves a Flux of distinct car brands in a reactive manner.
      * The Flux represents a stream of data that can be subscribed to
      * for continuous updates.
      *
-     * @return A Flux of CarBrand representing distinct car brands.
+     * @param lastEventId The id of the last event the client got, null
+     *                    for a new client.
+     * @return A Flux of numbered events, each holding a brand, and of
+     * heartbeat comments.
+     */
+    Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSse(
+            String lastEventId);
+
+    /**
+     * Streams the changes of the cars of a brand made from the time of
+     * the subscription on, at the pace of the subscriber demand.
+     *
+     * @param brand The brand.
+     * @return An endless Flux of changes.
      */
-    Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSse();
+    Flux<CarChange> getCarChanges(String brand);
 }
 
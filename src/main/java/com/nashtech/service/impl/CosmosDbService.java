@@ -1,30 +1,67 @@
 package com.nashtech.service.impl;
 
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.spring.data.cosmos.exception.CosmosAccessException;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nashtech.entity.AzureBrandEntity;
 import com.nashtech.exception.DataNotFoundException;
+import com.nashtech.exception.InvalidRequestException;
+import com.nashtech.feed.CosmosBrandFeed;
+import com.nashtech.feed.CosmosCarChangeFeed;
+import com.nashtech.index.BrandIds;
+import com.nashtech.model.BrandCount;
+import com.nashtech.model.BrandStats;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarChange;
+import com.nashtech.model.CarField;
+import com.nashtech.model.CarPage;
+import com.nashtech.model.NumericStats;
+import com.nashtech.repository.CosmosBrandRepository;
 import com.nashtech.repository.CosmosDbRepository;
+import com.nashtech.repository.CosmosQueryExecutor;
 import com.nashtech.service.CloudDataService;
+import com.nashtech.util.MicroBatcher;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @Profile("cosmos")
 public class CosmosDbService implements CloudDataService {
+
+    /**
+     * The SELECT list of the aggregates of the brand statistics.
+     */
+    private static final String STATS_SELECT = "COUNT(1) AS count,"
+            + " MIN(c.price) AS minPrice, MAX(c.price) AS maxPrice,"
+            + " AVG(c.price) AS avgPrice, MIN(c.mileage) AS minMileage,"
+            + " MAX(c.mileage) AS maxMileage, AVG(c.mileage) AS avgMileage";
+
     /**
      * The reactive repository for {@link Car} entities
      * in Cosmos DB.
@@ -33,56 +70,139 @@ public class CosmosDbService implements CloudDataService {
     @Autowired
     private CosmosDbRepository cosmosDbRepository;
 
+    /**
+     * The repository of the materialized brand index.
+     */
+    @Autowired
+    private CosmosBrandRepository cosmosBrandRepository;
+
+    /**
+     * The feed of the brands seen by the change feed of the cars.
+     */
+    @Autowired
+    private CosmosBrandFeed cosmosBrandFeed;
+
+    /**
+     * Reads the changes of the cars of a brand from the change feed.
+     */
+    @Autowired
+    private CosmosCarChangeFeed cosmosCarChangeFeed;
+
+    /**
+     * Runs the named queries of the cars, recording their metrics.
+     */
+    @Autowired
+    private CosmosQueryExecutor cosmosQueryExecutor;
+
+    /**
+     * The container of the cars.
+     */
+    @Value("${cosmosdb.container-name:az-car-collection-v2}")
+    private String carContainerName;
+
     /**
      * The KafkaTemplate for sending vehicle data to Kafka topics.
      */
     @Autowired
     private  KafkaTemplate<String, Car> kafkaTemplate;
 
+    /**
+     * Groups published records into adaptive micro-batches.
+     */
+    @Autowired
+    private MicroBatcher microBatcher;
+
     /**
      * Event hub topic name.
      */
     @Value("${eventhub.name}")
     private String eventHubName;
 
+    /**
+     * The maximum number of records of a batch awaiting their
+     * acknowledgement at the same time.
+     */
+    @Value("${kafka.max-in-flight:256}")
+    private int maxInFlight;
 
     /**
      * Sends the given {@link Car} object to the Kafka topic
-     * The method constructs a Kafka message
-     * from the provided {@link Car} payload
-     * and sends it using the configured {@link KafkaTemplate}.
+     * The method constructs a Kafka record keyed by the brand of the
+     * provided {@link Car} payload, so every car of a brand lands in
+     * the same partition and keeps its order, and sends it using the
+     * configured {@link KafkaTemplate}.
      *
      * @param reactiveDataCar The {@link Car} object to be sent to Kafka.
-     * @throws KafkaException
-     * If an error occurs while sending the message to Kafka.
+     * @return A Mono completing once the broker has acknowledged the
+     * record, or failing with a {@link KafkaException} if it has not.
      */
     @Override
     public Mono<Void> pushData(final Car reactiveDataCar)  {
-        try {
-            Message<Car> message = MessageBuilder
-                    .withPayload(reactiveDataCar)
-                    .setHeader(KafkaHeaders.TOPIC, eventHubName)
-                    .build();
-            kafkaTemplate.send(message);
-        } catch (KafkaException kafkaException) {
-            throw kafkaException;
-        }
-        return Mono.empty();
+        return send(reactiveDataCar).then();
     }
+
+    /**
+     * Sends the given cars to the Kafka topic in micro-batches.
+     * The records of a window are handed to the producer together, so
+     * they travel in the same producer batch, and the window completes
+     * once the broker has acknowledged all of them. The byte bound of
+     * a window is enforced by the producer's {@code batch.size}.
+     *
+     * @param cars The cars to be sent to Kafka.
+     * @return A Mono emitting the number of acknowledged records.
+     */
+    @Override
+    public Mono<Long> pushBatch(final Flux<Car> cars) {
+        return microBatcher.publish(cars, this::sendWindow);
+    }
+
+    /**
+     * Sends the records of one window, with at most
+     * {@code kafka.max-in-flight} of them awaiting acknowledgement.
+     *
+     * @param window The cars of the window.
+     * @return A Mono completing once every record is acknowledged.
+     */
+    private Mono<Void> sendWindow(final List<Car> window) {
+        return Flux.fromIterable(window)
+                .flatMap(this::send, maxInFlight)
+                .then();
+    }
+
+    /**
+     * Sends a single car keyed by its brand.
+     *
+     * @param car The car to send.
+     * @return A Mono emitting the send result once the broker has
+     * acknowledged the record.
+     */
+    private Mono<SendResult<String, Car>> send(final Car car) {
+        return Mono.fromFuture(() -> kafkaTemplate.send(
+                new ProducerRecord<>(eventHubName, car.getBrand(), car)));
+    }
+
     /**
      * Retrieves a Flux of cars with specified brand in reactive manner.
      * The Flux represents a stream of data that can be subscribed to for
      * continuous updates.
+     * As the brand is the partition key, the query is routed to the
+     * single partition of the brand.
      *
      * @param brand The brand of cars to filter by.
      * @return A Flux of Car representing cars with the
      * specified brand.
      */
     public Flux<Car> getCarsByBrand(final String brand) {
-        Flux<Car> allCarsOfBrand = cosmosDbRepository.getAllCarsByBrand(brand);
+        Flux<Car> allCarsOfBrand = cosmosQueryExecutor.query("carsByBrand",
+                carContainerName, new SqlQuerySpec(
+                        "SELECT * FROM c WHERE c.brand = @brand",
+                        new SqlParameter("@brand", brand)),
+                brandPartition(brand), Car.class);
         return allCarsOfBrand
                 .doOnComplete(() -> log.info("Received Data Successfully"))
                 .switchIfEmpty(Flux.error(new DataNotFoundException()))
+                .onErrorMap(CosmosException.class, error ->
+                        new CosmosAccessException(error.getMessage(), error))
                 .onErrorResume(CosmosAccessException.class, error -> {
                     log.error("Error while retrieving data: {}",
                             error.getMessage());
@@ -94,18 +214,258 @@ public class CosmosDbService implements CloudDataService {
 
     }
 
+    /**
+     * Retrieves the cars of several brands with one IN query on the
+     * partition key. The query is routed to the partitions of the
+     * brands only, and a single brand is read from its partition.
+     *
+     * @param brands The brands.
+     * @return A Flux of the cars of the brands.
+     */
+    @Override
+    public Flux<Car> getCarsByBrands(final List<String> brands) {
+        return queryCarsByBrands(brands)
+                .onErrorMap(CosmosException.class, error -> {
+                    log.error("Error while retrieving data: {}",
+                            error.getMessage());
+                    return new CosmosAccessException(
+                            "Failed to retrieve data", error);
+                });
+    }
+
+    /**
+     * Runs the query of the cars of several brands.
+     *
+     * @param brands The brands.
+     * @return A Flux of the cars of the brands.
+     */
+    private Flux<Car> queryCarsByBrands(final List<String> brands) {
+        if (brands.size() == 1) {
+            return cosmosQueryExecutor.query("carsByBrand",
+                    carContainerName, new SqlQuerySpec(
+                            "SELECT * FROM c WHERE c.brand = @brand",
+                            new SqlParameter("@brand", brands.get(0))),
+                    brandPartition(brands.get(0)), Car.class);
+        }
+        List<SqlParameter> parameters = new ArrayList<>(brands.size());
+        for (int i = 0; i < brands.size(); i++) {
+            parameters.add(new SqlParameter("@brand" + i, brands.get(i)));
+        }
+        String inList = parameters.stream()
+                .map(SqlParameter::getName)
+                .collect(Collectors.joining(", "));
+        return cosmosQueryExecutor.query("carsByBrands", carContainerName,
+                new SqlQuerySpec("SELECT * FROM c WHERE c.brand IN ("
+                        + inList + ")", parameters),
+                new CosmosQueryRequestOptions(), Car.class);
+    }
+
+    /**
+     * Retrieves the cars of a brand with a projected query, so Cosmos DB
+     * only reads and returns the selected fields.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param fields The fields to read, the others are left null.
+     * @return A Flux of Car representing cars with the
+     * specified brand.
+     */
+    @Override
+    public Flux<Car> getCarsByBrand(final String brand,
+                                    final Set<CarField> fields) {
+        SqlQuerySpec query = new SqlQuerySpec("SELECT "
+                + selectList(fields) + " FROM c WHERE c.brand = @brand",
+                new SqlParameter("@brand", brand));
+        return cosmosQueryExecutor.query("carsByBrandProjected",
+                        carContainerName, query, brandPartition(brand),
+                        Car.class)
+                .switchIfEmpty(Flux.error(new DataNotFoundException()));
+    }
+
+    /**
+     * Retrieves one page of the cars of a brand. The page is resumed
+     * from the continuation token of the previous page, so Cosmos DB
+     * only charges for the cars of the page, and only the selected
+     * fields are read.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param limit The maximum number of cars of the page.
+     * @param position The continuation token of the previous page,
+     *                 null for the first page.
+     * @param fields The fields to read, the others are left null.
+     * @return A Mono of the page.
+     */
+    @Override
+    public Mono<CarPage> getCarsByBrand(final String brand, final int limit,
+                                        final String position,
+                                        final Set<CarField> fields) {
+        SqlQuerySpec query = new SqlQuerySpec("SELECT "
+                + selectList(fields)
+                + " FROM c WHERE c.brand = @brand ORDER BY c.id",
+                new SqlParameter("@brand", brand));
+        return cosmosQueryExecutor.queryPages("carsByBrandPage",
+                        carContainerName, query, brandPartition(brand),
+                        Car.class, position, limit)
+                // cross-partition queries may yield empty interim pages
+                .filter(page -> !page.getResults().isEmpty()
+                        || page.getContinuationToken() == null)
+                .next()
+                .map(page -> new CarPage(page.getResults(),
+                        page.getContinuationToken()))
+                .defaultIfEmpty(new CarPage(List.of(), null))
+                .onErrorMap(error -> position != null
+                                && hasStatus(error, HttpStatus.BAD_REQUEST),
+                        error -> new InvalidRequestException(
+                                "Malformed cursor"));
+    }
+
+    /**
+     * Computes the statistics of a brand with two aggregate queries
+     * in the partition of the brand, one for the totals and one for
+     * the year histogram. Cosmos DB has no percentile aggregate, so
+     * the percentiles are left out.
+     *
+     * @param brand The brand.
+     * @return A Mono of the statistics.
+     */
+    @Override
+    public Mono<BrandStats> getBrandStats(final String brand) {
+        SqlParameter brandParameter = new SqlParameter("@brand", brand);
+        Mono<ObjectNode> totals = cosmosQueryExecutor.query("brandStats",
+                        carContainerName, new SqlQuerySpec("SELECT "
+                                + STATS_SELECT + " FROM c"
+                                + " WHERE c.brand = @brand GROUP BY c.brand",
+                                brandParameter),
+                        brandPartition(brand), ObjectNode.class)
+                .next();
+        Mono<Map<Long, Long>> years = cosmosQueryExecutor.query(
+                        "brandYears", carContainerName, new SqlQuerySpec(
+                                "SELECT c.year, COUNT(1) AS count FROM c"
+                                + " WHERE c.brand = @brand"
+                                + " GROUP BY c.year", brandParameter),
+                        brandPartition(brand), ObjectNode.class)
+                .filter(row -> row.hasNonNull("year"))
+                .collectMap(row -> row.get("year").asLong(),
+                        row -> row.get("count").asLong(), TreeMap::new);
+        return Mono.zip(totals.defaultIfEmpty(
+                                JsonNodeFactory.instance.objectNode()),
+                        years)
+                .map(result -> toBrandStats(brand, result.getT1(),
+                        result.getT2()));
+    }
+
+    /**
+     * Computes the statistics of every brand with two cross-partition
+     * aggregate queries grouped by brand.
+     *
+     * @return A Flux of the statistics of every brand.
+     */
+    @Override
+    public Flux<BrandStats> getAllBrandStats() {
+        CosmosQueryRequestOptions options = new CosmosQueryRequestOptions();
+        Mono<Map<String, Map<Long, Long>>> years = cosmosQueryExecutor
+                .query("allBrandYears", carContainerName, new SqlQuerySpec(
+                                "SELECT c.brand, c.year, COUNT(1) AS count"
+                                + " FROM c GROUP BY c.brand, c.year"),
+                        options, ObjectNode.class)
+                .filter(row -> row.hasNonNull("brand")
+                        && row.hasNonNull("year"))
+                .collect(HashMap::new, (byBrand, row) -> byBrand
+                        .computeIfAbsent(row.get("brand").asText(),
+                                brand -> new TreeMap<>())
+                        .put(row.get("year").asLong(),
+                                row.get("count").asLong()));
+        return years.flatMapMany(byBrand -> cosmosQueryExecutor
+                .query("allBrandStats", carContainerName, new SqlQuerySpec(
+                                "SELECT c.brand, " + STATS_SELECT
+                                + " FROM c GROUP BY c.brand"),
+                        options, ObjectNode.class)
+                .filter(row -> row.hasNonNull("brand"))
+                .map(row -> {
+                    String brand = row.get("brand").asText();
+                    return toBrandStats(brand, row,
+                            byBrand.getOrDefault(brand, Map.of()));
+                }));
+    }
+
+    /**
+     * Maps the rows of the aggregate queries to the statistics of a
+     * brand.
+     *
+     * @param brand The brand.
+     * @param totals The row of {@link #STATS_SELECT}.
+     * @param years The number of cars per year.
+     * @return The statistics.
+     */
+    private static BrandStats toBrandStats(final String brand,
+                                           final ObjectNode totals,
+                                           final Map<Long, Long> years) {
+        return new BrandStats(brand, totals.path("count").asLong(),
+                toNumericStats(totals, "Price"),
+                toNumericStats(totals, "Mileage"), years);
+    }
+
+    /**
+     * Maps the aggregates of a field to its statistics.
+     *
+     * @param totals The row of {@link #STATS_SELECT}.
+     * @param field The capitalized name of the field.
+     * @return The statistics, null if no car has the field.
+     */
+    private static NumericStats toNumericStats(final ObjectNode totals,
+                                               final String field) {
+        if (!totals.hasNonNull("min" + field)) {
+            return null;
+        }
+        return NumericStats.builder()
+                .min(totals.get("min" + field).asDouble())
+                .max(totals.get("max" + field).asDouble())
+                .avg(totals.get("avg" + field).asDouble())
+                .build();
+    }
+
+    /**
+     * Returns the options scoping a query to the partition of a brand,
+     * so it is neither planned nor fanned out across partitions.
+     *
+     * @param brand The brand.
+     * @return The query options.
+     */
+    private static CosmosQueryRequestOptions brandPartition(
+            final String brand) {
+        return new CosmosQueryRequestOptions()
+                .setPartitionKey(new PartitionKey(brand));
+    }
+
+    /**
+     * Builds the SELECT list of a projected query. The field names come
+     * from {@link CarField}, never from the request.
+     *
+     * @param fields The selected fields.
+     * @return The SELECT list.
+     */
+    private static String selectList(final Set<CarField> fields) {
+        return fields.stream()
+                .map(field -> "c." + field.getName())
+                .collect(Collectors.joining(", "));
+    }
+
     /**
      * Retrieves a Flux of distinct car brands in a reactive manner.
      * The Flux represents a stream of data that can be subscribed to for
      * continuous updates.
-     * This method also prints the distinct brands to the console for
-     * demonstration purposes.
+     * The brands are read from the materialized brand index, a single
+     * partition read per brand, and only fall back to a cross-partition
+     * DISTINCT query while the index has not been built.
      *
      * @return A Flux of CarBrand representing distinct car brands.
      */
     public Flux<CarBrand> getAllBrands() {
-        Flux<CarBrand> brandFlux =
-                cosmosDbRepository.findDistinctBrands();
+        Flux<CarBrand> brandFlux = cosmosBrandRepository.findAll()
+                .filter(brand -> brand.getCount() != null
+                        && brand.getCount() > 0)
+                .map(brand -> new CarBrand(brand.getBrand()))
+                .switchIfEmpty(Flux.defer(() ->
+                        cosmosDbRepository.findDistinctBrands()));
         return brandFlux
                 .doOnComplete(() -> log.info("Received Brands Successfully"))
                 .switchIfEmpty(Flux.error(new DataNotFoundException()))
@@ -119,18 +479,129 @@ public class CosmosDbService implements CloudDataService {
                 });
     }
 
+    /**
+     * Recounts the cars of the given brands and overwrites their
+     * entries of the brand index with the counts. Each count is a
+     * single partition query and each previous count a point read.
+     * As the counts are absolute, a change applied twice, or by every
+     * instance, leaves the same index.
+     *
+     * @param brands The brands whose cars changed.
+     * @return A Mono emitting the brands which gained their first car
+     * or lost their last one.
+     */
+    @Override
+    public Mono<Set<String>> refreshBrandCounts(final Set<String> brands) {
+        return Flux.fromIterable(brands)
+                .flatMap(brand -> Mono.zip(countCars(brand),
+                                indexedCount(brand))
+                        .flatMap(counts -> cosmosBrandRepository.save(
+                                        new AzureBrandEntity(
+                                                BrandIds.of(brand), brand,
+                                                counts.getT1()))
+                                .filter(saved -> (counts.getT1() > 0)
+                                        != (counts.getT2() > 0))
+                                .map(saved -> brand)))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Counts the stored cars of a brand with a single partition query.
+     *
+     * @param brand The brand.
+     * @return A Mono emitting the number of cars.
+     */
+    private Mono<Long> countCars(final String brand) {
+        return cosmosQueryExecutor.query("brandCount", carContainerName,
+                        new SqlQuerySpec("SELECT VALUE COUNT(1) FROM c"
+                                + " WHERE c.brand = @brand",
+                                new SqlParameter("@brand", brand)),
+                        brandPartition(brand), Long.class)
+                .next()
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Reads the count of a brand from the brand index.
+     *
+     * @param brand The brand.
+     * @return A Mono emitting the indexed count, 0 for a brand
+     * without an entry.
+     */
+    private Mono<Long> indexedCount(final String brand) {
+        String id = BrandIds.of(brand);
+        return cosmosBrandRepository.findById(id, new PartitionKey(id))
+                .map(entry -> entry.getCount() == null
+                        ? 0L : entry.getCount())
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Tells whether an error is a Cosmos error with the given status.
+     *
+     * @param error The error.
+     * @param status The status.
+     * @return true if the error carries the status.
+     */
+    private static boolean hasStatus(final Throwable error,
+                                     final HttpStatus status) {
+        return error instanceof CosmosException cosmosException
+                && cosmosException.getStatusCode() == status.value();
+    }
+
+    /**
+     * Recomputes the brand index with a GROUP BY query over the cars
+     * and removes the entries of brands without cars.
+     *
+     * @return A Mono emitting the number of brands in the index.
+     */
+    @Override
+    public Mono<Long> rebuildBrandIndex() {
+        return cosmosDbRepository.countCarsByBrand()
+                .filter(count -> count.getBrand() != null)
+                .collectMap(BrandCount::getBrand, BrandCount::getCount)
+                .flatMap(counts -> cosmosBrandRepository
+                        .saveAll(Flux.fromIterable(counts.entrySet())
+                                .map(count -> new AzureBrandEntity(
+                                        BrandIds.of(count.getKey()),
+                                        count.getKey(), count.getValue())))
+                        .thenMany(cosmosBrandRepository.findAll()
+                                .filter(brand -> !counts.containsKey(
+                                        brand.getBrand())))
+                        .flatMap(cosmosBrandRepository::delete)
+                        .then(Mono.fromSupplier(() ->
+                                (long) counts.size())))
+                .doOnNext(brands -> log.info(
+                        "Rebuilt the brand index with {} brands", brands));
+    }
+
     /**
      * Retrieves a Flux of car brands in a reactive manner.
      * The Flux represents a stream of data that can be subscribed to for
      * continuous updates.
-     * This method also prints the distinct brands to the console for
-     * demonstration purposes.
+     * The known brands are sent first, then every new brand seen by the
+     * change feed of the cars.
      *
-     * @return null.
+     * @return An endless Flux of brand events.
      */
     @Override
     public Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSse() {
-        return null;
+        return cosmosBrandFeed.brands()
+                .map(brand -> ServerSentEvent.<Map<String, String>>builder()
+                        .data(Map.of("brand", brand))
+                        .build());
+    }
+
+    /**
+     * Streams the upserts of the cars of a brand read from the change
+     * feed, one page at a time as the subscriber requests them.
+     *
+     * @param brand The brand.
+     * @return An endless Flux of changes.
+     */
+    @Override
+    public Flux<CarChange> getCarChanges(final String brand) {
+        return cosmosCarChangeFeed.changes(brand);
     }
 
 }
@@ -1,21 +1,39 @@
 package com.nashtech.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.cloud.firestore.FieldPath;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.cloud.pubsub.v1.Publisher;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteBatch;
 import com.google.cloud.spring.data.firestore.FirestoreDataException;
-import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.google.pubsub.v1.PubsubMessage;
-import com.google.pubsub.v1.TopicName;
+import com.nashtech.codec.CarWireFormat;
+import com.nashtech.entity.GCPBrandEntity;
+import com.nashtech.entity.GCPCarEntity;
 import com.nashtech.exception.DataNotFoundException;
+import com.nashtech.exception.InvalidRequestException;
+import com.nashtech.feed.FirestoreBrandFeed;
+import com.nashtech.feed.FirestoreCarChangeFeed;
+import com.nashtech.index.BrandIds;
+import com.nashtech.messaging.ReactivePubSubPublisher;
+import com.nashtech.model.BrandStats;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarChange;
+import com.nashtech.model.CarField;
+import com.nashtech.model.CarPage;
+import com.nashtech.repository.FirestoreBrandRepository;
 import com.nashtech.repository.FirestoreDbRepository;
 import com.nashtech.service.CloudDataService;
+import com.nashtech.stats.BrandStatsAccumulator;
+import com.nashtech.util.ApiFutureUtil;
+import com.nashtech.util.CarIdDeduplicator;
+import com.nashtech.util.MicroBatcher;
 import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,17 +41,15 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
-import java.io.IOException;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Service implementation class for
@@ -44,6 +60,38 @@ import java.util.concurrent.TimeUnit;
 @Profile("firestore")
 public class FirestoreDbService implements CloudDataService {
 
+    /**
+     * The collection of the cars.
+     */
+    private static final String CAR_COLLECTION = "Car";
+
+    /**
+     * The fields read to compute the brand statistics.
+     */
+    private static final Set<CarField> STATS_FIELDS = EnumSet.of(
+            CarField.BRAND, CarField.YEAR, CarField.MILEAGE, CarField.PRICE);
+
+    /**
+     * The collection of the materialized brand index.
+     */
+    private static final String BRAND_COLLECTION = "Brand";
+
+    /**
+     * The largest number of writes Firestore accepts in one batch.
+     */
+    private static final int MAX_BATCH_WRITES = 500;
+
+    /**
+     * The largest size of a Firestore document ID, in UTF-8 bytes.
+     */
+    private static final int MAX_DOCUMENT_ID_BYTES = 1500;
+
+    /**
+     * The number of documents read per page by the streamed queries,
+     * which bounds the documents held in memory.
+     */
+    private static final int STREAM_PAGE_SIZE = 500;
+
     /**
      * The VehicleRepository instance used to retrieve car information.
      */
@@ -51,11 +99,41 @@ public class FirestoreDbService implements CloudDataService {
     private FirestoreDbRepository firestoreDbRepository;
 
     /**
-     * The Google Cloud Platform project ID
-     * used for publishing vehicle data to Pub/Sub.
+     * The repository of the materialized brand index.
+     */
+    @Autowired
+    private FirestoreBrandRepository firestoreBrandRepository;
+
+    /**
+     * Groups published records into adaptive micro-batches.
      */
-    @Value("${spring.cloud.gcp.project-id}")
-    private String projectId;
+    @Autowired
+    private MicroBatcher microBatcher;
+
+    /**
+     * Removes the cars returned twice by the brand query.
+     */
+    @Autowired
+    private CarIdDeduplicator carIdDeduplicator;
+
+    /**
+     * The reactive publisher for the Google Cloud Pub/Sub topic
+     * to which the vehicle data will be published.
+     */
+    @Autowired
+    private ReactivePubSubPublisher pubSubPublisher;
+
+    /**
+     * The feed of the brands seen by the shared snapshot listener.
+     */
+    @Autowired
+    private FirestoreBrandFeed firestoreBrandFeed;
+
+    /**
+     * Listens to the changes of the cars of a brand.
+     */
+    @Autowired
+    private FirestoreCarChangeFeed firestoreCarChangeFeed;
 
     /**
      * The Firestore instance.
@@ -72,65 +150,30 @@ public class FirestoreDbService implements CloudDataService {
     }
 
     /**
-     * The ID of the Pub/Sub topic to
-     * which the vehicle data will be published.
+     * The Jackson ObjectMapper used
+     * for serialization and deserialization of JSON data.
      */
-    @Value("${google.pubSub.topic}")
-    private String topicId;
+    private ObjectMapper objectMapper;
 
     /**
-     * Static Publisher instance for asynchronous vehicle
-     * data publishing to the Google Cloud Pub/Sub topic.
+     * The format the cars are published in.
      */
-    private static Publisher publisher;
+    @Value("${messaging.wire-format:JSON}")
+    private CarWireFormat wireFormat = CarWireFormat.JSON;
 
     /**
-     * The Jackson ObjectMapper used
-     * for serialization and deserialization of JSON data.
-     */
-    private static ObjectMapper objectMapper;
-
-    /**
-     * Initializes the static Publisher instance for
-     * vehicle data publishing to the Google Cloud Pub/Sub topic.
+     * Initializes the ObjectMapper used to serialize the
+     * vehicle data published to the Google Cloud Pub/Sub topic.
+     * The JSON is written compact, consumers do not read it by eye.
      *
      * This method is annotated with @PostConstruct
-     * and is automatically called after the bean is constructed,
-     * ensuring that the Publisher is ready for use.
-     *
-     * @throws IOException If an error occurs during the
-     * initialization of the Publisher.
+     * and is automatically called after the bean is constructed.
      */
     @PostConstruct
-    public void init() throws IOException {
-        TopicName topicName = TopicName.of(projectId, topicId);
-        publisher = Publisher.newBuilder(topicName).build();
+    public void init() {
         objectMapper = new ObjectMapper();
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
     }
 
-    /**
-     * Cleans up and shuts down the static Publisher instance
-     * used for vehicle data publishing.
-     * This method is annotated with @PreDestroy
-     * and is automatically called before the bean is destroyed,
-     * ensuring that the Publisher is properly shutdown and
-     * resources are released.
-     */
-    @PreDestroy
-    public void cleanup() {
-        try {
-            if (publisher != null) {
-                publisher.shutdown();
-                publisher.awaitTermination(1, TimeUnit.MINUTES);
-            }
-        } catch (InterruptedException interruptedException) {
-            log.error("Error while shutting down Publisher: {}",
-                    interruptedException.getMessage());
-        }
-    }
-
-
     /**
      * Publishes vehicle data to the Google Cloud Pub/Sub topic.
      *
@@ -140,32 +183,79 @@ public class FirestoreDbService implements CloudDataService {
      * publishing process.
      */
     public Mono<Void> pushData(final Car cars) {
-        try {
-            String vehicleJson = objectMapper.writeValueAsString(cars);
-            ByteString data = ByteString.copyFromUtf8(vehicleJson);
-            PubsubMessage pubsubMessage = PubsubMessage.newBuilder().
-                    setData(data).build();
-
-            return Mono.just(publisher.publish(pubsubMessage))
-                    .doOnError(error -> {
-                        throw new RuntimeException(error.getMessage());
-                    }).then();
-        } catch (Exception exception) {
-            return Mono.empty();
+        return Mono.fromCallable(() -> toMessage(cars))
+                .flatMap(pubSubPublisher::publish)
+                .then();
+    }
+
+    /**
+     * Publishes vehicle data to the Google Cloud Pub/Sub topic in
+     * micro-batches. The messages of a window are handed to the
+     * publisher together and flushed as one publish request.
+     *
+     * @param cars The cars to be published.
+     * @return A Mono emitting the number of published records.
+     */
+    @Override
+    public Mono<Long> pushBatch(final Flux<Car> cars) {
+        Flux<PubsubMessage> messages = cars.handle((car, sink) -> {
+            try {
+                sink.next(toMessage(car));
+            } catch (JsonProcessingException exception) {
+                log.error("Skipping car {} which cannot be serialized: {}",
+                        car.getCarId(), exception.getMessage());
+            }
+        });
+        return microBatcher.publish(messages,
+                PubsubMessage::getSerializedSize,
+                pubSubPublisher::publishAll);
+    }
+
+    /**
+     * Serializes a car into a Pub/Sub message in the configured wire
+     * format, tagged with its content type. The encoded bytes are
+     * wrapped rather than copied, as nothing else holds on to them.
+     *
+     * @param car The car to serialize.
+     * @return The message carrying the car.
+     * @throws JsonProcessingException If the car cannot be serialized.
+     */
+    private PubsubMessage toMessage(final Car car)
+            throws JsonProcessingException {
+        PubsubMessage.Builder message = PubsubMessage.newBuilder()
+                .setData(UnsafeByteOperations.unsafeWrap(
+                        wireFormat.encode(car, objectMapper)))
+                .putAttributes(CarWireFormat.CONTENT_TYPE_HEADER,
+                        wireFormat.getContentType());
+        if (pubSubPublisher.isOrderingEnabled() && car.getBrand() != null) {
+            message.setOrderingKey(car.getBrand());
         }
+        return message.build();
     }
+
     /**
      * Retrieves all CarBrands from Firestore database.
+     * The brands are read from the materialized brand index, which
+     * costs one read per brand. As long as the index has not been
+     * built, the brands are collected from all cars instead.
      * @return A Flux of CarBrand objects.
      *
      */
     @Override
     public Flux<CarBrand> getAllBrands() {
         log.info("Hitting DB");
-        Flux<CarBrand> distinctBrands = firestoreDbRepository.findAll()
-                .filter(gcpCarEntity -> gcpCarEntity.getBrand() != null)
-                .map(gcpCarEntity -> new CarBrand(gcpCarEntity.getBrand()))
-                .distinct();
+        Flux<CarBrand> indexedBrands = firestoreBrandRepository.findAll()
+                .filter(brand -> brand.getCount() != null
+                        && brand.getCount() > 0)
+                .map(brand -> new CarBrand(brand.getBrand()));
+        Flux<CarBrand> distinctBrands = indexedBrands
+                .switchIfEmpty(Flux.defer(() -> firestoreDbRepository
+                        .findAll()
+                        .filter(gcpCarEntity -> gcpCarEntity.getBrand()
+                                != null)
+                        .map(gcpCarEntity -> new CarBrand(
+                                gcpCarEntity.getBrand()))
+                        .distinct()));
         return distinctBrands
                 .onErrorResume(FirestoreDataException.class, error -> {
                     log.error(
@@ -179,8 +269,135 @@ public class FirestoreDbService implements CloudDataService {
                 .switchIfEmpty(Flux.error(new DataNotFoundException()));
     }
 
+    /**
+     * Recounts the cars of the given brands with count aggregations and
+     * overwrites their entries of the brand index with the counts, in
+     * batched writes. As the counts are absolute, a change applied
+     * twice, or by every instance, leaves the same index.
+     *
+     * @param brands The brands whose cars changed.
+     * @return A Mono emitting the brands which gained their first car
+     * or lost their last one.
+     */
+    @Override
+    public Mono<Set<String>> refreshBrandCounts(final Set<String> brands) {
+        return Flux.fromIterable(brands)
+                .flatMap(brand -> Mono.zip(countCars(brand),
+                                indexedCount(brand))
+                        .map(counts -> new BrandRecount(brand,
+                                counts.getT1(), counts.getT2())))
+                .buffer(MAX_BATCH_WRITES)
+                .concatMap(recounts -> commitCounts(recounts)
+                        .thenMany(Flux.fromIterable(recounts)))
+                .filter(BrandRecount::presenceChanged)
+                .map(BrandRecount::brand)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Counts the stored cars of a brand with a count aggregation.
+     *
+     * @param brand The brand.
+     * @return A Mono emitting the number of cars.
+     */
+    private Mono<Long> countCars(final String brand) {
+        return Mono.defer(() -> ApiFutureUtil.toMono(
+                        firestore.collection(CAR_COLLECTION)
+                                .whereEqualTo("brand", brand)
+                                .count()
+                                .get()))
+                .map(count -> count.getCount());
+    }
+
+    /**
+     * Reads the count of a brand from the brand index.
+     *
+     * @param brand The brand.
+     * @return A Mono emitting the indexed count, 0 for a brand
+     * without an entry.
+     */
+    private Mono<Long> indexedCount(final String brand) {
+        return Mono.defer(() -> ApiFutureUtil.toMono(
+                        firestore.collection(BRAND_COLLECTION)
+                                .document(BrandIds.of(brand))
+                                .get()))
+                .map(entry -> {
+                    Long count = entry.getLong("count");
+                    return count == null ? 0L : count;
+                });
+    }
+
+    /**
+     * Writes the counts of some brand index entries in one batch.
+     *
+     * @param recounts The counts, at most {@value #MAX_BATCH_WRITES}.
+     * @return A Mono completing once the batch is committed.
+     */
+    private Mono<Void> commitCounts(final List<BrandRecount> recounts) {
+        return Mono.defer(() -> {
+            WriteBatch batch = firestore.batch();
+            for (BrandRecount recount : recounts) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("brand", recount.brand());
+                entry.put("count", recount.count());
+                batch.set(firestore.collection(BRAND_COLLECTION)
+                                .document(BrandIds.of(recount.brand())),
+                        entry);
+            }
+            return ApiFutureUtil.toMono(batch.commit()).then();
+        });
+    }
+
+    /**
+     * The recounted cars of a brand.
+     *
+     * @param brand The brand.
+     * @param count The number of stored cars.
+     * @param previous The count the brand index held before.
+     */
+    private record BrandRecount(String brand, long count, long previous) {
+
+        /**
+         * Tells whether the brand gained its first car or lost its
+         * last one.
+         *
+         * @return true if the brand appeared or disappeared.
+         */
+        boolean presenceChanged() {
+            return (count > 0) != (previous > 0);
+        }
+    }
+
+    /**
+     * Recomputes the brand index from all cars and removes the entries
+     * of brands without cars.
+     *
+     * @return A Mono emitting the number of brands in the index.
+     */
+    @Override
+    public Mono<Long> rebuildBrandIndex() {
+        return firestoreDbRepository.findAll()
+                .filter(car -> car.getBrand() != null)
+                .collect(Collectors.groupingBy(GCPCarEntity::getBrand,
+                        Collectors.counting()))
+                .flatMap(counts -> firestoreBrandRepository
+                        .saveAll(Flux.fromIterable(counts.entrySet())
+                                .map(count -> new GCPBrandEntity(
+                                        BrandIds.of(count.getKey()),
+                                        count.getKey(), count.getValue())))
+                        .thenMany(firestoreBrandRepository.findAll()
+                                .filter(brand -> !counts.containsKey(
+                                        brand.getBrand())))
+                        .flatMap(firestoreBrandRepository::delete)
+                        .then(Mono.fromSupplier(() ->
+                                (long) counts.size())))
+                .doOnNext(brands -> log.info(
+                        "Rebuilt the brand index with {} brands", brands));
+    }
+
     /**
      * Retrieves all Car objects by a given brand from Firestore database.
+     * Cars returned more than once are dropped by their carId.
      *
      * @param brand The brand of the Car to filter by.
      * @return A Flux of Car objects matching the given brand.
@@ -188,18 +405,10 @@ public class FirestoreDbService implements CloudDataService {
      */
     @Override
     public Flux<Car> getCarsByBrand(final String brand) {
-        Flux<Car> carDetails = firestoreDbRepository.findByBrand(brand)
-                .filter(gcpCarEntity -> gcpCarEntity != null)
-                .map(gcpCarEntity -> Car.builder()
-                        .carId(gcpCarEntity.getCarId())
-                        .model(gcpCarEntity.getModel())
-                        .brand(gcpCarEntity.getBrand())
-                        .year(gcpCarEntity.getYear())
-                        .color(gcpCarEntity.getColor())
-                        .mileage(gcpCarEntity.getMileage())
-                        .price(gcpCarEntity.getPrice())
-                        .build())
-                .distinct();
+        Flux<Car> carDetails = carIdDeduplicator.distinct(
+                firestoreDbRepository.findByBrand(brand)
+                        .filter(gcpCarEntity -> gcpCarEntity != null)
+                        .map(GCPCarEntity::toCar));
         return carDetails
                 .onErrorResume(FirestoreDataException.class, error -> {
                     log.error(
@@ -213,54 +422,265 @@ public class FirestoreDbService implements CloudDataService {
 
     }
 
+    /**
+     * Retrieves the cars of several brands with one {@code in} query,
+     * streaming the documents page by page. Cars returned more than
+     * once are dropped by their carId.
+     *
+     * @param brands The brands, at most 30.
+     * @return A Flux of the cars of the brands.
+     */
+    @Override
+    public Flux<Car> getCarsByBrands(final List<String> brands) {
+        return carIdDeduplicator.distinct(Flux.defer(() -> stream(
+                        firestore.collection(CAR_COLLECTION)
+                                .whereIn("brand", List.copyOf(brands))))
+                .map(document -> document.toObject(GCPCarEntity.class)
+                        .toCar()))
+                .onErrorMap(error -> !(error instanceof FirestoreDataException),
+                        error -> {
+                            log.error("Error while retrieving data from DB",
+                                    error);
+                            return new FirestoreDataException(
+                                    "Failed to retrieve car details.", error);
+                        });
+    }
+
+    /**
+     * Retrieves one page of the cars of a brand from Firestore database.
+     * The cars are ordered by document ID and the page starts after the
+     * last document of the previous page, so a page costs as many reads
+     * as it holds cars, however deep it is.
+     *
+     * @param brand The brand of the Car to filter by.
+     * @param limit The maximum number of cars of the page.
+     * @param position The ID of the last document of the previous page,
+     *                 null for the first page.
+     * @param fields The fields to read, the others are left null.
+     * @return A Mono of the page, failing with an
+     * {@link InvalidRequestException} if the position is no document ID.
+     */
+    @Override
+    public Mono<CarPage> getCarsByBrand(final String brand, final int limit,
+                                        final String position,
+                                        final Set<CarField> fields) {
+        if (position != null && !isDocumentId(position)) {
+            return Mono.error(new InvalidRequestException(
+                    "Malformed cursor"));
+        }
+        return Mono.defer(() -> {
+                    Query query = firestore.collection(CAR_COLLECTION)
+                            .whereEqualTo("brand", brand)
+                            .select(fieldNames(fields))
+                            .orderBy(FieldPath.documentId());
+                    if (position != null) {
+                        query = query.startAfter(position);
+                    }
+                    // one more than the page, to tell if a next one exists
+                    return ApiFutureUtil.toMono(query.limit(limit + 1).get());
+                })
+                .map(snapshot -> {
+                    List<QueryDocumentSnapshot> documents =
+                            snapshot.getDocuments();
+                    boolean hasNext = documents.size() > limit;
+                    List<QueryDocumentSnapshot> page = hasNext
+                            ? documents.subList(0, limit) : documents;
+                    List<Car> cars = page.stream()
+                            .map(document -> document.toObject(
+                                    GCPCarEntity.class).toCar())
+                            .toList();
+                    return new CarPage(cars, hasNext
+                            ? page.get(page.size() - 1).getId() : null);
+                })
+                .onErrorMap(error -> !(error instanceof FirestoreDataException),
+                        error -> {
+                            log.error("Error while retrieving data from DB",
+                                    error);
+                            return new FirestoreDataException(
+                                    "Failed to retrieve car details.", error);
+                        });
+    }
+
+    /**
+     * Retrieves the cars of a brand with a field mask, so Firestore only
+     * returns the selected fields of the documents. The documents are
+     * streamed page by page and cars returned more than once are
+     * dropped by their carId, which is therefore always read and only
+     * left null afterwards when it was not selected.
+     *
+     * @param brand The brand of the Car to filter by.
+     * @param fields The fields to read, the others are left null.
+     * @return A Flux of Car objects matching the given brand.
+     */
+    @Override
+    public Flux<Car> getCarsByBrand(final String brand,
+                                    final Set<CarField> fields) {
+        Set<CarField> read = EnumSet.of(CarField.CAR_ID);
+        read.addAll(fields);
+        boolean dropCarId = !fields.contains(CarField.CAR_ID);
+        return carIdDeduplicator.distinct(Flux.defer(() -> stream(
+                        firestore.collection(CAR_COLLECTION)
+                                .whereEqualTo("brand", brand)
+                                .select(fieldNames(read))))
+                .map(document -> document.toObject(GCPCarEntity.class)
+                        .toCar()))
+                .map(car -> dropCarId ? withoutCarId(car) : car)
+                .onErrorMap(error -> !(error instanceof FirestoreDataException),
+                        error -> {
+                            log.error("Error while retrieving data from DB",
+                                    error);
+                            return new FirestoreDataException(
+                                    "Failed to retrieve car details.", error);
+                        })
+                .switchIfEmpty(Flux.error(new DataNotFoundException()));
+    }
+
+    /**
+     * Copies a car without its carId.
+     *
+     * @param car The car.
+     * @return The copy.
+     */
+    private static Car withoutCarId(final Car car) {
+        return new Car(null, car.getBrand(), car.getModel(), car.getYear(),
+                car.getColor(), car.getMileage(), car.getPrice());
+    }
+
+    /**
+     * Computes the statistics of a brand. The aggregation queries of
+     * Firestore cannot compute minimums, maximums or histograms, so
+     * the fields of the statistics are streamed and folded in a
+     * single pass, holding counters and sketches instead of the cars.
+     *
+     * @param brand The brand.
+     * @return A Mono of the statistics.
+     */
+    @Override
+    public Mono<BrandStats> getBrandStats(final String brand) {
+        return stream(firestore.collection(CAR_COLLECTION)
+                        .whereEqualTo("brand", brand)
+                        .select(fieldNames(STATS_FIELDS)))
+                .map(document -> document.toObject(GCPCarEntity.class)
+                        .toCar())
+                .reduceWith(() -> new BrandStatsAccumulator(brand),
+                        BrandStatsAccumulator::add)
+                .map(BrandStatsAccumulator::toStats)
+                .onErrorMap(error -> !(error instanceof FirestoreDataException),
+                        error -> new FirestoreDataException(
+                                "Failed to compute brand statistics.", error));
+    }
+
+    /**
+     * Computes the statistics of every brand, folding the fields of
+     * the statistics of all cars in a single pass.
+     *
+     * @return A Flux of the statistics of every brand.
+     */
+    @Override
+    public Flux<BrandStats> getAllBrandStats() {
+        return stream(firestore.collection(CAR_COLLECTION)
+                        .select(fieldNames(STATS_FIELDS)))
+                .map(document -> document.toObject(GCPCarEntity.class)
+                        .toCar())
+                .filter(car -> car.getBrand() != null)
+                .collect(HashMap<String, BrandStatsAccumulator>::new,
+                        (byBrand, car) -> byBrand.computeIfAbsent(
+                                        car.getBrand(),
+                                        BrandStatsAccumulator::new)
+                                .add(car))
+                .flatMapIterable(Map::values)
+                .map(BrandStatsAccumulator::toStats)
+                .onErrorMap(error -> !(error instanceof FirestoreDataException),
+                        error -> new FirestoreDataException(
+                                "Failed to compute brand statistics.", error));
+    }
+
+    /**
+     * Streams the documents of a query in pages of
+     * {@value #STREAM_PAGE_SIZE} ordered by document ID, each page
+     * starting after the last document of the previous one. The pages
+     * are read as the subscriber asks for documents, so a slow
+     * subscriber holds up the reads instead of letting the documents
+     * pile up in memory, and no page is read once it cancelled.
+     *
+     * @param query The query.
+     * @return A Flux of the documents.
+     */
+    private static Flux<QueryDocumentSnapshot> stream(final Query query) {
+        Query ordered = query.orderBy(FieldPath.documentId())
+                .limit(STREAM_PAGE_SIZE);
+        return page(ordered)
+                .expand(documents -> documents.size() < STREAM_PAGE_SIZE
+                        ? Mono.empty()
+                        : page(ordered.startAfter(
+                                documents.get(documents.size() - 1))))
+                .concatMapIterable(documents -> documents, 1);
+    }
+
+    /**
+     * Reads one page of a query.
+     *
+     * @param query The query, limited to the page.
+     * @return A Mono of the documents of the page.
+     */
+    private static Mono<List<QueryDocumentSnapshot>> page(final Query query) {
+        return Mono.defer(() -> ApiFutureUtil.toMono(query.get()))
+                .map(QuerySnapshot::getDocuments);
+    }
+
+    /**
+     * Returns the names of the selected fields, as a field mask.
+     *
+     * @param fields The selected fields.
+     * @return The names of the fields.
+     */
+    private static String[] fieldNames(final Set<CarField> fields) {
+        return fields.stream()
+                .map(CarField::getName)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Tells if a string is a valid Firestore document ID, which a query
+     * can start after.
+     *
+     * @param id The string.
+     * @return true if it is a valid document ID.
+     */
+    private static boolean isDocumentId(final String id) {
+        return !id.isEmpty()
+                && id.indexOf('/') < 0
+                && !".".equals(id)
+                && !"..".equals(id)
+                && !(id.startsWith("__") && id.endsWith("__"))
+                && id.getBytes(StandardCharsets.UTF_8).length
+                        <= MAX_DOCUMENT_ID_BYTES;
+    }
+
     /**
      * Retrieves all CarBrands from Firestore database.
-     * @return A Flux of CarBrand objects.
+     * Every subscriber shares the brands tracked by the
+     * {@link FirestoreBrandFeed} from the single car listener.
+     *
+     * @return An endless Flux of brand events.
      */
+    @Override
     public Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSse() {
-        Set<String> emittedBrands = Collections
-                .synchronizedSet(new HashSet<>());
-
-        return Flux.<ServerSentEvent<Map<String, String>>>create(emitter -> {
-            firestore.collection("Car")
-                    .addSnapshotListener((snapshots, exception) -> {
-                        if (exception != null) {
-                            log.error("Error in Firestore snapshot listener",
-                                    exception);
-                            emitter.error(exception);
-                            return;
-                        }
-
-                        for (QueryDocumentSnapshot doc : snapshots) {
-                            Map<String, Object> data = doc.getData();
-                            String brand = (String) data.get("brand");
-
-                            synchronized (emittedBrands) {
-                                if (!emittedBrands.contains(brand)) {
-                                    emittedBrands.add(brand);
-
-                                    processAndEmitEvent(emitter, brand)
-                                            .subscribeOn(Schedulers.parallel())
-                                            .subscribe();
-                                }
-                            }
-                        }
-                    });
-        }).concatWith(Flux.never());
+        return firestoreBrandFeed.brands()
+                .map(brand -> ServerSentEvent.<Map<String, String>>builder()
+                        .data(Map.of("brand", brand))
+                        .build());
     }
 
-    private Mono<Void> processAndEmitEvent(
-            final FluxSink<ServerSentEvent<Map<String, String>>> emitter,
-            final String brand) {
-        return Mono.fromRunnable(() -> {
-            Map<String, String> eventData = new HashMap<>();
-            eventData.put("brand", brand);
-
-            ServerSentEvent<Map<String, String>> event = ServerSentEvent
-                    .<Map<String, String>>builder()
-                    .data(eventData)
-                    .build();
-            emitter.next(event);
-        });
+    /**
+     * Streams the changes of the cars of a brand seen by the single
+     * car listener, see {@link FirestoreCarChangeFeed}.
+     *
+     * @param brand The brand.
+     * @return An endless Flux of changes.
+     */
+    @Override
+    public Flux<CarChange> getCarChanges(final String brand) {
+        return firestoreCarChangeFeed.changes(brand);
     }
 }
@@ -0,0 +1,188 @@
+package com.nashtech.service.impl;
+
+import com.nashtech.model.IngestionJobStatus;
+import com.nashtech.model.IngestionProgress;
+import com.nashtech.model.JobStatus;
+import reactor.core.Disposable;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A single ingestion run tracked by the {@link IngestionJobServiceImpl}.
+ */
+class IngestionJob {
+
+    /**
+     * The percentile of the publish latency reported by the job.
+     */
+    private static final double REPORTED_PERCENTILE = 0.99;
+
+    /**
+     * The number of nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI =
+            TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The number of nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND =
+            TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The ID of the job.
+     */
+    private final String id;
+
+    /**
+     * When the job was started.
+     */
+    private final Instant startedAt = Instant.now();
+
+    /**
+     * The {@link System#nanoTime()} the job was started at.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The counters of the run.
+     */
+    private final IngestionProgress progress = new IngestionProgress();
+
+    /**
+     * The state of the job.
+     */
+    private final AtomicReference<JobStatus> status =
+            new AtomicReference<>(JobStatus.RUNNING);
+
+    /**
+     * When the job stopped, null while it is running.
+     */
+    private volatile Instant finishedAt;
+
+    /**
+     * The {@link System#nanoTime()} the job stopped at.
+     */
+    private volatile long finishedNanos;
+
+    /**
+     * The subscription of the run, disposed on cancellation.
+     */
+    private volatile Disposable subscription;
+
+    /**
+     * Creates a running job.
+     *
+     * @param jobId The ID of the job.
+     */
+    IngestionJob(final String jobId) {
+        this.id = jobId;
+    }
+
+    /**
+     * Returns the ID of the job.
+     *
+     * @return The ID.
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the counters of the run.
+     *
+     * @return The progress.
+     */
+    IngestionProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Returns the state of the job.
+     *
+     * @return The state.
+     */
+    JobStatus getStatus() {
+        return status.get();
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} the job stopped at.
+     *
+     * @return The time, zero while the job is running.
+     */
+    long getFinishedNanos() {
+        return finishedNanos;
+    }
+
+    /**
+     * Attaches the subscription of the run. A job cancelled before
+     * the subscription was attached disposes it right away.
+     *
+     * @param runSubscription The subscription of the run.
+     */
+    void attach(final Disposable runSubscription) {
+        this.subscription = runSubscription;
+        if (status.get() == JobStatus.CANCELLED) {
+            runSubscription.dispose();
+        }
+    }
+
+    /**
+     * Moves a running job to a final state. Jobs which have already
+     * stopped keep their state.
+     *
+     * @param finalStatus The final state.
+     * @return true if the job was running.
+     */
+    boolean finish(final JobStatus finalStatus) {
+        if (!status.compareAndSet(JobStatus.RUNNING, finalStatus)) {
+            return false;
+        }
+        finishedNanos = System.nanoTime();
+        finishedAt = Instant.now();
+        return true;
+    }
+
+    /**
+     * Cancels the job if it is running.
+     */
+    void cancel() {
+        Disposable current = subscription;
+        if (finish(JobStatus.CANCELLED) && current != null) {
+            current.dispose();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the job.
+     *
+     * @return The status of the job.
+     */
+    IngestionJobStatus snapshot() {
+        JobStatus current = status.get();
+        long end = finishedNanos;
+        if (!current.isFinished() || end == 0) {
+            end = System.nanoTime();
+        }
+        double elapsedSeconds = Math.max(1, end - startNanos)
+                / NANOS_PER_SECOND;
+        long published = progress.getPublished();
+        return IngestionJobStatus.builder()
+                .id(id)
+                .status(current)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .fetched(progress.getFetched())
+                .published(published)
+                .spooled(progress.getSpooled())
+                .failed(progress.getFailed())
+                .recordsPerSecond(published / elapsedSeconds)
+                .p99LatencyMillis(progress.getPublishLatency(
+                        REPORTED_PERCENTILE) / NANOS_PER_MILLI)
+                .lastError(progress.getLastError())
+                .build();
+    }
+}
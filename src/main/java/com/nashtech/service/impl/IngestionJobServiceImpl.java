@@ -0,0 +1,148 @@
+package com.nashtech.service.impl;
+
+import com.nashtech.exception.DataNotFoundException;
+import com.nashtech.model.IngestionJobStatus;
+import com.nashtech.model.JobStatus;
+import com.nashtech.service.IngestionJobService;
+import com.nashtech.service.ReactiveDataService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs ingestion runs as jobs kept in memory. Finished jobs are kept
+ * for lookup until {@code ingestion.jobs.max-retained} jobs exist,
+ * then the oldest finished ones are evicted.
+ */
+@Slf4j
+@Service
+public class IngestionJobServiceImpl implements IngestionJobService {
+
+    /**
+     * The service performing the ingestion runs.
+     */
+    @Autowired
+    private ReactiveDataService reactiveDataService;
+
+    /**
+     * The time between two progress snapshots of a watched job.
+     */
+    @Value("${ingestion.jobs.progress-interval:1s}")
+    private Duration progressInterval;
+
+    /**
+     * The number of jobs kept before finished ones are evicted.
+     */
+    @Value("${ingestion.jobs.max-retained:100}")
+    private int maxRetained;
+
+    /**
+     * The known jobs by ID.
+     */
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a new ingestion job in the background.
+     *
+     * @return The status of the job right after it was started.
+     */
+    @Override
+    public IngestionJobStatus start() {
+        evictFinishedJobs();
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString());
+        jobs.put(job.getId(), job);
+        job.attach(reactiveDataService.fetchAndSendData(job.getProgress())
+                .subscribe(summary -> job.finish(JobStatus.COMPLETED),
+                        error -> {
+                            log.error("Ingestion job {} failed: {}",
+                                    job.getId(), error.getMessage());
+                            job.finish(JobStatus.FAILED);
+                        }));
+        return job.snapshot();
+    }
+
+    /**
+     * Retrieves the current status of a job.
+     *
+     * @param id The ID of the job.
+     * @return A Mono emitting the status, or a DataNotFoundException
+     * if there is no such job.
+     */
+    @Override
+    public Mono<IngestionJobStatus> getJob(final String id) {
+        return findJob(id).map(IngestionJob::snapshot);
+    }
+
+    /**
+     * Streams the status of a job every
+     * {@code ingestion.jobs.progress-interval} until it has finished.
+     * Snapshots are taken on demand, so a slow subscriber skips
+     * snapshots rather than buffering them.
+     *
+     * @param id The ID of the job.
+     * @return A Flux of status snapshots, ending with the final one.
+     */
+    @Override
+    public Flux<IngestionJobStatus> watch(final String id) {
+        return findJob(id).flatMapMany(job ->
+                Flux.interval(Duration.ZERO, progressInterval)
+                        .onBackpressureDrop()
+                        .map(tick -> job.snapshot())
+                        .takeUntil(status ->
+                                status.getStatus().isFinished()));
+    }
+
+    /**
+     * Cancels a running job.
+     *
+     * @param id The ID of the job.
+     * @return A Mono emitting the status of the job after the
+     * cancellation.
+     */
+    @Override
+    public Mono<IngestionJobStatus> cancel(final String id) {
+        return findJob(id).map(job -> {
+            job.cancel();
+            return job.snapshot();
+        });
+    }
+
+    /**
+     * Looks up a job.
+     *
+     * @param id The ID of the job.
+     * @return A Mono emitting the job, or a DataNotFoundException.
+     */
+    private Mono<IngestionJob> findJob(final String id) {
+        return Mono.justOrEmpty(jobs.get(id))
+                .switchIfEmpty(Mono.error(new DataNotFoundException()));
+    }
+
+    /**
+     * Evicts the oldest finished jobs once the retention limit is
+     * reached. Running jobs are never evicted.
+     */
+    private void evictFinishedJobs() {
+        int excess = jobs.size() - maxRetained + 1;
+        if (excess <= 0) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(job -> job.getStatus().isFinished())
+                .sorted(Comparator.comparingLong(
+                        IngestionJob::getFinishedNanos))
+                .limit(excess)
+                .map(IngestionJob::getId)
+                .toList()
+                .forEach(jobs::remove);
+    }
+}
@@ -1,9 +1,23 @@
 package com.nashtech.service.impl;
 
+import com.nashtech.cache.BrandCache;
+import com.nashtech.cache.DataVersions;
+import com.nashtech.exception.DataNotFoundException;
+import com.nashtech.exception.InvalidRequestException;
+import com.nashtech.feed.BrandEventBroadcaster;
+import com.nashtech.model.BrandStats;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarChange;
+import com.nashtech.model.CarField;
+import com.nashtech.model.CarPage;
+import com.nashtech.model.IngestionProgress;
+import com.nashtech.model.IngestionSummary;
+import com.nashtech.replica.CarReplica;
 import com.nashtech.service.CloudDataService;
 import com.nashtech.service.ReactiveDataService;
+import com.nashtech.spool.PublishSpool;
+import com.nashtech.util.PageCursors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,8 +26,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Service class for handling car-related operations.
@@ -41,14 +61,120 @@ public class ReactiveDataServiceImpl implements
     @Autowired
     private CloudDataService cloudDataService;
 
+    /**
+     * The local spool the cars are written to instead of being
+     * published directly, present when {@code spool.enabled} is set.
+     */
+    @Autowired(required = false)
+    private PublishSpool publishSpool;
+
+    /**
+     * The cache the brand list is served from.
+     */
+    @Autowired
+    private BrandCache brandCache;
+
+    /**
+     * The in-memory replica the cars and brands are read from, present
+     * when {@code replica.enabled} is set.
+     */
+    @Autowired(required = false)
+    private CarReplica carReplica;
+
+    /**
+     * Broadcasts the brand events to the server-sent event clients.
+     */
+    @Autowired
+    private BrandEventBroadcaster brandEventBroadcaster;
+
+    /**
+     * The versions of the data the ETags are made of, present when
+     * {@code etag.enabled} is set.
+     */
+    @Autowired(required = false)
+    private DataVersions dataVersions;
+
+    /**
+     * The maximum number of publishes in flight at any time.
+     */
+    @Value("${ingestion.concurrency:8}")
+    private int concurrency;
+
+    /**
+     * The number of fetched records buffered between the WebClient
+     * source and the publishing sink.
+     */
+    @Value("${ingestion.buffer-size:256}")
+    private int bufferSize;
+
+    /**
+     * The number of times a single record is retried before it is
+     * counted as failed.
+     */
+    @Value("${ingestion.retry.max-retries:3}")
+    private long maxRetries;
+
+    /**
+     * The initial backoff between two publish attempts of a record.
+     */
+    @Value("${ingestion.retry.backoff:200ms}")
+    private Duration retryBackoff;
+
+    /**
+     * The largest page size a client may request.
+     */
+    @Value("${cars.page.max-limit:100}")
+    private int maxPageLimit;
+
+    /**
+     * The largest number of brands of a batch lookup.
+     */
+    @Value("${cars.batch.max-brands:100}")
+    private int maxBatchBrands;
 
     /**
-     * Retrieves car data from an external API.
+     * The number of brands looked up per query, at most 30 as Firestore
+     * does not allow larger {@code in} filters.
+     */
+    @Value("${cars.batch.in-size:30}")
+    private int batchInSize;
+
+    /**
+     * The maximum number of batch lookup queries in flight at once.
+     */
+    @Value("${cars.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    /**
+     * Retrieves car data from an external API and publishes it through
+     * the {@link CloudDataService}.
+     * At most {@code ingestion.concurrency} publishes are in flight and
+     * at most {@code ingestion.buffer-size} fetched records are held
+     * in memory, so the broker acknowledgements govern the fetch rate.
+     *
+     * @return A Mono emitting the published and failed record counts
+     * once the run has finished.
      * @throws WebClientException If an error occurs during
      * data retrieval from the external API.
      */
-    public void fetchAndSendData() {
-        webClient.get()
+    @Override
+    public Mono<IngestionSummary> fetchAndSendData() {
+        return fetchAndSendData(new IngestionProgress());
+    }
+
+    /**
+     * Retrieves car data from an external API and publishes it through
+     * the {@link CloudDataService}, counting every fetched, published
+     * and failed record in the given progress.
+     *
+     * @param progress The counters updated while the run progresses.
+     * @return A Mono emitting the published and failed record counts
+     * once the run has finished.
+     */
+    @Override
+    public Mono<IngestionSummary> fetchAndSendData(
+            final IngestionProgress progress) {
+        return webClient.get()
                 .uri(apiUrl)
                 .retrieve()
                 .bodyToFlux(Car.class)
@@ -59,15 +185,77 @@ public class ReactiveDataServiceImpl implements
                                     "Failed to retrieve car data") {
                     });
                 })
-                .subscribe(
-                        data -> cloudDataService.pushData(data)
-                );
+                .doOnNext(car -> progress.recordFetched())
+                .limitRate(bufferSize)
+                .flatMap(car -> publish(car, progress), concurrency)
+                .doOnError(progress::recordError)
+                .then(Mono.fromSupplier(progress::toSummary))
+                .doOnNext(summary -> log.info(
+                        "Ingestion finished, published: {}, spooled: {},"
+                                + " failed: {}", summary.getPublished(),
+                        summary.getSpooled(), summary.getFailed()));
+    }
+
+    /**
+     * Publishes a single record, retrying with exponential backoff.
+     * A record that still fails after the last retry is logged and
+     * counted, it never terminates the ingestion run.
+     * When the spool is enabled the record is appended to it on a
+     * bounded elastic thread, since the append takes the spool lock
+     * and writes to the mapped file, and published by the drainer,
+     * unless the spool is full.
+     *
+     * @param car The car to publish.
+     * @param progress The counters of the run.
+     * @return A Mono completing once the record is settled.
+     */
+    private Mono<Void> publish(final Car car,
+                               final IngestionProgress progress) {
+        if (publishSpool == null) {
+            return push(car, progress);
+        }
+        return Mono.fromCallable(() -> publishSpool.append(car))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(spooled -> {
+                    if (spooled) {
+                        progress.recordSpooled();
+                        return Mono.empty();
+                    }
+                    return push(car, progress);
+                });
+    }
+
+    /**
+     * Pushes a single record to the cloud, retrying with exponential
+     * backoff. A failure after the last retry is logged and counted.
+     *
+     * @param car The car to publish.
+     * @param progress The counters of the run.
+     * @return A Mono completing once the record is settled.
+     */
+    private Mono<Void> push(final Car car,
+                            final IngestionProgress progress) {
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return Mono.defer(() -> cloudDataService.pushData(car))
+                            .retryWhen(Retry.backoff(maxRetries,
+                                    retryBackoff))
+                            .doOnSuccess(done -> progress.recordPublished(
+                                    System.nanoTime() - start));
+                })
+                .onErrorResume(error -> {
+                    log.error("Failed to publish car {}: {}",
+                            car.getCarId(), error.getMessage());
+                    progress.recordFailed(error);
+                    return Mono.empty();
+                });
     }
 
     /**
      * Retrieves a Flux of cars with specified brand in reactive manner.
      * The Flux represents a stream of data that can be subscribed to for
      * continuous updates.
+     * The cars are read from the replica once it is loaded.
      *
      * @param brand The brand of cars to filter by.
      * @return A Flux of Car representing cars with the
@@ -75,7 +263,109 @@ public class ReactiveDataServiceImpl implements
      */
     @Override
     public Flux<Car> getCarsByBrand(final String brand) {
+        if (carReplica == null) {
             return cloudDataService.getCarsByBrand(brand);
+        }
+        return Flux.defer(() -> {
+            if (!carReplica.isReady()) {
+                return cloudDataService.getCarsByBrand(brand);
+            }
+            List<Car> cars = carReplica.getCarsByBrand(brand);
+            return cars.isEmpty() ? Flux.error(new DataNotFoundException())
+                    : Flux.fromIterable(cars);
+        });
+    }
+
+    /**
+     * Retrieves the cars with the specified brand, holding only the
+     * selected fields. The selection is pushed down to the database,
+     * unless every field is selected.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param fields The fields to return, the others are left null.
+     * @return A Flux of Car representing cars with the
+     * specified brand.
+     */
+    @Override
+    public Flux<Car> getCarsByBrand(final String brand,
+                                    final Set<CarField> fields) {
+        if (CarField.isAll(fields)) {
+            return getCarsByBrand(brand);
+        }
+        return cloudDataService.getCarsByBrand(brand, fields);
+    }
+
+    /**
+     * Retrieves the cars of several brands in one stream. The distinct
+     * brands are looked up {@code cars.batch.in-size} at a time, with
+     * at most {@code cars.batch.concurrency} queries in flight, and
+     * the cars are merged as they arrive. The cars are read from the
+     * replica once it is loaded.
+     *
+     * @param brands The brands, at most {@code cars.batch.max-brands}.
+     * @return A Flux of the cars of the brands, failing with an
+     * {@link InvalidRequestException} if no brand or too many are given.
+     */
+    @Override
+    public Flux<Car> getCarsByBrands(final List<String> brands) {
+        return Flux.defer(() -> {
+            if (brands == null || brands.isEmpty()
+                    || brands.size() > maxBatchBrands) {
+                return Flux.error(new InvalidRequestException(
+                        "between 1 and " + maxBatchBrands
+                                + " brands must be given"));
+            }
+            List<String> distinctBrands = brands.stream()
+                    .filter(brand -> brand != null && !brand.isBlank())
+                    .distinct()
+                    .toList();
+            if (distinctBrands.isEmpty()) {
+                return Flux.error(new InvalidRequestException(
+                        "at least one non-blank brand must be given"));
+            }
+            if (carReplica != null && carReplica.isReady()) {
+                return Flux.fromIterable(distinctBrands)
+                        .concatMapIterable(carReplica::getCarsByBrand);
+            }
+            return Flux.fromIterable(distinctBrands)
+                    .buffer(batchInSize)
+                    .flatMap(cloudDataService::getCarsByBrands,
+                            batchConcurrency);
+        });
+    }
+
+    /**
+     * Retrieves one page of the cars with the specified brand. The
+     * cursors handed to clients wrap the database positions, so the
+     * positions stay opaque.
+     *
+     * @param brand The brand of cars to filter by.
+     * @param limit The maximum number of cars of the page, at most
+     *              {@code cars.page.max-limit}.
+     * @param cursor The cursor returned with the previous page, null
+     *               for the first page.
+     * @param fields The fields to return, the others are left null.
+     * @return A Mono of the page, failing with a
+     * {@link DataNotFoundException} if the brand has no cars.
+     */
+    @Override
+    public Mono<CarPage> getCarsByBrand(final String brand, final int limit,
+                                        final String cursor,
+                                        final Set<CarField> fields) {
+        return Mono.defer(() -> {
+            if (limit < 1 || limit > maxPageLimit) {
+                return Mono.error(new InvalidRequestException(
+                        "limit must be between 1 and " + maxPageLimit));
+            }
+            String position = PageCursors.decode(cursor);
+            return cloudDataService.getCarsByBrand(brand, limit, position,
+                            fields)
+                    .filter(page -> position != null
+                            || !page.getItems().isEmpty())
+                    .switchIfEmpty(Mono.error(new DataNotFoundException()))
+                    .map(page -> new CarPage(page.getItems(),
+                            PageCursors.encode(page.getNextCursor())));
+        });
     }
 
     /**
@@ -85,22 +375,89 @@ public class ReactiveDataServiceImpl implements
      * This method also prints the distinct brands to the console for
      * demonstration purposes.
      *
+     * The brands are served from the replica once it is loaded, and
+     * from the {@link BrandCache} otherwise.
+     *
      * @return A Flux of CarBrand representing distinct car brands.
      */
     @Override
     public Flux<CarBrand> getAllBrands() {
-        return cloudDataService.getAllBrands();
+        if (carReplica == null) {
+            return brandCache.getBrands();
+        }
+        return Flux.defer(() -> carReplica.isReady()
+                ? Flux.fromIterable(carReplica.getBrands())
+                : brandCache.getBrands());
+    }
+
+    /**
+     * Computes the aggregate statistics of the cars of a brand.
+     *
+     * @param brand The brand.
+     * @return A Mono of the statistics, failing with a
+     * {@link DataNotFoundException} if the brand has no cars.
+     */
+    @Override
+    public Mono<BrandStats> getBrandStats(final String brand) {
+        return cloudDataService.getBrandStats(brand)
+                .filter(stats -> stats.getCount() > 0)
+                .switchIfEmpty(Mono.error(new DataNotFoundException()));
+    }
+
+    /**
+     * Computes the aggregate statistics of the cars of every brand.
+     *
+     * @return A Flux of the statistics of every brand.
+     */
+    @Override
+    public Flux<BrandStats> getAllBrandStats() {
+        return cloudDataService.getAllBrandStats();
+    }
+
+    /**
+     * Rebuilds the materialized brand index from the stored cars and
+     * drops the cached brand list, so it is reloaded from the new index.
+     * The version of the brand list is bumped, as brands may be gone.
+     *
+     * @return A Mono emitting the number of brands in the index.
+     */
+    @Override
+    public Mono<Long> rebuildBrandIndex() {
+        return cloudDataService.rebuildBrandIndex()
+                .doOnSuccess(brands -> {
+                    brandCache.invalidate();
+                    if (dataVersions != null) {
+                        dataVersions.bumpBrands();
+                    }
+                });
     }
 
     /**
      * Retrieves a ServerSentEvent of car brands in a reactive manner.
+     * The events are broadcast by the {@link BrandEventBroadcaster}.
+     *
+     * @param lastEventId The id of the last event the client got, null
+     *                    for a new client.
      * @return A Flux of type ServerSentEvent.
      * of AllCarBrand representing all car brands.
      */
 
     @Override
-    public Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSse() {
-        return cloudDataService.getAllBrandsSse();
+    public Flux<ServerSentEvent<Map<String, String>>> getAllBrandsSse(
+            final String lastEventId) {
+        return brandEventBroadcaster.subscribe(lastEventId);
+    }
+
+    /**
+     * Streams the changes of the cars of a brand made from the time of
+     * the subscription on, at the pace of the subscriber demand.
+     *
+     * @param brand The brand.
+     * @return An endless Flux of changes.
+     */
+    @Override
+    public Flux<CarChange> getCarChanges(final String brand) {
+        return cloudDataService.getCarChanges(brand);
     }
 
 
@@ -0,0 +1,365 @@
+package com.nashtech.spool;
+
+import com.nashtech.codec.CarBinaryCodec;
+import com.nashtech.model.Car;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only spool of cars waiting to be published, backed by a
+ * memory-mapped file so its content survives broker outages and
+ * restarts without being held on the heap.
+ *
+ * <p>The file starts with a header holding a magic number, the format
+ * version, and the read checkpoint and write position packed in one
+ * long. It is followed by frames made of the payload length, the
+ * CRC32 of the payload and the car in the format of
+ * {@link CarBinaryCodec}. On start the frames
+ * between the checkpoint and the write position are verified, and the
+ * spool is truncated at the first torn or corrupt frame.
+ *
+ * <p>Once every entry is committed both positions go back to the
+ * start of the file. When the end of the file is reached, the pending
+ * entries are moved to the start if that area is free, otherwise the
+ * spool is full and {@link #append(Car)} refuses the car.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "spool", name = "enabled",
+        havingValue = "true")
+public class PublishSpool {
+
+    /**
+     * Identifies a spool file, the ASCII characters "CARS".
+     */
+    static final int MAGIC = 0x43415253;
+
+    /**
+     * The version of the file layout.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the file header.
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of the length and checksum preceding every payload.
+     */
+    static final int FRAME_HEADER_SIZE = 8;
+
+    /**
+     * The offset of the version in the header.
+     */
+    private static final int VERSION_OFFSET = 4;
+
+    /**
+     * The offset of the positions in the header. The read checkpoint
+     * and the write position share one long, so they are always
+     * updated together.
+     */
+    private static final int POSITIONS_OFFSET = 8;
+
+    /**
+     * Masks the write position out of the stored positions.
+     */
+    private static final long WRITE_MASK = 0xFFFFFFFFL;
+
+    /**
+     * The offset of the checksum in a frame.
+     */
+    private static final int CRC_OFFSET = 4;
+
+    /**
+     * The location of the spool file.
+     */
+    @Value("${spool.path:spool/publish.spool}")
+    private Path path;
+
+    /**
+     * The size of the spool file, capping the spooled bytes.
+     */
+    @Value("${spool.max-bytes:67108864}")
+    private int maxBytes;
+
+    /**
+     * The registry the spool metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The channel of the spool file.
+     */
+    private FileChannel channel;
+
+    /**
+     * The mapping of the whole spool file.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The position the next frame is written at.
+     */
+    private int writePosition;
+
+    /**
+     * The position of the oldest frame not yet committed.
+     */
+    private int readPosition;
+
+    /**
+     * Computes the payload checksums, guarded by the spool lock.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Whether the mapping changed since it was last forced, guarded
+     * by the spool lock.
+     */
+    private boolean dirty;
+
+    /**
+     * Maps the spool file and recovers the entries left by a previous
+     * run.
+     *
+     * @throws IOException If the spool file cannot be mapped.
+     */
+    @PostConstruct
+    public synchronized void init() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int capacity = (int) Math.max(maxBytes, channel.size());
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        if (buffer.getInt(0) == MAGIC && buffer.getInt(VERSION_OFFSET)
+                == VERSION) {
+            recover();
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            reset();
+        }
+        Gauge.builder("spool.pending.bytes", this,
+                        PublishSpool::pendingBytes)
+                .description("Bytes spooled and not yet published")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Flushes the spool to disk and unmaps it.
+     *
+     * @throws IOException If the spool file cannot be closed.
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Appends a car to the spool.
+     *
+     * @param car The car to spool.
+     * @return false if the spool has no room for the car.
+     */
+    public synchronized boolean append(final Car car) {
+        int length = CarBinaryCodec.encodedSize(car);
+        int frameSize = FRAME_HEADER_SIZE + length;
+        if (writePosition + frameSize > buffer.capacity()
+                && !compact(frameSize)) {
+            return false;
+        }
+        int payloadStart = writePosition + FRAME_HEADER_SIZE;
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(payloadStart);
+        CarBinaryCodec.encode(car, payload);
+        buffer.putInt(writePosition, length);
+        buffer.putInt(writePosition + CRC_OFFSET,
+                checksum(payloadStart, length));
+        writePosition += frameSize;
+        storePositions();
+        return true;
+    }
+
+    /**
+     * Reads the oldest entries without removing them.
+     *
+     * @param maxRecords The maximum number of entries to read.
+     * @return The entries, to be committed once published.
+     */
+    public synchronized SpoolBatch peek(final int maxRecords) {
+        List<Car> cars = new ArrayList<>();
+        int position = readPosition;
+        while (cars.size() < maxRecords && position < writePosition) {
+            int length = buffer.getInt(position);
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(position + FRAME_HEADER_SIZE + length);
+            payload.position(position + FRAME_HEADER_SIZE);
+            cars.add(CarBinaryCodec.decode(payload));
+            position += FRAME_HEADER_SIZE + length;
+        }
+        return new SpoolBatch(cars, position - readPosition);
+    }
+
+    /**
+     * Removes published entries from the spool.
+     *
+     * @param bytes The size of the published entries, as reported by
+     * {@link SpoolBatch#getBytes()}.
+     */
+    public synchronized void commit(final long bytes) {
+        readPosition = (int) Math.min(writePosition, readPosition + bytes);
+        if (readPosition == writePosition) {
+            reset();
+        } else {
+            storePositions();
+        }
+    }
+
+    /**
+     * Forces the spooled entries to the storage device if anything
+     * changed since the last flush. The force runs outside the spool
+     * lock so appends are not held up by the storage device; changes
+     * made while it runs are forced by the next flush.
+     */
+    public void flush() {
+        MappedByteBuffer mapping;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            mapping = buffer;
+        }
+        mapping.force();
+    }
+
+    /**
+     * Returns the number of spooled bytes not yet committed.
+     *
+     * @return The pending bytes.
+     */
+    public synchronized long pendingBytes() {
+        return (long) writePosition - readPosition;
+    }
+
+    /**
+     * Verifies the frames left by a previous run and truncates the
+     * spool at the first torn or corrupt one.
+     */
+    private void recover() {
+        long positions = buffer.getLong(POSITIONS_OFFSET);
+        int read = (int) (positions >>> Integer.SIZE);
+        int write = (int) (positions & WRITE_MASK);
+        if (read < HEADER_SIZE || write < read
+                || write > buffer.capacity()) {
+            log.warn("Discarding spool {} with invalid positions", path);
+            reset();
+            return;
+        }
+        int position = read;
+        while (position < write) {
+            int length = write - position < FRAME_HEADER_SIZE
+                    ? -1 : buffer.getInt(position);
+            int end = position + FRAME_HEADER_SIZE + length;
+            if (length <= 0 || end > write || end < 0
+                    || buffer.getInt(position + CRC_OFFSET)
+                    != checksum(position + FRAME_HEADER_SIZE, length)) {
+                log.warn("Truncating spool {} at corrupt frame, {} bytes "
+                        + "lost", path, write - position);
+                break;
+            }
+            position = end;
+        }
+        readPosition = read;
+        writePosition = position;
+        storePositions();
+        log.info("Recovered {} spooled bytes from {}", pendingBytes(), path);
+    }
+
+    /**
+     * Moves the pending frames to the start of the file to make room
+     * for a frame. The move is only done when the target area does not
+     * overlap the pending frames, so a crash during the move leaves
+     * the previous layout intact.
+     *
+     * @param frameSize The size of the frame to make room for.
+     * @return true if the frame fits after the move.
+     */
+    private boolean compact(final int frameSize) {
+        int pending = writePosition - readPosition;
+        if (HEADER_SIZE + pending > readPosition
+                || HEADER_SIZE + pending + frameSize > buffer.capacity()) {
+            return false;
+        }
+        ByteBuffer source = buffer.duplicate();
+        source.limit(writePosition);
+        source.position(readPosition);
+        ByteBuffer target = buffer.duplicate();
+        target.position(HEADER_SIZE);
+        target.put(source);
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE + pending;
+        storePositions();
+        return true;
+    }
+
+    /**
+     * Empties the spool.
+     */
+    private void reset() {
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE;
+        storePositions();
+    }
+
+    /**
+     * Writes the read checkpoint and the write position to the header.
+     */
+    private void storePositions() {
+        buffer.putLong(POSITIONS_OFFSET,
+                ((long) readPosition << Integer.SIZE) | writePosition);
+        dirty = true;
+    }
+
+    /**
+     * Computes the CRC32 of a region of the spool.
+     *
+     * @param offset The start of the region.
+     * @param length The length of the region.
+     * @return The checksum, truncated to an int.
+     */
+    private int checksum(final int offset, final int length) {
+        ByteBuffer region = buffer.duplicate();
+        region.limit(offset + length);
+        region.position(offset);
+        crc.reset();
+        crc.update(region);
+        return (int) crc.getValue();
+    }
+}
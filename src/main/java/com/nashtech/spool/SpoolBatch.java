@@ -0,0 +1,36 @@
+package com.nashtech.spool;
+
+import com.nashtech.model.Car;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The oldest entries of the {@link PublishSpool}, read but not yet
+ * committed.
+ */
+@Getter
+@AllArgsConstructor
+public class SpoolBatch {
+
+    /**
+     * The cars of the batch, in append order.
+     */
+    private final List<Car> cars;
+
+    /**
+     * The number of spool bytes the batch occupies, passed to
+     * {@link PublishSpool#commit(long)} once it is published.
+     */
+    private final long bytes;
+
+    /**
+     * Tells whether the batch holds no entry.
+     *
+     * @return true if the batch is empty.
+     */
+    public boolean isEmpty() {
+        return cars.isEmpty();
+    }
+}
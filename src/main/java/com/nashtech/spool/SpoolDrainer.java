@@ -0,0 +1,108 @@
+package com.nashtech.spool;
+
+import com.nashtech.service.CloudDataService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+/**
+ * Replays the {@link PublishSpool} to the broker in the background.
+ * Every tick publishes at most {@code spool.drain.max-records} of the
+ * oldest entries through {@link CloudDataService#pushBatch} and commits
+ * them once the broker acknowledged the batch. A failed batch stays in
+ * the spool and is retried on the next tick, so entries are delivered
+ * at least once.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "spool", name = "enabled",
+        havingValue = "true")
+public class SpoolDrainer {
+
+    /**
+     * The spool being drained.
+     */
+    @Autowired
+    private PublishSpool publishSpool;
+
+    /**
+     * The service publishing the spooled cars.
+     */
+    @Autowired
+    private CloudDataService cloudDataService;
+
+    /**
+     * The time between two drain ticks.
+     */
+    @Value("${spool.drain.interval:200ms}")
+    private Duration interval;
+
+    /**
+     * The maximum number of entries published per tick, which together
+     * with the interval caps the replay rate.
+     */
+    @Value("${spool.drain.max-records:500}")
+    private int maxRecords;
+
+    /**
+     * The subscription of the drain loop.
+     */
+    private Disposable drainLoop;
+
+    /**
+     * Starts the drain loop. Ticks arriving while a batch is still
+     * being published are dropped.
+     */
+    @PostConstruct
+    public void start() {
+        drainLoop = Flux.interval(interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> drain(), 1)
+                .subscribe();
+    }
+
+    /**
+     * Stops the drain loop and flushes the spool.
+     */
+    @PreDestroy
+    public void stop() {
+        if (drainLoop != null) {
+            drainLoop.dispose();
+        }
+        publishSpool.flush();
+    }
+
+    /**
+     * Publishes and commits the oldest spooled entries.
+     *
+     * @return A Mono emitting the number of published entries, empty
+     * if nothing was spooled or the batch failed.
+     */
+    Mono<Long> drain() {
+        return Mono.fromCallable(() -> {
+                    publishSpool.flush();
+                    return publishSpool.peek(maxRecords);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .filter(batch -> !batch.isEmpty())
+                .flatMap(batch -> cloudDataService
+                        .pushBatch(Flux.fromIterable(batch.getCars()))
+                        .doOnSuccess(published ->
+                                publishSpool.commit(batch.getBytes())))
+                .onErrorResume(error -> {
+                    log.warn("Spool replay failed, retrying next tick: {}",
+                            error.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains the local, memory-mapped spool the ingested
+ * cars are written to before they are published, and the drainer
+ * replaying it to the broker.
+ */
+package com.nashtech.spool;
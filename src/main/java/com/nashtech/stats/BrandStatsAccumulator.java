@@ -0,0 +1,90 @@
+package com.nashtech.stats;
+
+import com.nashtech.model.BrandStats;
+import com.nashtech.model.Car;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Folds the cars of a brand into its {@link BrandStats} in a single
+ * pass, holding counters and sketches instead of the cars.
+ * Not thread-safe.
+ */
+public class BrandStatsAccumulator {
+
+    /**
+     * The brand.
+     */
+    private final String brand;
+
+    /**
+     * The number of cars.
+     */
+    private long count;
+
+    /**
+     * The prices of the cars.
+     */
+    private final NumericAccumulator price = new NumericAccumulator();
+
+    /**
+     * The mileages of the cars.
+     */
+    private final NumericAccumulator mileage = new NumericAccumulator();
+
+    /**
+     * The number of cars per year of manufacture.
+     */
+    private final Map<Long, Long> years = new TreeMap<>();
+
+    /**
+     * Creates an empty accumulator.
+     *
+     * @param brandName The brand.
+     */
+    public BrandStatsAccumulator(final String brandName) {
+        this.brand = brandName;
+    }
+
+    /**
+     * Adds a car.
+     *
+     * @param car The car.
+     * @return This accumulator.
+     */
+    public BrandStatsAccumulator add(final Car car) {
+        count++;
+        price.add(car.getPrice());
+        mileage.add(car.getMileage());
+        if (car.getYear() != null) {
+            years.merge(car.getYear(), 1L, Long::sum);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the cars of another accumulator of the brand to this one.
+     *
+     * @param other The accumulator.
+     * @return This accumulator.
+     */
+    public BrandStatsAccumulator merge(final BrandStatsAccumulator other) {
+        count += other.count;
+        price.merge(other.price);
+        mileage.merge(other.mileage);
+        other.years.forEach((year, cars) -> years.merge(year, cars,
+                Long::sum));
+        return this;
+    }
+
+    /**
+     * Returns the statistics of the added cars.
+     *
+     * @return The statistics.
+     */
+    public BrandStats toStats() {
+        return new BrandStats(brand, count, price.toStats(),
+                mileage.toStats(), new TreeMap<>(years));
+    }
+}
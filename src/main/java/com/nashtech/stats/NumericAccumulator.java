@@ -0,0 +1,99 @@
+package com.nashtech.stats;
+
+import com.nashtech.model.NumericStats;
+
+/**
+ * Folds the values of a numeric field into its count, sum, minimum,
+ * maximum and a {@link QuantileSketch}, in constant memory per value
+ * range. Not thread-safe.
+ */
+public class NumericAccumulator {
+
+    /**
+     * The quantile reported as median.
+     */
+    private static final double P50 = 0.5;
+
+    /**
+     * The quantile reported as 90th percentile.
+     */
+    private static final double P90 = 0.9;
+
+    /**
+     * The quantile reported as 99th percentile.
+     */
+    private static final double P99 = 0.99;
+
+    /**
+     * The number of values.
+     */
+    private long count;
+
+    /**
+     * The sum of the values.
+     */
+    private double sum;
+
+    /**
+     * The smallest value.
+     */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /**
+     * The largest value.
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * The distribution of the values.
+     */
+    private final QuantileSketch sketch = new QuantileSketch();
+
+    /**
+     * Adds a value.
+     *
+     * @param value The value, ignored when null.
+     */
+    public void add(final Double value) {
+        if (value == null) {
+            return;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sketch.add(value);
+    }
+
+    /**
+     * Adds the values of another accumulator to this one.
+     *
+     * @param other The accumulator.
+     */
+    public void merge(final NumericAccumulator other) {
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sketch.merge(other.sketch);
+    }
+
+    /**
+     * Returns the statistics of the added values.
+     *
+     * @return The statistics, null if no value was added.
+     */
+    public NumericStats toStats() {
+        if (count == 0) {
+            return null;
+        }
+        return NumericStats.builder()
+                .min(min)
+                .max(max)
+                .avg(sum / count)
+                .p50(sketch.quantile(P50))
+                .p90(sketch.quantile(P90))
+                .p99(sketch.quantile(P99))
+                .build();
+    }
+}
@@ -0,0 +1,177 @@
+package com.nashtech.stats;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable sketch estimating the quantiles of non-negative values
+ * within a fixed relative error. Values are counted in logarithmic
+ * buckets, bucket i holding the values in
+ * (gamma^(i-1), gamma^i], so its memory grows with the logarithm of
+ * the value range, not with the number of values. Two sketches of the
+ * same accuracy merge by adding their bucket counts.
+ * Not thread-safe.
+ */
+public class QuantileSketch {
+
+    /**
+     * The relative error of the default sketch.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * Values below this are counted as zero.
+     */
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    /**
+     * The number of buckets allocated by the first value.
+     */
+    private static final int INITIAL_BUCKETS = 64;
+
+    /**
+     * The ratio between the bounds of a bucket.
+     */
+    private final double gamma;
+
+    /**
+     * The natural logarithm of {@link #gamma}.
+     */
+    private final double logGamma;
+
+    /**
+     * The counts of the buckets, counts[0] holding bucket offset.
+     */
+    private long[] counts = new long[0];
+
+    /**
+     * The index of the bucket held by counts[0].
+     */
+    private int offset;
+
+    /**
+     * The number of values counted as zero.
+     */
+    private long zeroCount;
+
+    /**
+     * The number of values.
+     */
+    private long count;
+
+    /**
+     * Creates a sketch with the default relative accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Creates a sketch with the given relative accuracy.
+     *
+     * @param relativeAccuracy The relative error of the estimates,
+     *                         between 0 and 1.
+     */
+    public QuantileSketch(final double relativeAccuracy) {
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Adds a value. Negative values are counted as zero.
+     *
+     * @param value The value.
+     */
+    public void add(final double value) {
+        count++;
+        if (value < MIN_INDEXABLE) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        ensureBucket(index);
+        counts[index - offset]++;
+    }
+
+    /**
+     * Adds the values of another sketch to this one.
+     *
+     * @param other The sketch, of the same accuracy.
+     * @throws IllegalArgumentException If the accuracies differ.
+     */
+    public void merge(final QuantileSketch other) {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException(
+                    "Cannot merge sketches of different accuracy");
+        }
+        count += other.count;
+        zeroCount += other.zeroCount;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                int index = other.offset + i;
+                ensureBucket(index);
+                counts[index - offset] += other.counts[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated value at the given quantile.
+     *
+     * @param quantile The quantile, between 0 and 1.
+     * @return The estimated value, NaN if the sketch is empty.
+     */
+    public double quantile(final double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        int last = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            seen += counts[i];
+            last = i;
+            if (seen > rank) {
+                break;
+            }
+        }
+        return 2 * Math.pow(gamma, offset + last) / (gamma + 1);
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return The number of values.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Makes room for the given bucket, growing the counts at least by
+     * their own size so a trend of values does not copy on every add.
+     *
+     * @param index The bucket.
+     */
+    private void ensureBucket(final int index) {
+        if (counts.length == 0) {
+            counts = new long[INITIAL_BUCKETS];
+            offset = index - INITIAL_BUCKETS / 2;
+        } else if (index < offset) {
+            int grow = Math.max(offset - index, counts.length);
+            long[] grown = new long[counts.length + grow];
+            System.arraycopy(counts, 0, grown, grow, counts.length);
+            counts = grown;
+            offset -= grow;
+        } else if (index >= offset + counts.length) {
+            int grow = Math.max(index - offset - counts.length + 1,
+                    counts.length);
+            counts = Arrays.copyOf(counts, counts.length + grow);
+        }
+    }
+}
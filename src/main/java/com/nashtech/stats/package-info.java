@@ -0,0 +1,5 @@
+/**
+ * This package contains the accumulators folding streams of cars into
+ * aggregate statistics in a single pass.
+ */
+package com.nashtech.stats;
@@ -0,0 +1,45 @@
+package com.nashtech.util;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bridges Google Cloud {@link ApiFuture}s into Reactor without
+ * blocking a thread while the future is pending.
+ */
+public final class ApiFutureUtil {
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private ApiFutureUtil() {
+    }
+
+    /**
+     * Adapts the given future to a Mono which completes with the
+     * value or the failure of the future.
+     * The callback runs on the thread completing the future, so the
+     * downstream operators should not block.
+     *
+     * @param future The future to adapt.
+     * @param <T> The type of the value produced by the future.
+     * @return A Mono mirroring the outcome of the future.
+     */
+    public static <T> Mono<T> toMono(final ApiFuture<T> future) {
+        return Mono.create(sink -> ApiFutures.addCallback(future,
+                new ApiFutureCallback<T>() {
+                    @Override
+                    public void onFailure(final Throwable throwable) {
+                        sink.error(throwable);
+                    }
+
+                    @Override
+                    public void onSuccess(final T result) {
+                        sink.success(result);
+                    }
+                }, MoreExecutors.directExecutor()));
+    }
+}
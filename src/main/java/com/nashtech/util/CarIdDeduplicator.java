@@ -0,0 +1,150 @@
+package com.nashtech.util;
+
+import com.nashtech.model.Car;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Drops the cars whose carId was already emitted by the same stream.
+ * The emitted ids are kept in an {@link IntHashSet}, four to eight
+ * bytes per car. When {@code dedup.bloom.enabled} is set, a stream
+ * which emits more than {@code dedup.exact-max-ids} cars moves its ids
+ * to an {@link IntBloomFilter} of fixed size, bounding the memory of
+ * very large brands at the cost of dropping a car now and then, at
+ * the configured false positive rate. Cars without carId are never
+ * dropped.
+ *
+ * <p>The memory held by every stream is recorded in the
+ * {@code cars.dedup.memory} summary and the dropped cars are counted
+ * in {@code cars.dedup.duplicates}.
+ */
+@Component
+public class CarIdDeduplicator {
+
+    /**
+     * The number of ids kept exactly before switching to the filter.
+     */
+    @Value("${dedup.exact-max-ids:100000}")
+    private int exactMaxIds;
+
+    /**
+     * Whether large streams switch to the approximate filter.
+     */
+    @Value("${dedup.bloom.enabled:false}")
+    private boolean bloomEnabled;
+
+    /**
+     * The number of ids the filter is sized for.
+     */
+    @Value("${dedup.bloom.expected-ids:1000000}")
+    private int bloomExpectedIds;
+
+    /**
+     * The false positive rate the filter is sized for.
+     */
+    @Value("${dedup.bloom.false-positive-rate:0.001}")
+    private double bloomFalsePositiveRate;
+
+    /**
+     * The registry the metrics are recorded in.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Records the memory held by every stream.
+     */
+    private DistributionSummary memory;
+
+    /**
+     * Counts the dropped cars.
+     */
+    private Counter duplicates;
+
+    /**
+     * Registers the metrics.
+     */
+    @PostConstruct
+    public void init() {
+        memory = DistributionSummary.builder("cars.dedup.memory")
+                .baseUnit("bytes").register(meterRegistry);
+        duplicates = Counter.builder("cars.dedup.duplicates")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Removes the duplicate cars of a stream. Every subscription keeps
+     * its own ids.
+     *
+     * @param cars The cars.
+     * @return The cars without duplicates.
+     */
+    public Flux<Car> distinct(final Flux<Car> cars) {
+        return Flux.defer(() -> {
+            SeenIds seen = new SeenIds();
+            return cars.filter(car -> {
+                        if (car.getCarId() == null
+                                || seen.add(car.getCarId())) {
+                            return true;
+                        }
+                        duplicates.increment();
+                        return false;
+                    })
+                    .doFinally(signal -> memory.record(seen.memoryBytes()));
+        });
+    }
+
+    /**
+     * The ids emitted by one stream, held exactly until the stream
+     * outgrows {@link #exactMaxIds} and the filter is enabled.
+     */
+    private final class SeenIds {
+
+        /**
+         * The ids, null once they moved to the filter.
+         */
+        private IntHashSet exact = new IntHashSet(0);
+
+        /**
+         * The filter, null until the ids move to it.
+         */
+        private IntBloomFilter approximate;
+
+        /**
+         * Adds an id.
+         *
+         * @param id The id.
+         * @return true if the id was not emitted yet.
+         */
+        boolean add(final int id) {
+            if (approximate != null) {
+                return approximate.add(id);
+            }
+            boolean added = exact.add(id);
+            if (bloomEnabled && exact.size() > exactMaxIds) {
+                approximate = new IntBloomFilter(
+                        Math.max(bloomExpectedIds, exact.size()),
+                        bloomFalsePositiveRate);
+                exact.forEach(approximate::add);
+                exact = null;
+            }
+            return added;
+        }
+
+        /**
+         * Returns the bytes held by the ids.
+         *
+         * @return The bytes held.
+         */
+        long memoryBytes() {
+            return approximate != null ? approximate.memoryBytes()
+                    : exact.memoryBytes();
+        }
+    }
+}
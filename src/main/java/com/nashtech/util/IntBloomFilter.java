@@ -0,0 +1,109 @@
+package com.nashtech.util;
+
+/**
+ * Bloom filter of primitive ints with a fixed memory footprint. It
+ * never misses an added element, but reports an element which was
+ * never added as present with the configured false positive rate,
+ * as long as no more than the expected number of elements are added.
+ * Not thread-safe.
+ */
+public class IntBloomFilter {
+
+    /**
+     * The number of bits addressed by one word, as a shift.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * The first multiplier deriving the bit positions of an element.
+     */
+    private static final long FIRST_MIX = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The second multiplier deriving the bit positions of an element.
+     */
+    private static final long SECOND_MIX = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * The number of bits the mixed hashes are folded by.
+     */
+    private static final int FOLD_SHIFT = 32;
+
+    /**
+     * The bits of the filter.
+     */
+    private final long[] words;
+
+    /**
+     * The number of bits of the filter.
+     */
+    private final long bitCount;
+
+    /**
+     * The number of bits set per element.
+     */
+    private final int hashCount;
+
+    /**
+     * Creates a filter sized for the given number of elements and
+     * false positive rate.
+     *
+     * @param expectedSize The expected number of elements.
+     * @param falsePositiveRate The accepted false positive rate,
+     *                          between 0 and 1.
+     */
+    public IntBloomFilter(final int expectedSize,
+                          final double falsePositiveRate) {
+        int elements = Math.max(1, expectedSize);
+        double bitsPerElement = -Math.log(falsePositiveRate)
+                / (Math.log(2) * Math.log(2));
+        long bits = Math.max(Long.SIZE,
+                (long) Math.ceil(elements * bitsPerElement));
+        words = new long[(int) ((bits + Long.SIZE - 1) >>> WORD_SHIFT)];
+        bitCount = (long) words.length << WORD_SHIFT;
+        hashCount = Math.max(1,
+                (int) Math.round(bitsPerElement * Math.log(2)));
+    }
+
+    /**
+     * Adds an element.
+     *
+     * @param value The element.
+     * @return true if the element was certainly not in the filter yet,
+     * false if it probably was.
+     */
+    public boolean add(final int value) {
+        long first = mix(value * FIRST_MIX);
+        long second = mix(value * SECOND_MIX) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(first + i * second, bitCount);
+            int word = (int) (bit >>> WORD_SHIFT);
+            long mask = 1L << bit;
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Returns the bytes held by the bits of the filter.
+     *
+     * @return The size of the filter in bytes.
+     */
+    public long memoryBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * Folds the high bits of a product into its low bits.
+     *
+     * @param product The product.
+     * @return The folded hash.
+     */
+    private static long mix(final long product) {
+        return product ^ (product >>> FOLD_SHIFT);
+    }
+}
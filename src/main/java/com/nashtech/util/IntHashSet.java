@@ -0,0 +1,152 @@
+package com.nashtech.util;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Set of primitive ints with open addressing and linear probing. An
+ * element costs four bytes of a table kept at most half full, instead
+ * of a boxed Integer and a map entry per element as in a HashSet.
+ * Not thread-safe.
+ */
+public class IntHashSet {
+
+    /**
+     * The smallest table size, a power of two.
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The marker of a free slot. Zero itself is tracked by
+     * {@link #containsZero}.
+     */
+    private static final int FREE = 0;
+
+    /**
+     * The multiplier spreading the elements over the table.
+     */
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+    /**
+     * The number of bits the spread hash is folded by.
+     */
+    private static final int FOLD_SHIFT = 16;
+
+    /**
+     * The slots, FREE where no element is stored.
+     */
+    private int[] table;
+
+    /**
+     * The number of non-zero elements in the table.
+     */
+    private int tableSize;
+
+    /**
+     * Whether zero was added.
+     */
+    private boolean containsZero;
+
+    /**
+     * Creates a set sized for the given number of elements.
+     *
+     * @param expectedSize The expected number of elements.
+     */
+    public IntHashSet(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+    }
+
+    /**
+     * Adds an element.
+     *
+     * @param value The element.
+     * @return true if the element was not in the set yet.
+     */
+    public boolean add(final int value) {
+        if (value == FREE) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        if ((tableSize + 1) * 2L > table.length) {
+            grow();
+        }
+        if (!insert(table, value)) {
+            return false;
+        }
+        tableSize++;
+        return true;
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return The number of elements.
+     */
+    public int size() {
+        return tableSize + (containsZero ? 1 : 0);
+    }
+
+    /**
+     * Returns the bytes held by the table of the set.
+     *
+     * @return The size of the table in bytes.
+     */
+    public long memoryBytes() {
+        return (long) table.length * Integer.BYTES;
+    }
+
+    /**
+     * Passes every element to the given consumer.
+     *
+     * @param consumer The consumer.
+     */
+    public void forEach(final IntConsumer consumer) {
+        if (containsZero) {
+            consumer.accept(FREE);
+        }
+        for (int value : table) {
+            if (value != FREE) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Doubles the table and rehashes the elements into it.
+     */
+    private void grow() {
+        int[] grown = new int[table.length * 2];
+        for (int value : table) {
+            if (value != FREE) {
+                insert(grown, value);
+            }
+        }
+        table = grown;
+    }
+
+    /**
+     * Stores a non-zero element in the first free slot of its probe
+     * sequence.
+     *
+     * @param slots The table.
+     * @param value The element.
+     * @return false if the element was already stored.
+     */
+    private static boolean insert(final int[] slots, final int value) {
+        int mask = slots.length - 1;
+        int spread = value * GOLDEN_RATIO;
+        int index = (spread ^ (spread >>> FOLD_SHIFT)) & mask;
+        while (slots[index] != FREE) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+package com.nashtech.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, fixed-size latency histogram. Values are counted in
+ * log-linear buckets: every power of two is split into eight buckets,
+ * so a percentile is reported within 12.5% of the recorded value.
+ * Recording a value is a single atomic increment and never allocates.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of bits selecting the bucket within a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The number of buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Masks the bucket within a power of two.
+     */
+    private static final int SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+
+    /**
+     * The number of buckets needed to cover every positive long.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS)
+            * SUB_BUCKETS;
+
+    /**
+     * The number of values recorded per bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records a value. Negative values are counted as zero.
+     *
+     * @param value The value, typically a latency in nanoseconds.
+     */
+    public void record(final long value) {
+        counts.incrementAndGet(bucketOf(Math.max(0, value)));
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The count.
+     */
+    public long count() {
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            count += counts.get(bucket);
+        }
+        return count;
+    }
+
+    /**
+     * Computes a percentile of the recorded values. Values recorded
+     * concurrently may or may not be taken into account.
+     *
+     * @param percentile The percentile, between 0 and 1.
+     * @return The upper bound of the bucket holding the percentile, or
+     * zero if nothing was recorded.
+     */
+    public long percentile(final double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return upperBoundOf(bucket);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    /**
+     * Maps a value to its bucket.
+     *
+     * @param value The non-negative value.
+     * @return The index of the bucket.
+     */
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & SUB_BUCKET_MASK;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Computes the largest value mapped to a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The upper bound of the bucket.
+     */
+    static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS)
+                << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,191 @@
+package com.nashtech.util;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Groups a stream of records into windows bounded by record count,
+ * byte count and time, and publishes every window as a single unit.
+ * The record bound adapts to the observed broker latency: it grows
+ * additively while windows are acknowledged within the target latency
+ * and is halved as soon as a window is slower than that.
+ */
+@Slf4j
+@Component
+public class MicroBatcher {
+
+    /**
+     * The smallest number of records in a window, also used as the
+     * additive step when the window grows.
+     */
+    @Value("${publish.batch.min-records:16}")
+    private int minRecords;
+
+    /**
+     * The largest number of records in a window.
+     */
+    @Value("${publish.batch.max-records:500}")
+    private int maxRecords;
+
+    /**
+     * The largest number of payload bytes in a window.
+     */
+    @Value("${publish.batch.max-bytes:1048576}")
+    private long maxBytes;
+
+    /**
+     * The longest time a record waits for its window to fill up.
+     */
+    @Value("${publish.batch.max-wait:50ms}")
+    private Duration maxWait;
+
+    /**
+     * The broker latency per window the batcher aims for.
+     */
+    @Value("${publish.batch.target-latency:100ms}")
+    private Duration targetLatency;
+
+    /**
+     * The number of windows published concurrently.
+     */
+    @Value("${publish.batch.concurrency:2}")
+    private int concurrency;
+
+    /**
+     * The current, latency driven, record bound of a window.
+     */
+    private final AtomicInteger windowSize = new AtomicInteger();
+
+    /**
+     * Starts the adaptive window at its smallest size.
+     */
+    @PostConstruct
+    public void init() {
+        windowSize.set(minRecords);
+    }
+
+    /**
+     * Returns the current record bound of a window.
+     *
+     * @return The number of records a window may hold at the moment.
+     */
+    public int getWindowSize() {
+        return windowSize.get();
+    }
+
+    /**
+     * Publishes the records in windows bounded by count and time only,
+     * for sinks which enforce a byte bound themselves.
+     *
+     * @param source The records to publish.
+     * @param sink Publishes one window and completes once the broker
+     *             has acknowledged it.
+     * @param <T> The type of the records.
+     * @return A Mono emitting the number of published records.
+     */
+    public <T> Mono<Long> publish(final Flux<T> source,
+                                  final Function<List<T>, Mono<Void>> sink) {
+        return publish(source, item -> 0, sink);
+    }
+
+    /**
+     * Publishes the records in windows bounded by count, bytes and time.
+     *
+     * @param source The records to publish.
+     * @param sizeOf Returns the payload size of a record in bytes.
+     * @param sink Publishes one window and completes once the broker
+     *             has acknowledged it.
+     * @param <T> The type of the records.
+     * @return A Mono emitting the number of published records.
+     */
+    public <T> Mono<Long> publish(final Flux<T> source,
+                                  final ToIntFunction<T> sizeOf,
+                                  final Function<List<T>, Mono<Void>> sink) {
+        return source.bufferTimeout(maxRecords, maxWait, true)
+                .concatMapIterable(buffer -> split(buffer, sizeOf))
+                .flatMap(window -> publishWindow(window, sink), concurrency)
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Splits a buffer into windows honouring the current record bound
+     * and the byte bound. A record larger than the byte bound gets a
+     * window of its own.
+     *
+     * @param buffer The records collected within the wait time.
+     * @param sizeOf Returns the payload size of a record in bytes.
+     * @param <T> The type of the records.
+     * @return The windows, in the order of the records.
+     */
+    <T> List<List<T>> split(final List<T> buffer,
+                            final ToIntFunction<T> sizeOf) {
+        int limit = windowSize.get();
+        List<List<T>> windows = new ArrayList<>();
+        List<T> window = new ArrayList<>(Math.min(limit, buffer.size()));
+        long bytes = 0;
+        for (T item : buffer) {
+            int itemBytes = sizeOf.applyAsInt(item);
+            if (!window.isEmpty() && (window.size() >= limit
+                    || bytes + itemBytes > maxBytes)) {
+                windows.add(window);
+                window = new ArrayList<>(Math.min(limit, buffer.size()));
+                bytes = 0;
+            }
+            window.add(item);
+            bytes += itemBytes;
+        }
+        if (!window.isEmpty()) {
+            windows.add(window);
+        }
+        return windows;
+    }
+
+    /**
+     * Adjusts the window size to the latency of the last window.
+     *
+     * @param latency The time the broker took to acknowledge a window.
+     */
+    void recordLatency(final Duration latency) {
+        if (latency.compareTo(targetLatency) > 0) {
+            windowSize.updateAndGet(size -> Math.max(minRecords, size / 2));
+        } else {
+            windowSize.updateAndGet(size ->
+                    Math.min(maxRecords, size + minRecords));
+        }
+    }
+
+    /**
+     * Publishes a single window and feeds its latency back into the
+     * window size.
+     *
+     * @param window The records of the window.
+     * @param sink Publishes the window.
+     * @param <T> The type of the records.
+     * @return A Mono emitting the number of records in the window.
+     */
+    private <T> Mono<Long> publishWindow(
+            final List<T> window,
+            final Function<List<T>, Mono<Void>> sink) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return sink.apply(window)
+                    .doOnSuccess(done -> recordLatency(
+                            Duration.ofNanos(System.nanoTime() - start)))
+                    .doOnError(error -> log.error(
+                            "Failed to publish a window of {} records: {}",
+                            window.size(), error.getMessage()))
+                    .thenReturn((long) window.size());
+        });
+    }
+}
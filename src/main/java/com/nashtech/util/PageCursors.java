@@ -0,0 +1,52 @@
+package com.nashtech.util;
+
+import com.nashtech.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Wraps the positions the databases resume a query from into opaque,
+ * URL safe page cursors, so clients cannot depend on their format.
+ */
+public final class PageCursors {
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private PageCursors() {
+    }
+
+    /**
+     * Wraps a database position into a cursor.
+     *
+     * @param position The position, may be null.
+     * @return The cursor, null when the position is null.
+     */
+    public static String encode(final String position) {
+        if (position == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Unwraps the database position of a cursor.
+     *
+     * @param cursor The cursor, may be null.
+     * @return The position, null when the cursor is null or blank.
+     * @throws InvalidRequestException If the cursor is malformed.
+     */
+    public static String decode(final String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Malformed cursor");
+        }
+    }
+}
@@ -1,4 +1,5 @@
 /**
- * contains sub-packages.
+ * Contains helper classes shared by the services,
+ * such as reactive adapters and publishing utilities.
  */
 package com.nashtech.util;
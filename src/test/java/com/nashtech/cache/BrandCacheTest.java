@@ -0,0 +1,140 @@
+package com.nashtech.cache;
+
+import com.nashtech.model.CarBrand;
+import com.nashtech.service.CloudDataService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BrandCacheTest {
+
+    @Mock
+    private CloudDataService cloudDataService;
+
+    @InjectMocks
+    private BrandCache brandCache;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(brandCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(brandCache, "ttl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(brandCache, "refreshAfter", Duration.ofMinutes(4));
+        brandCache.init();
+    }
+
+    private void stubBrands(final Flux<CarBrand> brands) {
+        when(cloudDataService.getAllBrands()).thenReturn(
+                brands.doOnSubscribe(subscription -> loads.incrementAndGet()));
+    }
+
+    @Test
+    void testGetBrands_ServesSecondRequestFromMemory() {
+        stubBrands(Flux.just(new CarBrand("BMW"), new CarBrand("Audi")));
+
+        StepVerifier.create(brandCache.getBrands()).expectNextCount(2).verifyComplete();
+        StepVerifier.create(brandCache.getBrands()).expectNextCount(2).verifyComplete();
+
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void testGetBrands_MergesConcurrentMisses() {
+        Sinks.Many<CarBrand> source = Sinks.many().unicast().onBackpressureBuffer();
+        stubBrands(source.asFlux());
+
+        StepVerifier first = StepVerifier.create(brandCache.getBrands())
+                .expectNextCount(1).expectComplete().verifyLater();
+        StepVerifier second = StepVerifier.create(brandCache.getBrands())
+                .expectNextCount(1).expectComplete().verifyLater();
+        source.tryEmitNext(new CarBrand("BMW"));
+        source.tryEmitComplete();
+
+        first.verify();
+        second.verify();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void testGetBrands_RefreshesAheadWithoutWaiting() {
+        stubBrands(Flux.just(new CarBrand("BMW")));
+        StepVerifier.create(brandCache.getBrands()).expectNextCount(1).verifyComplete();
+        ReflectionTestUtils.setField(brandCache, "refreshAfter", Duration.ZERO);
+        stubBrands(Flux.<CarBrand>never().startWith(new CarBrand("BMW")));
+
+        StepVerifier.create(brandCache.getBrands())
+                .expectNextMatches(brand -> brand.getBrand().equals("BMW"))
+                .verifyComplete();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testGetBrands_FailedLoadIsNotCached() {
+        stubBrands(Flux.error(new IllegalStateException("unavailable")));
+
+        StepVerifier.create(brandCache.getBrands()).expectError().verify();
+        StepVerifier.create(brandCache.getBrands()).expectError().verify();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testOnBrandObserved_AddsUnknownBrand() {
+        stubBrands(Flux.just(new CarBrand("BMW")));
+        StepVerifier.create(brandCache.getBrands()).expectNextCount(1).verifyComplete();
+
+        brandCache.onBrandObserved(new BrandObservedEvent("Tesla"));
+        brandCache.onBrandObserved(new BrandObservedEvent("BMW"));
+
+        StepVerifier.create(brandCache.getBrands().map(CarBrand::getBrand))
+                .expectNext("BMW", "Tesla")
+                .verifyComplete();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void testInvalidate_LoadStartedBeforeIsNeitherJoinedNorCached() {
+        Sinks.Many<CarBrand> stale = Sinks.many().unicast().onBackpressureBuffer();
+        stubBrands(stale.asFlux());
+        StepVerifier first = StepVerifier.create(brandCache.getBrands().map(CarBrand::getBrand))
+                .expectNext("BMW").expectComplete().verifyLater();
+
+        brandCache.invalidate();
+        stubBrands(Flux.just(new CarBrand("Audi")));
+        StepVerifier.create(brandCache.getBrands().map(CarBrand::getBrand))
+                .expectNext("Audi")
+                .verifyComplete();
+        stale.tryEmitNext(new CarBrand("BMW"));
+        stale.tryEmitComplete();
+        first.verify();
+
+        StepVerifier.create(brandCache.getBrands().map(CarBrand::getBrand))
+                .expectNext("Audi")
+                .verifyComplete();
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -0,0 +1,113 @@
+package com.nashtech.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagWebFilterTest {
+
+    private final DataVersions dataVersions = new DataVersions();
+
+    private final ETagWebFilter filter = new ETagWebFilter();
+
+    private final AtomicInteger handled = new AtomicInteger();
+
+    private final WebFilterChain chain = exchange -> {
+        handled.incrementAndGet();
+        return exchange.getResponse().setComplete();
+    };
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(filter, "dataVersions", dataVersions);
+    }
+
+    private ServerWebExchange get(final String path, final String eTag) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get(path);
+        if (eTag != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, eTag);
+        }
+        ServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    @Test
+    void testFilter_AnswersUnchangedDataWithoutHandler() {
+        String eTag = get("/v1/data/brands", null).getResponse().getHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        ServerWebExchange revalidated = get("/v1/data/brands", eTag);
+
+        assertThat(revalidated.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(handled).hasValue(1);
+    }
+
+    @Test
+    void testFilter_ChangedBrandGetsNewETag() {
+        String bmw = get("/v1/data/cars/BMW", null).getResponse().getHeaders().getETag();
+        String audi = get("/v1/data/cars/Audi", null).getResponse().getHeaders().getETag();
+
+        dataVersions.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+
+        assertThat(get("/v1/data/cars/BMW", bmw).getResponse().getStatusCode()).isNull();
+        assertThat(get("/v1/data/cars/Audi", audi).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+        // The brand list is bumped once the brand index caught up
+        assertThat(dataVersions.getBrandsVersion()).isZero();
+    }
+
+    @Test
+    void testFilter_VariantsHaveTheirOwnETag() {
+        String all = get("/v1/data/cars/BMW", null).getResponse().getHeaders().getETag();
+        String page = get("/v1/data/cars/BMW?limit=10", null).getResponse().getHeaders().getETag();
+
+        assertThat(page).isNotEqualTo(all);
+    }
+
+    @Test
+    void testFilter_ErrorsAndOtherRoutesHaveNoETag() {
+        WebFilterChain notFound = exchange -> {
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return exchange.getResponse().setComplete();
+        };
+        ServerWebExchange missing = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/data/cars/Tesla"));
+        filter.filter(missing, notFound).block();
+
+        assertThat(missing.getResponse().getHeaders().getETag()).isNull();
+        assertThat(get("/v1/data/brands/stats", null).getResponse().getHeaders().getETag()).isNull();
+    }
+
+    @Test
+    void testFilter_StopsOnceChangesAreNoLongerTracked() {
+        String eTag = get("/v1/data/brands", null).getResponse().getHeaders().getETag();
+        dataVersions.stopTracking();
+
+        assertThat(get("/v1/data/brands", eTag).getResponse().getStatusCode()).isNull();
+        assertThat(handled).hasValue(2);
+    }
+
+    @Test
+    void testFilter_ResumedTrackingChangesEveryETag() {
+        String eTag = get("/v1/data/brands", null).getResponse().getHeaders().getETag();
+        dataVersions.stopTracking();
+        dataVersions.resumeTracking();
+
+        ServerWebExchange revalidated = get("/v1/data/brands", eTag);
+
+        assertThat(revalidated.getResponse().getStatusCode()).isNull();
+        assertThat(revalidated.getResponse().getHeaders().getETag()).isNotEqualTo(eTag);
+    }
+}
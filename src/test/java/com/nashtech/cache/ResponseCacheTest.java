@@ -0,0 +1,85 @@
+package com.nashtech.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ResponseCache responseCache = new ResponseCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(responseCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(responseCache, "maxBytes", 25L);
+        ReflectionTestUtils.setField(responseCache, "maxEntryBytes", 10);
+        ReflectionTestUtils.setField(responseCache, "gzip", false);
+        responseCache.init();
+    }
+
+    private void put(final String route, final long version) {
+        responseCache.put(route, "*/*", version, MediaType.APPLICATION_JSON,
+                "[\"brand\"]".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testGet_OnlyReturnsTheCurrentVersion() {
+        put("brands", 1);
+
+        assertThat(responseCache.get("brands", "*/*", 1)).isNotNull();
+        assertThat(responseCache.get("brands", "*/*", 2)).isNull();
+        assertThat(responseCache.get("brands", "application/json", 1)).isNull();
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void testPut_KeepsNewerVersion() {
+        put("brands", 2);
+        put("brands", 1);
+
+        assertThat(responseCache.get("brands", "*/*", 2)).isNotNull();
+    }
+
+    @Test
+    void testGet_EvictsOutdatedVersion() {
+        put("brands", 1);
+
+        assertThat(responseCache.get("brands", "*/*", 2)).isNull();
+        assertThat(responseCache.getTotalBytes()).isZero();
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsedBeyondMaxBytes() {
+        put("cars/BMW", 0);
+        put("cars/Audi", 0);
+        responseCache.get("cars/BMW", "*/*", 0);
+        put("cars/Tesla", 0);
+
+        assertThat(responseCache.get("cars/Audi", "*/*", 0)).isNull();
+        assertThat(responseCache.get("cars/BMW", "*/*", 0)).isNotNull();
+        assertThat(responseCache.getTotalBytes()).isEqualTo(18);
+        assertThat(responseCache.accepts(11)).isFalse();
+    }
+
+    @Test
+    void testOnCarsChanged_EvictsChangedBrandsOnly() {
+        put("brands", 0);
+        put("cars/BMW", 0);
+
+        responseCache.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+
+        assertThat(responseCache.get("cars/BMW", "*/*", 0)).isNull();
+        assertThat(responseCache.get("brands", "*/*", 0)).isNotNull();
+    }
+}
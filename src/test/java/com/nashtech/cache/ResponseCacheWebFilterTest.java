@@ -0,0 +1,143 @@
+package com.nashtech.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheWebFilterTest {
+
+    private static final String BODY = "[" + "{\"brand\":\"BMW\"},".repeat(50) + "{\"brand\":\"BMW\"}]";
+
+    private final DataVersions dataVersions = new DataVersions();
+
+    private final ResponseCache responseCache = new ResponseCache();
+
+    private final ResponseCacheWebFilter filter = new ResponseCacheWebFilter();
+
+    private final AtomicInteger handled = new AtomicInteger();
+
+    private final WebFilterChain chain = exchange -> {
+        handled.incrementAndGet();
+        exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return exchange.getResponse().writeWith(Mono.just(exchange.getResponse()
+                .bufferFactory().wrap(BODY.getBytes(StandardCharsets.UTF_8))));
+    };
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(responseCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(responseCache, "maxBytes", 1_000_000L);
+        ReflectionTestUtils.setField(responseCache, "maxEntryBytes", 10_000);
+        ReflectionTestUtils.setField(responseCache, "gzip", true);
+        responseCache.init();
+        ReflectionTestUtils.setField(filter, "responseCache", responseCache);
+        ReflectionTestUtils.setField(filter, "dataVersions", dataVersions);
+    }
+
+    private MockServerHttpResponse get(final String path, final String acceptEncoding) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get(path)
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+        if (acceptEncoding != null) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, chain).block();
+        return exchange.getResponse();
+    }
+
+    @Test
+    void testFilter_ServesSecondRequestFromCache() {
+        assertThat(get("/v1/data/cars/BMW", null).getBodyAsString().block()).isEqualTo(BODY);
+
+        MockServerHttpResponse cached = get("/v1/data/cars/BMW", null);
+
+        assertThat(cached.getBodyAsString().block()).isEqualTo(BODY);
+        assertThat(cached.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(handled).hasValue(1);
+    }
+
+    @Test
+    void testFilter_ServesGzippedBodyToClientsAcceptingIt() {
+        get("/v1/data/brands", null);
+
+        MockServerHttpResponse gzipped = get("/v1/data/brands", "deflate, gzip;q=0.8");
+
+        assertThat(gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gzipped.getHeaders().getContentLength()).isLessThan(BODY.length());
+        assertThat(handled).hasValue(1);
+    }
+
+    @Test
+    void testFilter_GzipWithZeroQualityIsNotAccepted() {
+        get("/v1/data/brands", null);
+
+        MockServerHttpResponse refused = get("/v1/data/brands", "gzip;q=0, deflate");
+        MockServerHttpResponse anyButGzip = get("/v1/data/brands", "*, gzip; q=0.0");
+        MockServerHttpResponse any = get("/v1/data/brands", "*;q=0.5");
+
+        assertThat(refused.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(refused.getBodyAsString().block()).isEqualTo(BODY);
+        assertThat(anyButGzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(any.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    }
+
+    @Test
+    void testFilter_BodyProducedWhileTheDataChangedIsNotCached() {
+        WebFilterChain changing = exchange -> {
+            dataVersions.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+            return chain.filter(exchange);
+        };
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/data/cars/BMW")
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE));
+        filter.filter(exchange, changing).block();
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo(BODY);
+        assertThat(responseCache.getTotalBytes()).isZero();
+    }
+
+    @Test
+    void testFilter_ChangedDataIsProducedAgain() {
+        get("/v1/data/cars/BMW", null);
+
+        dataVersions.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+        responseCache.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+        get("/v1/data/cars/BMW", null);
+        // Queries, e.g. field selections or pages, are never cached
+        get("/v1/data/cars/BMW?limit=10", null);
+
+        assertThat(handled).hasValue(3);
+    }
+
+    @Test
+    void testFilter_BodyLargerThanAnEntryIsStreamedButNotCached() {
+        ReflectionTestUtils.setField(responseCache, "maxEntryBytes", BODY.length() + 10);
+        WebFilterChain large = exchange -> {
+            handled.incrementAndGet();
+            exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return exchange.getResponse().writeWith(Flux.just(BODY, BODY)
+                    .map(part -> exchange.getResponse().bufferFactory()
+                            .wrap(part.getBytes(StandardCharsets.UTF_8))));
+        };
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/data/cars/BMW")
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE));
+        filter.filter(exchange, large).block();
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo(BODY + BODY);
+        assertThat(responseCache.getTotalBytes()).isZero();
+    }
+}
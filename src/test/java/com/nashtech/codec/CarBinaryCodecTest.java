@@ -0,0 +1,170 @@
+package com.nashtech.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nashtech.model.Car;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CarBinaryCodecTest {
+
+    // Golden payloads, also decoded by CarBinaryDecoderTest of the Azure
+    // function: a change of either copy of the dictionaries fails a build
+    private static final String[] GOLDEN_BRANDS = {
+            "Acura", "Alfa Romeo", "Aston Martin", "Audi", "Bentley", "BMW",
+            "Buick", "Cadillac", "Chevrolet", "Chrysler", "Daewoo", "Dodge",
+            "Eagle", "Ferrari", "Fiat", "Ford", "Geo", "GMC", "Honda",
+            "Hummer", "Hyundai", "Infiniti", "Isuzu", "Jaguar", "Jeep", "Kia",
+            "Lamborghini", "Land Rover", "Lexus", "Lincoln", "Lotus",
+            "Maserati", "Maybach", "Mazda", "McLaren", "Mercedes-Benz",
+            "Mercury", "MINI", "Mitsubishi", "Nissan", "Oldsmobile",
+            "Plymouth", "Pontiac", "Porsche", "Ram", "Rolls-Royce", "Saab",
+            "Saturn", "Scion", "smart", "Subaru", "Suzuki", "Tesla",
+            "Toyota", "Volkswagen", "Volvo"};
+
+    private static final String[] GOLDEN_COLORS = {
+            "Aquamarine", "Blue", "Crimson", "Fuscia", "Goldenrod", "Green",
+            "Indigo", "Khaki", "Maroon", "Mauv", "Orange", "Pink", "Puce",
+            "Purple", "Red", "Teal", "Turquoise", "Violet", "Yellow"};
+
+    private static final String GOLDEN_CAR =
+            "017f2c360543616d7279ce1f0f40a15e000000000040d5bb47ae147ae1";
+
+    private static final String GOLDEN_LITERALS =
+            "01170d0006c5a06b6f6461074f637461766961000a4e6172646f2047726175";
+
+    @Test
+    void testEncode_MatchesGoldenPayloads() {
+        assertThat(HexFormat.of().formatHex(CarBinaryCodec.encode(
+                new Car(22, "Toyota", "Camry", 2023L, "Red", 2223.0, 22253.12))))
+                .isEqualTo(GOLDEN_CAR);
+        assertThat(HexFormat.of().formatHex(CarBinaryCodec.encode(
+                new Car(-7, "Škoda", "Octavia", null, "Nardo Grau", null, null))))
+                .isEqualTo(GOLDEN_LITERALS);
+        for (int code = 1; code <= GOLDEN_BRANDS.length; code++) {
+            assertThat(CarBinaryCodec.encode(Car.builder().brand(GOLDEN_BRANDS[code - 1]).build()))
+                    .containsExactly(1, 1 << 1, code);
+        }
+        for (int code = 1; code <= GOLDEN_COLORS.length; code++) {
+            assertThat(CarBinaryCodec.encode(Car.builder().color(GOLDEN_COLORS[code - 1]).build()))
+                    .containsExactly(1, 1 << 4, code);
+        }
+        assertThat(CarBinaryCodec.BRANDS).hasSize(GOLDEN_BRANDS.length);
+        assertThat(CarBinaryCodec.COLORS).hasSize(GOLDEN_COLORS.length);
+    }
+
+    @Test
+    void testRoundTrip_DictionaryValues() {
+        Car car = new Car(22, "Toyota", "Camry", 2023L, "Red", 2223.0, 22253.12);
+
+        byte[] payload = CarBinaryCodec.encode(car);
+
+        assertThat(payload).hasSize(CarBinaryCodec.encodedSize(car));
+        assertThat(CarBinaryCodec.decode(payload))
+                .usingRecursiveComparison().isEqualTo(car);
+    }
+
+    @Test
+    void testRoundTrip_LiteralsAndMultiByteCharacters() {
+        Car car = new Car(-7, "Škoda", "Octavia 🚗", -1L, "Nardo Grau",
+                0.0, -1.5);
+
+        Car decoded = CarBinaryCodec.decode(CarBinaryCodec.encode(car));
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(car);
+    }
+
+    @Test
+    void testRoundTrip_AbsentFields() {
+        Car car = Car.builder().carId(1).model("Model S").build();
+
+        byte[] payload = CarBinaryCodec.encode(car);
+
+        assertThat(CarBinaryCodec.decode(payload))
+                .usingRecursiveComparison().isEqualTo(car);
+    }
+
+    @Test
+    void testEncode_IsSmallerThanJson() throws Exception {
+        Car car = new Car(22, "Toyota", "Camry", 2023L, "Red", 2223.0, 22253.12);
+
+        byte[] json = new ObjectMapper().writeValueAsBytes(car);
+
+        assertThat(CarBinaryCodec.encode(car).length).isLessThan(json.length / 2);
+    }
+
+    @Test
+    void testEncode_WritesIntoReusedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        Car first = new Car(1, "Audi", "A4", 2001L, "Blue", 1.0, 2.0);
+        Car second = new Car(2, "Ford", "Focus", 2002L, "Green", 3.0, 4.0);
+
+        CarBinaryCodec.encode(first, buffer);
+        CarBinaryCodec.encode(second, buffer);
+        buffer.flip();
+
+        assertThat(CarBinaryCodec.decode(buffer))
+                .usingRecursiveComparison().isEqualTo(first);
+        assertThat(CarBinaryCodec.decode(buffer))
+                .usingRecursiveComparison().isEqualTo(second);
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void testDecode_RejectsUnknownVersionAndTruncatedPayload() {
+        byte[] payload = CarBinaryCodec.encode(
+                new Car(22, "Toyota", "Camry", 2023L, "Red", 2223.0, 22253.12));
+        byte[] truncated = new byte[payload.length - 1];
+        System.arraycopy(payload, 0, truncated, 0, truncated.length);
+        payload[0] = 2;
+
+        assertThatThrownBy(() -> CarBinaryCodec.decode(payload))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CarBinaryCodec.decode(truncated))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testDecode_RejectsCodesBeyondTheDictionaryOfItsVersion() {
+        // Version 1, brand present, brand code 57 appended after version 1
+        byte[] payload = {1, 1 << 1, 57};
+
+        assertThatThrownBy(() -> CarBinaryCodec.decode(payload))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown dictionary code");
+    }
+
+    @Test
+    void testKafkaSerializer_RejectsUnknownBinaryVersion() {
+        CarKafkaSerializer serializer = new CarKafkaSerializer();
+
+        assertThatThrownBy(() -> serializer.configure(Map.of(
+                CarKafkaSerializer.WIRE_FORMAT_CONFIG, "binary",
+                CarKafkaSerializer.BINARY_VERSION_CONFIG, "2"), false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testKafkaSerializer_TagsContentType() throws Exception {
+        Car car = new Car(22, "Toyota", "Camry", 2023L, "Red", 2223.0, 22253.12);
+        CarKafkaSerializer serializer = new CarKafkaSerializer();
+        serializer.configure(Map.of(CarKafkaSerializer.WIRE_FORMAT_CONFIG, "binary"), false);
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] payload = serializer.serialize("topic", headers, car);
+
+        String contentType = new String(headers.lastHeader(
+                CarWireFormat.CONTENT_TYPE_HEADER).value(), StandardCharsets.UTF_8);
+        CarWireFormat format = CarWireFormat.fromContentType(contentType);
+        assertThat(format).isEqualTo(CarWireFormat.BINARY);
+        assertThat(format.decode(payload, new ObjectMapper()))
+                .usingRecursiveComparison().isEqualTo(car);
+    }
+}
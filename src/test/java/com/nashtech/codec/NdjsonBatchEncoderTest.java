@@ -0,0 +1,63 @@
+package com.nashtech.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nashtech.model.Car;
+import com.nashtech.model.CarBrand;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NdjsonBatchEncoderTest {
+
+    private final NdjsonBatchEncoder encoder =
+            new NdjsonBatchEncoder(new ObjectMapper(), 2, Duration.ofSeconds(1));
+
+    private static String text(final DataBuffer buffer) {
+        String text = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return text;
+    }
+
+    @Test
+    void testCanEncode_OnlyNdjson() {
+        ResolvableType car = ResolvableType.forClass(Car.class);
+
+        assertThat(encoder.canEncode(car, MediaType.APPLICATION_NDJSON)).isTrue();
+        assertThat(encoder.canEncode(car, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(encoder.canEncode(car, null)).isFalse();
+    }
+
+    @Test
+    void testEncode_PacksRecordsIntoBatches() {
+        Flux<CarBrand> brands = Flux.just("BMW", "Audi", "Tesla").map(CarBrand::new);
+
+        StepVerifier.create(encoder.encode(brands, DefaultDataBufferFactory.sharedInstance,
+                                ResolvableType.forClass(CarBrand.class),
+                                MediaType.APPLICATION_NDJSON, Map.of())
+                        .map(NdjsonBatchEncoderTest::text))
+                .expectNext("{\"brand\":\"BMW\"}\n{\"brand\":\"Audi\"}\n")
+                .expectNext("{\"brand\":\"Tesla\"}\n")
+                .verifyComplete();
+    }
+
+    @Test
+    void testEncode_LeavesOutUnselectedFields() {
+        Car car = Car.builder().model("Camry").price(1.5).build();
+
+        String line = text(encoder.encodeValue(car, DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(Car.class), MediaType.APPLICATION_NDJSON, Map.of()));
+
+        assertThat(line).isEqualTo("{\"model\":\"Camry\",\"price\":1.5}\n");
+    }
+}
@@ -0,0 +1,174 @@
+package com.nashtech.controller;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.nashtech.feed.BrandEventBroadcaster;
+import com.nashtech.feed.FirestoreBrandFeed;
+import com.nashtech.feed.FirestoreCarListener;
+import com.nashtech.feed.OverflowPolicy;
+import com.nashtech.service.impl.FirestoreDbService;
+import com.nashtech.service.impl.ReactiveDataServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streams /brands-sse to thousands of clients through the controller,
+ * the broadcaster, the brand feed and the shared car listener, with
+ * only Firestore mocked.
+ */
+class BrandsSseControllerTest {
+
+    private static final int CLIENTS = 2_000;
+
+    private static final ParameterizedTypeReference<ServerSentEvent<Map<String, String>>> EVENT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Firestore firestore = mock(Firestore.class);
+
+    private final CollectionReference collection = mock(CollectionReference.class);
+
+    private final ListenerRegistration registration = mock(ListenerRegistration.class);
+
+    private final FirestoreCarListener carListener = new FirestoreCarListener();
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        when(firestore.collection("Car")).thenReturn(collection);
+        when(collection.addSnapshotListener(any())).thenReturn(registration);
+
+        FirestoreBrandFeed brandFeed = new FirestoreBrandFeed();
+        ReflectionTestUtils.setField(brandFeed, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(brandFeed, "carListener", carListener);
+
+        ReflectionTestUtils.setField(carListener, "firestore", firestore);
+        ReflectionTestUtils.setField(carListener, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(carListener, "handlers", List.of(brandFeed));
+        ReflectionTestUtils.setField(carListener, "gracePeriod", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(carListener, "minBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(carListener, "maxBackoff", Duration.ofMillis(40));
+        carListener.start();
+
+        FirestoreDbService firestoreDbService = new FirestoreDbService(firestore);
+        ReflectionTestUtils.setField(firestoreDbService, "firestoreBrandFeed", brandFeed);
+
+        BrandEventBroadcaster broadcaster = new BrandEventBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "cloudDataService", firestoreDbService);
+        ReflectionTestUtils.setField(broadcaster, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(broadcaster, "replaySize", 1024);
+        ReflectionTestUtils.setField(broadcaster, "bufferSize", 64);
+        ReflectionTestUtils.setField(broadcaster, "overflowPolicy", OverflowPolicy.DROP_OLDEST);
+        ReflectionTestUtils.setField(broadcaster, "coalesceWindow", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(broadcaster, "coalesceMaxEvents", 100);
+        ReflectionTestUtils.setField(broadcaster, "heartbeatInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(broadcaster, "gracePeriod", Duration.ofMillis(50));
+        broadcaster.init();
+
+        ReactiveDataServiceImpl reactiveDataService = new ReactiveDataServiceImpl();
+        ReflectionTestUtils.setField(reactiveDataService, "brandEventBroadcaster", broadcaster);
+        ReactiveDataController controller = new ReactiveDataController();
+        ReflectionTestUtils.setField(controller, "reactiveDataService", reactiveDataService);
+        webTestClient = WebTestClient.bindToController(controller)
+                .configureClient()
+                .responseTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        carListener.stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private EventListener<QuerySnapshot> listener() {
+        ArgumentCaptor<EventListener<QuerySnapshot>> captor = ArgumentCaptor.forClass(EventListener.class);
+        verify(collection, timeout(5_000)).addSnapshotListener(captor.capture());
+        return captor.getValue();
+    }
+
+    private static QuerySnapshot added(final String... brands) {
+        List<DocumentChange> changes = Arrays.stream(brands).map(brand -> {
+            QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+            when(document.getString("brand")).thenReturn(brand);
+            DocumentChange change = mock(DocumentChange.class);
+            when(change.getType()).thenReturn(DocumentChange.Type.ADDED);
+            when(change.getDocument()).thenReturn(document);
+            return change;
+        }).toList();
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocumentChanges()).thenReturn(changes);
+        return snapshot;
+    }
+
+    private Flux<ServerSentEvent<Map<String, String>>> connect() {
+        return webTestClient.get()
+                .uri("/v1/data/brands-sse")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(EVENT)
+                .getResponseBody();
+    }
+
+    @Test
+    void testBrandsSse_ThousandsOfClientsShareOneFirestoreListener() {
+        // Every client reads until it got the three brands, then disconnects
+        Flux<Set<String>> clients = Flux.range(0, CLIENTS)
+                .flatMap(client -> connect()
+                        .filter(event -> event.data() != null)
+                        .map(event -> event.data().get("brand"))
+                        .take(3)
+                        .collect(Collectors.toSet()), CLIENTS);
+        List<Set<String>> received = clients
+                .mergeWith(Flux.defer(() -> {
+                    EventListener<QuerySnapshot> listener = listener();
+                    listener.onEvent(added("BMW", "Audi", "BMW"), null);
+                    listener.onEvent(added("Tesla"), null);
+                    return Flux.empty();
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .collectList()
+                .block(Duration.ofSeconds(60));
+
+        assertThat(received).hasSize(CLIENTS)
+                .allSatisfy(brands -> assertThat(brands).containsExactlyInAnyOrder("BMW", "Audi", "Tesla"));
+        verify(collection, times(1)).addSnapshotListener(any());
+        // The listener is removed once the last client has left
+        verify(registration, timeout(5_000)).remove();
+    }
+}
@@ -1,8 +1,14 @@
 package com.nashtech.controller;
 
 import com.nashtech.exception.DataNotFoundException;
+import com.nashtech.exception.InvalidRequestException;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarField;
+import com.nashtech.model.CarPage;
+import com.nashtech.model.IngestionJobStatus;
+import com.nashtech.model.JobStatus;
+import com.nashtech.service.IngestionJobService;
 import com.nashtech.service.ReactiveDataService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,20 +20,27 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.*;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class ReactiveDataControllerTest {
 
+    private static final Set<CarField> ALL_FIELDS = CarField.parse(null);
+
     @Mock
     private ReactiveDataService reactiveDataService;
 
+    @Mock
+    private IngestionJobService ingestionJobService;
+
     @InjectMocks
     private ReactiveDataController reactiveDataController;
 
@@ -67,10 +80,10 @@ public class ReactiveDataControllerTest {
     @Test
     void testGetCarsByBrand_ReactiveDataServiceReturnsError() {
         // Setup
-        when(reactiveDataService.getCarsByBrand("brand")).thenReturn(Flux.error(new DataNotFoundException()));
+        when(reactiveDataService.getCarsByBrand("brand", ALL_FIELDS)).thenReturn(Flux.error(new DataNotFoundException()));
 
         // Run the test
-        final Flux<Car> result = reactiveDataController.getCarsByBrand("brand");
+        final Flux<Car> result = reactiveDataController.getCarsByBrand("brand", null);
 
         // Verify the results
         StepVerifier.create(result)
@@ -81,10 +94,10 @@ public class ReactiveDataControllerTest {
     @Test
     void testGetCarsByBrand_ReactiveDataServiceReturnsNoItem() {
         // Setup
-        when(reactiveDataService.getCarsByBrand("brand")).thenReturn(Flux.empty());
+        when(reactiveDataService.getCarsByBrand("brand", ALL_FIELDS)).thenReturn(Flux.empty());
 
         // Run the test
-        final Flux<Car> result = reactiveDataController.getCarsByBrand("brand");
+        final Flux<Car> result = reactiveDataController.getCarsByBrand("brand", null);
 
         // Verify the results
         StepVerifier.create(result)
@@ -95,18 +108,39 @@ public class ReactiveDataControllerTest {
 
     @Test
     void testPushDataToCloud() {
-        ResponseEntity<Object> response = reactiveDataController.pushDataToCloud();
+        IngestionJobStatus job = IngestionJobStatus.builder()
+                .id("job-1").status(JobStatus.RUNNING).build();
+        when(ingestionJobService.start()).thenReturn(job);
+        ResponseEntity<IngestionJobStatus> response = reactiveDataController.pushDataToCloud();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
-        verify(reactiveDataService).fetchAndSendData();
+        assertThat(response.getHeaders().getLocation())
+                .hasToString("/v1/data/jobs/job-1");
+        assertThat(response.getBody()).isSameAs(job);
+        verify(ingestionJobService).start();
+    }
+
+    @Test
+    void testGetJobProgress() {
+        IngestionJobStatus running = IngestionJobStatus.builder()
+                .id("job-1").status(JobStatus.RUNNING).published(5).build();
+        IngestionJobStatus completed = IngestionJobStatus.builder()
+                .id("job-1").status(JobStatus.COMPLETED).published(10).build();
+        when(ingestionJobService.watch("job-1")).thenReturn(Flux.just(running, completed));
+
+        StepVerifier.create(reactiveDataController.getJobProgress("job-1"))
+                .expectNextMatches(event -> "progress".equals(event.event())
+                        && event.data() == running)
+                .expectNextMatches(event -> event.data() == completed)
+                .verifyComplete();
     }
 
     @Test
     void testGetCarsByBrand() {
         final Flux<Car> carFlux = Flux.just(
                 new Car(0, "Toyota", "model", 2020L, "color", 0.0, 0.0));
-        when(reactiveDataService.getCarsByBrand("Toyota")).thenReturn(carFlux);
+        when(reactiveDataService.getCarsByBrand("Toyota", ALL_FIELDS)).thenReturn(carFlux);
 
-        Flux<Car> carsFlux = reactiveDataController.getCarsByBrand("Toyota");
+        Flux<Car> carsFlux = reactiveDataController.getCarsByBrand("Toyota", null);
 
         StepVerifier.create(carsFlux)
                 .expectNextMatches(car -> car.getBrand().equals("Toyota"))
@@ -152,4 +186,31 @@ public class ReactiveDataControllerTest {
 
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void testGetCarsPageByBrand() {
+        CarPage page = new CarPage(List.of(
+                new Car(0, "Toyota", "model", 2020L, "color", 0.0, 0.0)), "next");
+        when(reactiveDataService.getCarsByBrand("Toyota", 1, null, ALL_FIELDS)).thenReturn(Mono.just(page));
+
+        StepVerifier.create(reactiveDataController.getCarsPageByBrand("Toyota", 1, null, null))
+                .expectNext(page)
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetCarsByBrand_PassesSelectedFields() {
+        when(reactiveDataService.getCarsByBrand("Toyota",
+                Set.of(CarField.MODEL, CarField.PRICE))).thenReturn(Flux.empty());
+
+        StepVerifier.create(reactiveDataController.getCarsByBrand("Toyota", "model, price"))
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetCarsByBrand_UnknownFieldIsRejected() {
+        assertThatThrownBy(() -> reactiveDataController.getCarsByBrand("Toyota", "model,vin"))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("Unknown field: vin");
+    }
+}
@@ -0,0 +1,58 @@
+package com.nashtech.diagnostics;
+
+import com.azure.cosmos.models.FeedResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.util.context.Context;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CosmosRequestMetricsTest {
+
+    @Mock
+    private FeedResponse<String> page;
+
+    @InjectMocks
+    private CosmosRequestMetrics requestMetrics;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(requestMetrics, "meterRegistry", meterRegistry);
+        when(page.getRequestCharge()).thenReturn(2.5);
+        when(page.getResults()).thenReturn(List.of("a", "b"));
+    }
+
+    @Test
+    void testRecord_TagsMetricsByQueryName() {
+        requestMetrics.record("carsByBrand", page, Context.empty());
+        requestMetrics.record("carsByBrand", page, Context.empty());
+
+        assertThat(meterRegistry.get("cosmos.request.charge").tag("query", "carsByBrand")
+                .summary().totalAmount()).isEqualTo(5.0);
+        assertThat(meterRegistry.get("cosmos.documents.retrieved").tag("query", "carsByBrand")
+                .summary().totalAmount()).isEqualTo(4.0);
+    }
+
+    @Test
+    void testRecord_AddsChargeToTheRequest() {
+        RequestCharge charge = new RequestCharge();
+
+        requestMetrics.record("carsByBrand", page, Context.of(RequestCharge.class, charge));
+        requestMetrics.record("carsByBrandPage", page, Context.of(RequestCharge.class, charge));
+
+        assertThat(charge.getTotal()).isEqualTo(5.0);
+    }
+}
@@ -0,0 +1,202 @@
+package com.nashtech.feed;
+
+import com.nashtech.service.CloudDataService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BrandEventBroadcasterTest {
+
+    @Mock
+    private CloudDataService cloudDataService;
+
+    @InjectMocks
+    private BrandEventBroadcaster brandEventBroadcaster;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Sinks.Many<ServerSentEvent<Map<String, String>>> source =
+            Sinks.many().multicast().onBackpressureBuffer();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(brandEventBroadcaster, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(brandEventBroadcaster, "replaySize", 16);
+        ReflectionTestUtils.setField(brandEventBroadcaster, "coalesceWindow", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(brandEventBroadcaster, "heartbeatInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(brandEventBroadcaster, "gracePeriod", Duration.ofSeconds(1));
+        when(cloudDataService.getAllBrandsSse()).thenReturn(source.asFlux());
+    }
+
+    private void init(final int coalesceMaxEvents, final int bufferSize,
+                      final OverflowPolicy overflowPolicy) {
+        ReflectionTestUtils.setField(brandEventBroadcaster, "coalesceMaxEvents", coalesceMaxEvents);
+        ReflectionTestUtils.setField(brandEventBroadcaster, "bufferSize", bufferSize);
+        ReflectionTestUtils.setField(brandEventBroadcaster, "overflowPolicy", overflowPolicy);
+        brandEventBroadcaster.init();
+    }
+
+    private void emit(final String... brands) {
+        for (String brand : brands) {
+            source.tryEmitNext(ServerSentEvent.builder(Map.of("brand", brand)).build());
+        }
+    }
+
+    private static String brand(final ServerSentEvent<Map<String, String>> event) {
+        return event.data().get("brand");
+    }
+
+    @Test
+    void testSubscribe_ResumesAfterLastEventId() {
+        init(100, 64, OverflowPolicy.DROP_OLDEST);
+
+        StepVerifier first = StepVerifier.create(brandEventBroadcaster.subscribe(null))
+                .then(() -> emit("BMW"))
+                .assertNext(event -> assertThat(event.id()).isEqualTo("0"))
+                .then(() -> emit("Audi"))
+                .assertNext(event -> assertThat(event.id()).isEqualTo("1"))
+                .thenCancel()
+                .verifyLater();
+        StepVerifier.create(brandEventBroadcaster.subscribe("0"))
+                .assertNext(event -> {
+                    assertThat(event.id()).isEqualTo("1");
+                    assertThat(brand(event)).isEqualTo("Audi");
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        first.verify(Duration.ofSeconds(5));
+
+        // Both subscribers share one upstream subscription
+        verify(cloudDataService, times(1)).getAllBrandsSse();
+    }
+
+    @Test
+    void testSubscribe_SendsOneEventPerBrandOfAWindow() {
+        init(100, 64, OverflowPolicy.DROP_OLDEST);
+
+        StepVerifier.create(brandEventBroadcaster.subscribe("not a number"))
+                .then(() -> emit("BMW", "Audi", "Tesla"))
+                .assertNext(event -> assertThat(event.id() + brand(event)).isEqualTo("0BMW"))
+                .assertNext(event -> assertThat(event.id() + brand(event)).isEqualTo("1Audi"))
+                .assertNext(event -> assertThat(event.id() + brand(event)).isEqualTo("2Tesla"))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testSubscribe_ReplaysMoreEventsThanTheBuffer() {
+        ReflectionTestUtils.setField(brandEventBroadcaster, "replaySize", 64);
+        init(100, 4, OverflowPolicy.DISCONNECT);
+        String[] produced = new String[40];
+        for (int i = 0; i < produced.length; i++) {
+            produced[i] = "brand-" + i;
+        }
+        StepVerifier.create(brandEventBroadcaster.subscribe(null))
+                .then(() -> emit(produced))
+                .expectNextCount(produced.length)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        // A new subscriber reading slowly still gets the whole replay
+        StepVerifier.create(brandEventBroadcaster.subscribe(null), 0)
+                .recordWith(ArrayList::new)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenRequest(produced.length - 1)
+                .expectNextCount(produced.length - 1)
+                .consumeRecordedWith(events -> assertThat(events)
+                        .extracting(BrandEventBroadcasterTest::brand)
+                        .containsExactly(produced))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("sse.events.dropped").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void testSubscribe_NewSubscriberGetsEveryKnownBrandBeyondTheRing() {
+        init(100, 64, OverflowPolicy.DROP_OLDEST);
+        String[] produced = new String[40];
+        for (int i = 0; i < produced.length; i++) {
+            produced[i] = "brand-" + i;
+        }
+        StepVerifier.create(brandEventBroadcaster.subscribe(null))
+                .then(() -> emit(produced))
+                .then(() -> emit("brand-0"))
+                .expectNextCount(produced.length + 1)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        // The ring holds 16 events, the new subscriber still gets all 40 brands once
+        StepVerifier.create(brandEventBroadcaster.subscribe(null))
+                .recordWith(ArrayList::new)
+                .expectNextCount(produced.length)
+                .consumeRecordedWith(events -> assertThat(events)
+                        .extracting(BrandEventBroadcasterTest::brand)
+                        .containsExactly(produced))
+                .then(() -> emit("Tesla"))
+                .assertNext(event -> assertThat(brand(event)).isEqualTo("Tesla"))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testSubscribe_SlowSubscriberDropsOldestEvents() {
+        init(1, 2, OverflowPolicy.DROP_OLDEST);
+
+        StepVerifier.create(brandEventBroadcaster.subscribe(null), 0)
+                .then(() -> emit("A", "B", "C", "D", "E"))
+                .thenRequest(Long.MAX_VALUE)
+                // The merge prefetches the first event, the buffer keeps the last two
+                .assertNext(event -> assertThat(brand(event)).isEqualTo("A"))
+                .assertNext(event -> assertThat(brand(event)).isEqualTo("D"))
+                .assertNext(event -> assertThat(brand(event)).isEqualTo("E"))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("sse.events.dropped").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void testSubscribe_SlowSubscriberIsDisconnected() {
+        init(1, 2, OverflowPolicy.DISCONNECT);
+
+        StepVerifier.create(brandEventBroadcaster.subscribe(null), 0)
+                .then(() -> emit("A", "B", "C", "D", "E"))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testSubscribe_SendsHeartbeats() {
+        ReflectionTestUtils.setField(brandEventBroadcaster, "heartbeatInterval", Duration.ofMillis(10));
+        init(100, 64, OverflowPolicy.LATEST);
+
+        StepVerifier.create(brandEventBroadcaster.subscribe(null))
+                .assertNext(event -> {
+                    assertThat(event.comment()).isEqualTo("heartbeat");
+                    assertThat(event.data()).isNull();
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,65 @@
+package com.nashtech.feed;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nashtech.cache.BrandObservedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CosmosBrandFeedTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private CosmosBrandFeed cosmosBrandFeed;
+
+    private void change(final String... brands) {
+        List<JsonNode> changes = Arrays.stream(brands)
+                .map(brand -> (JsonNode) objectMapper.createObjectNode().put("brand", brand))
+                .toList();
+        ReflectionTestUtils.invokeMethod(cosmosBrandFeed, "onChanges", changes);
+    }
+
+    @Test
+    void testBrands_SendsKnownBrandsThenEachNewBrandOnce() {
+        change("BMW");
+
+        StepVerifier.create(cosmosBrandFeed.brands())
+                .expectNext("BMW")
+                .then(() -> change("BMW", "Audi", "Audi"))
+                .expectNext("Audi")
+                .thenCancel()
+                .verify();
+        verify(eventPublisher, times(2)).publishEvent(any(BrandObservedEvent.class));
+    }
+
+    @Test
+    void testBrands_SharesOneStreamBetweenSubscribers() {
+        StepVerifier first = StepVerifier.create(cosmosBrandFeed.brands())
+                .expectNext("Tesla").thenCancel().verifyLater();
+        StepVerifier second = StepVerifier.create(cosmosBrandFeed.brands())
+                .expectNext("Tesla").thenCancel().verifyLater();
+
+        change("Tesla");
+
+        first.verify();
+        second.verify();
+    }
+}
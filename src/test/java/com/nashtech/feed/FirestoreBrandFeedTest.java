@@ -0,0 +1,106 @@
+package com.nashtech.feed;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FirestoreBrandFeedTest {
+
+    private static final int SUBSCRIBERS = 5_000;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private FirestoreCarListener carListener;
+
+    private final AtomicInteger leases = new AtomicInteger();
+
+    @InjectMocks
+    private FirestoreBrandFeed firestoreBrandFeed;
+
+    private void stubLeases() {
+        when(carListener.acquire()).thenAnswer(invocation -> {
+            leases.incrementAndGet();
+            return (Disposable) leases::decrementAndGet;
+        });
+    }
+
+    private static DocumentChange change(final DocumentChange.Type type, final String brand) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getType()).thenReturn(type);
+        if (type != DocumentChange.Type.REMOVED) {
+            when(document.getString("brand")).thenReturn(brand);
+            when(change.getDocument()).thenReturn(document);
+        }
+        return change;
+    }
+
+    private static QuerySnapshot snapshot(final DocumentChange... changes) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocumentChanges()).thenReturn(List.of(changes));
+        return snapshot;
+    }
+
+    private static QuerySnapshot added(final String... brands) {
+        return snapshot(Arrays.stream(brands)
+                .map(brand -> change(DocumentChange.Type.ADDED, brand))
+                .toArray(DocumentChange[]::new));
+    }
+
+    @Test
+    void testBrands_ThousandsOfSubscribersGetEachBrandOnce() {
+        stubLeases();
+        AtomicInteger received = new AtomicInteger();
+        List<Disposable> subscribers = new ArrayList<>();
+        subscribers.add(firestoreBrandFeed.brands().subscribe(brand -> received.incrementAndGet()));
+        firestoreBrandFeed.onSnapshot(added("BMW", "Audi", "BMW"), true);
+
+        // Late subscribers get the known brands from memory
+        for (int i = 1; i < SUBSCRIBERS; i++) {
+            subscribers.add(firestoreBrandFeed.brands().subscribe(brand -> received.incrementAndGet()));
+        }
+        firestoreBrandFeed.onSnapshot(added("Tesla", "BMW"), false);
+
+        assertThat(received).hasValue(SUBSCRIBERS * 3);
+        verify(eventPublisher, times(3)).publishEvent(any());
+        assertThat(leases).hasValue(SUBSCRIBERS);
+        subscribers.forEach(Disposable::dispose);
+        assertThat(leases).hasValue(0);
+    }
+
+    @Test
+    void testBrands_OnlyLooksAtDocumentChanges() {
+        stubLeases();
+        List<String> received = new ArrayList<>();
+        Disposable subscriber = firestoreBrandFeed.brands().subscribe(received::add);
+
+        firestoreBrandFeed.onSnapshot(snapshot(change(DocumentChange.Type.ADDED, "BMW"),
+                change(DocumentChange.Type.REMOVED, null),
+                change(DocumentChange.Type.MODIFIED, "Audi")), false);
+
+        assertThat(received).containsExactly("BMW", "Audi");
+        subscriber.dispose();
+    }
+}
@@ -0,0 +1,123 @@
+package com.nashtech.feed;
+
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.nashtech.entity.GCPCarEntity;
+import com.nashtech.model.ChangeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FirestoreCarChangeFeedTest {
+
+    private FirestoreCarChangeFeed firestoreCarChangeFeed;
+
+    private final AtomicInteger leases = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        FirestoreCarListener carListener = mock(FirestoreCarListener.class);
+        when(carListener.acquire()).thenAnswer(invocation -> {
+            leases.incrementAndGet();
+            return (Disposable) leases::decrementAndGet;
+        });
+        firestoreCarChangeFeed = new FirestoreCarChangeFeed();
+        ReflectionTestUtils.setField(firestoreCarChangeFeed, "bufferSize", 2);
+        ReflectionTestUtils.setField(firestoreCarChangeFeed, "carListener", carListener);
+    }
+
+    private static DocumentChange change(final DocumentChange.Type type, final String brand, final int carId) {
+        GCPCarEntity entity = new GCPCarEntity();
+        entity.setCarId(carId);
+        entity.setBrand(brand);
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.getString("brand")).thenReturn(brand);
+        when(document.getId()).thenReturn("car-" + carId);
+        when(document.toObject(GCPCarEntity.class)).thenReturn(entity);
+        DocumentChange change = mock(DocumentChange.class);
+        when(change.getType()).thenReturn(type);
+        when(change.getDocument()).thenReturn(document);
+        return change;
+    }
+
+    private static QuerySnapshot snapshot(final DocumentChange... changes) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocumentChanges()).thenReturn(List.of(changes));
+        return snapshot;
+    }
+
+    @Test
+    void testChanges_SkipsExistingCarsAndMapsChangesOfTheBrand() {
+        StepVerifier.create(firestoreCarChangeFeed.changes("BMW"))
+                .then(() -> {
+                    // The initial snapshot holds the cars stored before
+                    firestoreCarChangeFeed.onSnapshot(mock(QuerySnapshot.class), true);
+                    firestoreCarChangeFeed.onSnapshot(snapshot(change(DocumentChange.Type.ADDED, "BMW", 1),
+                            change(DocumentChange.Type.ADDED, "Audi", 2),
+                            change(DocumentChange.Type.REMOVED, "BMW", 3)), false);
+                })
+                .assertNext(change -> {
+                    assertThat(change.getId()).isEqualTo("car-1");
+                    assertThat(change.getType()).isEqualTo(ChangeType.UPSERTED);
+                    assertThat(change.getCar().getCarId()).isEqualTo(1);
+                })
+                .assertNext(change -> assertThat(change.getType()).isEqualTo(ChangeType.REMOVED))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void testChanges_SendsOnlyRequestedChanges() {
+        StepVerifier.create(firestoreCarChangeFeed.changes("BMW"), 1)
+                .then(() -> firestoreCarChangeFeed.onSnapshot(snapshot(change(DocumentChange.Type.ADDED, "BMW", 1),
+                        change(DocumentChange.Type.ADDED, "BMW", 2)), false))
+                .assertNext(change -> assertThat(change.getCar().getCarId()).isEqualTo(1))
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenRequest(1)
+                .assertNext(change -> assertThat(change.getCar().getCarId()).isEqualTo(2))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void testChanges_SubscriberFallingBehindTheBufferFails() {
+        StepVerifier.create(firestoreCarChangeFeed.changes("BMW"), 0)
+                .then(() -> firestoreCarChangeFeed.onSnapshot(snapshot(change(DocumentChange.Type.ADDED, "BMW", 1),
+                        change(DocumentChange.Type.ADDED, "BMW", 2),
+                        change(DocumentChange.Type.ADDED, "BMW", 3)), false))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    @Test
+    void testChanges_InterruptedListenerFailsTheSubscribers() {
+        StepVerifier.create(firestoreCarChangeFeed.changes("BMW"))
+                .then(() -> firestoreCarChangeFeed.onInterrupted(new IllegalStateException("unavailable")))
+                .expectErrorMessage("unavailable")
+                .verify();
+        assertThat(leases).hasValue(0);
+    }
+
+    @Test
+    void testChanges_EverySubscriberHoldsALeaseUntilItCancels() {
+        Disposable first = firestoreCarChangeFeed.changes("BMW").subscribe();
+        Disposable second = firestoreCarChangeFeed.changes("Audi").subscribe();
+        assertThat(leases).hasValue(2);
+
+        first.dispose();
+        assertThat(leases).hasValue(1);
+        second.dispose();
+        assertThat(leases).hasValue(0);
+    }
+}
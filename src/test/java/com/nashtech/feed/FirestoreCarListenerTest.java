@@ -0,0 +1,174 @@
+package com.nashtech.feed;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QuerySnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FirestoreCarListenerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private CollectionReference collection;
+
+    @Mock
+    private ListenerRegistration registration;
+
+    @Mock
+    private CarSnapshotHandler first;
+
+    @Mock
+    private CarSnapshotHandler second;
+
+    @InjectMocks
+    private FirestoreCarListener firestoreCarListener;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(firestoreCarListener, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(firestoreCarListener, "handlers", List.of(first, second));
+        ReflectionTestUtils.setField(firestoreCarListener, "minBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(firestoreCarListener, "maxBackoff", Duration.ofMillis(40));
+        ReflectionTestUtils.setField(firestoreCarListener, "gracePeriod", Duration.ofMillis(50));
+        firestoreCarListener.start();
+    }
+
+    private void stubRegistration() {
+        when(firestore.collection("Car")).thenReturn(collection);
+        when(collection.addSnapshotListener(any())).thenReturn(registration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        firestoreCarListener.stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private EventListener<QuerySnapshot> listener(final int registrations) {
+        ArgumentCaptor<EventListener<QuerySnapshot>> captor = ArgumentCaptor.forClass(EventListener.class);
+        verify(collection, timeout(1_000).times(registrations)).addSnapshotListener(captor.capture());
+        return captor.getValue();
+    }
+
+    private static QuerySnapshot snapshot(final int documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.size()).thenReturn(documents);
+        return snapshot;
+    }
+
+    @Test
+    void testSnapshots_AreSharedByEveryHandler() {
+        stubRegistration();
+        firestoreCarListener.acquire();
+        QuerySnapshot initial = snapshot(3);
+        QuerySnapshot next = snapshot(4);
+        listener(1).onEvent(initial, null);
+        listener(1).onEvent(next, null);
+
+        verify(first).onSnapshot(initial, true);
+        verify(second).onSnapshot(initial, true);
+        verify(first).onSnapshot(next, false);
+        verify(second).onSnapshot(next, false);
+        assertThat(meterRegistry.get("firestore.listener.documents").gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void testFailure_InterruptsHandlersAndRegistersAgain() {
+        stubRegistration();
+        firestoreCarListener.acquire();
+        FirestoreException error = mock(FirestoreException.class);
+        listener(1).onEvent(null, error);
+
+        verify(first).onInterrupted(error);
+        verify(second).onInterrupted(error);
+        verify(registration).remove();
+
+        // The new registration starts over with an initial snapshot
+        QuerySnapshot reloaded = snapshot(2);
+        listener(2).onEvent(reloaded, null);
+        verify(first).onSnapshot(reloaded, true);
+        verify(collection, times(2)).addSnapshotListener(any());
+    }
+
+    @Test
+    void testAcquire_NothingIsRegisteredWithoutALease() {
+        verify(firestore, never()).collection(any());
+    }
+
+    @Test
+    void testAcquire_LeasesShareOneRegistrationRemovedAfterTheGracePeriod() {
+        stubRegistration();
+        List<Disposable> leases = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            leases.add(firestoreCarListener.acquire());
+        }
+        verify(collection, times(1)).addSnapshotListener(any());
+
+        leases.forEach(Disposable::dispose);
+        // Releasing a lease twice does not release another one
+        leases.get(0).dispose();
+        verify(registration, timeout(1_000)).remove();
+
+        firestoreCarListener.acquire();
+        verify(collection, times(2)).addSnapshotListener(any());
+    }
+
+    @Test
+    void testAcquire_LeaseTakenWithinTheGracePeriodKeepsTheListener() {
+        stubRegistration();
+        ReflectionTestUtils.setField(firestoreCarListener, "gracePeriod", Duration.ofSeconds(10));
+        Disposable lease = firestoreCarListener.acquire();
+
+        lease.dispose();
+        firestoreCarListener.acquire();
+
+        verify(collection, times(1)).addSnapshotListener(any());
+        verify(registration, never()).remove();
+    }
+
+    @Test
+    void testAcquire_EventsOfARemovedRegistrationAreIgnored() {
+        stubRegistration();
+        Disposable lease = firestoreCarListener.acquire();
+        EventListener<QuerySnapshot> removed = listener(1);
+        lease.dispose();
+        verify(registration, timeout(1_000)).remove();
+
+        removed.onEvent(mock(QuerySnapshot.class), null);
+
+        verify(first, never()).onSnapshot(any(), anyBoolean());
+    }
+}
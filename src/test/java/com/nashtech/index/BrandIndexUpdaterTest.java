@@ -0,0 +1,104 @@
+package com.nashtech.index;
+
+import com.nashtech.cache.BrandCache;
+import com.nashtech.cache.CarsChangedEvent;
+import com.nashtech.cache.DataVersions;
+import com.nashtech.service.CloudDataService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BrandIndexUpdaterTest {
+
+    @Mock
+    private CloudDataService cloudDataService;
+
+    @Mock
+    private BrandCache brandCache;
+
+    @Mock
+    private DataVersions dataVersions;
+
+    @InjectMocks
+    private BrandIndexUpdater brandIndexUpdater;
+
+    @SuppressWarnings("unchecked")
+    private final ArgumentCaptor<Set<String>> brands =
+            ArgumentCaptor.forClass(Set.class);
+
+    @Test
+    void testFlush_RecountsEachChangedBrandOnce() {
+        when(cloudDataService.refreshBrandCounts(anySet())).thenReturn(Mono.just(Set.of()));
+        brandIndexUpdater.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+        brandIndexUpdater.onCarsChanged(new CarsChangedEvent(Set.of("BMW", "Audi")));
+
+        StepVerifier.create(brandIndexUpdater.flush()).verifyComplete();
+        StepVerifier.create(brandIndexUpdater.flush()).verifyComplete();
+
+        verify(cloudDataService).refreshBrandCounts(brands.capture());
+        assertThat(brands.getValue()).containsExactlyInAnyOrder("BMW", "Audi");
+    }
+
+    @Test
+    void testFlush_DropsTheBrandCacheBeforeBumpingTheVersion() {
+        when(cloudDataService.refreshBrandCounts(anySet())).thenReturn(Mono.just(Set.of("BMW")));
+        brandIndexUpdater.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+
+        StepVerifier.create(brandIndexUpdater.flush()).verifyComplete();
+
+        InOrder order = inOrder(cloudDataService, brandCache, dataVersions);
+        order.verify(cloudDataService).refreshBrandCounts(anySet());
+        order.verify(brandCache).invalidate();
+        order.verify(dataVersions).bumpBrands();
+    }
+
+    @Test
+    void testFlush_CountChangesKeepTheBrandList() {
+        when(cloudDataService.refreshBrandCounts(anySet())).thenReturn(Mono.just(Set.of()));
+        brandIndexUpdater.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+
+        StepVerifier.create(brandIndexUpdater.flush()).verifyComplete();
+
+        verify(brandCache, never()).invalidate();
+        verify(dataVersions, never()).bumpBrands();
+    }
+
+    @Test
+    void testFlush_NothingChangedSkipsTheIndex() {
+        StepVerifier.create(brandIndexUpdater.flush()).verifyComplete();
+
+        verify(cloudDataService, never()).refreshBrandCounts(anySet());
+    }
+
+    @Test
+    void testFlush_FailedBrandsAreKeptForTheNextFlush() {
+        when(cloudDataService.refreshBrandCounts(anySet()))
+                .thenReturn(Mono.error(new IllegalStateException("unavailable")))
+                .thenReturn(Mono.just(Set.of("BMW")));
+        brandIndexUpdater.onCarsChanged(new CarsChangedEvent(Set.of("BMW")));
+
+        StepVerifier.create(brandIndexUpdater.flush()).verifyComplete();
+        StepVerifier.create(brandIndexUpdater.flush()).verifyComplete();
+
+        verify(cloudDataService, times(2)).refreshBrandCounts(brands.capture());
+        assertThat(brands.getValue()).containsExactly("BMW");
+        verify(brandCache).invalidate();
+    }
+}
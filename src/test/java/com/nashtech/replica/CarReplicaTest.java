@@ -0,0 +1,150 @@
+package com.nashtech.replica;
+
+import com.nashtech.cache.DataVersions;
+import com.nashtech.model.Car;
+import com.nashtech.model.CarBrand;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CarReplicaTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CarReplica carReplica;
+
+    @BeforeEach
+    void setUp() {
+        carReplica = new CarReplica();
+        ReflectionTestUtils.setField(carReplica, "meterRegistry", meterRegistry);
+        carReplica.init();
+    }
+
+    private static Car car(final int carId, final String brand, final Double price) {
+        return new Car(carId, brand, "model", 2020L, null, null, price);
+    }
+
+    @Test
+    void testGetCarsByBrand_MaterializesRowsOfTheBrand() {
+        carReplica.upsert("a", car(1, "BMW", 10.0), Instant.now());
+        carReplica.upsert("b", car(2, "Audi", null), Instant.now());
+        carReplica.upsert("c", car(3, "BMW", 30.0), Instant.now());
+
+        assertThat(carReplica.getCarsByBrand("BMW")).extracting(Car::getCarId).containsExactly(1, 3);
+        Car audi = carReplica.getCarsByBrand("Audi").get(0);
+        assertThat(audi.getPrice()).isNull();
+        assertThat(audi.getColor()).isNull();
+        assertThat(audi.getModel()).isEqualTo("model");
+        assertThat(carReplica.getCarsByBrand("Tesla")).isEmpty();
+    }
+
+    @Test
+    void testUpsertAndRemove_KeepBrandListCurrent() {
+        carReplica.upsert("a", car(1, "BMW", 10.0), Instant.now());
+        carReplica.upsert("b", car(2, "Audi", 20.0), Instant.now());
+        carReplica.upsert("c", car(3, "Audi", 30.0), Instant.now());
+
+        carReplica.upsert("a", car(1, "Audi", 10.0), Instant.now());
+        carReplica.remove("b", Instant.now());
+        carReplica.remove("unknown", Instant.now());
+
+        assertThat(carReplica.getBrands()).extracting(CarBrand::getBrand).containsExactly("Audi");
+        assertThat(carReplica.getCarsByBrand("Audi")).extracting(Car::getCarId)
+                .containsExactlyInAnyOrder(1, 3);
+        assertThat(carReplica.getCarsByBrand("BMW")).isEmpty();
+    }
+
+    @Test
+    void testReset_DropsCarsAndStopsAnsweringReads() {
+        carReplica.upsert("a", car(1, "BMW", 10.0), Instant.now());
+        carReplica.markReady();
+
+        carReplica.reset();
+
+        assertThat(carReplica.isReady()).isFalse();
+        assertThat(carReplica.getBrands()).isEmpty();
+        assertThat(carReplica.getCarsByBrand("BMW")).isEmpty();
+    }
+
+    @Test
+    void testChanges_BumpTheVersionsOnceApplied() {
+        DataVersions dataVersions = new DataVersions();
+        ReflectionTestUtils.setField(carReplica, "dataVersions", dataVersions);
+        carReplica.upsert("a", car(1, "BMW", 10.0), Instant.now());
+        long bmw = dataVersions.getCarsVersion("BMW");
+        long audi = dataVersions.getCarsVersion("Audi");
+        long brands = dataVersions.getBrandsVersion();
+
+        carReplica.upsert("a", car(1, "Audi", 10.0), Instant.now());
+
+        assertThat(dataVersions.getCarsVersion("BMW")).isGreaterThan(bmw);
+        assertThat(dataVersions.getCarsVersion("Audi")).isGreaterThan(audi);
+        assertThat(dataVersions.getBrandsVersion()).isGreaterThan(brands);
+
+        audi = dataVersions.getCarsVersion("Audi");
+        carReplica.remove("a", Instant.now());
+        assertThat(dataVersions.getCarsVersion("Audi")).isGreaterThan(audi);
+
+        long tesla = dataVersions.getCarsVersion("Tesla");
+        carReplica.reset();
+        assertThat(dataVersions.getCarsVersion("Tesla")).isGreaterThan(tesla);
+    }
+
+    @Test
+    void testMetrics_ReportSizeMemoryAndLag() {
+        for (int carId = 0; carId < 2_000; carId++) {
+            carReplica.upsert("car-" + carId, car(carId, "BMW", 1.0), Instant.now().minusSeconds(2));
+        }
+        carReplica.markReady();
+
+        assertThat(carReplica.isReady()).isTrue();
+        assertThat(meterRegistry.get("replica.cars").gauge().value()).isEqualTo(2_000);
+        assertThat(meterRegistry.get("replica.memory").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("replica.lag").timer().count()).isEqualTo(2_000);
+        assertThat(meterRegistry.get("replica.lag").timer().mean(TimeUnit.SECONDS))
+                .isGreaterThanOrEqualTo(2.0);
+    }
+
+    @Test
+    void testUpsertAndRemove_BumpTheBrandListOnlyWhenABrandComesOrGoes() {
+        DataVersions dataVersions = new DataVersions();
+        ReflectionTestUtils.setField(carReplica, "dataVersions", dataVersions);
+
+        carReplica.upsert("a", car(1, "BMW", 10.0), Instant.now());
+        long afterFirst = dataVersions.getBrandsVersion();
+        long bmwAfterFirst = dataVersions.getCarsVersion("BMW");
+        carReplica.upsert("b", car(2, "BMW", 20.0), Instant.now());
+        carReplica.upsert("a", car(1, "BMW", 15.0), Instant.now());
+
+        assertThat(afterFirst).isPositive();
+        assertThat(dataVersions.getBrandsVersion()).isEqualTo(afterFirst);
+        assertThat(dataVersions.getCarsVersion("BMW")).isGreaterThan(bmwAfterFirst);
+
+        carReplica.remove("a", Instant.now());
+        assertThat(dataVersions.getBrandsVersion()).isEqualTo(afterFirst);
+
+        carReplica.upsert("b", car(2, "Audi", 20.0), Instant.now());
+        assertThat(dataVersions.getBrandsVersion()).isGreaterThan(afterFirst);
+    }
+
+    @Test
+    void testReplace_DropsTheCarsMissingFromTheReload() {
+        carReplica.upsert("a", car(1, "BMW", 10.0), Instant.now());
+        carReplica.upsert("b", car(2, "Audi", 20.0), Instant.now());
+        CarColumns reloaded = new CarColumns();
+        reloaded.upsert("a", car(1, "BMW", 10.0));
+
+        carReplica.replace(reloaded);
+
+        assertThat(carReplica.getCarsByBrand("BMW")).extracting(Car::getCarId).containsExactly(1);
+        assertThat(carReplica.getCarsByBrand("Audi")).isEmpty();
+        assertThat(carReplica.getBrands()).extracting(CarBrand::getBrand).containsExactly("BMW");
+    }
+}
@@ -1,23 +1,30 @@
 package com.nashtech.service;
 
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.spring.data.cosmos.exception.CosmosAccessException;
 import com.nashtech.exception.DataNotFoundException;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.entity.AzureBrandEntity;
+import com.nashtech.repository.CosmosBrandRepository;
 import com.nashtech.repository.CosmosDbRepository;
+import com.nashtech.repository.CosmosQueryExecutor;
 import com.nashtech.service.impl.CosmosDbService;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.messaging.Message;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.mockito.Mockito.*;
@@ -30,6 +37,12 @@ class CosmosDbServiceTest {
     @Mock
     private CosmosDbRepository cosmosDbRepository;
 
+    @Mock
+    private CosmosBrandRepository cosmosBrandRepository;
+
+    @Mock
+    private CosmosQueryExecutor cosmosQueryExecutor;
+
     @Mock
     private KafkaTemplate<String, Car> kafkaTemplate;
 
@@ -42,24 +55,30 @@ class CosmosDbServiceTest {
         reset(kafkaTemplate);
     }
 
+    private void stubCarsByBrand(final Flux<Car> cars) {
+        Mockito.when(cosmosQueryExecutor.query(eq("carsByBrand"), any(), any(), any(),
+                eq(Car.class))).thenReturn(cars);
+    }
+
     @Test
     void testGetCarsByBrand() {
         final Flux<Car> carFlux = Flux.just(
                 new Car(0, "brand", "model", 2020L, "color", 0.0, 0.0));
 
-        Mockito.when(cosmosDbRepository.getAllCarsByBrand(ArgumentMatchers.anyString())).thenReturn(carFlux);
+        stubCarsByBrand(carFlux);
         // Run the test
         final Flux<Car> result = cosmosDbService.getCarsByBrand("brand");
         StepVerifier.create(result)
                 .expectNextMatches(car -> car.getBrand().equals("brand")) 
                 .verifyComplete();
-        Mockito.verify(cosmosDbRepository,Mockito.times(1)).getAllCarsByBrand("brand");
+        Mockito.verify(cosmosQueryExecutor, Mockito.times(1)).query(eq("carsByBrand"),
+                any(), any(), any(), eq(Car.class));
     }
 
     @Test
     void testGetCarsByBrand_ReactiveDataRepositoryReturnsError() {
         // Setup
-        Mockito.when(cosmosDbRepository.getAllCarsByBrand("brand")).thenReturn(Flux.error(
+        stubCarsByBrand(Flux.error(
                 new CosmosAccessException("Failed to retrieve Cars by Brand")));
 
         // Run the test
@@ -74,7 +93,7 @@ class CosmosDbServiceTest {
     @Test
     void testGetCarsByBrand_ReactiveDataRepositoryReturnsNoItem() {
         // Setup
-        Mockito.when(cosmosDbRepository.getAllCarsByBrand("brand")).thenReturn(Flux.empty());
+        stubCarsByBrand(Flux.empty());
 
         // Run the test
         final Flux<Car> result = cosmosDbService.getCarsByBrand("brand");
@@ -86,11 +105,37 @@ class CosmosDbServiceTest {
     }
 
 
+    @Test
+    void testGetCarsByBrands_LooksUpBrandsWithOneInQuery() {
+        Car car = new Car(0, "BMW", "model", 2020L, "color", 0.0, 0.0);
+        ArgumentCaptor<SqlQuerySpec> query = ArgumentCaptor.forClass(SqlQuerySpec.class);
+        Mockito.when(cosmosQueryExecutor.query(eq("carsByBrands"), any(), query.capture(),
+                any(), eq(Car.class))).thenReturn(Flux.just(car));
+
+        StepVerifier.create(cosmosDbService.getCarsByBrands(List.of("BMW", "Audi")))
+                .expectNext(car)
+                .verifyComplete();
+        assertThat(query.getValue().getQueryText())
+                .isEqualTo("SELECT * FROM c WHERE c.brand IN (@brand0, @brand1)");
+        assertThat(query.getValue().getParameters().size()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetCarsByBrands_MapsCosmosFailures() {
+        Mockito.when(cosmosQueryExecutor.query(eq("carsByBrands"), any(), any(),
+                any(), eq(Car.class))).thenReturn(Flux.error(mock(CosmosException.class)));
+
+        StepVerifier.create(cosmosDbService.getCarsByBrands(List.of("BMW", "Audi")))
+                .expectError(CosmosAccessException.class)
+                .verify();
+    }
+
     @Test
     void testGetAllBrands() {
         // Setup
         final List<CarBrand> expectedBrands = Arrays.asList(new CarBrand("brand1"), new CarBrand("brand2"));
         final Flux<CarBrand> BrandsFlux = Flux.fromIterable(expectedBrands);
+        Mockito.when(cosmosBrandRepository.findAll()).thenReturn(Flux.empty());
         Mockito.when(cosmosDbRepository.findDistinctBrands()).thenReturn(BrandsFlux);
 
         // Run the test
@@ -106,6 +151,7 @@ class CosmosDbServiceTest {
     void testGetAllBrands_ReactiveDataRepositoryReturnsError() {
         // Setup
         final Flux<CarBrand> BrandsFlux = Flux.error(new CosmosAccessException("Failed to retrieve All brands"));
+        Mockito.when(cosmosBrandRepository.findAll()).thenReturn(Flux.empty());
         Mockito.when(cosmosDbRepository.findDistinctBrands()).thenReturn(BrandsFlux);
 
         // Run the test
@@ -120,6 +166,7 @@ class CosmosDbServiceTest {
     @Test
     void testGetAllBrands_ReactiveDataRepositoryReturnsNoItem() {
         // Setup
+        Mockito.when(cosmosBrandRepository.findAll()).thenReturn(Flux.empty());
         Mockito.when(cosmosDbRepository.findDistinctBrands()).thenReturn(Flux.empty());
 
         // Run the test
@@ -139,6 +186,7 @@ class CosmosDbServiceTest {
         CarBrand brand3 = new CarBrand("Mercedes");
 
         // Mock the reactiveDataService to return Flux with duplicate brands
+        Mockito.when(cosmosBrandRepository.findAll()).thenReturn(Flux.empty());
         Mockito.when(cosmosDbRepository.findDistinctBrands()).thenReturn(Flux.just(brand1, brand2, brand1, brand3, brand2));
 
         // Run the test
@@ -160,31 +208,88 @@ class CosmosDbServiceTest {
     }
 
 
+    @Test
+    void testGetAllBrands_ServedFromBrandIndex() {
+        Mockito.when(cosmosBrandRepository.findAll()).thenReturn(Flux.just(
+                new AzureBrandEntity("BMW", "BMW", 3L),
+                new AzureBrandEntity("Audi", "Audi", 0L)));
+
+        StepVerifier.create(cosmosDbService.getAllBrands())
+                .expectNextMatches(brand -> brand.getBrand().equals("BMW"))
+                .verifyComplete();
+        verify(cosmosDbRepository, never()).findDistinctBrands();
+    }
 
     @Test
     void testPushData() {
         // Arrange
         Car car = new Car(0, "brand", "model", 2020L, "color", 0.0, 0.0);
-
-        // Mock the behavior of kafkaTemplate.send() using doAnswer()
-        doAnswer(invocation -> {
-            Message<Car> message = invocation.getArgument(0);
-            // Perform any additional verification/assertion on the message if needed
-            return null; // Return null since the method is void
-        }).when(kafkaTemplate).send(any(Message.class));
+        ArgumentCaptor<ProducerRecord<String, Car>> record = ArgumentCaptor.forClass(ProducerRecord.class);
+        when(kafkaTemplate.send(record.capture()))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
         // Act
         Mono<Void> result = cosmosDbService.pushData(car);
 
-        // Assert
-        // Verify that kafkaTemplate.send() was called with the correct message
-        verify(kafkaTemplate, times(1)).send(any(Message.class));
-
-        // Verify that the Mono returned by the pushData method is empty
+        // Verify that the Mono returned by the pushData method completes
+        // once the send has been acknowledged
         StepVerifier.create(result)
                 .expectSubscription()
                 .expectComplete()
                 .verify();
+        verify(kafkaTemplate, times(1)).send(any(ProducerRecord.class));
+
+        // The record is keyed by brand for partition locality
+        assertThat(record.getValue().key()).isEqualTo("brand");
+        assertThat(record.getValue().value()).isSameAs(car);
     }
-}
 
+    @Test
+    void testPushData_SendFailureIsPropagated() {
+        Car car = new Car(0, "brand", "model", 2020L, "color", 0.0, 0.0);
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new KafkaException("broker down")));
+
+        StepVerifier.create(cosmosDbService.pushData(car))
+                .expectError(KafkaException.class)
+                .verify();
+    }
+
+    @Test
+    void testPushData_NothingIsSentBeforeSubscription() {
+        Car car = new Car(0, "brand", "model", 2020L, "color", 0.0, 0.0);
+
+        cosmosDbService.pushData(car);
+
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void testRefreshBrandCounts_ReportsBrandsGainingTheirFirstCar() {
+        when(cosmosQueryExecutor.query(eq("brandCount"), any(), any(), any(), eq(Long.class)))
+                .thenReturn(Flux.just(3L));
+        when(cosmosBrandRepository.findById(anyString(), any(com.azure.cosmos.models.PartitionKey.class)))
+                .thenReturn(Mono.empty());
+        when(cosmosBrandRepository.save(any(AzureBrandEntity.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(cosmosDbService.refreshBrandCounts(Set.of("BMW")))
+                .assertNext(changed -> assertThat(changed).isEqualTo(Set.of("BMW")))
+                .verifyComplete();
+    }
+
+    @Test
+    void testRefreshBrandCounts_CountChangesAreNotReported() {
+        when(cosmosQueryExecutor.query(eq("brandCount"), any(), any(), any(), eq(Long.class)))
+                .thenReturn(Flux.just(6L));
+        when(cosmosBrandRepository.findById(anyString(), any(com.azure.cosmos.models.PartitionKey.class)))
+                .thenReturn(Mono.just(new AzureBrandEntity("BMW", "BMW", 5L)));
+        when(cosmosBrandRepository.save(any(AzureBrandEntity.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(cosmosDbService.refreshBrandCounts(Set.of("BMW")))
+                .assertNext(changed -> assertThat(changed).isEqualTo(Set.of()))
+                .verifyComplete();
+        verify(cosmosBrandRepository).save(new AzureBrandEntity("BMW", "BMW", 6L));
+    }
+}
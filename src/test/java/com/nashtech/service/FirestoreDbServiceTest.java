@@ -1,52 +1,110 @@
 package com.nashtech.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.cloud.pubsub.v1.Publisher;
+import com.google.pubsub.v1.PubsubMessage;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
 import com.google.cloud.spring.data.firestore.FirestoreDataException;
+import com.nashtech.entity.GCPBrandEntity;
 import com.nashtech.entity.GCPCarEntity;
 import com.nashtech.exception.DataNotFoundException;
+import com.nashtech.exception.InvalidRequestException;
+import com.nashtech.messaging.ReactivePubSubPublisher;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarField;
+import com.nashtech.repository.FirestoreBrandRepository;
 import com.nashtech.repository.FirestoreDbRepository;
 import com.nashtech.service.impl.FirestoreDbService;
+import com.nashtech.util.CarIdDeduplicator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class FirestoreDbServiceTest {
 
     @Mock
-    private Publisher publisher;
+    private ReactivePubSubPublisher pubSubPublisher;
 
     @Mock
     private ObjectMapper objectMapper;
     @Mock
     private FirestoreDbRepository firestoreDbRepository;
 
+    @Mock
+    private FirestoreBrandRepository firestoreBrandRepository;
+
+    @Mock
+    private Firestore firestore;
+
     @InjectMocks
     private FirestoreDbService firestoreDbService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        CarIdDeduplicator carIdDeduplicator = new CarIdDeduplicator();
+        ReflectionTestUtils.setField(carIdDeduplicator, "meterRegistry", new SimpleMeterRegistry());
+        carIdDeduplicator.init();
+        ReflectionTestUtils.setField(firestoreDbService, "carIdDeduplicator", carIdDeduplicator);
     }
 
     @Test
     void testPushData() throws Exception {
         Car testCar = new Car(22, "Toyota", "Camry", 2023L, "red", 2223.0, 22253.12);
+        when(objectMapper.writeValueAsBytes(testCar)).thenReturn(new byte[]{});
+        when(pubSubPublisher.publish(any(PubsubMessage.class)))
+                .thenReturn(Mono.just("message-id"));
 
         Mono<Void> result = firestoreDbService.pushData(testCar);
 
         StepVerifier.create(result)
                 .expectComplete()
                 .verify();
+        ArgumentCaptor<PubsubMessage> message =
+                ArgumentCaptor.forClass(PubsubMessage.class);
+        verify(pubSubPublisher).publish(message.capture());
+        assertEquals("application/json",
+                message.getValue().getAttributesOrThrow("content-type"));
+    }
+
+    @Test
+    void testPushData_PublishFailureIsPropagated() throws Exception {
+        Car testCar = new Car(22, "Toyota", "Camry", 2023L, "red", 2223.0, 22253.12);
+        when(objectMapper.writeValueAsBytes(testCar)).thenReturn(new byte[]{});
+        when(pubSubPublisher.publish(any(PubsubMessage.class)))
+                .thenReturn(Mono.error(new IllegalStateException("unavailable")));
+
+        StepVerifier.create(firestoreDbService.pushData(testCar))
+                .expectError(IllegalStateException.class)
+                .verify();
     }
 
 
@@ -64,6 +122,7 @@ public class FirestoreDbServiceTest {
         gcpCarEntity.setMileage(0.0);
         gcpCarEntity.setPrice(0.0);
         final Flux<GCPCarEntity> gcpCarEntityFlux = Flux.just(gcpCarEntity);
+        when(firestoreBrandRepository.findAll()).thenReturn(Flux.empty());
         when(firestoreDbRepository.findAll()).thenReturn(gcpCarEntityFlux);
 
         // Run the test
@@ -81,6 +140,7 @@ public class FirestoreDbServiceTest {
         // Setup
         // Configure FirestoreDbRepository.findAll(...).
         final Flux<GCPCarEntity> gcpCarEntityFlux = Flux.error(new FirestoreDataException("message"));
+        when(firestoreBrandRepository.findAll()).thenReturn(Flux.empty());
         when(firestoreDbRepository.findAll()).thenReturn(gcpCarEntityFlux);
 
         // Run the test
@@ -96,6 +156,7 @@ public class FirestoreDbServiceTest {
     @Test
     public void testGetAllBrands_FirestoreDbRepositoryReturnsNoItem() {
         // Setup
+        when(firestoreBrandRepository.findAll()).thenReturn(Flux.empty());
         when(firestoreDbRepository.findAll()).thenReturn(Flux.empty());
 
         // Run the test
@@ -107,6 +168,18 @@ public class FirestoreDbServiceTest {
                 .verify();
     }
 
+    @Test
+    public void testGetAllBrands_ServedFromBrandIndex() {
+        final GCPBrandEntity indexed = new GCPBrandEntity("BMW", "BMW", 3L);
+        final GCPBrandEntity emptied = new GCPBrandEntity("Audi", "Audi", 0L);
+        when(firestoreBrandRepository.findAll()).thenReturn(Flux.just(indexed, emptied));
+
+        StepVerifier.create(firestoreDbService.getAllBrands())
+                .expectNextMatches(carBrand -> carBrand.getBrand().equals("BMW"))
+                .verifyComplete();
+        verify(firestoreDbRepository, Mockito.never()).findAll();
+    }
+
     @Test
     public void testGetCarsByBrand() {
         // Setup
@@ -132,6 +205,21 @@ public class FirestoreDbServiceTest {
                 .verify();
     }
 
+    @Test
+    public void testGetCarsByBrand_DropsCarsReturnedTwice() {
+        final GCPCarEntity first = new GCPCarEntity();
+        first.setCarId(7);
+        first.setBrand("brand");
+        final GCPCarEntity second = new GCPCarEntity();
+        second.setCarId(8);
+        second.setBrand("brand");
+        when(firestoreDbRepository.findByBrand("brand")).thenReturn(Flux.just(first, second, first));
+
+        StepVerifier.create(firestoreDbService.getCarsByBrand("brand").map(Car::getCarId))
+                .expectNext(7, 8)
+                .verifyComplete();
+    }
+
     @Test
     public void testGetCarsByBrand_FirestoreDbRepositoryReturnsError() {
         // Setup
@@ -160,4 +248,83 @@ public class FirestoreDbServiceTest {
                 .verify();
     }
 
+    @Test
+    public void testGetCarsPageByBrand_MalformedPositionIsRejected() {
+        StepVerifier.create(firestoreDbService.getCarsByBrand("brand", 10, "Car/other", EnumSet.allOf(CarField.class)))
+                .expectError(InvalidRequestException.class)
+                .verify();
+        StepVerifier.create(firestoreDbService.getCarsByBrand("brand", 10, "__id__", EnumSet.allOf(CarField.class)))
+                .expectError(InvalidRequestException.class)
+                .verify();
+    }
+
+    private Query stubCarsByBrandsQuery() {
+        CollectionReference cars = mock(CollectionReference.class);
+        Query query = mock(Query.class);
+        ReflectionTestUtils.setField(firestoreDbService, "firestore", firestore);
+        when(firestore.collection("Car")).thenReturn(cars);
+        when(cars.whereIn("brand", List.of("BMW"))).thenReturn(query);
+        when(query.orderBy(any(FieldPath.class))).thenReturn(query);
+        when(query.limit(anyInt())).thenReturn(query);
+        return query;
+    }
+
+    private static QueryDocumentSnapshot document(final int carId) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        GCPCarEntity entity = new GCPCarEntity();
+        entity.setCarId(carId);
+        entity.setBrand("BMW");
+        when(document.toObject(GCPCarEntity.class)).thenReturn(entity);
+        return document;
+    }
+
+    private static QuerySnapshot snapshot(final List<QueryDocumentSnapshot> documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(documents);
+        return snapshot;
+    }
+
+    @Test
+    public void testGetCarsByBrands_ShortPageEndsTheStream() {
+        Query query = stubCarsByBrandsQuery();
+        QuerySnapshot page = snapshot(List.of(document(1), document(2)));
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(page));
+
+        StepVerifier.create(firestoreDbService.getCarsByBrands(List.of("BMW")))
+                .expectNextMatches(car -> car.getCarId() == 1)
+                .expectNextMatches(car -> car.getCarId() == 2)
+                .verifyComplete();
+        verify(query, times(1)).get();
+        verify(query, never()).startAfter(any(DocumentSnapshot.class));
+    }
+
+    @Test
+    public void testGetCarsByBrands_NoPageIsReadOnceCancelled() {
+        Query query = stubCarsByBrandsQuery();
+        QuerySnapshot page = snapshot(Collections.nCopies(500, document(1)));
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(page));
+
+        StepVerifier.create(firestoreDbService.getCarsByBrands(List.of("BMW")).take(1))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(query, times(1)).get();
+    }
+
+    @Test
+    public void testGetCarsByBrandProjected_DeduplicatesOnAnUnselectedCarId() {
+        CollectionReference cars = mock(CollectionReference.class);
+        Query query = mock(Query.class);
+        ReflectionTestUtils.setField(firestoreDbService, "firestore", firestore);
+        when(firestore.collection("Car")).thenReturn(cars);
+        when(cars.whereEqualTo("brand", "BMW")).thenReturn(query);
+        when(query.select("carId", "model")).thenReturn(query);
+        when(query.orderBy(any(FieldPath.class))).thenReturn(query);
+        when(query.limit(anyInt())).thenReturn(query);
+        QuerySnapshot page = snapshot(List.of(document(1), document(1)));
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(page));
+
+        StepVerifier.create(firestoreDbService.getCarsByBrand("BMW", EnumSet.of(CarField.MODEL)))
+                .expectNextMatches(car -> car.getCarId() == null)
+                .verifyComplete();
+    }
 }
@@ -0,0 +1,116 @@
+package com.nashtech.service;
+
+import com.nashtech.exception.DataNotFoundException;
+import com.nashtech.model.IngestionJobStatus;
+import com.nashtech.model.IngestionProgress;
+import com.nashtech.model.IngestionSummary;
+import com.nashtech.model.JobStatus;
+import com.nashtech.service.impl.IngestionJobServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.PublisherProbe;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionJobServiceImplTest {
+
+    @Mock
+    private ReactiveDataService reactiveDataService;
+
+    @InjectMocks
+    private IngestionJobServiceImpl ingestionJobService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ingestionJobService, "progressInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(ingestionJobService, "maxRetained", 2);
+    }
+
+    @Test
+    void testStart_ReportsProgressOfTheRun() {
+        when(reactiveDataService.fetchAndSendData(any())).thenAnswer(invocation -> {
+            IngestionProgress progress = invocation.getArgument(0);
+            progress.recordFetched();
+            progress.recordFetched();
+            progress.recordPublished(TimeUnit.MILLISECONDS.toNanos(4));
+            progress.recordFailed(new IllegalStateException("unavailable"));
+            return Mono.just(progress.toSummary());
+        });
+
+        IngestionJobStatus started = ingestionJobService.start();
+
+        StepVerifier.create(ingestionJobService.getJob(started.getId()))
+                .assertNext(status -> {
+                    assertThat(status.getStatus()).isEqualTo(JobStatus.COMPLETED);
+                    assertThat(status.getFetched()).isEqualTo(2);
+                    assertThat(status.getPublished()).isEqualTo(1);
+                    assertThat(status.getFailed()).isEqualTo(1);
+                    assertThat(status.getP99LatencyMillis()).isBetween(4.0, 4.5);
+                    assertThat(status.getLastError()).isEqualTo("unavailable");
+                    assertThat(status.getFinishedAt()).isNotNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testCancel_DisposesTheRun() {
+        PublisherProbe<IngestionSummary> run = PublisherProbe.of(Mono.never());
+        when(reactiveDataService.fetchAndSendData(any())).thenReturn(run.mono());
+        IngestionJobStatus started = ingestionJobService.start();
+
+        StepVerifier.create(ingestionJobService.cancel(started.getId()))
+                .assertNext(status -> assertThat(status.getStatus()).isEqualTo(JobStatus.CANCELLED))
+                .verifyComplete();
+        run.assertWasCancelled();
+    }
+
+    @Test
+    void testWatch_EndsWithTheFinalStatus() {
+        when(reactiveDataService.fetchAndSendData(any())).thenReturn(Mono.never());
+        IngestionJobStatus started = ingestionJobService.start();
+
+        StepVerifier.create(ingestionJobService.watch(started.getId()))
+                .assertNext(status -> assertThat(status.getStatus()).isEqualTo(JobStatus.RUNNING))
+                .then(() -> ingestionJobService.cancel(started.getId()).subscribe())
+                .thenConsumeWhile(status -> status.getStatus() == JobStatus.RUNNING)
+                .assertNext(status -> assertThat(status.getStatus()).isEqualTo(JobStatus.CANCELLED))
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetJob_UnknownJob() {
+        StepVerifier.create(ingestionJobService.getJob("missing"))
+                .expectError(DataNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void testStart_EvictsOldestFinishedJobs() {
+        when(reactiveDataService.fetchAndSendData(any()))
+                .thenReturn(Mono.error(new IllegalStateException("down")));
+
+        IngestionJobStatus first = ingestionJobService.start();
+        ingestionJobService.start();
+        IngestionJobStatus third = ingestionJobService.start();
+
+        StepVerifier.create(ingestionJobService.getJob(first.getId()))
+                .expectError(DataNotFoundException.class)
+                .verify();
+        StepVerifier.create(ingestionJobService.getJob(third.getId()))
+                .assertNext(status -> assertThat(status.getStatus()).isEqualTo(JobStatus.FAILED))
+                .verifyComplete();
+    }
+}
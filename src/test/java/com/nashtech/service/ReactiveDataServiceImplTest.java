@@ -1,10 +1,20 @@
 package com.nashtech.service;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.BDDMockito.*;
+import com.nashtech.cache.BrandCache;
+import com.nashtech.model.BrandStats;
 import com.nashtech.model.Car;
 import com.nashtech.model.CarBrand;
+import com.nashtech.model.CarField;
+import com.nashtech.model.CarPage;
+import com.nashtech.replica.CarReplica;
+import com.nashtech.spool.PublishSpool;
+import com.nashtech.exception.DataNotFoundException;
+import com.nashtech.exception.InvalidRequestException;
 import com.nashtech.service.impl.ReactiveDataServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,25 +22,38 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
 @ExtendWith(MockitoExtension.class)
 public class ReactiveDataServiceImplTest {
 
+    private static final Set<CarField> ALL_FIELDS = CarField.parse(null);
+
     @Mock
     private CloudDataService cloudDataService;
 
     @Mock
     private WebClient webClient;
 
+    @Mock
+    private BrandCache brandCache;
+
     @InjectMocks
     private ReactiveDataServiceImpl reactiveDataService;
 
@@ -65,7 +88,7 @@ public class ReactiveDataServiceImplTest {
         CarBrand brand1 = new CarBrand("Toyota");
         CarBrand brand2 = new CarBrand("Honda");
         Flux<CarBrand> carBrandFlux = Flux.just(brand1, brand2);
-        when(cloudDataService.getAllBrands()).thenReturn(carBrandFlux);
+        when(brandCache.getBrands()).thenReturn(carBrandFlux);
 
         // Invoke the method to test
         Flux<CarBrand> resultFlux = reactiveDataService.getAllBrands();
@@ -104,4 +127,213 @@ public class ReactiveDataServiceImplTest {
                 });
 
     }
+
+    @Test
+    void testFetchAndSendData_ReportsPublishedAndFailedCounts() {
+        String body = "[{\"carId\":1,\"brand\":\"Toyota\"},"
+                + "{\"carId\":2,\"brand\":\"Honda\"},"
+                + "{\"carId\":3,\"brand\":\"Toyota\"}]";
+        WebClient stubClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(
+                        ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.CONTENT_TYPE,
+                                        MediaType.APPLICATION_JSON_VALUE)
+                                .body(body)
+                                .build()))
+                .build();
+        ReflectionTestUtils.setField(reactiveDataService, "webClient", stubClient);
+        ReflectionTestUtils.setField(reactiveDataService, "apiUrl", "/vehicle.json");
+        ReflectionTestUtils.setField(reactiveDataService, "concurrency", 2);
+        ReflectionTestUtils.setField(reactiveDataService, "bufferSize", 16);
+        ReflectionTestUtils.setField(reactiveDataService, "maxRetries", 2L);
+        ReflectionTestUtils.setField(reactiveDataService, "retryBackoff", Duration.ofMillis(1));
+
+        // Honda is never accepted by the broker, Toyota always is
+        when(cloudDataService.pushData(any(Car.class))).thenAnswer(invocation -> {
+            Car car = invocation.getArgument(0);
+            if ("Honda".equals(car.getBrand())) {
+                return Mono.error(new IllegalStateException("broker down"));
+            }
+            return Mono.empty();
+        });
+
+        StepVerifier.create(reactiveDataService.fetchAndSendData())
+                .assertNext(summary -> {
+                    assertThat(summary.getPublished()).isEqualTo(2);
+                    assertThat(summary.getFailed()).isEqualTo(1);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testFetchAndSendData_CountsSpooledCarsApart() {
+        WebClient stubClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(
+                        ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.CONTENT_TYPE,
+                                        MediaType.APPLICATION_JSON_VALUE)
+                                .body("[{\"carId\":1,\"brand\":\"Toyota\"}]")
+                                .build()))
+                .build();
+        PublishSpool publishSpool = mock(PublishSpool.class);
+        when(publishSpool.append(any(Car.class))).thenReturn(true);
+        ReflectionTestUtils.setField(reactiveDataService, "webClient", stubClient);
+        ReflectionTestUtils.setField(reactiveDataService, "apiUrl", "/vehicle.json");
+        ReflectionTestUtils.setField(reactiveDataService, "concurrency", 2);
+        ReflectionTestUtils.setField(reactiveDataService, "bufferSize", 16);
+        ReflectionTestUtils.setField(reactiveDataService, "publishSpool", publishSpool);
+
+        StepVerifier.create(reactiveDataService.fetchAndSendData())
+                .assertNext(summary -> {
+                    assertThat(summary.getPublished()).isZero();
+                    assertThat(summary.getSpooled()).isEqualTo(1);
+                })
+                .verifyComplete();
+        verify(cloudDataService, never()).pushData(any(Car.class));
+    }
+
+    @Test
+    void testRebuildBrandIndex_InvalidatesBrandCache() {
+        when(cloudDataService.rebuildBrandIndex()).thenReturn(Mono.just(3L));
+
+        StepVerifier.create(reactiveDataService.rebuildBrandIndex())
+                .expectNext(3L)
+                .verifyComplete();
+        verify(brandCache).invalidate();
+    }
+
+    @Test
+    void testGetCarsPageByBrand_WrapsDatabasePositionsIntoCursors() {
+        ReflectionTestUtils.setField(reactiveDataService, "maxPageLimit", 100);
+        Car car = new Car(1, "Toyota", "model", 2020L, "color", 0.0, 0.0);
+        when(cloudDataService.getCarsByBrand("Toyota", 1, null, ALL_FIELDS))
+                .thenReturn(Mono.just(new CarPage(List.of(car), "token/1")));
+        when(cloudDataService.getCarsByBrand("Toyota", 1, "token/1", ALL_FIELDS))
+                .thenReturn(Mono.just(new CarPage(List.of(), null)));
+
+        CarPage first = reactiveDataService.getCarsByBrand("Toyota", 1, null, ALL_FIELDS).block();
+        assertThat(first.getItems()).isEqualTo(List.of(car));
+        assertThat(first.getNextCursor()).doesNotContain("/");
+
+        StepVerifier.create(reactiveDataService.getCarsByBrand(
+                        "Toyota", 1, first.getNextCursor(), ALL_FIELDS))
+                .assertNext(page -> assertThat(page.getNextCursor()).isNull())
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetCarsPageByBrand_RejectsLimitOutOfRange() {
+        ReflectionTestUtils.setField(reactiveDataService, "maxPageLimit", 100);
+
+        StepVerifier.create(reactiveDataService.getCarsByBrand("Toyota", 101, null, ALL_FIELDS))
+                .expectError(InvalidRequestException.class)
+                .verify();
+        StepVerifier.create(reactiveDataService.getCarsByBrand("Toyota", 10, "not base64!", ALL_FIELDS))
+                .expectError(InvalidRequestException.class)
+                .verify();
+    }
+
+    @Test
+    void testGetCarsPageByBrand_UnknownBrandIsNotFound() {
+        ReflectionTestUtils.setField(reactiveDataService, "maxPageLimit", 100);
+        when(cloudDataService.getCarsByBrand("Tesla", 10, null, ALL_FIELDS))
+                .thenReturn(Mono.just(new CarPage(List.of(), null)));
+
+        StepVerifier.create(reactiveDataService.getCarsByBrand("Tesla", 10, null, ALL_FIELDS))
+                .expectError(DataNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void testGetCarsByBrand_ServedFromLoadedReplica() {
+        CarReplica carReplica = new CarReplica();
+        ReflectionTestUtils.setField(carReplica, "meterRegistry", new SimpleMeterRegistry());
+        carReplica.init();
+        carReplica.upsert("a", new Car(1, "Toyota", "model", 2020L, "color", 0.0, 0.0), null);
+        ReflectionTestUtils.setField(reactiveDataService, "carReplica", carReplica);
+        when(cloudDataService.getCarsByBrand("Toyota")).thenReturn(Flux.empty());
+
+        // Until the replica is loaded the database answers
+        StepVerifier.create(reactiveDataService.getCarsByBrand("Toyota")).verifyComplete();
+        carReplica.markReady();
+
+        StepVerifier.create(reactiveDataService.getCarsByBrand("Toyota").map(Car::getCarId))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(reactiveDataService.getCarsByBrand("Tesla"))
+                .expectError(DataNotFoundException.class)
+                .verify();
+        StepVerifier.create(reactiveDataService.getAllBrands().map(CarBrand::getBrand))
+                .expectNext("Toyota")
+                .verifyComplete();
+        verify(cloudDataService, times(1)).getCarsByBrand("Toyota");
+        verify(brandCache, never()).getBrands();
+    }
+
+    @Test
+    void testGetCarsByBrands_LooksUpDistinctBrandsInChunks() {
+        ReflectionTestUtils.setField(reactiveDataService, "maxBatchBrands", 10);
+        ReflectionTestUtils.setField(reactiveDataService, "batchInSize", 2);
+        ReflectionTestUtils.setField(reactiveDataService, "batchConcurrency", 2);
+        Car bmw = new Car(1, "BMW", "model", 2020L, "color", 0.0, 0.0);
+        Car tesla = new Car(2, "Tesla", "model", 2020L, "color", 0.0, 0.0);
+        when(cloudDataService.getCarsByBrands(List.of("BMW", "Audi"))).thenReturn(Flux.just(bmw));
+        when(cloudDataService.getCarsByBrands(List.of("Tesla"))).thenReturn(Flux.just(tesla));
+
+        StepVerifier.create(reactiveDataService.getCarsByBrands(
+                        List.of("BMW", "Audi", "BMW", "Tesla")).map(Car::getBrand).collectList())
+                .assertNext(brands -> assertThat(new HashSet<>(brands))
+                        .isEqualTo(Set.of("BMW", "Tesla")))
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetCarsByBrands_RejectsTooManyBrands() {
+        ReflectionTestUtils.setField(reactiveDataService, "maxBatchBrands", 2);
+
+        StepVerifier.create(reactiveDataService.getCarsByBrands(List.of("BMW", "Audi", "Tesla")))
+                .expectError(InvalidRequestException.class)
+                .verify();
+        StepVerifier.create(reactiveDataService.getCarsByBrands(List.of()))
+                .expectError(InvalidRequestException.class)
+                .verify();
+        StepVerifier.create(reactiveDataService.getCarsByBrands(List.of(" ", "")))
+                .expectError(InvalidRequestException.class)
+                .verify();
+    }
+
+    @Test
+    void testGetBrandStats_BrandWithoutCarsIsNotFound() {
+        when(cloudDataService.getBrandStats("Tesla"))
+                .thenReturn(Mono.just(new BrandStats("Tesla", 0, null, null, Map.of())));
+
+        StepVerifier.create(reactiveDataService.getBrandStats("Tesla"))
+                .expectError(DataNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void testGetCarsByBrand_PushesFieldSelectionDown() {
+        Set<CarField> fields = CarField.parse("model,price");
+        when(cloudDataService.getCarsByBrand("Toyota", fields)).thenReturn(Flux.empty());
+
+        StepVerifier.create(reactiveDataService.getCarsByBrand("Toyota", fields))
+                .verifyComplete();
+        verify(cloudDataService, never()).getCarsByBrand("Toyota");
+    }
+
+    @Test
+    void testParseFields_EmptySelectionIsRejected() {
+        assertThatThrownBy(() -> CarField.parse(",")).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> CarField.parse(",,")).isInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    void testGetCarsByBrand_AllFieldsReadWholeDocuments() {
+        when(cloudDataService.getCarsByBrand("Toyota")).thenReturn(Flux.empty());
+
+        StepVerifier.create(reactiveDataService.getCarsByBrand("Toyota", ALL_FIELDS))
+                .verifyComplete();
+        verify(cloudDataService, never()).getCarsByBrand(eq("Toyota"), anySet());
+    }
 }
@@ -0,0 +1,105 @@
+package com.nashtech.spool;
+
+import com.nashtech.model.Car;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PublishSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    private PublishSpool publishSpool;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        publishSpool.close();
+    }
+
+    private PublishSpool open(final int maxBytes) throws Exception {
+        PublishSpool spool = new PublishSpool();
+        ReflectionTestUtils.setField(spool, "path", directory.resolve("publish.spool"));
+        ReflectionTestUtils.setField(spool, "maxBytes", maxBytes);
+        ReflectionTestUtils.setField(spool, "meterRegistry", new SimpleMeterRegistry());
+        spool.init();
+        return spool;
+    }
+
+    private static Car car(final int id) {
+        return new Car(id, "Toyota", "Camry", 2023L, "Red", 2223.0, 22253.12);
+    }
+
+    @Test
+    void testAppendPeekCommit() throws Exception {
+        publishSpool = open(4096);
+        publishSpool.append(car(1));
+        publishSpool.append(car(2));
+        publishSpool.append(car(3));
+
+        SpoolBatch first = publishSpool.peek(2);
+        assertThat(first.getCars()).extracting(Car::getCarId).containsExactly(1, 2);
+        assertThat(publishSpool.peek(2).getCars()).extracting(Car::getCarId).containsExactly(1, 2);
+
+        publishSpool.commit(first.getBytes());
+
+        assertThat(publishSpool.peek(10).getCars()).extracting(Car::getCarId).containsExactly(3);
+        publishSpool.commit(publishSpool.peek(10).getBytes());
+        assertThat(publishSpool.pendingBytes()).isZero();
+    }
+
+    @Test
+    void testRecoversUncommittedEntriesAfterRestart() throws Exception {
+        publishSpool = open(4096);
+        publishSpool.append(car(1));
+        publishSpool.append(car(2));
+        publishSpool.commit(publishSpool.peek(1).getBytes());
+        publishSpool.close();
+
+        publishSpool = open(4096);
+
+        assertThat(publishSpool.peek(10).getCars()).extracting(Car::getCarId).containsExactly(2);
+    }
+
+    @Test
+    void testTruncatesCorruptTailOnRecovery() throws Exception {
+        publishSpool = open(4096);
+        publishSpool.append(car(1));
+        publishSpool.append(car(2));
+        long corruptAt = PublishSpool.HEADER_SIZE + publishSpool.peek(1).getBytes()
+                + PublishSpool.FRAME_HEADER_SIZE + 2;
+        publishSpool.close();
+        try (RandomAccessFile file = new RandomAccessFile(
+                directory.resolve("publish.spool").toFile(), "rw")) {
+            file.seek(corruptAt);
+            file.write(0x7F);
+        }
+
+        publishSpool = open(4096);
+
+        assertThat(publishSpool.peek(10).getCars()).extracting(Car::getCarId).containsExactly(1);
+    }
+
+    @Test
+    void testRefusesAppendWhenFullAndCompactsOnceDrained() throws Exception {
+        publishSpool = open(PublishSpool.HEADER_SIZE + 100);
+        int appended = 0;
+        while (publishSpool.append(car(appended))) {
+            appended++;
+        }
+        assertThat(appended).isGreaterThan(1);
+
+        publishSpool.commit(publishSpool.peek(appended - 1).getBytes());
+
+        assertThat(publishSpool.append(car(99))).isTrue();
+        assertThat(publishSpool.peek(10).getCars()).extracting(Car::getCarId)
+                .containsExactly(appended - 1, 99);
+    }
+}
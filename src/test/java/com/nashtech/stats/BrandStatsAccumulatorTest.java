@@ -0,0 +1,77 @@
+package com.nashtech.stats;
+
+import com.nashtech.model.BrandStats;
+import com.nashtech.model.Car;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class BrandStatsAccumulatorTest {
+
+    private static Car car(final Long year, final Double mileage, final Double price) {
+        return Car.builder().brand("BMW").year(year).mileage(mileage).price(price).build();
+    }
+
+    @Test
+    void testToStats_FoldsCountsExtremesAndHistogram() {
+        BrandStats stats = new BrandStatsAccumulator("BMW")
+                .add(car(2020L, 100.0, 10_000.0))
+                .add(car(2021L, 300.0, 30_000.0))
+                .add(car(2020L, null, null))
+                .toStats();
+
+        assertThat(stats.getBrand()).isEqualTo("BMW");
+        assertThat(stats.getCount()).isEqualTo(3);
+        assertThat(stats.getPrice().getMin()).isEqualTo(10_000.0);
+        assertThat(stats.getPrice().getMax()).isEqualTo(30_000.0);
+        assertThat(stats.getPrice().getAvg()).isEqualTo(20_000.0);
+        assertThat(stats.getMileage().getAvg()).isEqualTo(200.0);
+        assertThat(stats.getYears()).isEqualTo(Map.of(2020L, 2L, 2021L, 1L));
+    }
+
+    @Test
+    void testToStats_LeavesFieldsWithoutValuesOut() {
+        BrandStats stats = new BrandStatsAccumulator("BMW").add(car(null, null, null)).toStats();
+
+        assertThat(stats.getCount()).isEqualTo(1);
+        assertThat(stats.getPrice()).isNull();
+        assertThat(stats.getYears()).isEmpty();
+    }
+
+    @Test
+    void testMerge_MatchesSinglePass() {
+        BrandStatsAccumulator all = new BrandStatsAccumulator("BMW");
+        BrandStatsAccumulator low = new BrandStatsAccumulator("BMW");
+        BrandStatsAccumulator high = new BrandStatsAccumulator("BMW");
+        for (int price = 1; price <= 10_000; price++) {
+            Car car = car(2020L, 0.0, (double) price);
+            all.add(car);
+            (price <= 5_000 ? low : high).add(car);
+        }
+
+        BrandStats merged = low.merge(high).toStats();
+        BrandStats single = all.toStats();
+
+        assertThat(merged.getCount()).isEqualTo(single.getCount());
+        assertThat(merged.getPrice().getP90()).isEqualTo(single.getPrice().getP90());
+        assertThat(merged.getYears()).isEqualTo(single.getYears());
+    }
+
+    @Test
+    void testQuantileSketch_EstimatesWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int value = 1; value <= 100_000; value++) {
+            sketch.add(value);
+        }
+        sketch.add(0);
+
+        assertThat(sketch.count()).isEqualTo(100_001);
+        assertThat(sketch.quantile(0.5)).isCloseTo(50_000, within(50_000 * 0.01));
+        assertThat(sketch.quantile(0.99)).isCloseTo(99_000, within(99_000 * 0.01));
+        assertThat(sketch.quantile(0)).isZero();
+        assertThat(new QuantileSketch().quantile(0.5)).isNaN();
+    }
+}
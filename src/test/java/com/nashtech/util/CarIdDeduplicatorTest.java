@@ -0,0 +1,77 @@
+package com.nashtech.util;
+
+import com.nashtech.model.Car;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CarIdDeduplicatorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CarIdDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        deduplicator = new CarIdDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(deduplicator, "exactMaxIds", 100);
+        ReflectionTestUtils.setField(deduplicator, "bloomExpectedIds", 10_000);
+        ReflectionTestUtils.setField(deduplicator, "bloomFalsePositiveRate", 0.001);
+        deduplicator.init();
+    }
+
+    private static Car car(final Integer carId) {
+        return Car.builder().carId(carId).brand("BMW").build();
+    }
+
+    @Test
+    void testDistinct_DropsRepeatedIdsAndKeepsCarsWithoutId() {
+        Flux<Car> cars = Flux.just(car(0), car(1), car(0), car(null), car(null), car(1));
+
+        StepVerifier.create(deduplicator.distinct(cars).map(car -> String.valueOf(car.getCarId())))
+                .expectNext("0", "1", "null", "null")
+                .verifyComplete();
+        assertThat(meterRegistry.get("cars.dedup.duplicates").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("cars.dedup.memory").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testDistinct_KeepsIdsPerSubscription() {
+        Flux<Car> cars = deduplicator.distinct(Flux.just(car(1), car(2)));
+
+        StepVerifier.create(cars).expectNextCount(2).verifyComplete();
+        StepVerifier.create(cars).expectNextCount(2).verifyComplete();
+    }
+
+    @Test
+    void testDistinct_LargeStreamSwitchesToBoundedFilter() {
+        ReflectionTestUtils.setField(deduplicator, "bloomEnabled", true);
+        Flux<Car> cars = Flux.range(0, 5_000).concatWith(Flux.range(0, 5_000)).map(CarIdDeduplicatorTest::car);
+
+        StepVerifier.create(deduplicator.distinct(cars).count())
+                .assertNext(count -> assertThat(count).isBetween(4_950L, 5_000L))
+                .verifyComplete();
+        // 10k ids at 0.1% take about 18KB of bits, the exact set would keep growing
+        assertThat(meterRegistry.get("cars.dedup.memory").summary().max())
+                .isEqualTo(new IntBloomFilter(10_000, 0.001).memoryBytes());
+    }
+
+    @Test
+    void testIntHashSet_GrowsAndKeepsEveryElement() {
+        IntHashSet set = new IntHashSet(0);
+        IntStream.range(-1_000, 1_000).forEach(value -> assertThat(set.add(value)).isTrue());
+        IntStream.range(-1_000, 1_000).forEach(value -> assertThat(set.add(value)).isFalse());
+
+        assertThat(set.size()).isEqualTo(2_000);
+        assertThat(set.memoryBytes()).isEqualTo(4_096L * Integer.BYTES);
+    }
+}
@@ -0,0 +1,34 @@
+package com.nashtech.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBuckets_CoverEveryValueWithinOneEighth() {
+        LongStream.of(0, 1, 7, 8, 9, 15, 16, 17, 1_000, 123_456_789, Long.MAX_VALUE)
+                .forEach(value -> {
+                    long upperBound = LatencyHistogram.upperBoundOf(
+                            LatencyHistogram.bucketOf(value));
+                    assertThat(upperBound).isGreaterThanOrEqualTo(value);
+                    assertThat(upperBound - value).isLessThanOrEqualTo(value / 8);
+                });
+    }
+
+    @Test
+    void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.count()).isEqualTo(1000);
+        assertThat(histogram.percentile(0.5)).isBetween(500L, 563L);
+        assertThat(histogram.percentile(0.99)).isBetween(990L, 1023L);
+        assertThat(new LatencyHistogram().percentile(0.99)).isZero();
+    }
+}
@@ -0,0 +1,85 @@
+package com.nashtech.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicroBatcherTest {
+
+    private MicroBatcher microBatcher;
+
+    @BeforeEach
+    void setUp() {
+        microBatcher = new MicroBatcher();
+        ReflectionTestUtils.setField(microBatcher, "minRecords", 2);
+        ReflectionTestUtils.setField(microBatcher, "maxRecords", 8);
+        ReflectionTestUtils.setField(microBatcher, "maxBytes", 10L);
+        ReflectionTestUtils.setField(microBatcher, "maxWait", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(microBatcher, "targetLatency", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(microBatcher, "concurrency", 1);
+        microBatcher.init();
+    }
+
+    @Test
+    void testSplit_HonoursRecordBound() {
+        List<List<Integer>> windows = microBatcher.split(
+                Arrays.asList(1, 1, 1, 1, 1), item -> 1);
+
+        assertThat(windows).containsExactly(
+                Arrays.asList(1, 1), Arrays.asList(1, 1), Arrays.asList(1));
+    }
+
+    @Test
+    void testSplit_HonoursByteBound() {
+        microBatcher.recordLatency(Duration.ZERO);
+        microBatcher.recordLatency(Duration.ZERO);
+
+        List<List<Integer>> windows = microBatcher.split(
+                Arrays.asList(4, 4, 4, 12, 1), item -> item);
+
+        assertThat(windows).containsExactly(
+                Arrays.asList(4, 4), Arrays.asList(4), Arrays.asList(12),
+                Arrays.asList(1));
+    }
+
+    @Test
+    void testRecordLatency_GrowsAdditivelyAndShrinksMultiplicatively() {
+        microBatcher.recordLatency(Duration.ofMillis(10));
+        microBatcher.recordLatency(Duration.ofMillis(10));
+        microBatcher.recordLatency(Duration.ofMillis(10));
+        assertThat(microBatcher.getWindowSize()).isEqualTo(8);
+
+        microBatcher.recordLatency(Duration.ofMillis(10));
+        assertThat(microBatcher.getWindowSize()).isEqualTo(8);
+
+        microBatcher.recordLatency(Duration.ofMillis(500));
+        assertThat(microBatcher.getWindowSize()).isEqualTo(4);
+    }
+
+    @Test
+    void testPublish_PublishesEveryRecordOnce() {
+        List<List<Integer>> published = new CopyOnWriteArrayList<>();
+
+        Mono<Long> result = microBatcher.publish(Flux.range(0, 20),
+                window -> Mono.fromRunnable(() -> published.add(window)));
+
+        StepVerifier.create(result)
+                .expectNext(20L)
+                .verifyComplete();
+        List<Integer> flattened = new ArrayList<>();
+        published.forEach(flattened::addAll);
+        assertThat(flattened).hasSize(20).doesNotHaveDuplicates();
+        assertThat(published).allMatch(window -> window.size() <= 8);
+    }
+}